@@ -0,0 +1,172 @@
+package com.fintech.payment.event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the String.format templates the producers used to build their messages with
+ * the typed events written by {@link EventJsonWriter}. Run with {@code -prof gc} to see
+ * the bytes allocated per message as well as the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EventSerializationBenchmark {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final String referenceNumber = "TXN-20260307-8F3A2C91";
+    private final String accountNumber = "ACC0001234567";
+    private final Long walletId = 4812L;
+    private final Long accountId = 977L;
+    private final BigDecimal amount = new BigDecimal("1250.00");
+    private final BigDecimal balanceBefore = new BigDecimal("8400.35");
+    private final BigDecimal balanceAfter = new BigDecimal("7150.35");
+    private final String currency = "USD";
+    private final String formattedAmount = "$1,250.00";
+    private final String description = "Rent for \"March\"";
+
+    @Benchmark
+    public String walletEventFormat() {
+        return String.format(
+                "{\"eventType\":\"%s\",\"walletId\":%d,\"accountId\":%d,\"amount\":\"%s\",\"balance\":\"%s\",\"currency\":\"%s\",\"timestamp\":\"%s\"}",
+                "WITHDRAWAL",
+                walletId,
+                accountId,
+                amount.toPlainString(),
+                balanceAfter.toPlainString(),
+                currency,
+                LocalDateTime.now()
+        );
+    }
+
+    @Benchmark
+    public String walletEventTyped() {
+        return TransactionCreatedEvent.builder()
+                .type("WITHDRAWAL")
+                .walletId(walletId)
+                .accountId(accountId)
+                .amount(amount)
+                .balance(balanceAfter)
+                .currency(currency)
+                .build()
+                .toJson();
+    }
+
+    @Benchmark
+    public String transferEventFormat() {
+        return String.format(
+                "{\"eventType\":\"TRANSFER_COMPLETED\",\"referenceNumber\":\"%s\"," +
+                        "\"sourceAccountNumber\":\"%s\",\"destinationAccountNumber\":\"%s\"," +
+                        "\"amount\":\"%s\",\"currency\":\"%s\",\"timestamp\":\"%s\"}",
+                referenceNumber,
+                accountNumber,
+                accountNumber,
+                amount.toPlainString(),
+                currency,
+                LocalDateTime.now()
+        );
+    }
+
+    @Benchmark
+    public String transferEventTyped() {
+        return TransferCompletedEvent.builder()
+                .transferRef(referenceNumber)
+                .fromAccountNumber(accountNumber)
+                .toAccountNumber(accountNumber)
+                .amount(amount)
+                .currency(currency)
+                .build()
+                .toJson();
+    }
+
+    @Benchmark
+    public String transactionNotificationFormat() {
+        return String.format(
+                "{\"notificationType\":\"TRANSACTION\"," +
+                        "\"referenceNumber\":\"%s\"," +
+                        "\"transactionType\":\"%s\"," +
+                        "\"status\":\"%s\"," +
+                        "\"walletId\":%d," +
+                        "\"amount\":\"%s\"," +
+                        "\"formattedAmount\":\"%s\"," +
+                        "\"currency\":\"%s\"," +
+                        "\"balanceBefore\":\"%s\"," +
+                        "\"balanceAfter\":\"%s\"," +
+                        "\"description\":\"%s\"," +
+                        "\"timestamp\":\"%s\"}",
+                referenceNumber,
+                "WITHDRAWAL",
+                "COMPLETED",
+                walletId,
+                amount.toPlainString(),
+                formattedAmount,
+                currency,
+                balanceBefore.toPlainString(),
+                balanceAfter.toPlainString(),
+                escapeJson(description),
+                LocalDateTime.now().format(TIMESTAMP_FORMATTER)
+        );
+    }
+
+    @Benchmark
+    public String transactionNotificationTyped() {
+        return NotificationEvent.builder()
+                .notificationType("TRANSACTION")
+                .referenceNumber(referenceNumber)
+                .transactionType("WITHDRAWAL")
+                .status("COMPLETED")
+                .walletId(walletId)
+                .amount(amount)
+                .formattedAmount(formattedAmount)
+                .currency(currency)
+                .balanceBefore(balanceBefore)
+                .balanceAfter(balanceAfter)
+                .description(description)
+                .build()
+                .toJson();
+    }
+
+    @Benchmark
+    public byte[] transactionNotificationTypedBytes() {
+        return EventJsonWriter.toJsonBytes(NotificationEvent.builder()
+                .notificationType("TRANSACTION")
+                .referenceNumber(referenceNumber)
+                .transactionType("WITHDRAWAL")
+                .status("COMPLETED")
+                .walletId(walletId)
+                .amount(amount)
+                .formattedAmount(formattedAmount)
+                .currency(currency)
+                .balanceBefore(balanceBefore)
+                .balanceAfter(balanceAfter)
+                .description(description)
+                .build());
+    }
+
+    /** As NotificationServiceImpl escaped free text before the typed events. */
+    private static String escapeJson(String value) {
+        return value
+                .replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r")
+                .replace("\t", "\\t");
+    }
+}
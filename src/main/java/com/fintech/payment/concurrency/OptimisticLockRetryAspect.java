@@ -0,0 +1,91 @@
+package com.fintech.payment.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Re-runs {@link RetryOnOptimisticLock} methods after a version conflict, with
+ * exponential backoff and full jitter so colliding writers spread out.
+ * Ordered ahead of the transaction interceptor, so every attempt gets a fresh
+ * transaction and persistence context. Retries are counted per annotated method in the
+ * {@code wallet.optimistic.retries} metric; the conflicting wallet is only logged, since a
+ * tag per wallet would grow the metric without bound.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@RequiredArgsConstructor
+public class OptimisticLockRetryAspect {
+
+    private static final String UNKNOWN_WALLET = "unknown";
+
+    private final WalletLockManager walletLockManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${wallet.concurrency.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${wallet.concurrency.retry.initial-backoff-ms:5}")
+    private long initialBackoffMs;
+
+    @Value("${wallet.concurrency.retry.max-backoff-ms:200}")
+    private long maxBackoffMs;
+
+    @Around("@annotation(com.fintech.payment.concurrency.RetryOnOptimisticLock)")
+    public Object retryOnConflict(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!walletLockManager.isOptimistic() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        String method = joinPoint.getSignature().toShortString();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                String walletId = conflictingWalletId(e);
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter("wallet.optimistic.retries.exhausted", "method", method).increment();
+                    log.warn("Optimistic lock retries exhausted: method={}, walletId={}, attempts={}",
+                            method, walletId, attempt);
+                    throw e;
+                }
+
+                meterRegistry.counter("wallet.optimistic.retries", "method", method).increment();
+                long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+                long backoff = ThreadLocalRandom.current().nextLong(ceiling + 1);
+                log.debug("Optimistic lock conflict: method={}, walletId={}, attempt={}, backoffMs={}",
+                        method, walletId, attempt, backoff);
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    private String conflictingWalletId(Exception e) {
+        if (e instanceof ObjectOptimisticLockingFailureException) {
+            ObjectOptimisticLockingFailureException failure = (ObjectOptimisticLockingFailureException) e;
+            if (failure.getIdentifier() != null && "Wallet".equals(simpleName(failure.getPersistentClassName()))) {
+                return failure.getIdentifier().toString();
+            }
+        }
+        return UNKNOWN_WALLET;
+    }
+
+    private static String simpleName(String className) {
+        return className == null ? null : className.substring(className.lastIndexOf('.') + 1);
+    }
+}
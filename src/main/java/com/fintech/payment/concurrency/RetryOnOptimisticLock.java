@@ -0,0 +1,17 @@
+package com.fintech.payment.concurrency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a transactional service method to be re-run when it fails on a stale
+ * {@code @Version} while wallet concurrency runs in optimistic mode. The retry wraps
+ * the whole transaction, so it only applies when the method opens the transaction
+ * itself; calls joining an outer transaction fail through to that caller.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnOptimisticLock {
+}
@@ -0,0 +1,30 @@
+package com.fintech.payment.concurrency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Collapses concurrent calls that carry the same idempotency key into one execution.
+ * The first caller runs the method; callers arriving while it is in flight wait for it
+ * and receive its result, or its exception, instead of running the method again.
+ * With the Redis lease enabled the same holds across nodes, except that callers on
+ * other nodes re-run the method once the lease is released and pick up the committed
+ * result through its own idempotency check.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SingleFlight {
+
+    /**
+     * SpEL expression over the method parameters that yields the idempotency key,
+     * e.g. {@code "#idempotencyKey"}. A null or blank key disables deduplication.
+     */
+    String key();
+
+    /**
+     * Scope of the key, so equal keys of different operations do not collide.
+     */
+    String namespace();
+}
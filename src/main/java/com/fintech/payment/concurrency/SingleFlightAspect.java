@@ -0,0 +1,170 @@
+package com.fintech.payment.concurrency;
+
+import com.fintech.payment.exception.DuplicateTransactionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.Ordered;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs {@link SingleFlight} methods at most once at a time per idempotency key.
+ * Concurrent callers on this node join the in-flight call and share its outcome.
+ * With {@code idempotency.single-flight.redis-lease.enabled} the leader also takes a
+ * Redis {@code SET NX} lease, and leaders on other nodes wait for it to be released.
+ * Ordered ahead of the optimistic lock retry and the transaction interceptor, so the
+ * shared result is the committed one.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 2)
+@RequiredArgsConstructor
+public class SingleFlightAspect {
+
+    private static final String LEASE_KEY_PREFIX = "single-flight:";
+    private static final RedisScript<Long> RELEASE_LEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${idempotency.single-flight.enabled:true}")
+    private boolean enabled;
+
+    @Value("${idempotency.single-flight.wait-timeout:30s}")
+    private Duration waitTimeout;
+
+    @Value("${idempotency.single-flight.redis-lease.enabled:false}")
+    private boolean redisLeaseEnabled;
+
+    @Value("${idempotency.single-flight.redis-lease.ttl:60s}")
+    private Duration leaseTtl;
+
+    @Value("${idempotency.single-flight.redis-lease.poll-interval-ms:50}")
+    private long leasePollIntervalMs;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Expression> keyExpressions = new ConcurrentHashMap<>();
+    private final ExpressionParser expressionParser = new SpelExpressionParser();
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    @Around("@annotation(singleFlight)")
+    public Object deduplicate(ProceedingJoinPoint joinPoint, SingleFlight singleFlight) throws Throwable {
+        if (!enabled) {
+            return joinPoint.proceed();
+        }
+        String key = resolveKey(joinPoint, singleFlight);
+        if (key == null || key.isBlank()) {
+            return joinPoint.proceed();
+        }
+
+        String flightKey = singleFlight.namespace() + ":" + key;
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(flightKey, flight);
+        if (leader != null) {
+            meterRegistry.counter("idempotency.single-flight.joined", "namespace", singleFlight.namespace()).increment();
+            log.debug("Joining in-flight request: namespace={}, key={}", singleFlight.namespace(), key);
+            return await(leader);
+        }
+
+        try {
+            Object result = redisLeaseEnabled ? proceedUnderLease(joinPoint, flightKey) : joinPoint.proceed();
+            flight.complete(result);
+            return result;
+        } catch (Throwable t) {
+            flight.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    private Object await(CompletableFuture<Object> leader) throws Throwable {
+        try {
+            return leader.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            throw new DuplicateTransactionException("A request with this idempotency key is still being processed");
+        }
+    }
+
+    /**
+     * Waits for any other node's lease on the key, then runs the method under a lease of its own.
+     * If Redis is unavailable the method runs with local deduplication only.
+     */
+    private Object proceedUnderLease(ProceedingJoinPoint joinPoint, String flightKey) throws Throwable {
+        String leaseKey = LEASE_KEY_PREFIX + flightKey;
+        String token = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + waitTimeout.toMillis();
+
+        while (true) {
+            Boolean acquired;
+            try {
+                acquired = redisTemplate.opsForValue().setIfAbsent(leaseKey, token, leaseTtl);
+            } catch (Exception e) {
+                log.warn("Single-flight lease unavailable, continuing without it: key={}, error={}",
+                        flightKey, e.getMessage());
+                return joinPoint.proceed();
+            }
+
+            if (Boolean.TRUE.equals(acquired)) {
+                try {
+                    return joinPoint.proceed();
+                } finally {
+                    releaseLease(leaseKey, token);
+                }
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new DuplicateTransactionException("A request with this idempotency key is still being processed");
+            }
+            meterRegistry.counter("idempotency.single-flight.lease-waits").increment();
+            Thread.sleep(leasePollIntervalMs);
+        }
+    }
+
+    private void releaseLease(String leaseKey, String token) {
+        try {
+            redisTemplate.execute(RELEASE_LEASE_SCRIPT, List.of(leaseKey), token);
+        } catch (Exception e) {
+            // The lease expires on its own after its TTL
+            log.warn("Failed to release single-flight lease: key={}, error={}", leaseKey, e.getMessage());
+        }
+    }
+
+    private String resolveKey(ProceedingJoinPoint joinPoint, SingleFlight singleFlight) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(
+                joinPoint.getTarget(), signature.getMethod(), joinPoint.getArgs(), parameterNameDiscoverer);
+        Object key = keyExpressions.computeIfAbsent(singleFlight.key(), expressionParser::parseExpression)
+                .getValue(context);
+        return key != null ? key.toString() : null;
+    }
+}
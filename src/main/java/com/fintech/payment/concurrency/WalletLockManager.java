@@ -0,0 +1,49 @@
+package com.fintech.payment.concurrency;
+
+import com.fintech.payment.entity.Wallet;
+import com.fintech.payment.enums.ConcurrencyMode;
+import com.fintech.payment.exception.ResourceNotFoundException;
+import com.fintech.payment.repository.WalletRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads wallets that are about to be modified, according to the configured
+ * concurrency mode. In pessimistic mode the row is read with SELECT ... FOR UPDATE.
+ * In optimistic mode it is read plainly and conflicting writers are detected by the
+ * {@code @Version} check on flush, to be retried by {@link OptimisticLockRetryAspect}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WalletLockManager {
+
+    private final WalletRepository walletRepository;
+
+    @Value("${wallet.concurrency.mode:PESSIMISTIC}")
+    private ConcurrencyMode mode;
+
+    public ConcurrencyMode getMode() {
+        return mode;
+    }
+
+    public boolean isOptimistic() {
+        return mode == ConcurrencyMode.OPTIMISTIC;
+    }
+
+    public Wallet loadForUpdate(Long walletId) {
+        return (isOptimistic()
+                ? walletRepository.findById(walletId)
+                : walletRepository.findByIdWithPessimisticLock(walletId))
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", walletId));
+    }
+
+    public Wallet loadForUpdateByAccountId(Long accountId) {
+        return (isOptimistic()
+                ? walletRepository.findByAccountId(accountId)
+                : walletRepository.findByAccountIdWithPessimisticLock(accountId))
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "accountId", accountId));
+    }
+}
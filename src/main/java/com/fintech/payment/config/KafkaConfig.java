@@ -1,9 +1,12 @@
 package com.fintech.payment.config;
 
+import com.fintech.payment.event.EventCodec;
+import com.fintech.payment.event.EventDeserializer;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -20,8 +23,6 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DefaultErrorHandler;
-import org.springframework.kafka.support.serializer.JsonDeserializer;
-import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.util.backoff.FixedBackOff;
 
 import java.util.HashMap;
@@ -34,6 +35,8 @@ public class KafkaConfig {
     public static final String TOPIC_PAYMENT_EVENTS = "payment-events";
     public static final String TOPIC_TRANSACTION_EVENTS = "transaction-events";
     public static final String TOPIC_NOTIFICATION_EVENTS = "notification-events";
+    public static final String TOPIC_WALLET_EVENTS = "wallet-events";
+    public static final String TOPIC_TRANSFER_EVENTS = "transfer-events";
 
     @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
     private String bootstrapServers;
@@ -85,14 +88,38 @@ public class KafkaConfig {
                 .build();
     }
 
+    @Bean
+    public NewTopic walletEventsTopic() {
+        return TopicBuilder.name(TOPIC_WALLET_EVENTS)
+                .partitions(6)
+                .replicas(3)
+                .config("retention.ms", String.valueOf(7 * 24 * 60 * 60 * 1000L))
+                .config("cleanup.policy", "delete")
+                .build();
+    }
+
+    @Bean
+    public NewTopic transferEventsTopic() {
+        return TopicBuilder.name(TOPIC_TRANSFER_EVENTS)
+                .partitions(6)
+                .replicas(3)
+                .config("retention.ms", String.valueOf(7 * 24 * 60 * 60 * 1000L))
+                .config("cleanup.policy", "delete")
+                .build();
+    }
+
     // ==================== Producer ====================
 
+    /**
+     * Idempotent, acks=all producer used by the outbox relay. Values are sent as the bytes
+     * the outbox stored: binary events, or JSON for topics not yet switched to the binary format.
+     */
     @Bean
-    public ProducerFactory<String, Object> producerFactory() {
+    public ProducerFactory<String, byte[]> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
         configProps.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 1000);
@@ -105,28 +132,29 @@ public class KafkaConfig {
     }
 
     @Bean
-    public KafkaTemplate<String, Object> kafkaTemplate(ProducerFactory<String, Object> producerFactory) {
-        KafkaTemplate<String, Object> template = new KafkaTemplate<>(producerFactory);
+    public KafkaTemplate<String, byte[]> kafkaTemplate(ProducerFactory<String, byte[]> producerFactory) {
+        KafkaTemplate<String, byte[]> template = new KafkaTemplate<>(producerFactory);
         template.setDefaultTopic(TOPIC_PAYMENT_EVENTS);
         return template;
     }
 
     // ==================== Consumer ====================
 
+    /**
+     * Values are read into the typed event classes, from binary or legacy JSON messages.
+     */
     @Bean
-    public ConsumerFactory<String, Object> consumerFactory() {
+    public ConsumerFactory<String, Object> consumerFactory(EventCodec eventCodec) {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ConsumerConfig.GROUP_ID_CONFIG, consumerGroupId);
-        configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
         configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, autoOffsetReset);
         configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
         configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 100);
         configProps.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, 30000);
         configProps.put(ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG, 10000);
-        configProps.put(JsonDeserializer.TRUSTED_PACKAGES, "com.fintech.payment.*");
-        return new DefaultKafkaConsumerFactory<>(configProps);
+        return new DefaultKafkaConsumerFactory<>(configProps,
+                new StringDeserializer(), new EventDeserializer(eventCodec));
     }
 
     @Bean
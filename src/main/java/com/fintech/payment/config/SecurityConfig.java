@@ -93,10 +93,10 @@ public class SecurityConfig {
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList(
                 "Authorization", "Content-Type", "X-Requested-With",
-                "Accept", "Origin", "X-Idempotency-Key"
+                "Accept", "Origin", "X-Idempotency-Key", "Idempotency-Key"
         ));
         configuration.setExposedHeaders(Arrays.asList(
-                "Authorization", "X-Request-Id", "X-Rate-Limit-Remaining"
+                "Authorization", "X-Request-Id", "X-Rate-Limit-Remaining", "Idempotent-Replayed"
         ));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
@@ -3,6 +3,7 @@ package com.fintech.payment.controller;
 import com.fintech.payment.dto.request.CreatePaymentRequest;
 import com.fintech.payment.dto.request.RefundRequest;
 import com.fintech.payment.dto.response.ApiResponse;
+import com.fintech.payment.dto.response.CursorPage;
 import com.fintech.payment.dto.response.PaymentResponse;
 import com.fintech.payment.service.PaymentService;
 import lombok.RequiredArgsConstructor;
@@ -111,4 +112,24 @@ public class PaymentController {
         Page<PaymentResponse> payments = paymentService.getPaymentsByWallet(walletId, pageable);
         return ResponseEntity.ok(ApiResponse.ok(payments));
     }
+
+    /**
+     * Retrieves a wallet's payments, most recent first, using keyset pagination.
+     * Pass the returned nextCursor back to read the following slice; no total count is computed,
+     * so deep slices cost the same as the first one.
+     *
+     * @param walletId the wallet ID
+     * @param cursor   the cursor of the previous slice, omitted for the first slice
+     * @param size     the maximum number of records to return
+     * @return a slice of payment records
+     */
+    @GetMapping("/wallet/{walletId}/cursor")
+    public ResponseEntity<ApiResponse<CursorPage<PaymentResponse>>> getPaymentsByWalletCursor(
+            @PathVariable Long walletId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        log.info("REST request to get payments for wallet by cursor: {}, size: {}", walletId, size);
+        CursorPage<PaymentResponse> payments = paymentService.getPaymentsByWallet(walletId, cursor, size);
+        return ResponseEntity.ok(ApiResponse.ok(payments));
+    }
 }
@@ -1,17 +1,25 @@
 package com.fintech.payment.controller;
 
 import com.fintech.payment.dto.response.ApiResponse;
+import com.fintech.payment.dto.response.CursorPage;
 import com.fintech.payment.dto.response.TransactionResponse;
+import com.fintech.payment.enums.ExportFormat;
 import com.fintech.payment.service.TransactionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -28,6 +36,9 @@ public class TransactionController {
 
     private final TransactionService transactionService;
 
+    @Value("${transaction.export.timeout:10m}")
+    private Duration exportTimeout;
+
     /**
      * Retrieves a transaction by its unique reference number.
      *
@@ -59,6 +70,27 @@ public class TransactionController {
         return ResponseEntity.ok(ApiResponse.ok(transactions));
     }
 
+    /**
+     * Retrieves a wallet's transactions, most recent first, using keyset pagination.
+     * Pass the returned nextCursor back to read the following slice; no total count is computed,
+     * so deep slices cost the same as the first one.
+     *
+     * @param walletId the wallet ID
+     * @param cursor   the cursor of the previous slice, omitted for the first slice
+     * @param size     the maximum number of records to return
+     * @return a slice of transaction records
+     */
+    @GetMapping("/wallet/{walletId}/cursor")
+    public ResponseEntity<ApiResponse<CursorPage<TransactionResponse>>> getTransactionsByWalletCursor(
+            @PathVariable Long walletId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        log.info("REST request to get transactions for wallet by cursor: {}, size: {}", walletId, size);
+        CursorPage<TransactionResponse> transactions =
+                transactionService.getTransactionsByWallet(walletId, cursor, size);
+        return ResponseEntity.ok(ApiResponse.ok(transactions));
+    }
+
     /**
      * Retrieves transaction history for a wallet within a date range.
      * Both startDate and endDate are inclusive.
@@ -80,6 +112,43 @@ public class TransactionController {
         return ResponseEntity.ok(ApiResponse.ok(transactions));
     }
 
+    /**
+     * Streams a wallet's transactions within a date range as a file download, oldest first.
+     * Rows are written as they are read from the database, so the range size does not
+     * affect server memory. Both startDate and endDate are inclusive. The export runs
+     * asynchronously under its own timeout, transaction.export.timeout, so long
+     * histories are not cut off by the default async request timeout.
+     *
+     * @param walletId  the wallet ID
+     * @param startDate the start of the date range (ISO format: yyyy-MM-ddTHH:mm:ss)
+     * @param endDate   the end of the date range (ISO format: yyyy-MM-ddTHH:mm:ss)
+     * @param format    NDJSON (default) or CSV
+     * @return the export task, writing straight to the response
+     */
+    @GetMapping("/wallet/{walletId}/export")
+    public WebAsyncTask<Void> exportTransactionHistory(
+            @PathVariable Long walletId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            HttpServletResponse response) {
+        log.info("REST request to export transactions: walletId={}, from={}, to={}, format={}",
+                walletId, startDate, endDate, format);
+        // Fail with a regular error response before anything is streamed
+        transactionService.validateHistoryRange(walletId, startDate, endDate);
+
+        String filename = String.format("wallet-%d-transactions.%s", walletId, format.getFileExtension());
+        response.setContentType(format.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(filename).build().toString());
+
+        return new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+            transactionService.exportTransactionHistory(walletId, startDate, endDate, format,
+                    response.getOutputStream());
+            return null;
+        });
+    }
+
     /**
      * Validates that the given value is within the expected range.
      * @param value the value to check
@@ -1,7 +1,10 @@
 package com.fintech.payment.controller;
 
+import com.fintech.payment.dto.request.BulkTransferRequest;
 import com.fintech.payment.dto.request.TransferRequest;
 import com.fintech.payment.dto.response.ApiResponse;
+import com.fintech.payment.dto.response.BulkTransferResponse;
+import com.fintech.payment.dto.response.CursorPage;
 import com.fintech.payment.dto.response.TransferResponse;
 import com.fintech.payment.service.TransferService;
 import lombok.RequiredArgsConstructor;
@@ -56,6 +59,26 @@ public class TransferController {
                 .body(ApiResponse.ok(transfer, "Transfer completed successfully"));
     }
 
+    /**
+     * Pays out from one source account to many destinations in a single request.
+     * Each item carries its own idempotency key; items already processed are reported
+     * as duplicates and items with an unusable destination are rejected individually.
+     *
+     * @param request the source account and the payout items
+     * @return the per-item results with HTTP 201
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<ApiResponse<BulkTransferResponse>> initiateBulkTransfer(
+            @Valid @RequestBody BulkTransferRequest request) {
+        log.info("REST request to initiate bulk transfer: from={}, items={}",
+                request.getFromAccountNumber(), request.getItems().size());
+
+        BulkTransferResponse response = transferService.initiateBulkTransfer(request);
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.ok(response, "Bulk transfer processed"));
+    }
+
     /**
      * Retrieves a transfer by its unique reference number.
      *
@@ -85,4 +108,24 @@ public class TransferController {
         Page<TransferResponse> transfers = transferService.getTransferHistory(accountId, pageable);
         return ResponseEntity.ok(ApiResponse.ok(transfers));
     }
+
+    /**
+     * Retrieves an account's sent and received transfers, most recent first, using keyset pagination.
+     * Pass the returned nextCursor back to read the following slice; no total count is computed,
+     * so deep slices cost the same as the first one.
+     *
+     * @param accountId the account ID
+     * @param cursor    the cursor of the previous slice, omitted for the first slice
+     * @param size      the maximum number of records to return
+     * @return a slice of transfer records
+     */
+    @GetMapping("/account/{accountId}/cursor")
+    public ResponseEntity<ApiResponse<CursorPage<TransferResponse>>> getTransferHistoryCursor(
+            @PathVariable Long accountId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        log.info("REST request to get transfer history by cursor: accountId={}, size={}", accountId, size);
+        CursorPage<TransferResponse> transfers = transferService.getTransferHistory(accountId, cursor, size);
+        return ResponseEntity.ok(ApiResponse.ok(transfers));
+    }
 }
@@ -5,12 +5,16 @@ import com.fintech.payment.dto.response.ApiResponse;
 import com.fintech.payment.dto.response.BalanceResponse;
 import com.fintech.payment.dto.response.WalletResponse;
 import com.fintech.payment.service.WalletService;
+import com.fintech.payment.service.WalletVelocityService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.time.LocalDate;
 
 /**
  * REST controller for wallet operations.
@@ -25,6 +29,7 @@ import javax.validation.Valid;
 public class WalletController {
 
     private final WalletService walletService;
+    private final WalletVelocityService walletVelocityService;
 
     /**
      * Retrieves the wallet associated with the given account.
@@ -95,4 +100,53 @@ public class WalletController {
                 accountId, request.getAmount(), request.getDescription(), idempotencyKey);
         return ResponseEntity.ok(ApiResponse.ok(wallet, "Withdrawal successful"));
     }
+
+    /**
+     * Splits a hot wallet's incoming credits across sub-balance shards.
+     * Restricted to administrators.
+     *
+     * @param accountId the account ID
+     * @param count     the number of shards
+     * @return the wallet details with the summed balance
+     */
+    @PostMapping("/{accountId}/shards")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<WalletResponse>> enableSharding(
+            @PathVariable Long accountId,
+            @RequestParam int count) {
+        log.info("REST request to enable sharding: accountId={}, count={}", accountId, count);
+        WalletResponse wallet = walletService.enableSharding(accountId, count);
+        return ResponseEntity.ok(ApiResponse.ok(wallet, "Sharding enabled"));
+    }
+
+    /**
+     * Consolidates all shards back onto the wallet and disables sharding.
+     * Restricted to administrators.
+     *
+     * @param accountId the account ID
+     * @return the wallet details
+     */
+    @DeleteMapping("/{accountId}/shards")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<WalletResponse>> disableSharding(@PathVariable Long accountId) {
+        log.info("REST request to disable sharding: accountId={}", accountId);
+        WalletResponse wallet = walletService.disableSharding(accountId);
+        return ResponseEntity.ok(ApiResponse.ok(wallet, "Sharding disabled"));
+    }
+
+    /**
+     * Recomputes the daily transfer velocity counters of one day from the transaction log.
+     * Restricted to administrators.
+     *
+     * @param date the business day to rebuild
+     * @return the number of wallets with outbound transfers on that day
+     */
+    @PostMapping("/velocity/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Integer>> rebuildVelocity(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        log.info("REST request to rebuild daily velocity: date={}", date);
+        int wallets = walletVelocityService.rebuild(date);
+        return ResponseEntity.ok(ApiResponse.ok(wallets, "Daily velocity rebuilt"));
+    }
 }
@@ -0,0 +1,33 @@
+package com.fintech.payment.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTransferItemRequest {
+
+    @NotBlank(message = "Idempotency key is required")
+    @Size(max = 60, message = "Idempotency key must not exceed 60 characters")
+    private String idempotencyKey;
+
+    @NotBlank(message = "Destination account number is required")
+    private String toAccountNumber;
+
+    @NotNull(message = "Amount is required")
+    @Positive(message = "Amount must be positive")
+    private BigDecimal amount;
+
+    @Size(max = 500, message = "Description must not exceed 500 characters")
+    private String description;
+}
@@ -0,0 +1,32 @@
+package com.fintech.payment.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTransferRequest {
+
+    @NotBlank(message = "Source account number is required")
+    private String fromAccountNumber;
+
+    /**
+     * Currency of the payout; defaults to the source wallet's. Every destination wallet
+     * must hold the same currency.
+     */
+    @Size(min = 3, max = 3, message = "Currency must be a 3-letter ISO code")
+    private String currency;
+
+    @NotEmpty(message = "At least one transfer item is required")
+    private List<@Valid BulkTransferItemRequest> items;
+}
@@ -18,4 +18,5 @@ public class BalanceResponse {
     private BigDecimal availableBalance;
     private BigDecimal frozenAmount;
     private String currency;
+    private Integer shardCount;
 }
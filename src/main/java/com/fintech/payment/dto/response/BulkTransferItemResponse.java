@@ -0,0 +1,23 @@
+package com.fintech.payment.dto.response;
+
+import com.fintech.payment.enums.BulkTransferItemStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTransferItemResponse {
+
+    private String idempotencyKey;
+    private String toAccountNumber;
+    private BigDecimal amount;
+    private BulkTransferItemStatus status;
+    private String failureReason;
+    private TransferResponse transfer;
+}
@@ -0,0 +1,24 @@
+package com.fintech.payment.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTransferResponse {
+
+    private String fromAccountNumber;
+    private BigDecimal totalAmount;
+    private String currency;
+    private int completedCount;
+    private int duplicateCount;
+    private int rejectedCount;
+    private List<BulkTransferItemResponse> items;
+}
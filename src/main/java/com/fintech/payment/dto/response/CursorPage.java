@@ -0,0 +1,25 @@
+package com.fintech.payment.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A slice of a keyset-paginated listing. Unlike {@link org.springframework.data.domain.Page}
+ * it carries no total count; {@code nextCursor} is passed back to fetch the following slice
+ * and is null on the last one.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+}
@@ -0,0 +1,33 @@
+package com.fintech.payment.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Written in the same database transaction as the business rows that reserved a ledger
+ * intent. Its presence tells ledger recovery that the transaction committed, so the
+ * intent is settled; without it the reservation is released. Deleted once settled.
+ */
+@Entity
+@Table(name = "ledger_commit_markers")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerCommitMarker {
+
+    @Id
+    @Column(name = "intent_id", length = 36)
+    private String intentId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,39 @@
+package com.fintech.payment.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * The single row naming the node that runs the ledger engine. The epoch grows with every
+ * new holder; the projector renews the lease inside each projection transaction and only
+ * while owner and epoch are still its own, so a node that lost the lease cannot write.
+ */
+@Entity
+@Table(name = "ledger_engine_lease")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerEngineLease {
+
+    @Id
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "owner", length = 100)
+    private String owner;
+
+    @Column(name = "epoch", nullable = false)
+    private long epoch;
+
+    @Column(name = "lease_until", nullable = false)
+    private LocalDateTime leaseUntil;
+}
@@ -0,0 +1,36 @@
+package com.fintech.payment.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Last journal sequence of a ledger engine partition whose effects have been
+ * written to the wallets and transactions tables. Updated in the same database
+ * transaction as the projected rows, so replay resumes exactly after it.
+ */
+@Entity
+@Table(name = "ledger_projection_offsets")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerProjectionOffset {
+
+    @Id
+    @Column(name = "partition_id")
+    private Integer partitionId;
+
+    @Column(name = "last_sequence", nullable = false)
+    private long lastSequence;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,84 @@
+package com.fintech.payment.entity;
+
+import com.fintech.payment.enums.OutboxStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Message waiting to be published to Kafka. Written in the same database transaction as
+ * the change it announces, so it exists if and only if that change committed, and
+ * published afterwards by the outbox relay. Rows are spread over a fixed number of shards
+ * by message key; the relay publishes each shard in id order. The message is kept either
+ * as JSON text in {@code payload} or in the binary event format in {@code body}. A message
+ * whose send keeps failing is retried with backoff, holding back the rest of its shard,
+ * and parked after the relay's attempt limit so the shard can move on.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_status_shard_id", columnList = "status, shard, id"),
+        @Index(name = "idx_outbox_published_at", columnList = "publishedAt")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "topic", nullable = false, length = 100)
+    private String topic;
+
+    @Column(name = "message_key", length = 255)
+    private String messageKey;
+
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "body")
+    private byte[] body;
+
+    @Column(name = "shard", nullable = false)
+    private int shard;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    @Builder.Default
+    private OutboxStatus status = OutboxStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false, columnDefinition = "integer default 0")
+    @Builder.Default
+    private int attempts = 0;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+}
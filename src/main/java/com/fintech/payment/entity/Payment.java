@@ -35,10 +35,11 @@ import java.time.LocalDateTime;
 @Table(name = "payments", indexes = {
         @Index(name = "idx_payment_ref", columnList = "paymentRef", unique = true),
         @Index(name = "idx_payment_wallet_id", columnList = "wallet_id"),
-        @Index(name = "idx_payment_idempotency_key", columnList = "idempotencyKey"),
+        @Index(name = "uk_payment_idempotency_key", columnList = "idempotencyKey", unique = true),
         @Index(name = "idx_payment_status", columnList = "status"),
         @Index(name = "idx_payment_merchant_ref", columnList = "merchantRef"),
-        @Index(name = "idx_payment_created_at", columnList = "createdAt")
+        @Index(name = "idx_payment_created_at", columnList = "createdAt"),
+        @Index(name = "idx_payment_wallet_created", columnList = "wallet_id, createdAt")
 })
 @Data
 @Builder
@@ -32,7 +32,7 @@ import java.time.LocalDateTime;
 @Table(name = "transactions", indexes = {
         @Index(name = "idx_txn_ref", columnList = "transactionRef", unique = true),
         @Index(name = "idx_txn_wallet_id", columnList = "wallet_id"),
-        @Index(name = "idx_txn_idempotency_key", columnList = "idempotencyKey"),
+        @Index(name = "uk_txn_idempotency_key", columnList = "idempotencyKey", unique = true),
         @Index(name = "idx_txn_status", columnList = "status"),
         @Index(name = "idx_txn_created_at", columnList = "createdAt"),
         @Index(name = "idx_txn_wallet_created", columnList = "wallet_id, createdAt")
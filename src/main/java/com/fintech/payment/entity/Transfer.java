@@ -36,9 +36,11 @@ import java.time.LocalDateTime;
         @Index(name = "idx_transfer_ref", columnList = "transferRef", unique = true),
         @Index(name = "idx_transfer_from_wallet", columnList = "from_wallet_id"),
         @Index(name = "idx_transfer_to_wallet", columnList = "to_wallet_id"),
-        @Index(name = "idx_transfer_idempotency_key", columnList = "idempotencyKey"),
+        @Index(name = "uk_transfer_idempotency_key", columnList = "idempotencyKey", unique = true),
         @Index(name = "idx_transfer_status", columnList = "status"),
-        @Index(name = "idx_transfer_created_at", columnList = "createdAt")
+        @Index(name = "idx_transfer_created_at", columnList = "createdAt"),
+        @Index(name = "idx_transfer_source_account_created", columnList = "source_account_id, createdAt"),
+        @Index(name = "idx_transfer_destination_account_created", columnList = "destination_account_id, createdAt")
 })
 @Data
 @Builder
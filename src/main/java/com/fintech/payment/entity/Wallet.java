@@ -73,6 +73,14 @@ public class Wallet {
     @Builder.Default
     private WalletStatus status = WalletStatus.ACTIVE;
 
+    /**
+     * Number of sub-balance rows in {@code wallet_shards} backing this wallet.
+     * Zero means the wallet is not sharded and the whole balance lives on this row.
+     */
+    @Column(name = "shard_count", nullable = false, columnDefinition = "integer default 0")
+    @Builder.Default
+    private int shardCount = 0;
+
     @Version
     @Column(name = "version")
     private Long version;
@@ -95,6 +103,16 @@ public class Wallet {
         return balance.subtract(frozenAmount);
     }
 
+    /**
+     * Returns whether credits to this wallet are spread over sub-balance shards.
+     * For sharded wallets {@link #getBalance()} only holds the home portion of the funds.
+     *
+     * @return true if the wallet has shard rows
+     */
+    public boolean isSharded() {
+        return shardCount > 0;
+    }
+
 
     /**
      * Validates if the given string is not null or empty.
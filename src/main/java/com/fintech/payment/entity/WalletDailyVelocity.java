@@ -0,0 +1,65 @@
+package com.fintech.payment.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.PositiveOrZero;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Running total of a wallet's completed outbound transfers for one business day.
+ * Maintained by an atomic upsert in the same database transaction that moves the
+ * money, so the daily-limit check reads one row instead of summing the day's
+ * transactions. Rows can be rebuilt from the transactions table.
+ */
+@Entity
+@Table(name = "wallet_daily_velocity", indexes = {
+        @Index(name = "idx_wallet_velocity_wallet_date", columnList = "wallet_id, business_date", unique = true)
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletDailyVelocity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull(message = "Wallet is required")
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false)
+    private Wallet wallet;
+
+    @NotNull(message = "Business date is required")
+    @Column(name = "business_date", nullable = false)
+    private LocalDate businessDate;
+
+    @NotNull(message = "Outbound amount is required")
+    @PositiveOrZero(message = "Outbound amount must be zero or positive")
+    @Column(name = "outbound_amount", nullable = false, precision = 19, scale = 4)
+    @Builder.Default
+    private BigDecimal outboundAmount = BigDecimal.ZERO;
+
+    @PositiveOrZero(message = "Outbound count must be zero or positive")
+    @Column(name = "outbound_count", nullable = false)
+    private long outboundCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
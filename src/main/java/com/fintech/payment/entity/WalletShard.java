@@ -0,0 +1,74 @@
+package com.fintech.payment.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Version;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.PositiveOrZero;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A sub-balance of a sharded wallet. Credits to hot wallets are spread across
+ * several shard rows so concurrent writers do not queue on a single row lock.
+ * The wallet's total balance is the home balance on {@link Wallet} plus all shards.
+ */
+@Entity
+@Table(name = "wallet_shards", indexes = {
+        @Index(name = "idx_wallet_shard_wallet_index", columnList = "wallet_id, shard_index", unique = true)
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class WalletShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull(message = "Wallet is required")
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false)
+    private Wallet wallet;
+
+    @PositiveOrZero(message = "Shard index must be zero or positive")
+    @Column(name = "shard_index", nullable = false)
+    private int shardIndex;
+
+    @NotNull(message = "Balance is required")
+    @PositiveOrZero(message = "Balance must be zero or positive")
+    @Column(name = "balance", nullable = false, precision = 19, scale = 4)
+    @Builder.Default
+    private BigDecimal balance = BigDecimal.ZERO;
+
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,6 @@
+package com.fintech.payment.enums;
+
+public enum ConcurrencyMode {
+    PESSIMISTIC,
+    OPTIMISTIC
+}
@@ -0,0 +1,7 @@
+package com.fintech.payment.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    PUBLISHED,
+    PARKED
+}
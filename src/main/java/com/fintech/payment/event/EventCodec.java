@@ -0,0 +1,356 @@
+package com.fintech.payment.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes events in the compact binary wire format and decodes both that format and the
+ * JSON messages written before it.
+ *
+ * <p>A binary message is a zero byte, which no JSON message starts with, then the schema
+ * id and a bitmask of the fields present, both as unsigned varints, then each present
+ * field in schema order:
+ * <ul>
+ *   <li>STRING: byte length as an unsigned varint, then UTF-8</li>
+ *   <li>LONG: zigzag varint</li>
+ *   <li>MONEY: zigzag varint of {@code scale << 1}, its low bit set when the unscaled value
+ *       does not fit a long; then the unscaled value as a zigzag varint, or as a length and
+ *       two's-complement bytes when it does not fit</li>
+ *   <li>TIMESTAMP: microseconds since the epoch as a zigzag varint, reading the local
+ *       date-time as UTC so that it decodes to the same date-time</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class EventCodec {
+
+    static final byte MAGIC = 0;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final DateTimeFormatter NOTIFICATION_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final ThreadLocal<Output> OUTPUT = ThreadLocal.withInitial(Output::new);
+
+    private final EventSchemaRegistry schemaRegistry;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Encodes the event with the newest schema registered for its class.
+     */
+    public byte[] encode(Object event) {
+        EventSchema<Object> schema = schemaRegistry.latest(eventClass(event));
+        List<EventSchema.Field<Object>> fields = schema.getFields();
+        Object[] values = new Object[fields.size()];
+        long presence = 0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = fields.get(i).getGetter().apply(event);
+            if (values[i] != null) {
+                presence |= 1L << i;
+            }
+        }
+
+        Output out = OUTPUT.get();
+        try {
+            out.writeByte(MAGIC);
+            out.writeUnsignedVarint(schema.getId());
+            out.writeUnsignedVarint(presence);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    writeValue(out, fields.get(i).getType(), values[i]);
+                }
+            }
+            return Arrays.copyOf(out.buffer, out.size);
+        } finally {
+            out.reset();
+        }
+    }
+
+    /**
+     * Decodes a message from the topic, binary or legacy JSON. JSON is read with the
+     * newest schema of the event the topic carries; fields it does not know are ignored.
+     *
+     * @throws IllegalArgumentException if the message cannot be read
+     */
+    public Object decode(String topic, byte[] message) {
+        if (message.length > 0 && message[0] == MAGIC) {
+            return decodeBinary(message);
+        }
+        return decodeJson(schemaRegistry.forTopic(topic), message);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EventSchema.Field<Object> field(EventSchema<?> schema, int index) {
+        return (EventSchema.Field<Object>) schema.getFields().get(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Object> eventClass(Object event) {
+        return (Class<Object>) event.getClass();
+    }
+
+    private Object decodeBinary(byte[] message) {
+        Input in = new Input(message);
+        in.position = 1;
+        EventSchema<?> schema = schemaRegistry.byId((int) in.readUnsignedVarint());
+        long presence = in.readUnsignedVarint();
+        Object event = schema.getFactory().get();
+        for (int i = 0; i < schema.getFields().size(); i++) {
+            if ((presence & 1L << i) != 0) {
+                EventSchema.Field<Object> field = field(schema, i);
+                field.getSetter().accept(event, readValue(in, field.getType()));
+            }
+        }
+        if (in.position != message.length) {
+            throw new IllegalArgumentException("Trailing bytes after event with schema id " + schema.getId());
+        }
+        return event;
+    }
+
+    private Object decodeJson(EventSchema<?> schema, byte[] message) {
+        JsonNode json;
+        try {
+            json = objectMapper.readTree(message);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Message is neither a binary event nor JSON", e);
+        }
+        if (json == null || !json.isObject()) {
+            throw new IllegalArgumentException("JSON event message is not an object");
+        }
+        Object event = schema.getFactory().get();
+        for (int i = 0; i < schema.getFields().size(); i++) {
+            EventSchema.Field<Object> field = field(schema, i);
+            JsonNode node = json.get(field.getName());
+            if (node != null && !node.isNull()) {
+                field.getSetter().accept(event, jsonValue(field.getType(), node));
+            }
+        }
+        return event;
+    }
+
+    private static Object jsonValue(EventSchema.FieldType type, JsonNode node) {
+        switch (type) {
+            case STRING:
+                return node.asText();
+            case LONG:
+                return node.isNumber() ? node.longValue() : Long.parseLong(node.asText());
+            case MONEY:
+                return new BigDecimal(node.asText());
+            default:
+                String text = node.asText();
+                // Notifications carried "yyyy-MM-dd HH:mm:ss", other events ISO date-times
+                return text.length() > 10 && text.charAt(10) == ' '
+                        ? LocalDateTime.parse(text, NOTIFICATION_TIMESTAMP)
+                        : LocalDateTime.parse(text);
+        }
+    }
+
+    private static void writeValue(Output out, EventSchema.FieldType type, Object value) {
+        switch (type) {
+            case STRING:
+                out.writeString((String) value);
+                break;
+            case LONG:
+                out.writeSignedVarint((Long) value);
+                break;
+            case MONEY:
+                BigDecimal money = (BigDecimal) value;
+                BigInteger unscaled = money.unscaledValue();
+                if (unscaled.bitLength() < Long.SIZE) {
+                    out.writeSignedVarint((long) money.scale() << 1);
+                    out.writeSignedVarint(unscaled.longValue());
+                } else {
+                    out.writeSignedVarint((long) money.scale() << 1 | 1);
+                    byte[] bytes = unscaled.toByteArray();
+                    out.writeUnsignedVarint(bytes.length);
+                    out.writeBytes(bytes, bytes.length);
+                }
+                break;
+            default:
+                LocalDateTime timestamp = (LocalDateTime) value;
+                out.writeSignedVarint(Math.addExact(
+                        Math.multiplyExact(timestamp.toEpochSecond(ZoneOffset.UTC), 1_000_000L),
+                        timestamp.getNano() / 1_000));
+        }
+    }
+
+    private static Object readValue(Input in, EventSchema.FieldType type) {
+        switch (type) {
+            case STRING:
+                return in.readString();
+            case LONG:
+                return in.readSignedVarint();
+            case MONEY:
+                long header = in.readSignedVarint();
+                int scale = Math.toIntExact(header >> 1);
+                if ((header & 1) == 0) {
+                    return BigDecimal.valueOf(in.readSignedVarint(), scale);
+                }
+                return new BigDecimal(new BigInteger(in.readBytes()), scale);
+            default:
+                long micros = in.readSignedVarint();
+                return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                        (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+        }
+    }
+
+    /** Growable write buffer kept by each thread between messages. */
+    private static final class Output {
+
+        private byte[] buffer = new byte[INITIAL_CAPACITY];
+        private int size;
+
+        private void reset() {
+            size = 0;
+            if (buffer.length > MAX_RETAINED_CAPACITY) {
+                buffer = new byte[INITIAL_CAPACITY];
+            }
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeBytes(byte[] bytes, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, 0, buffer, size, length);
+            size += length;
+        }
+
+        private void writeUnsignedVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeSignedVarint(long value) {
+            writeUnsignedVarint(value << 1 ^ value >> 63);
+        }
+
+        /** Writes the UTF-8 length, then encodes straight into the buffer. */
+        private void writeString(String value) {
+            int length = value.length();
+            int utf8Length = 0;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    utf8Length++;
+                } else if (c < 0x800) {
+                    utf8Length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    utf8Length += 4;
+                    i++;
+                } else {
+                    // Unpaired surrogates are written as '?', like String.getBytes does
+                    utf8Length += Character.isSurrogate(c) ? 1 : 3;
+                }
+            }
+            writeUnsignedVarint(utf8Length);
+            ensureCapacity(utf8Length);
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer[size++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[size++] = (byte) (0xc0 | c >> 6);
+                    buffer[size++] = (byte) (0x80 | c & 0x3f);
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer[size++] = (byte) (0xf0 | codePoint >> 18);
+                    buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                    buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                    buffer[size++] = (byte) (0x80 | codePoint & 0x3f);
+                } else if (Character.isSurrogate(c)) {
+                    buffer[size++] = '?';
+                } else {
+                    buffer[size++] = (byte) (0xe0 | c >> 12);
+                    buffer[size++] = (byte) (0x80 | c >> 6 & 0x3f);
+                    buffer[size++] = (byte) (0x80 | c & 0x3f);
+                }
+            }
+        }
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+            }
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] buffer;
+        private int position;
+
+        private Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private long readUnsignedVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in event at byte " + position);
+        }
+
+        private long readSignedVarint() {
+            long value = readUnsignedVarint();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        private String readString() {
+            int length = readLength();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private byte[] readBytes() {
+            int length = readLength();
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        private int readLength() {
+            long length = readUnsignedVarint();
+            if (length > buffer.length - position) {
+                throw new IllegalArgumentException("Truncated event: field of " + length
+                        + " bytes at byte " + position);
+            }
+            return (int) length;
+        }
+
+        private byte readByte() {
+            if (position >= buffer.length) {
+                throw new IllegalArgumentException("Truncated event at byte " + position);
+            }
+            return buffer[position++];
+        }
+    }
+}
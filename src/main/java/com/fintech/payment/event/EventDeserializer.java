@@ -0,0 +1,29 @@
+package com.fintech.payment.event;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.time.DateTimeException;
+
+/**
+ * Kafka value deserializer for event topics, reading both binary and legacy JSON messages
+ * into the typed event classes.
+ */
+@RequiredArgsConstructor
+public class EventDeserializer implements Deserializer<Object> {
+
+    private final EventCodec eventCodec;
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return eventCodec.decode(topic, data);
+        } catch (IllegalArgumentException | ArithmeticException | DateTimeException e) {
+            throw new SerializationException("Cannot read event from topic " + topic, e);
+        }
+    }
+}
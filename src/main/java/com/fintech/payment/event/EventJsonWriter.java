@@ -0,0 +1,309 @@
+package com.fintech.payment.event;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Writes {@link JsonEvent}s as UTF-8 JSON straight into a byte buffer that is reused by
+ * each thread. Strings are escaped and encoded as they are copied in and numbers are
+ * written digit by digit, so serializing an event allocates little more than its result.
+ *
+ * <p>Money amounts are written as quoted plain strings to keep their exact scale, and
+ * date-times in {@link LocalDateTime#toString()} form, matching the messages consumers
+ * already read.
+ */
+public final class EventJsonWriter {
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    /** A buffer grown past this by an unusually large event is not kept for the next one. */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<EventJsonWriter> POOL = ThreadLocal.withInitial(EventJsonWriter::new);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+    private boolean firstField;
+    private boolean inUse;
+
+    private EventJsonWriter() {
+    }
+
+    public static String toJson(JsonEvent event) {
+        EventJsonWriter writer = acquire();
+        try {
+            writer.writeObject(event);
+            return new String(writer.buffer, 0, writer.size, StandardCharsets.UTF_8);
+        } finally {
+            writer.release();
+        }
+    }
+
+    public static byte[] toJsonBytes(JsonEvent event) {
+        EventJsonWriter writer = acquire();
+        try {
+            writer.writeObject(event);
+            return Arrays.copyOf(writer.buffer, writer.size);
+        } finally {
+            writer.release();
+        }
+    }
+
+    private static EventJsonWriter acquire() {
+        EventJsonWriter writer = POOL.get();
+        // An event serialized while building another one gets its own writer
+        if (writer.inUse) {
+            return new EventJsonWriter();
+        }
+        writer.inUse = true;
+        return writer;
+    }
+
+    private void release() {
+        size = 0;
+        inUse = false;
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    private void writeObject(JsonEvent event) {
+        firstField = true;
+        writeByte('{');
+        event.writeJson(this);
+        writeByte('}');
+    }
+
+    public EventJsonWriter field(String name, String value) {
+        writeName(name);
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public EventJsonWriter field(String name, long value) {
+        writeName(name);
+        writeLong(value);
+        return this;
+    }
+
+    public EventJsonWriter field(String name, Long value) {
+        writeName(name);
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeLong(value);
+        }
+        return this;
+    }
+
+    public EventJsonWriter field(String name, BigDecimal value) {
+        writeName(name);
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeByte('"');
+            writeAscii(value.toPlainString());
+            writeByte('"');
+        }
+        return this;
+    }
+
+    /**
+     * Writes the date-time as {@link LocalDateTime#toString()} does, e.g.
+     * {@code 2024-05-01T09:30:15.123}.
+     */
+    public EventJsonWriter field(String name, LocalDateTime value) {
+        writeName(name);
+        if (value == null) {
+            writeAscii("null");
+        } else if (value.getYear() < 0 || value.getYear() > 9999) {
+            writeString(value.toString());
+        } else {
+            writeByte('"');
+            writeDate(value, 'T');
+            int second = value.getSecond();
+            int nano = value.getNano();
+            if (second > 0 || nano > 0) {
+                writeByte(':');
+                writePadded(second, 2);
+                if (nano > 0) {
+                    writeByte('.');
+                    if (nano % 1_000_000 == 0) {
+                        writePadded(nano / 1_000_000, 3);
+                    } else if (nano % 1_000 == 0) {
+                        writePadded(nano / 1_000, 6);
+                    } else {
+                        writePadded(nano, 9);
+                    }
+                }
+            }
+            writeByte('"');
+        }
+        return this;
+    }
+
+    /**
+     * Writes the date-time to the second with a space separator, e.g.
+     * {@code 2024-05-01 09:30:15}, the form shown to users in notifications.
+     */
+    public EventJsonWriter fieldToSeconds(String name, LocalDateTime value) {
+        writeName(name);
+        if (value == null) {
+            writeAscii("null");
+        } else if (value.getYear() < 0 || value.getYear() > 9999) {
+            writeString(value.withNano(0).toString().replace('T', ' '));
+        } else {
+            writeByte('"');
+            writeDate(value, ' ');
+            writeByte(':');
+            writePadded(value.getSecond(), 2);
+            writeByte('"');
+        }
+        return this;
+    }
+
+    private void writeName(String name) {
+        if (firstField) {
+            firstField = false;
+        } else {
+            writeByte(',');
+        }
+        writeString(name);
+        writeByte(':');
+    }
+
+    /** Writes yyyy-MM-dd, the separator and HH:mm. */
+    private void writeDate(LocalDateTime value, char separator) {
+        writePadded(value.getYear(), 4);
+        writeByte('-');
+        writePadded(value.getMonthValue(), 2);
+        writeByte('-');
+        writePadded(value.getDayOfMonth(), 2);
+        writeByte(separator);
+        writePadded(value.getHour(), 2);
+        writeByte(':');
+        writePadded(value.getMinute(), 2);
+    }
+
+    private void writePadded(int value, int digits) {
+        ensureCapacity(digits);
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+    /** For text known to be plain ASCII, such as numbers. */
+    private void writeAscii(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void writeString(String value) {
+        int length = value.length();
+        // Worst case is three bytes per char, or six for an escaped control char
+        ensureCapacity(length * 3 + 2);
+        buffer[size++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                buffer[size++] = (byte) c;
+            } else if (c < 0x80) {
+                writeEscaped(c, length - i);
+            } else if (c < 0x800) {
+                buffer[size++] = (byte) (0xc0 | c >> 6);
+                buffer[size++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[size++] = (byte) (0xf0 | codePoint >> 18);
+                buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[size++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, which has no UTF-8 form
+                buffer[size++] = '?';
+            } else {
+                buffer[size++] = (byte) (0xe0 | c >> 12);
+                buffer[size++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[size++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        buffer[size++] = '"';
+    }
+
+    private void writeEscaped(char c, int remaining) {
+        switch (c) {
+            case '"':
+            case '\\':
+                buffer[size++] = '\\';
+                buffer[size++] = (byte) c;
+                break;
+            case '\n':
+                buffer[size++] = '\\';
+                buffer[size++] = 'n';
+                break;
+            case '\r':
+                buffer[size++] = '\\';
+                buffer[size++] = 'r';
+                break;
+            case '\t':
+                buffer[size++] = '\\';
+                buffer[size++] = 't';
+                break;
+            default:
+                // The space reserved for this char and the closing quote may fall short of \\u00XX
+                ensureCapacity(remaining * 3 + 6);
+                buffer[size++] = '\\';
+                buffer[size++] = 'u';
+                buffer[size++] = '0';
+                buffer[size++] = '0';
+                buffer[size++] = HEX[c >> 4];
+                buffer[size++] = HEX[c & 0xf];
+        }
+    }
+
+    private void writeByte(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+        }
+    }
+}
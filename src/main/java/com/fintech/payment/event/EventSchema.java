@@ -0,0 +1,118 @@
+package com.fintech.payment.event;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * One version of an event's wire layout: the fields written, in order, with their types
+ * and their names in the JSON form. The id is written in front of every binary message,
+ * so it must never be reused for a different layout once messages carrying it exist.
+ * Adding fields means a new version with a new id; consumers must know an id before
+ * producers start writing it.
+ */
+@Getter
+public final class EventSchema<T> {
+
+    /** Presence of the fields is written as one bitmask varint. */
+    static final int MAX_FIELDS = 63;
+
+    public enum FieldType {
+        STRING,
+        LONG,
+        MONEY,
+        TIMESTAMP
+    }
+
+    @Getter
+    public static final class Field<T> {
+
+        private final String name;
+        private final FieldType type;
+        private final Function<T, Object> getter;
+        private final BiConsumer<T, Object> setter;
+
+        private Field(String name, FieldType type, Function<T, Object> getter, BiConsumer<T, Object> setter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    private final int id;
+    private final String subject;
+    private final int version;
+    private final Class<T> eventType;
+    private final Supplier<T> factory;
+    private final List<Field<T>> fields;
+
+    private EventSchema(Builder<T> builder) {
+        this.id = builder.id;
+        this.subject = builder.subject;
+        this.version = builder.version;
+        this.eventType = builder.eventType;
+        this.factory = builder.factory;
+        this.fields = Collections.unmodifiableList(new ArrayList<>(builder.fields));
+    }
+
+    public static <T> Builder<T> builder(int id, String subject, int version, Class<T> eventType, Supplier<T> factory) {
+        return new Builder<>(id, subject, version, eventType, factory);
+    }
+
+    public static final class Builder<T> {
+
+        private final int id;
+        private final String subject;
+        private final int version;
+        private final Class<T> eventType;
+        private final Supplier<T> factory;
+        private final List<Field<T>> fields = new ArrayList<>();
+
+        private Builder(int id, String subject, int version, Class<T> eventType, Supplier<T> factory) {
+            this.id = id;
+            this.subject = subject;
+            this.version = version;
+            this.eventType = eventType;
+            this.factory = factory;
+        }
+
+        public Builder<T> string(String name, Function<T, String> getter, BiConsumer<T, String> setter) {
+            return field(name, FieldType.STRING, getter, setter);
+        }
+
+        public Builder<T> int64(String name, Function<T, Long> getter, BiConsumer<T, Long> setter) {
+            return field(name, FieldType.LONG, getter, setter);
+        }
+
+        public Builder<T> money(String name, Function<T, BigDecimal> getter, BiConsumer<T, BigDecimal> setter) {
+            return field(name, FieldType.MONEY, getter, setter);
+        }
+
+        public Builder<T> timestamp(String name, Function<T, LocalDateTime> getter,
+                                    BiConsumer<T, LocalDateTime> setter) {
+            return field(name, FieldType.TIMESTAMP, getter, setter);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <V> Builder<T> field(String name, FieldType type, Function<T, V> getter, BiConsumer<T, V> setter) {
+            if (fields.size() == MAX_FIELDS) {
+                throw new IllegalStateException("Event schema " + subject + " v" + version
+                        + " has more than " + MAX_FIELDS + " fields");
+            }
+            fields.add(new Field<>(name, type, (Function<T, Object>) getter, (BiConsumer<T, Object>) setter));
+            return this;
+        }
+
+        public EventSchema<T> build() {
+            return new EventSchema<>(this);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.fintech.payment.event;
+
+import com.fintech.payment.config.KafkaConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in for a schema registry service. Holds every known version of every
+ * event layout by id, the newest version per event class for producers, and which event
+ * each topic carries so consumers can read messages that predate the binary format.
+ * Producers and consumers run the same code, so the registered ids agree between them;
+ * new versions are added here, never by changing an existing one.
+ */
+@Component
+public class EventSchemaRegistry {
+
+    private final Map<Integer, EventSchema<?>> schemasById = new ConcurrentHashMap<>();
+    private final Map<Class<?>, EventSchema<?>> latestByType = new ConcurrentHashMap<>();
+    private final Map<String, Class<?>> eventTypeByTopic = new ConcurrentHashMap<>();
+
+    public EventSchemaRegistry() {
+        register(EventSchema.builder(1, "transaction-created", 1,
+                        TransactionCreatedEvent.class, TransactionCreatedEvent::new)
+                .string("eventType", TransactionCreatedEvent::getType, TransactionCreatedEvent::setType)
+                .int64("walletId", TransactionCreatedEvent::getWalletId, TransactionCreatedEvent::setWalletId)
+                .int64("accountId", TransactionCreatedEvent::getAccountId, TransactionCreatedEvent::setAccountId)
+                .money("amount", TransactionCreatedEvent::getAmount, TransactionCreatedEvent::setAmount)
+                .money("balance", TransactionCreatedEvent::getBalance, TransactionCreatedEvent::setBalance)
+                .string("currency", TransactionCreatedEvent::getCurrency, TransactionCreatedEvent::setCurrency)
+                .string("referenceNumber", TransactionCreatedEvent::getTransactionRef,
+                        TransactionCreatedEvent::setTransactionRef)
+                .string("status", TransactionCreatedEvent::getStatus, TransactionCreatedEvent::setStatus)
+                .timestamp("timestamp", TransactionCreatedEvent::getTimestamp, TransactionCreatedEvent::setTimestamp)
+                .build());
+
+        register(EventSchema.builder(2, "transfer-completed", 1,
+                        TransferCompletedEvent.class, TransferCompletedEvent::new)
+                .string("referenceNumber", TransferCompletedEvent::getTransferRef, TransferCompletedEvent::setTransferRef)
+                .string("sourceAccountNumber", TransferCompletedEvent::getFromAccountNumber,
+                        TransferCompletedEvent::setFromAccountNumber)
+                .string("destinationAccountNumber", TransferCompletedEvent::getToAccountNumber,
+                        TransferCompletedEvent::setToAccountNumber)
+                .money("amount", TransferCompletedEvent::getAmount, TransferCompletedEvent::setAmount)
+                .money("fee", TransferCompletedEvent::getFee, TransferCompletedEvent::setFee)
+                .string("currency", TransferCompletedEvent::getCurrency, TransferCompletedEvent::setCurrency)
+                .string("status", TransferCompletedEvent::getStatus, TransferCompletedEvent::setStatus)
+                .timestamp("timestamp", TransferCompletedEvent::getTimestamp, TransferCompletedEvent::setTimestamp)
+                .build());
+
+        register(EventSchema.builder(3, "payment-processed", 1,
+                        PaymentProcessedEvent.class, PaymentProcessedEvent::new)
+                .string("referenceNumber", PaymentProcessedEvent::getPaymentRef, PaymentProcessedEvent::setPaymentRef)
+                .int64("walletId", PaymentProcessedEvent::getWalletId, PaymentProcessedEvent::setWalletId)
+                .string("previousStatus", PaymentProcessedEvent::getPreviousStatus,
+                        PaymentProcessedEvent::setPreviousStatus)
+                .string("currentStatus", PaymentProcessedEvent::getStatus, PaymentProcessedEvent::setStatus)
+                .money("amount", PaymentProcessedEvent::getAmount, PaymentProcessedEvent::setAmount)
+                .string("currency", PaymentProcessedEvent::getCurrency, PaymentProcessedEvent::setCurrency)
+                .string("merchantName", PaymentProcessedEvent::getMerchantName, PaymentProcessedEvent::setMerchantName)
+                .timestamp("timestamp", PaymentProcessedEvent::getTimestamp, PaymentProcessedEvent::setTimestamp)
+                .build());
+
+        register(EventSchema.builder(4, "notification", 1, NotificationEvent.class, NotificationEvent::new)
+                .string("notificationType", NotificationEvent::getNotificationType, NotificationEvent::setNotificationType)
+                .string("referenceNumber", NotificationEvent::getReferenceNumber, NotificationEvent::setReferenceNumber)
+                .string("transactionType", NotificationEvent::getTransactionType, NotificationEvent::setTransactionType)
+                .int64("accountId", NotificationEvent::getAccountId, NotificationEvent::setAccountId)
+                .string("accountNumber", NotificationEvent::getAccountNumber, NotificationEvent::setAccountNumber)
+                .string("counterpartyAccountNumber", NotificationEvent::getCounterpartyAccountNumber,
+                        NotificationEvent::setCounterpartyAccountNumber)
+                .int64("walletId", NotificationEvent::getWalletId, NotificationEvent::setWalletId)
+                .money("amount", NotificationEvent::getAmount, NotificationEvent::setAmount)
+                .string("formattedAmount", NotificationEvent::getFormattedAmount, NotificationEvent::setFormattedAmount)
+                .money("refundedAmount", NotificationEvent::getRefundedAmount, NotificationEvent::setRefundedAmount)
+                .string("currency", NotificationEvent::getCurrency, NotificationEvent::setCurrency)
+                .string("status", NotificationEvent::getStatus, NotificationEvent::setStatus)
+                .money("balanceBefore", NotificationEvent::getBalanceBefore, NotificationEvent::setBalanceBefore)
+                .money("balanceAfter", NotificationEvent::getBalanceAfter, NotificationEvent::setBalanceAfter)
+                .string("merchantName", NotificationEvent::getMerchantName, NotificationEvent::setMerchantName)
+                .string("description", NotificationEvent::getDescription, NotificationEvent::setDescription)
+                .timestamp("timestamp", NotificationEvent::getTimestamp, NotificationEvent::setTimestamp)
+                .build());
+
+        bindTopic(KafkaConfig.TOPIC_PAYMENT_EVENTS, PaymentProcessedEvent.class);
+        bindTopic(KafkaConfig.TOPIC_TRANSACTION_EVENTS, TransactionCreatedEvent.class);
+        bindTopic(KafkaConfig.TOPIC_WALLET_EVENTS, TransactionCreatedEvent.class);
+        bindTopic(KafkaConfig.TOPIC_TRANSFER_EVENTS, TransferCompletedEvent.class);
+        bindTopic(KafkaConfig.TOPIC_NOTIFICATION_EVENTS, NotificationEvent.class);
+    }
+
+    /**
+     * Adds a schema version. It becomes the one producers write for its event class if its
+     * version is the newest registered for that class.
+     */
+    public synchronized void register(EventSchema<?> schema) {
+        EventSchema<?> existing = schemasById.get(schema.getId());
+        if (existing != null) {
+            throw new IllegalStateException("Event schema id " + schema.getId() + " is already used by "
+                    + existing.getSubject() + " v" + existing.getVersion());
+        }
+        schemasById.put(schema.getId(), schema);
+        EventSchema<?> latest = latestByType.get(schema.getEventType());
+        if (latest == null || latest.getVersion() < schema.getVersion()) {
+            latestByType.put(schema.getEventType(), schema);
+        }
+    }
+
+    public void bindTopic(String topic, Class<?> eventType) {
+        eventTypeByTopic.put(topic, eventType);
+    }
+
+    public EventSchema<?> byId(int id) {
+        EventSchema<?> schema = schemasById.get(id);
+        if (schema == null) {
+            throw new IllegalArgumentException("Unknown event schema id: " + id);
+        }
+        return schema;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> EventSchema<T> latest(Class<T> eventType) {
+        EventSchema<?> schema = latestByType.get(eventType);
+        if (schema == null) {
+            throw new IllegalArgumentException("No event schema registered for " + eventType.getName());
+        }
+        return (EventSchema<T>) schema;
+    }
+
+    /**
+     * The newest schema of the event the topic carries, used to read its JSON messages.
+     */
+    public EventSchema<?> forTopic(String topic) {
+        Class<?> eventType = eventTypeByTopic.get(topic);
+        if (eventType == null) {
+            throw new IllegalArgumentException("No event type bound to topic: " + topic);
+        }
+        return latest(eventType);
+    }
+}
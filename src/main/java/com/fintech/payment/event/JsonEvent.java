@@ -0,0 +1,17 @@
+package com.fintech.payment.event;
+
+/**
+ * An event that writes its own JSON fields through an {@link EventJsonWriter}, so it can
+ * be serialized without reflection or format templates.
+ */
+public interface JsonEvent {
+
+    /**
+     * Writes this event's fields. The enclosing braces are written by the caller.
+     */
+    void writeJson(EventJsonWriter writer);
+
+    default String toJson() {
+        return EventJsonWriter.toJson(this);
+    }
+}
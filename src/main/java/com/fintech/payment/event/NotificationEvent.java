@@ -0,0 +1,80 @@
+package com.fintech.payment.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Published to {@code notification-events} for the notification service to show to a
+ * customer. Which fields are set depends on {@code notificationType}; fields left null are
+ * not written.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationEvent implements JsonEvent {
+
+    private String notificationType;
+    private String referenceNumber;
+    private String transactionType;
+    private Long accountId;
+    private String accountNumber;
+    private String counterpartyAccountNumber;
+    private Long walletId;
+    private BigDecimal amount;
+    private String formattedAmount;
+    private BigDecimal refundedAmount;
+    private String currency;
+    private String status;
+    private BigDecimal balanceBefore;
+    private BigDecimal balanceAfter;
+    private String merchantName;
+    private String description;
+
+    @Builder.Default
+    private LocalDateTime timestamp = LocalDateTime.now();
+
+    @Override
+    public void writeJson(EventJsonWriter writer) {
+        writer.field("notificationType", notificationType)
+                .field("referenceNumber", referenceNumber);
+        if (transactionType != null) {
+            writer.field("transactionType", transactionType);
+        }
+        if (accountId != null) {
+            writer.field("accountId", accountId);
+        }
+        if (accountNumber != null) {
+            writer.field("accountNumber", accountNumber);
+        }
+        if (counterpartyAccountNumber != null) {
+            writer.field("counterpartyAccountNumber", counterpartyAccountNumber);
+        }
+        if (walletId != null) {
+            writer.field("walletId", walletId);
+        }
+        writer.field("amount", amount)
+                .field("formattedAmount", formattedAmount);
+        if (refundedAmount != null) {
+            writer.field("refundedAmount", refundedAmount);
+        }
+        writer.field("currency", currency)
+                .field("status", status);
+        if (balanceBefore != null) {
+            writer.field("balanceBefore", balanceBefore);
+        }
+        if (balanceAfter != null) {
+            writer.field("balanceAfter", balanceAfter);
+        }
+        if (merchantName != null) {
+            writer.field("merchantName", merchantName);
+        }
+        writer.field("description", description != null ? description : "")
+                .fieldToSeconds("timestamp", timestamp);
+    }
+}
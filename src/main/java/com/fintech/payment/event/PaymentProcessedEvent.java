@@ -8,21 +8,43 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+/**
+ * Sent to a merchant's webhook when a payment changes status.
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class PaymentProcessedEvent {
+public class PaymentProcessedEvent implements JsonEvent {
+
+    public static final String EVENT_TYPE = "payment.status_changed";
 
     private String paymentRef;
     private Long walletId;
     private BigDecimal amount;
+    private String currency;
     private String merchantName;
+    private String previousStatus;
     private String status;
 
     @Builder.Default
     private LocalDateTime timestamp = LocalDateTime.now();
 
+    @Override
+    public void writeJson(EventJsonWriter writer) {
+        writer.field("event", EVENT_TYPE)
+                .field("referenceNumber", paymentRef);
+        if (walletId != null) {
+            writer.field("walletId", walletId);
+        }
+        writer.field("previousStatus", previousStatus)
+                .field("currentStatus", status)
+                .field("amount", amount)
+                .field("currency", currency)
+                .field("merchantName", merchantName)
+                .field("timestamp", timestamp);
+    }
+
     /**
      * Safely parses an integer from a string value.
      * @param value the string to parse
@@ -5,22 +5,45 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+/**
+ * Published to {@code wallet-events} when a wallet's balance changes; {@code type} is
+ * the kind of change, such as DEPOSIT or WITHDRAWAL.
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class TransactionCreatedEvent {
+public class TransactionCreatedEvent implements JsonEvent {
 
     private String transactionRef;
     private Long walletId;
+    private Long accountId;
     private String type;
     private BigDecimal amount;
+    private BigDecimal balance;
+    private String currency;
     private String status;
 
     @Builder.Default
     private LocalDateTime timestamp = LocalDateTime.now();
+
+    @Override
+    public void writeJson(EventJsonWriter writer) {
+        writer.field("eventType", type)
+                .field("walletId", walletId)
+                .field("accountId", accountId)
+                .field("amount", amount)
+                .field("balance", balance)
+                .field("currency", currency);
+        if (transactionRef != null) {
+            writer.field("referenceNumber", transactionRef);
+        }
+        if (status != null) {
+            writer.field("status", status);
+        }
+        writer.field("timestamp", timestamp);
+    }
 }
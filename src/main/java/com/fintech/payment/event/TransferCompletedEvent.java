@@ -8,19 +8,42 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+/**
+ * Published to {@code transfer-events} when a transfer completes.
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class TransferCompletedEvent {
+public class TransferCompletedEvent implements JsonEvent {
+
+    public static final String EVENT_TYPE = "TRANSFER_COMPLETED";
 
     private String transferRef;
     private String fromAccountNumber;
     private String toAccountNumber;
     private BigDecimal amount;
     private BigDecimal fee;
+    private String currency;
     private String status;
 
     @Builder.Default
     private LocalDateTime timestamp = LocalDateTime.now();
+
+    @Override
+    public void writeJson(EventJsonWriter writer) {
+        writer.field("eventType", EVENT_TYPE)
+                .field("referenceNumber", transferRef)
+                .field("sourceAccountNumber", fromAccountNumber)
+                .field("destinationAccountNumber", toAccountNumber)
+                .field("amount", amount);
+        if (fee != null) {
+            writer.field("fee", fee);
+        }
+        writer.field("currency", currency);
+        if (status != null) {
+            writer.field("status", status);
+        }
+        writer.field("timestamp", timestamp);
+    }
 }
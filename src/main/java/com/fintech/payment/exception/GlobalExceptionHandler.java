@@ -1,6 +1,8 @@
 package com.fintech.payment.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -96,6 +98,30 @@ public class GlobalExceptionHandler {
                 .body(ex.getCachedResponse());
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLockingFailure(
+            OptimisticLockingFailureException ex, HttpServletRequest request) {
+        log.warn("Concurrent modification: {}", ex.getMessage());
+        return buildResponse(HttpStatus.CONFLICT, "Concurrent Modification",
+                "The wallet was modified concurrently, please retry", request);
+    }
+
+    /**
+     * A concurrent request with the same idempotency key won the race to the unique index,
+     * recognised by the violated constraint's name. Any other integrity violation is
+     * unexpected and handled as such.
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ErrorResponse> handleDataIntegrityViolation(
+            DataIntegrityViolationException ex, HttpServletRequest request) {
+        if (!IdempotencyKeyConstraint.isViolatedBy(ex)) {
+            return handleGenericException(ex, request);
+        }
+        log.warn("Duplicate idempotency key rejected by database: {}", ex.getMostSpecificCause().getMessage());
+        return buildResponse(HttpStatus.CONFLICT, "Duplicate Transaction",
+                "A request with this idempotency key has already been processed", request);
+    }
+
     @ExceptionHandler(WebhookSignatureException.class)
     public ResponseEntity<ErrorResponse> handleWebhookSignature(
             WebhookSignatureException ex, HttpServletRequest request) {
@@ -0,0 +1,35 @@
+package com.fintech.payment.exception;
+
+import org.hibernate.exception.ConstraintViolationException;
+
+import java.util.Locale;
+
+/**
+ * Recognises violations of the unique indexes on idempotency keys, which are all named
+ * {@code uk_<table>_idempotency_key}. Databases report the name differently (H2 adds a
+ * schema prefix and an index suffix), so it is matched on the column part.
+ */
+public final class IdempotencyKeyConstraint {
+
+    private static final String NAME_PART = "idempotency_key";
+
+    private IdempotencyKeyConstraint() {
+    }
+
+    /**
+     * Whether the exception, or any of its causes, is a unique violation of an
+     * idempotency key index as reported by Hibernate.
+     */
+    public static boolean isViolatedBy(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                String constraintName = ((ConstraintViolationException) cause).getConstraintName();
+                return constraintName != null && constraintName.toLowerCase(Locale.ROOT).contains(NAME_PART);
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,268 @@
+package com.fintech.payment.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintech.payment.exception.ErrorResponse;
+import com.fintech.payment.service.IdempotencyService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Replays the stored response of a write request that carries an {@code Idempotency-Key}
+ * already seen for the same caller, method and path, without entering the controller.
+ * The first successful (2xx) response for a key is captured byte for byte, together with
+ * a hash of the request body and the headers listed in {@code idempotency.replay.headers},
+ * and saved through {@link IdempotencyService}; errors are not stored, so a failed request
+ * can be retried with the same key. Reusing a key with a different body is rejected with
+ * 422 rather than answered with the response to the other request. Registered as a servlet
+ * filter after the security chain, so the caller is already authenticated.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotentReplayFilter extends OncePerRequestFilter {
+
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final IdempotencyService idempotencyService;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+
+    @Value("${idempotency.replay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${idempotency.replay.headers:Location,Content-Location,ETag}")
+    private List<String> replayedHeaders;
+
+    @Value("${idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String storageKey = storageKey(request);
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        String requestHash = sha256Hex(Objects.toString(request.getQueryString(), "") + '\n'
+                + new String(cachedRequest.body, StandardCharsets.UTF_8));
+
+        Optional<String> stored = idempotencyService.checkIdempotency(storageKey);
+        if (stored.isPresent()) {
+            StoredResponse storedResponse = objectMapper.readValue(stored.get(), StoredResponse.class);
+            if (!requestHash.equals(storedResponse.getRequestHash())) {
+                meterRegistry.counter("idempotency.replay", "result", "mismatch").increment();
+                log.debug("Idempotency key reused with a different request: method={}, path={}",
+                        request.getMethod(), request.getRequestURI());
+                rejectMismatch(request, response);
+                return;
+            }
+            meterRegistry.counter("idempotency.replay", "result", "replayed").increment();
+            log.debug("Replaying stored response: method={}, path={}", request.getMethod(), request.getRequestURI());
+            replay(storedResponse, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper capturing = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(cachedRequest, capturing);
+            int status = capturing.getStatus();
+            if (status >= 200 && status < 300 && !request.isAsyncStarted()) {
+                store(storageKey, requestHash, status, capturing);
+            }
+        } finally {
+            capturing.copyBodyToResponse();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !enabled
+                || !StringUtils.hasText(request.getHeader(IDEMPOTENCY_KEY_HEADER))
+                || !(HttpMethod.POST.matches(method) || HttpMethod.PUT.matches(method)
+                || HttpMethod.PATCH.matches(method));
+    }
+
+    private void store(String storageKey, String requestHash, int status, ContentCachingResponseWrapper capturing) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : replayedHeaders) {
+            Collection<String> values = capturing.getHeaders(name);
+            if (!values.isEmpty()) {
+                headers.put(name, new ArrayList<>(values));
+            }
+        }
+        StoredResponse storedResponse = StoredResponse.builder()
+                .status(status)
+                .contentType(capturing.getContentType() != null
+                        ? capturing.getContentType() : MediaType.APPLICATION_JSON_VALUE)
+                .requestHash(requestHash)
+                .headers(headers)
+                .body(new String(capturing.getContentAsByteArray(), StandardCharsets.UTF_8))
+                .build();
+        try {
+            idempotencyService.saveIdempotencyResult(storageKey, objectMapper.writeValueAsString(storedResponse),
+                    status, ttlMinutes);
+            meterRegistry.counter("idempotency.replay", "result", "stored").increment();
+        } catch (Exception e) {
+            // The service-level idempotency checks still catch a retry of this request
+            log.warn("Failed to store response for replay: error={}", e.getMessage());
+        }
+    }
+
+    private void replay(StoredResponse storedResponse, HttpServletResponse response) throws IOException {
+        byte[] body = storedResponse.getBody().getBytes(StandardCharsets.UTF_8);
+
+        response.setStatus(storedResponse.getStatus());
+        response.setContentType(storedResponse.getContentType());
+        if (storedResponse.getHeaders() != null) {
+            storedResponse.getHeaders().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private void rejectMismatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                .status(HttpStatus.UNPROCESSABLE_ENTITY.value())
+                .error("Idempotency Key Reused")
+                .message("Idempotency-Key was already used with a different request")
+                .path(request.getRequestURI())
+                .build();
+        response.setStatus(HttpStatus.UNPROCESSABLE_ENTITY.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+    }
+
+    /**
+     * Scopes the client's key to the caller and the endpoint, so the same key sent by
+     * another account or to another endpoint never replays this response.
+     */
+    private String storageKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String principal = authentication != null ? authentication.getName() : "anonymous";
+        String scope = "replay|" + principal + '|' + request.getMethod() + '|' + request.getRequestURI()
+                + '|' + request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        // Exactly 64 hex characters, the width of idempotency_keys.key_value
+        return sha256Hex(scope);
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * What is kept for a key: the response to replay and the hash of the request that produced it.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class StoredResponse {
+        private int status;
+        private String contentType;
+        private String requestHash;
+        private Map<String, List<String>> headers;
+        private String body;
+    }
+
+    /**
+     * Reads the body up front so it can be hashed before the request is handled, and
+     * serves the same bytes to the controller.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = StreamUtils.copyToByteArray(request.getInputStream());
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() != null
+                    ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.fintech.payment.ledger;
+
+import com.fintech.payment.enums.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * A balance-changing command as applied by a {@link LedgerPartition} and recorded in
+ * its journal. Everything the command produces (transaction refs, timestamps) is fixed
+ * before it is applied, so replaying the journal yields exactly the same rows.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerCommand {
+
+    public enum Type {
+        CREDIT,
+        DEBIT,
+        FREEZE,
+        UNFREEZE,
+        TRANSFER,
+        /** Holds the funds of an intent until its database transaction completes. */
+        RESERVE,
+        /** Applies a reserved intent; a cross-partition transfer stays open until its credit lands. */
+        SETTLE,
+        /** Drops a reserved intent and its hold. */
+        RELEASE,
+        /** Closes a cross-partition transfer once the destination has been credited. */
+        COMPLETE,
+        /** Closes a cross-partition transfer whose credit was rejected, refunding the source. */
+        REVERSE
+    }
+
+    /** Assigned by the owning partition when the command is accepted. */
+    private long sequence;
+
+    private Type type;
+
+    private long walletId;
+
+    /** Destination of a TRANSFER, or the counterparty recorded on a CREDIT/DEBIT. */
+    private Long counterpartyWalletId;
+
+    private BigDecimal amount;
+
+    /** Transaction type written for CREDIT and DEBIT, e.g. DEPOSIT or PAYMENT. */
+    private TransactionType transactionType;
+
+    private String description;
+
+    /** Description of the incoming side of a TRANSFER. */
+    private String counterpartyDescription;
+
+    private String idempotencyKey;
+
+    private String transactionRef;
+
+    /** Transaction ref of the incoming side of a TRANSFER. */
+    private String counterpartyTransactionRef;
+
+    private LocalDateTime createdAt;
+
+    /** Links the RESERVE, SETTLE and closing commands of one intent, and the credit of a cross-partition transfer. */
+    private String intentId;
+
+    /** What a RESERVE applies when it settles: CREDIT, DEBIT or TRANSFER. */
+    private Type operation;
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(sequence);
+            out.writeByte(type.ordinal());
+            out.writeLong(walletId);
+            out.writeLong(counterpartyWalletId != null ? counterpartyWalletId : -1L);
+            out.writeUTF(amount.toPlainString());
+            writeNullable(out, transactionType != null ? transactionType.name() : null);
+            writeNullable(out, description);
+            writeNullable(out, counterpartyDescription);
+            writeNullable(out, idempotencyKey);
+            writeNullable(out, transactionRef);
+            writeNullable(out, counterpartyTransactionRef);
+            out.writeLong(createdAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + createdAt.getNano() / 1_000);
+            writeNullable(out, intentId);
+            writeNullable(out, operation != null ? operation.name() : null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static LedgerCommand decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            LedgerCommand command = new LedgerCommand();
+            command.sequence = in.readLong();
+            command.type = Type.values()[in.readByte()];
+            command.walletId = in.readLong();
+            long counterparty = in.readLong();
+            command.counterpartyWalletId = counterparty >= 0 ? counterparty : null;
+            command.amount = new BigDecimal(in.readUTF());
+            String transactionType = readNullable(in);
+            command.transactionType = transactionType != null ? TransactionType.valueOf(transactionType) : null;
+            command.description = readNullable(in);
+            command.counterpartyDescription = readNullable(in);
+            command.idempotencyKey = readNullable(in);
+            command.transactionRef = readNullable(in);
+            command.counterpartyTransactionRef = readNullable(in);
+            long epochMicros = in.readLong();
+            command.createdAt = LocalDateTime.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L),
+                    (int) Math.floorMod(epochMicros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+            // Records journaled before intents existed end here
+            if (in.available() > 0) {
+                command.intentId = readNullable(in);
+                String operation = readNullable(in);
+                command.operation = operation != null ? Type.valueOf(operation) : null;
+            }
+            return command;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
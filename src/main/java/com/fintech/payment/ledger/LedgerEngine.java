@@ -0,0 +1,454 @@
+package com.fintech.payment.ledger;
+
+import com.fintech.payment.entity.LedgerCommitMarker;
+import com.fintech.payment.entity.LedgerProjectionOffset;
+import com.fintech.payment.entity.Wallet;
+import com.fintech.payment.enums.TransactionType;
+import com.fintech.payment.exception.InvalidOperationException;
+import com.fintech.payment.exception.ResourceNotFoundException;
+import com.fintech.payment.repository.LedgerCommitMarkerRepository;
+import com.fintech.payment.repository.LedgerEngineLeaseRepository;
+import com.fintech.payment.repository.LedgerProjectionOffsetRepository;
+import com.fintech.payment.repository.TransactionBatchRepository;
+import com.fintech.payment.repository.WalletRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-writer in-memory ledger. Wallet ids are split over a fixed number of
+ * partitions; each partition applies its commands on one thread and makes them
+ * durable in its own write-ahead journal before acknowledging. The wallets and
+ * transactions tables are written afterwards by the {@link LedgerProjector}, so
+ * database reads of balances may lag the engine by the projection backlog.
+ *
+ * <p>While enabled, the engine owns every wallet it has touched: balances must not
+ * be changed through {@link WalletRepository} at the same time. On startup each
+ * partition replays the journal entries after its projection offset.</p>
+ *
+ * <p>Flows that also write business rows use the {@code *OnCommit} methods: the funds
+ * are reserved inside the caller's database transaction and only move once it commits.
+ * A transfer between partitions leaves an open intent on the source partition until the
+ * destination is credited, so a restart in between completes or reverses it.</p>
+ *
+ * <p>Only one node may run the engine. It holds a {@link LedgerLease} while running and
+ * refuses to start while another node holds it; losing the lease halts every partition.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ledger.engine.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class LedgerEngine {
+
+    private final WalletRepository walletRepository;
+    private final LedgerProjectionOffsetRepository offsetRepository;
+    private final TransactionBatchRepository transactionBatchRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerCommitMarkerRepository commitMarkerRepository;
+    private final MeterRegistry meterRegistry;
+    private final LedgerEngineLeaseRepository leaseRepository;
+
+    @Value("${ledger.engine.partitions:4}")
+    private int partitionCount;
+
+    @Value("${ledger.engine.queue-capacity:65536}")
+    private int queueCapacity;
+
+    @Value("${ledger.engine.max-batch-size:512}")
+    private int maxBatchSize;
+
+    @Value("${ledger.engine.submit-timeout-ms:1000}")
+    private long submitTimeoutMs;
+
+    @Value("${ledger.engine.journal.dir:./data/ledger}")
+    private String journalDir;
+
+    @Value("${ledger.engine.journal.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${ledger.engine.projector.retry-backoff-ms:1000}")
+    private long projectorRetryBackoffMs;
+
+    @Value("${ledger.engine.idempotency-retention-ms:600000}")
+    private long keyRetentionMs;
+
+    @Value("${ledger.engine.lease-ms:30000}")
+    private long leaseMs;
+
+    private final Map<Long, WalletSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final List<LedgerPartition> partitions = new ArrayList<>();
+    private final List<LedgerJournal> journals = new ArrayList<>();
+    private LedgerProjector projector;
+    private LedgerLease lease;
+    private TransactionTemplate requiresNewTemplate;
+
+    @PostConstruct
+    public void start() {
+        requiresNewTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        lease = new LedgerLease(leaseRepository, transactionTemplate, leaseMs);
+        lease.acquire();
+        projector = new LedgerProjector(jdbcTemplate, transactionTemplate, transactionBatchRepository,
+                offsetRepository, lease, this::onProjected, this::onLeaseLost,
+                meterRegistry.counter("ledger.projection.parked"), maxBatchSize, projectorRetryBackoffMs);
+
+        for (int partitionId = 0; partitionId < partitionCount; partitionId++) {
+            long projected = offsetRepository.findById(partitionId)
+                    .map(LedgerProjectionOffset::getLastSequence)
+                    .orElse(0L);
+
+            LedgerJournal journal = new LedgerJournal(Paths.get(journalDir), partitionId, segmentBytes);
+            List<LedgerCommand> retained = journal.open(projected);
+
+            int owner = partitionId;
+            LedgerPartition partition = new LedgerPartition(partitionId, journal, this::loadWallet,
+                    walletId -> partitionOf(walletId) == owner, projector::enqueue, snapshots,
+                    queueCapacity, maxBatchSize, keyRetentionMs);
+            partition.start(projected, retained);
+
+            journals.add(journal);
+            partitions.add(partition);
+        }
+        projector.start();
+        recoverIntents();
+
+        log.info("Ledger engine started: partitions={}, journalDir={}", partitionCount, journalDir);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (LedgerPartition partition : partitions) {
+            partition.stop();
+        }
+        if (projector != null) {
+            projector.stop();
+        }
+        journals.forEach(LedgerJournal::close);
+        if (lease != null) {
+            lease.release();
+        }
+        log.info("Ledger engine stopped");
+    }
+
+    public LedgerResult credit(Long walletId, BigDecimal amount, TransactionType type,
+                               String description, String idempotencyKey, Long counterpartyWalletId) {
+        return execute(LedgerCommand.builder()
+                .type(LedgerCommand.Type.CREDIT)
+                .walletId(walletId)
+                .counterpartyWalletId(counterpartyWalletId)
+                .amount(amount)
+                .transactionType(type)
+                .description(description)
+                .idempotencyKey(idempotencyKey)
+                .transactionRef(UUID.randomUUID().toString())
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    public LedgerResult debit(Long walletId, BigDecimal amount, TransactionType type,
+                              String description, String idempotencyKey, Long counterpartyWalletId) {
+        return execute(LedgerCommand.builder()
+                .type(LedgerCommand.Type.DEBIT)
+                .walletId(walletId)
+                .counterpartyWalletId(counterpartyWalletId)
+                .amount(amount)
+                .transactionType(type)
+                .description(description)
+                .idempotencyKey(idempotencyKey)
+                .transactionRef(UUID.randomUUID().toString())
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    public LedgerResult freeze(Long walletId, BigDecimal amount) {
+        return execute(holdCommand(LedgerCommand.Type.FREEZE, walletId, amount));
+    }
+
+    public LedgerResult unfreeze(Long walletId, BigDecimal amount) {
+        return execute(holdCommand(LedgerCommand.Type.UNFREEZE, walletId, amount));
+    }
+
+    /**
+     * Reserves a debit in the caller's database transaction; the wallet is debited once the
+     * transaction commits.
+     *
+     * @return the reservation, whose transaction ref is the one the debit will be written with
+     */
+    public LedgerCommand debitOnCommit(Long walletId, BigDecimal amount, TransactionType type,
+                                       String description, String idempotencyKey, Long counterpartyWalletId) {
+        return reserveOnCommit(LedgerCommand.builder()
+                .operation(LedgerCommand.Type.DEBIT)
+                .walletId(walletId)
+                .counterpartyWalletId(counterpartyWalletId)
+                .amount(amount)
+                .transactionType(type)
+                .description(description)
+                .idempotencyKey(idempotencyKey)
+                .transactionRef(UUID.randomUUID().toString()));
+    }
+
+    /**
+     * Reserves a credit in the caller's database transaction; the wallet is credited once the
+     * transaction commits.
+     */
+    public LedgerCommand creditOnCommit(Long walletId, BigDecimal amount, TransactionType type,
+                                        String description, String idempotencyKey, Long counterpartyWalletId) {
+        return reserveOnCommit(LedgerCommand.builder()
+                .operation(LedgerCommand.Type.CREDIT)
+                .walletId(walletId)
+                .counterpartyWalletId(counterpartyWalletId)
+                .amount(amount)
+                .transactionType(type)
+                .description(description)
+                .idempotencyKey(idempotencyKey)
+                .transactionRef(UUID.randomUUID().toString()));
+    }
+
+    /**
+     * Reserves a transfer in the caller's database transaction; the funds move once it commits.
+     * Within one partition that is a single atomic command. Across partitions the source is
+     * debited and the destination credited afterwards; if the credit is rejected the debit is
+     * reversed with a REFUND back to the source.
+     *
+     * @return the reservation, carrying the refs of the outgoing and the incoming transaction
+     */
+    public LedgerCommand transferOnCommit(Long sourceWalletId, Long destinationWalletId, BigDecimal amount,
+                                          String outDescription, String inDescription, String idempotencyKey) {
+        return reserveOnCommit(LedgerCommand.builder()
+                .operation(LedgerCommand.Type.TRANSFER)
+                .walletId(sourceWalletId)
+                .counterpartyWalletId(destinationWalletId)
+                .amount(amount)
+                .description(outDescription)
+                .counterpartyDescription(inDescription)
+                .idempotencyKey(idempotencyKey)
+                .transactionRef(UUID.randomUUID().toString())
+                .counterpartyTransactionRef(UUID.randomUUID().toString()));
+    }
+
+    /**
+     * Returns the engine's view of a wallet, or empty if the engine has not touched it yet,
+     * in which case the database row is current.
+     */
+    public Optional<WalletSnapshot> getSnapshot(Long walletId) {
+        return Optional.ofNullable(snapshots.get(walletId));
+    }
+
+    private LedgerCommand holdCommand(LedgerCommand.Type type, Long walletId, BigDecimal amount) {
+        return LedgerCommand.builder()
+                .type(type)
+                .walletId(walletId)
+                .amount(amount)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * Journals the reservation, then ties its outcome to the current transaction: settled
+     * after commit, released after rollback. The commit marker is written in the same
+     * transaction, so recovery can tell the two apart if the process stops in between.
+     */
+    private LedgerCommand reserveOnCommit(LedgerCommand.LedgerCommandBuilder builder) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Ledger intents can only be reserved inside a transaction");
+        }
+        LedgerCommand reserve = builder
+                .type(LedgerCommand.Type.RESERVE)
+                .intentId(UUID.randomUUID().toString())
+                .createdAt(LocalDateTime.now())
+                .build();
+        execute(reserve);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                boolean committed = status == STATUS_COMMITTED
+                        || status == STATUS_UNKNOWN && hasCommitMarker(reserve.getIntentId());
+                resolve(reserve, committed);
+            }
+        });
+        commitMarkerRepository.save(LedgerCommitMarker.builder()
+                .intentId(reserve.getIntentId())
+                .createdAt(reserve.getCreatedAt())
+                .build());
+        return reserve;
+    }
+
+    /**
+     * Settles or releases a reservation. A failure leaves the intent open; it is resolved
+     * again from the commit marker on the next start.
+     */
+    private void resolve(LedgerCommand reserve, boolean committed) {
+        try {
+            if (!committed) {
+                execute(followUp(reserve, LedgerCommand.Type.RELEASE).build());
+                return;
+            }
+            execute(followUp(reserve, LedgerCommand.Type.SETTLE).build());
+            if (reserve.getOperation() == LedgerCommand.Type.TRANSFER
+                    && partitionOf(reserve.getWalletId()) != partitionOf(reserve.getCounterpartyWalletId())) {
+                completeTransfer(reserve);
+            }
+        } catch (RuntimeException e) {
+            log.error("Ledger intent {} left open until the next start: committed={}, error={}",
+                    reserve.getIntentId(), committed, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Credits the destination of a cross-partition transfer that has left its source, then
+     * closes it on the source partition. A rejected credit reverses the transfer with a
+     * refund instead. If the destination partition halted, the outcome of the credit is
+     * unknown and the transfer stays open for recovery.
+     */
+    private void completeTransfer(LedgerCommand reserve) {
+        LedgerPartition destination = partitions.get(partitionOf(reserve.getCounterpartyWalletId()));
+        try {
+            execute(LedgerCommand.builder()
+                    .type(LedgerCommand.Type.CREDIT)
+                    .walletId(reserve.getCounterpartyWalletId())
+                    .counterpartyWalletId(reserve.getWalletId())
+                    .amount(reserve.getAmount())
+                    .transactionType(TransactionType.TRANSFER_IN)
+                    .description(reserve.getCounterpartyDescription())
+                    .idempotencyKey(reserve.getIdempotencyKey() + "_IN")
+                    .transactionRef(reserve.getCounterpartyTransactionRef())
+                    .intentId(reserve.getIntentId())
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        } catch (RuntimeException e) {
+            if (destination.isHalted()) {
+                throw e;
+            }
+            log.warn("Cross-partition transfer credit rejected, reversing debit: source={}, destination={}, error={}",
+                    reserve.getWalletId(), reserve.getCounterpartyWalletId(), e.getMessage());
+            execute(followUp(reserve, LedgerCommand.Type.REVERSE)
+                    .transactionType(TransactionType.REFUND)
+                    .description("Reversal of failed transfer to wallet " + reserve.getCounterpartyWalletId())
+                    .idempotencyKey(reserve.getIdempotencyKey() + "_REVERSAL")
+                    .transactionRef(UUID.randomUUID().toString())
+                    .build());
+            return;
+        }
+        execute(followUp(reserve, LedgerCommand.Type.COMPLETE).build());
+    }
+
+    /**
+     * Resolves the intents left open by the previous run: reservations by their commit
+     * marker, and transfers between partitions by whether the destination was credited.
+     */
+    private void recoverIntents() {
+        for (LedgerPartition partition : partitions) {
+            for (LedgerCommand reserve : partition.reservedIntents()) {
+                boolean committed = hasCommitMarker(reserve.getIntentId());
+                log.info("Recovering ledger intent {}: committed={}", reserve.getIntentId(), committed);
+                resolve(reserve, committed);
+            }
+            for (LedgerCommand reserve : partition.inFlightTransfers()) {
+                log.info("Recovering cross-partition transfer {}", reserve.getIntentId());
+                try {
+                    if (destinationCredited(reserve)) {
+                        execute(followUp(reserve, LedgerCommand.Type.COMPLETE).build());
+                    } else {
+                        completeTransfer(reserve);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Cross-partition transfer {} left open: {}", reserve.getIntentId(), e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private boolean destinationCredited(LedgerCommand reserve) {
+        if (partitions.get(partitionOf(reserve.getCounterpartyWalletId())).hasReplayedCredit(reserve.getIntentId())) {
+            return true;
+        }
+        Integer projected = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE transaction_ref = ?",
+                Integer.class, reserve.getCounterpartyTransactionRef());
+        return projected != null && projected > 0;
+    }
+
+    private boolean hasCommitMarker(String intentId) {
+        return Boolean.TRUE.equals(requiresNewTemplate.execute(status -> commitMarkerRepository.existsById(intentId)));
+    }
+
+    /** A command acting on a reserved intent, carrying the reservation's fields. */
+    private static LedgerCommand.LedgerCommandBuilder followUp(LedgerCommand reserve, LedgerCommand.Type type) {
+        return reserve.toBuilder()
+                .type(type)
+                .sequence(0)
+                .createdAt(LocalDateTime.now());
+    }
+
+    private LedgerResult execute(LedgerCommand command) {
+        if (command.getAmount() == null || command.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new InvalidOperationException("Amount must be greater than zero");
+        }
+        if (!lease.isHeld()) {
+            throw new InvalidOperationException("Ledger engine lease is not held by this node, please retry");
+        }
+        CompletableFuture<LedgerResult> future = partitions.get(partitionOf(command.getWalletId()))
+                .submit(command, submitTimeoutMs);
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new InvalidOperationException("Ledger command failed: " + e.getCause().getMessage());
+        }
+    }
+
+    private int partitionOf(Long walletId) {
+        return (int) Math.floorMod(walletId, (long) partitionCount);
+    }
+
+    /**
+     * Loads a wallet the first time its partition touches it. Runs on the partition thread.
+     */
+    private WalletSnapshot loadWallet(Long walletId) {
+        Wallet wallet = walletRepository.findById(walletId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", walletId));
+        if (wallet.isSharded()) {
+            throw new InvalidOperationException(
+                    "Wallet " + walletId + " is sharded. Disable sharding before the ledger engine can own it");
+        }
+        return new WalletSnapshot(wallet.getId(), wallet.getAccount().getId(), wallet.getBalance(),
+                wallet.getFrozenAmount(), wallet.getCurrency(), wallet.getStatus(),
+                wallet.getCreatedAt(), wallet.getUpdatedAt());
+    }
+
+    private void onLeaseLost(RuntimeException cause) {
+        log.error("Ledger engine lost its lease, halting all partitions: {}", cause.getMessage());
+        partitions.forEach(partition -> partition.halt(cause));
+    }
+
+    private void onProjected(Integer partitionId, Long sequence) {
+        partitions.get(partitionId).projected(sequence);
+        long oldestOpen = partitions.get(partitionId).oldestOpenSequence();
+        journals.get(partitionId).releaseUpTo(Math.min(sequence, oldestOpen - 1));
+    }
+}
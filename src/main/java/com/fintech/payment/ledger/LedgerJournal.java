@@ -0,0 +1,198 @@
+package com.fintech.payment.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of one ledger partition, stored as fixed-size
+ * memory-mapped segment files. Each record is {@code [int length][int crc32][payload]};
+ * a zero length marks the end of the written part of a segment. Segment files are
+ * named after the first sequence they hold, and are deleted once every command in
+ * them has been projected to the database and no open intent was reserved in them.
+ */
+@Slf4j
+class LedgerJournal implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final int partitionId;
+    private final int segmentBytes;
+    private final List<Segment> segments = new ArrayList<>();
+
+    private MappedByteBuffer current;
+
+    LedgerJournal(Path directory, int partitionId, int segmentBytes) {
+        this.directory = directory;
+        this.partitionId = partitionId;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Opens the existing segments and returns every intact command they still hold, in
+     * journal order. Commands at or below {@code projectedSequence} are included, as the
+     * partition rebuilds its open intents from them. Appends continue after the last
+     * intact record; a torn record at the tail is overwritten.
+     */
+    synchronized List<LedgerCommand> open(long projectedSequence) {
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(directory)) {
+                files = listing
+                        .filter(path -> path.getFileName().toString().startsWith(filePrefix()))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+
+            List<LedgerCommand> retained = new ArrayList<>();
+            for (Path file : files) {
+                MappedByteBuffer buffer = map(file);
+                segments.add(new Segment(file, firstSequenceOf(file)));
+                current = buffer;
+                readRecords(buffer, retained);
+            }
+            if (current == null) {
+                rollSegment(projectedSequence + 1);
+            }
+            markEnd();
+            log.info("Ledger journal opened: partition={}, segments={}, retainedCommands={}",
+                    partitionId, segments.size(), retained.size());
+            return retained;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open ledger journal for partition " + partitionId, e);
+        }
+    }
+
+    /**
+     * Appends a command to the current segment without forcing it to disk.
+     */
+    synchronized void append(LedgerCommand command) throws IOException {
+        byte[] payload = command.encode();
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (recordBytes + Integer.BYTES > segmentBytes) {
+            throw new IOException("Ledger command of " + recordBytes + " bytes exceeds segment size " + segmentBytes);
+        }
+        if (current.remaining() < recordBytes + Integer.BYTES) {
+            current.force();
+            rollSegment(command.getSequence());
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        current.putInt(payload.length);
+        current.putInt((int) crc.getValue());
+        current.put(payload);
+        markEnd();
+    }
+
+    /**
+     * Flushes everything appended so far to the storage device. Called once per drained
+     * batch, so one sync covers every command in the batch (group commit).
+     */
+    synchronized void force() {
+        current.force();
+    }
+
+    /**
+     * Deletes segments whose commands all have a sequence at or below {@code sequence}.
+     * The segment currently being written is always kept.
+     */
+    synchronized void releaseUpTo(long sequence) {
+        while (segments.size() > 1 && segments.get(1).firstSequence <= sequence + 1) {
+            Segment released = segments.remove(0);
+            try {
+                Files.deleteIfExists(released.file);
+                log.debug("Ledger journal segment released: partition={}, file={}", partitionId, released.file);
+            } catch (IOException e) {
+                log.warn("Failed to delete ledger journal segment {}: {}", released.file, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    private void rollSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%s%020d.journal", filePrefix(), firstSequence));
+        current = map(file);
+        segments.add(new Segment(file, firstSequence));
+        log.debug("Ledger journal segment created: partition={}, file={}", partitionId, file);
+    }
+
+    /**
+     * Writes a zero length after the last record, so leftovers of a torn write
+     * further along the segment are never read back as records.
+     */
+    private void markEnd() {
+        if (current.remaining() >= Integer.BYTES) {
+            current.putInt(current.position(), 0);
+        }
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+    }
+
+    private void readRecords(MappedByteBuffer buffer, List<LedgerCommand> retained) {
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                return;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Torn ledger journal record ignored: partition={}, position={}", partitionId, start);
+                buffer.position(start);
+                return;
+            }
+
+            retained.add(LedgerCommand.decode(payload));
+        }
+    }
+
+    private String filePrefix() {
+        return "ledger-p" + partitionId + "-";
+    }
+
+    private long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(filePrefix().length(), name.length() - ".journal".length()));
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final long firstSequence;
+
+        private Segment(Path file, long firstSequence) {
+            this.file = file;
+            this.firstSequence = firstSequence;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.fintech.payment.ledger;
+
+import com.fintech.payment.repository.LedgerEngineLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer guard of the ledger engine. The engine writes absolute balances from
+ * node-local memory, so two nodes running it would overwrite each other's wallets.
+ * The lease is taken on start and renewed by the projector inside each projection
+ * transaction; once renewal finds another holder, the projection rolls back and the
+ * engine stops. Commands are only accepted while the last renewal is recent enough
+ * that no other node can have taken over.
+ */
+@Slf4j
+class LedgerLease {
+
+    private final LedgerEngineLeaseRepository leaseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long leaseMs;
+    private final String owner = nodeName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private volatile long epoch;
+    /** System.nanoTime() until which no other node can hold the lease. */
+    private volatile long validUntilNanos;
+    private volatile long renewedAtNanos;
+
+    LedgerLease(LedgerEngineLeaseRepository leaseRepository, TransactionTemplate transactionTemplate, long leaseMs) {
+        this.leaseRepository = leaseRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.leaseMs = leaseMs;
+    }
+
+    /**
+     * Takes the lease, waiting up to twice its length for a previous holder's lease to run
+     * out, such as this node's own before a restart.
+     *
+     * @throws IllegalStateException if another node keeps holding it
+     */
+    void acquire() {
+        leaseRepository.createIfMissing(LocalDateTime.now());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2 * leaseMs);
+        while (true) {
+            long startedAt = System.nanoTime();
+            LocalDateTime now = LocalDateTime.now();
+            Optional<Long> acquired = transactionTemplate.execute(status ->
+                    leaseRepository.acquire(owner, now, now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs))));
+            if (acquired != null && acquired.isPresent()) {
+                epoch = acquired.get();
+                renewed(startedAt);
+                log.info("Ledger engine lease acquired: owner={}, epoch={}", owner, epoch);
+                return;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("The ledger engine lease is held by another node; "
+                        + "only one node may run with ledger.engine.enabled=true");
+            }
+            try {
+                Thread.sleep(Math.max(100, leaseMs / 10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the ledger engine lease");
+            }
+        }
+    }
+
+    /**
+     * Extends the lease inside the caller's projection transaction.
+     *
+     * @throws LostException if another node has taken the lease, so the transaction must roll back
+     */
+    void renew() {
+        long startedAt = System.nanoTime();
+        LocalDateTime leaseUntil = LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs));
+        if (leaseRepository.renew(owner, epoch, leaseUntil) == 0) {
+            validUntilNanos = 0;
+            throw new LostException("Ledger engine lease of " + owner + " in epoch " + epoch
+                    + " has passed to another node");
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            renewed(startedAt);
+            return;
+        }
+        // A renewal that rolls back with its projection must not extend the local view
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                renewed(startedAt);
+            }
+        });
+    }
+
+    /**
+     * Renews the lease in its own transaction once a third of it has passed, for when
+     * there is nothing to project.
+     */
+    void renewIfDue() {
+        if (System.nanoTime() - renewedAtNanos >= TimeUnit.MILLISECONDS.toNanos(leaseMs / 3)) {
+            transactionTemplate.executeWithoutResult(status -> renew());
+        }
+    }
+
+    boolean isHeld() {
+        return System.nanoTime() < validUntilNanos;
+    }
+
+    void release() {
+        if (epoch > 0 && leaseRepository.release(owner, epoch, LocalDateTime.now()) > 0) {
+            log.info("Ledger engine lease released: owner={}, epoch={}", owner, epoch);
+        }
+    }
+
+    private void renewed(long startedAt) {
+        renewedAtNanos = startedAt;
+        // Measured from before the write, so the local view never outlasts the stored lease
+        validUntilNanos = startedAt + TimeUnit.MILLISECONDS.toNanos(leaseMs);
+    }
+
+    private static String nodeName() {
+        try {
+            String hostName = InetAddress.getLocalHost().getHostName();
+            // Leaves room for the suffix within ledger_engine_lease.owner
+            return hostName.length() > 80 ? hostName.substring(0, 80) : hostName;
+        } catch (UnknownHostException e) {
+            return "node";
+        }
+    }
+
+    /**
+     * Raised when the lease turns out to belong to another node.
+     */
+    static class LostException extends IllegalStateException {
+        LostException(String message) {
+            super(message);
+        }
+    }
+}
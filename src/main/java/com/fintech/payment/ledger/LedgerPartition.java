@@ -0,0 +1,631 @@
+package com.fintech.payment.ledger;
+
+import com.fintech.payment.entity.Transaction;
+import com.fintech.payment.entity.Wallet;
+import com.fintech.payment.enums.TransactionStatus;
+import com.fintech.payment.enums.TransactionType;
+import com.fintech.payment.enums.WalletStatus;
+import com.fintech.payment.exception.InsufficientBalanceException;
+import com.fintech.payment.exception.InvalidOperationException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Owns the in-memory balances of one slice of wallet ids. A single thread takes
+ * commands from a bounded queue, applies them in order, appends the accepted ones
+ * to the journal and forces it once per drained batch before acknowledging.
+ * No locks are taken on wallet state: only the partition thread ever touches it.
+ *
+ * <p>Intents reserved here stay open until settled, released or, for a transfer to
+ * another partition, completed or reversed. Open intents are rebuilt from the journal
+ * on start, which is why their segments are kept past projection.</p>
+ *
+ * <p>Credits and debits carrying an idempotency key are remembered until they are
+ * projected and for the key retention after that, so a retry that reaches the partition
+ * before its key is visible in the transactions table is answered with the original
+ * result instead of being applied twice.</p>
+ */
+@Slf4j
+class LedgerPartition implements Runnable {
+
+    private final int partitionId;
+    private final LedgerJournal journal;
+    private final Function<Long, WalletSnapshot> walletLoader;
+    private final Predicate<Long> ownsWallet;
+    private final Consumer<LedgerResult> resultSink;
+    private final Map<Long, WalletSnapshot> publishedSnapshots;
+    private final BlockingQueue<PendingCommand> queue;
+    private final int maxBatchSize;
+    private final long keyRetentionMs;
+
+    private final Map<Long, LedgerWallet> wallets = new HashMap<>();
+    /** Written by the partition thread only; read by the projector and by recovery. */
+    private final Map<String, OpenIntent> openIntents = new ConcurrentHashMap<>();
+    /** Intent ids of the cross-partition transfer credits found in the journal on start. */
+    private final Set<String> replayedCredits = ConcurrentHashMap.newKeySet();
+    /** Applied keyed commands in sequence order; confined to the partition thread after start. */
+    private final LinkedHashMap<String, AppliedKey> appliedKeys = new LinkedHashMap<>();
+    private volatile long projectedSequence;
+    private long nextSequence;
+    private volatile boolean running = true;
+    private volatile Throwable failure;
+    private Thread thread;
+
+    LedgerPartition(int partitionId, LedgerJournal journal, Function<Long, WalletSnapshot> walletLoader,
+                    Predicate<Long> ownsWallet, Consumer<LedgerResult> resultSink,
+                    Map<Long, WalletSnapshot> publishedSnapshots, int queueCapacity, int maxBatchSize,
+                    long keyRetentionMs) {
+        this.partitionId = partitionId;
+        this.journal = journal;
+        this.walletLoader = walletLoader;
+        this.ownsWallet = ownsWallet;
+        this.resultSink = resultSink;
+        this.publishedSnapshots = publishedSnapshots;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.keyRetentionMs = keyRetentionMs;
+    }
+
+    /**
+     * Re-applies the journaled commands that were not yet projected and rebuilds the open
+     * intents from all retained ones, then starts the writer thread. Must be called once,
+     * before any command is submitted.
+     */
+    void start(long projectedSequence, List<LedgerCommand> retained) {
+        nextSequence = projectedSequence + 1;
+        this.projectedSequence = projectedSequence;
+        int replayed = 0;
+        for (LedgerCommand command : retained) {
+            if (command.getType() == LedgerCommand.Type.CREDIT && command.getIntentId() != null) {
+                replayedCredits.add(command.getIntentId());
+            }
+            if (command.getSequence() <= projectedSequence) {
+                // Balances already reflect it; only the intent bookkeeping is rebuilt
+                track(command);
+                continue;
+            }
+            LedgerResult result = apply(command);
+            rememberKey(command, result);
+            result.getWallets().forEach(wallet -> publishedSnapshots.put(wallet.getWalletId(), wallet));
+            resultSink.accept(result);
+            nextSequence = command.getSequence() + 1;
+            replayed++;
+        }
+        if (replayed > 0 || !openIntents.isEmpty()) {
+            log.info("Ledger partition {} replayed {} commands up to sequence {}, open intents={}",
+                    partitionId, replayed, nextSequence - 1, openIntents.size());
+        }
+
+        thread = new Thread(this, "ledger-partition-" + partitionId);
+        thread.start();
+    }
+
+    CompletableFuture<LedgerResult> submit(LedgerCommand command, long offerTimeoutMs) {
+        if (failure != null) {
+            throw new InvalidOperationException("Ledger partition " + partitionId + " is halted: " + failure.getMessage());
+        }
+        PendingCommand pending = new PendingCommand(command);
+        try {
+            if (!queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new InvalidOperationException("Ledger partition " + partitionId + " is overloaded, please retry");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidOperationException("Interrupted while submitting ledger command");
+        }
+        return pending.future;
+    }
+
+    /**
+     * Intents reserved here whose database transaction has not been resolved yet.
+     */
+    List<LedgerCommand> reservedIntents() {
+        return openIntents.values().stream()
+                .filter(intent -> !intent.inFlight)
+                .map(intent -> intent.reserve)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Transfers that have left a wallet of this partition and are not yet known to have
+     * reached their destination in another partition.
+     */
+    List<LedgerCommand> inFlightTransfers() {
+        return openIntents.values().stream()
+                .filter(intent -> intent.inFlight)
+                .map(intent -> intent.reserve)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Whether the journal held a credit for the intent when the partition started.
+     */
+    boolean hasReplayedCredit(String intentId) {
+        return replayedCredits.contains(intentId);
+    }
+
+    /**
+     * Lowest sequence the journal must keep so that open intents survive a restart.
+     */
+    long oldestOpenSequence() {
+        return openIntents.values().stream()
+                .mapToLong(intent -> intent.reserve.getSequence())
+                .min()
+                .orElse(Long.MAX_VALUE);
+    }
+
+    boolean isHalted() {
+        return failure != null;
+    }
+
+    /**
+     * Stops the partition from another thread: queued and later commands are rejected.
+     */
+    void halt(RuntimeException cause) {
+        failure = cause;
+    }
+
+    /**
+     * Records that everything up to the sequence is in the database, so the keys of those
+     * commands can be forgotten once their retention has passed.
+     */
+    void projected(long sequence) {
+        projectedSequence = Math.max(projectedSequence, sequence);
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<PendingCommand> batch = new ArrayList<>(maxBatchSize);
+        List<PendingCommand> accepted = new ArrayList<>(maxBatchSize);
+        List<LedgerResult> results = new ArrayList<>(maxBatchSize);
+        List<PendingCommand> duplicates = new ArrayList<>();
+
+        while (failure == null && (running || !queue.isEmpty())) {
+            try {
+                forgetProjectedKeys();
+                PendingCommand first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+
+                for (PendingCommand pending : batch) {
+                    pending.original = appliedResult(pending.command);
+                    if (pending.original != null) {
+                        duplicates.add(pending);
+                        continue;
+                    }
+                    pending.command.setSequence(nextSequence);
+                    try {
+                        LedgerResult result = apply(pending.command);
+                        rememberKey(pending.command, result);
+                        results.add(result);
+                        accepted.add(pending);
+                        nextSequence++;
+                    } catch (RuntimeException e) {
+                        pending.future.completeExceptionally(e);
+                    }
+                }
+
+                if (!accepted.isEmpty()) {
+                    for (PendingCommand pending : accepted) {
+                        journal.append(pending.command);
+                    }
+                    journal.force();
+
+                    for (int i = 0; i < accepted.size(); i++) {
+                        LedgerResult result = results.get(i);
+                        result.getWallets().forEach(wallet -> publishedSnapshots.put(wallet.getWalletId(), wallet));
+                        resultSink.accept(result);
+                        accepted.get(i).future.complete(result);
+                    }
+                }
+                // Answered after the force, as the original may be part of this batch
+                for (PendingCommand pending : duplicates) {
+                    log.info("Ledger partition {} answered a repeated idempotency key with its original result: {}",
+                            partitionId, pending.command.getIdempotencyKey());
+                    pending.future.complete(pending.original.asDuplicate());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (IOException | RuntimeException e) {
+                // In-memory state is now ahead of the journal: stop rather than acknowledge anything else
+                failure = e;
+                running = false;
+                log.error("Ledger partition {} halted, journal write failed: {}", partitionId, e.getMessage(), e);
+                accepted.forEach(pending -> pending.future.completeExceptionally(e));
+                duplicates.forEach(pending -> pending.future.completeExceptionally(e));
+            } finally {
+                batch.clear();
+                accepted.clear();
+                results.clear();
+                duplicates.clear();
+            }
+        }
+
+        if (failure != null) {
+            List<PendingCommand> abandoned = new ArrayList<>();
+            queue.drainTo(abandoned);
+            abandoned.forEach(pending -> pending.future.completeExceptionally(failure));
+        }
+    }
+
+    /**
+     * Validates and applies one command. Nothing is modified unless every check passes.
+     */
+    private LedgerResult apply(LedgerCommand command) {
+        LedgerWallet wallet = wallet(command.getWalletId());
+        BigDecimal amount = command.getAmount();
+
+        switch (command.getType()) {
+            case CREDIT:
+                wallet.requireActive();
+                return credit(command, wallet);
+            case DEBIT:
+                wallet.requireActive();
+                wallet.requireAvailable(amount);
+                return debit(command, wallet);
+            case FREEZE: {
+                wallet.requireActive();
+                wallet.requireAvailable(amount);
+                wallet.frozenAmount = wallet.frozenAmount.add(amount);
+                wallet.updatedAt = command.getCreatedAt();
+                return result(command, Collections.emptyList(), wallet);
+            }
+            case UNFREEZE: {
+                if (wallet.frozenAmount.compareTo(amount) < 0) {
+                    throw new InvalidOperationException(
+                            "Cannot unfreeze " + amount + ". Current frozen amount is " + wallet.frozenAmount);
+                }
+                wallet.frozenAmount = wallet.frozenAmount.subtract(amount);
+                wallet.updatedAt = command.getCreatedAt();
+                return result(command, Collections.emptyList(), wallet);
+            }
+            case TRANSFER: {
+                LedgerWallet destination = wallet(command.getCounterpartyWalletId());
+                wallet.requireActive();
+                destination.requireActive();
+                wallet.requireAvailable(amount);
+                return transfer(command, wallet, destination);
+            }
+            case RESERVE: {
+                if (openIntents.containsKey(command.getIntentId())) {
+                    throw new InvalidOperationException("Ledger intent " + command.getIntentId() + " is already reserved");
+                }
+                wallet.requireActive();
+                if (command.getOperation() == LedgerCommand.Type.TRANSFER
+                        && ownsWallet.test(command.getCounterpartyWalletId())) {
+                    wallet(command.getCounterpartyWalletId()).requireActive();
+                }
+                if (holdsFunds(command)) {
+                    wallet.requireAvailable(amount);
+                    wallet.frozenAmount = wallet.frozenAmount.add(amount);
+                    wallet.updatedAt = command.getCreatedAt();
+                }
+                track(command);
+                return result(command, Collections.emptyList(), wallet);
+            }
+            case SETTLE: {
+                // The reservation checked the wallets and holds the funds being moved
+                LedgerCommand reserve = openIntent(command, false);
+                boolean local = reserve.getOperation() == LedgerCommand.Type.TRANSFER && !isCrossPartition(reserve);
+                LedgerWallet destination = local ? wallet(reserve.getCounterpartyWalletId()) : null;
+                if (holdsFunds(reserve)) {
+                    wallet.frozenAmount = wallet.frozenAmount.subtract(reserve.getAmount());
+                }
+                LedgerResult result;
+                if (reserve.getOperation() == LedgerCommand.Type.CREDIT) {
+                    result = credit(command, wallet);
+                } else if (reserve.getOperation() == LedgerCommand.Type.DEBIT) {
+                    result = debit(command, wallet);
+                } else if (local) {
+                    result = transfer(command, wallet, destination);
+                } else {
+                    result = transferOut(command, wallet);
+                }
+                track(command);
+                return result;
+            }
+            case RELEASE: {
+                LedgerCommand reserve = openIntent(command, false);
+                if (holdsFunds(reserve)) {
+                    wallet.frozenAmount = wallet.frozenAmount.subtract(reserve.getAmount());
+                    wallet.updatedAt = command.getCreatedAt();
+                }
+                track(command);
+                return result(command, Collections.emptyList(), wallet);
+            }
+            case COMPLETE: {
+                openIntent(command, true);
+                track(command);
+                return new LedgerResult(partitionId, command.getSequence(), Collections.emptyList(),
+                        Collections.emptyList(), null, false);
+            }
+            case REVERSE: {
+                openIntent(command, true);
+                track(command);
+                return credit(command, wallet);
+            }
+            default:
+                throw new IllegalStateException("Unknown ledger command type " + command.getType());
+        }
+    }
+
+    private LedgerResult credit(LedgerCommand command, LedgerWallet wallet) {
+        BigDecimal before = wallet.balance;
+        wallet.balance = before.add(command.getAmount());
+        wallet.updatedAt = command.getCreatedAt();
+        return result(command, Collections.singletonList(
+                transaction(command, wallet, command.getTransactionType(), before, command.getTransactionRef(),
+                        command.getDescription(), command.getIdempotencyKey())), wallet);
+    }
+
+    private LedgerResult debit(LedgerCommand command, LedgerWallet wallet) {
+        BigDecimal before = wallet.balance;
+        wallet.balance = before.subtract(command.getAmount());
+        wallet.updatedAt = command.getCreatedAt();
+        return result(command, Collections.singletonList(
+                transaction(command, wallet, command.getTransactionType(), before, command.getTransactionRef(),
+                        command.getDescription(), command.getIdempotencyKey())), wallet);
+    }
+
+    private LedgerResult transfer(LedgerCommand command, LedgerWallet source, LedgerWallet destination) {
+        BigDecimal amount = command.getAmount();
+        BigDecimal sourceBefore = source.balance;
+        BigDecimal destinationBefore = destination.balance;
+        source.balance = sourceBefore.subtract(amount);
+        destination.balance = destinationBefore.add(amount);
+        source.updatedAt = command.getCreatedAt();
+        destination.updatedAt = command.getCreatedAt();
+
+        List<Transaction> transactions = new ArrayList<>(2);
+        transactions.add(transaction(command, source, TransactionType.TRANSFER_OUT, sourceBefore,
+                command.getTransactionRef(), command.getDescription(),
+                command.getIdempotencyKey() + "_OUT"));
+        Transaction in = transaction(command, destination, TransactionType.TRANSFER_IN, destinationBefore,
+                command.getCounterpartyTransactionRef(), command.getCounterpartyDescription(),
+                command.getIdempotencyKey() + "_IN");
+        in.setCounterpartyWalletId(source.walletId);
+        transactions.add(in);
+
+        List<WalletSnapshot> snapshots = new ArrayList<>(2);
+        snapshots.add(source.snapshot());
+        snapshots.add(destination.snapshot());
+        return new LedgerResult(partitionId, command.getSequence(), transactions, snapshots,
+                settledIntentId(command), false);
+    }
+
+    /** Outgoing side of a transfer to another partition; the engine credits the destination next. */
+    private LedgerResult transferOut(LedgerCommand command, LedgerWallet source) {
+        BigDecimal before = source.balance;
+        source.balance = before.subtract(command.getAmount());
+        source.updatedAt = command.getCreatedAt();
+        return result(command, Collections.singletonList(
+                transaction(command, source, TransactionType.TRANSFER_OUT, before, command.getTransactionRef(),
+                        command.getDescription(), command.getIdempotencyKey() + "_OUT")), source);
+    }
+
+    private static boolean isKeyed(LedgerCommand command) {
+        return command.getIdempotencyKey() != null
+                && (command.getType() == LedgerCommand.Type.CREDIT || command.getType() == LedgerCommand.Type.DEBIT);
+    }
+
+    private LedgerResult appliedResult(LedgerCommand command) {
+        AppliedKey applied = isKeyed(command) ? appliedKeys.get(command.getIdempotencyKey()) : null;
+        return applied != null ? applied.result : null;
+    }
+
+    private void rememberKey(LedgerCommand command, LedgerResult result) {
+        if (isKeyed(command)) {
+            appliedKeys.put(command.getIdempotencyKey(), new AppliedKey(result, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Drops the oldest keys that are both projected and past their retention. From then on
+     * a retry is caught by the caller's lookup in the transactions table.
+     */
+    private void forgetProjectedKeys() {
+        long projected = projectedSequence;
+        long cutoff = System.currentTimeMillis() - keyRetentionMs;
+        Iterator<AppliedKey> iterator = appliedKeys.values().iterator();
+        while (iterator.hasNext()) {
+            AppliedKey applied = iterator.next();
+            if (applied.result.getSequence() > projected || applied.appliedAt > cutoff) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+
+    private static boolean holdsFunds(LedgerCommand reserve) {
+        return reserve.getOperation() != LedgerCommand.Type.CREDIT;
+    }
+
+    private boolean isCrossPartition(LedgerCommand reserve) {
+        return reserve.getOperation() == LedgerCommand.Type.TRANSFER
+                && !ownsWallet.test(reserve.getCounterpartyWalletId());
+    }
+
+    private LedgerCommand openIntent(LedgerCommand command, boolean inFlight) {
+        OpenIntent intent = openIntents.get(command.getIntentId());
+        if (intent == null || intent.inFlight != inFlight) {
+            throw new InvalidOperationException("Ledger intent " + command.getIntentId() + " is not "
+                    + (inFlight ? "an open cross-partition transfer" : "reserved"));
+        }
+        return intent.reserve;
+    }
+
+    /**
+     * Moves the intent of an accepted or replayed command to its next state. Closing
+     * commands of intents opened before the retained journal are ignored.
+     */
+    private void track(LedgerCommand command) {
+        String intentId = command.getIntentId();
+        if (intentId == null) {
+            return;
+        }
+        switch (command.getType()) {
+            case RESERVE:
+                openIntents.put(intentId, new OpenIntent(command, false));
+                break;
+            case SETTLE:
+                OpenIntent intent = openIntents.get(intentId);
+                if (intent != null && isCrossPartition(intent.reserve)) {
+                    openIntents.put(intentId, new OpenIntent(intent.reserve, true));
+                } else {
+                    openIntents.remove(intentId);
+                }
+                break;
+            case RELEASE:
+            case COMPLETE:
+            case REVERSE:
+                openIntents.remove(intentId);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private LedgerWallet wallet(Long walletId) {
+        LedgerWallet wallet = wallets.get(walletId);
+        if (wallet == null) {
+            // First touch: the database row is current, as nothing else writes owned wallets
+            wallet = new LedgerWallet(walletLoader.apply(walletId));
+            wallets.put(walletId, wallet);
+        }
+        return wallet;
+    }
+
+    private LedgerResult result(LedgerCommand command, List<Transaction> transactions, LedgerWallet wallet) {
+        return new LedgerResult(partitionId, command.getSequence(), transactions,
+                Collections.singletonList(wallet.snapshot()), settledIntentId(command), false);
+    }
+
+    private static String settledIntentId(LedgerCommand command) {
+        return command.getType() == LedgerCommand.Type.SETTLE ? command.getIntentId() : null;
+    }
+
+    private Transaction transaction(LedgerCommand command, LedgerWallet wallet, TransactionType type,
+                                    BigDecimal balanceBefore, String transactionRef,
+                                    String description, String idempotencyKey) {
+        return Transaction.builder()
+                .transactionRef(transactionRef)
+                .wallet(Wallet.builder().id(wallet.walletId).build())
+                .type(type)
+                .status(TransactionStatus.COMPLETED)
+                .amount(command.getAmount())
+                .currency(wallet.currency)
+                .balanceBefore(balanceBefore)
+                .balanceAfter(wallet.balance)
+                .description(description)
+                .idempotencyKey(idempotencyKey)
+                .counterpartyWalletId(command.getCounterpartyWalletId())
+                .createdAt(command.getCreatedAt())
+                .build();
+    }
+
+    private static final class PendingCommand {
+        private final LedgerCommand command;
+        private final CompletableFuture<LedgerResult> future = new CompletableFuture<>();
+        /** Set when the command repeats an idempotency key already applied here. */
+        private LedgerResult original;
+
+        private PendingCommand(LedgerCommand command) {
+            this.command = command;
+        }
+    }
+
+    private static final class AppliedKey {
+        private final LedgerResult result;
+        private final long appliedAt;
+
+        private AppliedKey(LedgerResult result, long appliedAt) {
+            this.result = result;
+            this.appliedAt = appliedAt;
+        }
+    }
+
+    private static final class OpenIntent {
+        private final LedgerCommand reserve;
+        /** Set once a cross-partition transfer has left the source wallet. */
+        private final boolean inFlight;
+
+        private OpenIntent(LedgerCommand reserve, boolean inFlight) {
+            this.reserve = reserve;
+            this.inFlight = inFlight;
+        }
+    }
+
+    /**
+     * Mutable wallet state, confined to the partition thread.
+     */
+    private static final class LedgerWallet {
+        private final Long walletId;
+        private final Long accountId;
+        private final String currency;
+        private final WalletStatus status;
+        private final LocalDateTime createdAt;
+        private BigDecimal balance;
+        private BigDecimal frozenAmount;
+        private LocalDateTime updatedAt;
+
+        private LedgerWallet(WalletSnapshot loaded) {
+            this.walletId = loaded.getWalletId();
+            this.accountId = loaded.getAccountId();
+            this.currency = loaded.getCurrency();
+            this.status = loaded.getStatus();
+            this.createdAt = loaded.getCreatedAt();
+            this.balance = loaded.getBalance();
+            this.frozenAmount = loaded.getFrozenAmount();
+            this.updatedAt = loaded.getUpdatedAt();
+        }
+
+        private void requireActive() {
+            if (status != WalletStatus.ACTIVE) {
+                throw new InvalidOperationException("Wallet is not active. Current status: " + status);
+            }
+        }
+
+        private void requireAvailable(BigDecimal amount) {
+            BigDecimal available = balance.subtract(frozenAmount);
+            if (available.compareTo(amount) < 0) {
+                throw new InsufficientBalanceException(amount, available);
+            }
+        }
+
+        private WalletSnapshot snapshot() {
+            return new WalletSnapshot(walletId, accountId, balance, frozenAmount, currency, status,
+                    createdAt, updatedAt);
+        }
+    }
+}
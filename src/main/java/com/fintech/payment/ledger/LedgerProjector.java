@@ -0,0 +1,238 @@
+package com.fintech.payment.ledger;
+
+import com.fintech.payment.entity.LedgerProjectionOffset;
+import com.fintech.payment.entity.Transaction;
+import com.fintech.payment.repository.LedgerProjectionOffsetRepository;
+import com.fintech.payment.repository.TransactionBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Writes ledger results to Postgres behind the engine. Each drained batch becomes one
+ * database transaction holding the absolute wallet balances, the transaction rows, the
+ * removal of the commit markers of settled intents and the new projection offset of
+ * every partition involved. Batches failing on a transient error are retried as a whole,
+ * since the journal cannot be released until they land. A batch the database rejects
+ * outright, such as on a unique constraint, is projected again one result at a time and
+ * each result still rejected is parked: logged, counted in {@code ledger.projection.parked}
+ * and passed by the projection offset, so the rest of the partition keeps moving.
+ *
+ * <p>Every projection transaction renews the {@link LedgerLease} first. If another node
+ * holds it, the transaction rolls back and the projector stops for good.</p>
+ */
+@Slf4j
+class LedgerProjector implements Runnable {
+
+    private static final String UPDATE_WALLET_SQL = "UPDATE wallets SET balance = ?, frozen_amount = ?, " +
+            "version = COALESCE(version, 0) + 1, updated_at = ? WHERE id = ?";
+    private static final String DELETE_COMMIT_MARKER_SQL = "DELETE FROM ledger_commit_markers WHERE intent_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionBatchRepository transactionBatchRepository;
+    private final LedgerProjectionOffsetRepository offsetRepository;
+    private final LedgerLease lease;
+    private final BiConsumer<Integer, Long> onProjected;
+    private final Consumer<RuntimeException> onLeaseLost;
+    private final Counter parkedCounter;
+    private final int maxBatchSize;
+    private final long retryBackoffMs;
+
+    private final BlockingQueue<LedgerResult> queue = new LinkedBlockingQueue<>();
+    private volatile boolean running = true;
+    private Thread thread;
+
+    LedgerProjector(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                    TransactionBatchRepository transactionBatchRepository,
+                    LedgerProjectionOffsetRepository offsetRepository, LedgerLease lease,
+                    BiConsumer<Integer, Long> onProjected, Consumer<RuntimeException> onLeaseLost,
+                    Counter parkedCounter,
+                    int maxBatchSize, long retryBackoffMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.transactionBatchRepository = transactionBatchRepository;
+        this.offsetRepository = offsetRepository;
+        this.lease = lease;
+        this.onProjected = onProjected;
+        this.onLeaseLost = onLeaseLost;
+        this.parkedCounter = parkedCounter;
+        this.maxBatchSize = maxBatchSize;
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    void start() {
+        thread = new Thread(this, "ledger-projector");
+        thread.start();
+    }
+
+    void enqueue(LedgerResult result) {
+        queue.add(result);
+    }
+
+    /**
+     * Stops after everything queued so far has been projected.
+     */
+    void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<LedgerResult> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                LedgerResult first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    renewIdleLease();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                projectWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Ledger projector interrupted with {} results still queued", queue.size() + batch.size());
+                return;
+            } catch (LedgerLease.LostException e) {
+                running = false;
+                log.error("Ledger projector stopped with {} results unprojected: {}",
+                        queue.size() + batch.size(), e.getMessage());
+                onLeaseLost.accept(e);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void projectWithRetry(List<LedgerResult> batch) throws InterruptedException {
+        while (true) {
+            try {
+                Map<Integer, Long> offsets = transactionTemplate.execute(status -> project(batch));
+                offsets.forEach(onProjected);
+                return;
+            } catch (LedgerLease.LostException e) {
+                throw e;
+            } catch (NonTransientDataAccessException e) {
+                if (batch.size() == 1) {
+                    park(batch.get(0), e);
+                    return;
+                }
+                log.warn("Ledger projection of {} results rejected, projecting them one at a time: {}",
+                        batch.size(), e.getMessage());
+                for (LedgerResult result : batch) {
+                    projectWithRetry(Collections.singletonList(result));
+                }
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ledger projection of {} results failed, retrying in {}ms: {}",
+                        batch.size(), retryBackoffMs, e.getMessage());
+                Thread.sleep(retryBackoffMs);
+            }
+        }
+    }
+
+    /**
+     * Moves the projection offset past a result the database will not accept. Its wallet
+     * balances reach the database with the next projected result of the same wallets.
+     */
+    private void park(LedgerResult result, RuntimeException cause) throws InterruptedException {
+        parkedCounter.increment();
+        log.error("Ledger result parked, projection moves past it: partition={}, sequence={}, transactions={}, "
+                        + "wallets={}, error={}", result.getPartitionId(), result.getSequence(),
+                result.getTransactions().stream()
+                        .map(transaction -> transaction.getTransactionRef() + "/" + transaction.getIdempotencyKey())
+                        .collect(Collectors.toList()),
+                result.getWallets(), cause.getMessage());
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    lease.renew();
+                    saveOffset(result.getPartitionId(), result.getSequence(), LocalDateTime.now());
+                });
+                onProjected.accept(result.getPartitionId(), result.getSequence());
+                return;
+            } catch (LedgerLease.LostException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                log.error("Recording parked ledger result failed, retrying in {}ms: {}", retryBackoffMs, e.getMessage());
+                Thread.sleep(retryBackoffMs);
+            }
+        }
+    }
+
+    private void renewIdleLease() {
+        try {
+            lease.renewIfDue();
+        } catch (LedgerLease.LostException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("Ledger engine lease renewal failed, retrying: {}", e.getMessage());
+        }
+    }
+
+    private void saveOffset(Integer partitionId, Long sequence, LocalDateTime now) {
+        offsetRepository.save(LedgerProjectionOffset.builder()
+                .partitionId(partitionId)
+                .lastSequence(sequence)
+                .updatedAt(now)
+                .build());
+    }
+
+    private Map<Integer, Long> project(List<LedgerResult> batch) {
+        lease.renew();
+
+        // Later results carry the newer absolute state, so only the last snapshot per wallet is written
+        Map<Long, WalletSnapshot> latest = new LinkedHashMap<>();
+        List<Transaction> transactions = new ArrayList<>();
+        List<Object[]> settledIntents = new ArrayList<>();
+        Map<Integer, Long> offsets = new HashMap<>();
+        for (LedgerResult result : batch) {
+            result.getWallets().forEach(wallet -> latest.put(wallet.getWalletId(), wallet));
+            transactions.addAll(result.getTransactions());
+            if (result.getSettledIntentId() != null) {
+                settledIntents.add(new Object[]{result.getSettledIntentId()});
+            }
+            offsets.merge(result.getPartitionId(), result.getSequence(), Math::max);
+        }
+
+        List<Object[]> walletUpdates = new ArrayList<>(latest.size());
+        for (WalletSnapshot wallet : latest.values()) {
+            walletUpdates.add(new Object[]{wallet.getBalance(), wallet.getFrozenAmount(),
+                    Timestamp.valueOf(wallet.getUpdatedAt()), wallet.getWalletId()});
+        }
+        jdbcTemplate.batchUpdate(UPDATE_WALLET_SQL, walletUpdates);
+        transactionBatchRepository.insertAll(transactions);
+        if (!settledIntents.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_COMMIT_MARKER_SQL, settledIntents);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        offsets.forEach((partitionId, sequence) -> saveOffset(partitionId, sequence, now));
+
+        log.debug("Ledger projected: results={}, wallets={}, transactions={}",
+                batch.size(), latest.size(), transactions.size());
+        return offsets;
+    }
+}
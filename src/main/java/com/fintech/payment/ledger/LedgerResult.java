@@ -0,0 +1,34 @@
+package com.fintech.payment.ledger;
+
+import com.fintech.payment.entity.Transaction;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Outcome of an accepted ledger command: the transaction rows it produced and the
+ * state of every wallet it touched. The projector writes both to the database, and
+ * removes the commit marker of the intent the command settled, if any. A command whose
+ * idempotency key was already applied is answered with the original result, marked
+ * as a duplicate; nothing is journaled or projected for it.
+ */
+@Value
+public class LedgerResult {
+    int partitionId;
+    long sequence;
+    List<Transaction> transactions;
+    List<WalletSnapshot> wallets;
+    String settledIntentId;
+    boolean duplicate;
+
+    public WalletSnapshot getWallet(Long walletId) {
+        return wallets.stream()
+                .filter(wallet -> wallet.getWalletId().equals(walletId))
+                .findFirst()
+                .orElse(null);
+    }
+
+    LedgerResult asDuplicate() {
+        return new LedgerResult(partitionId, sequence, transactions, wallets, settledIntentId, true);
+    }
+}
@@ -0,0 +1,218 @@
+package com.fintech.payment.ledger;
+
+import com.fintech.payment.dto.response.BalanceResponse;
+import com.fintech.payment.dto.response.WalletResponse;
+import com.fintech.payment.entity.Account;
+import com.fintech.payment.entity.Transaction;
+import com.fintech.payment.entity.Wallet;
+import com.fintech.payment.enums.TransactionType;
+import com.fintech.payment.event.TransactionCreatedEvent;
+import com.fintech.payment.exception.InvalidOperationException;
+import com.fintech.payment.exception.ResourceNotFoundException;
+import com.fintech.payment.repository.TransactionRepository;
+import com.fintech.payment.repository.WalletRepository;
+import com.fintech.payment.service.IdempotencyService;
+import com.fintech.payment.service.NotificationService;
+import com.fintech.payment.service.OutboxService;
+import com.fintech.payment.service.WalletService;
+import com.fintech.payment.service.impl.WalletServiceImpl;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link WalletService} backed by the {@link LedgerEngine}. Balance changes are applied
+ * in memory and journaled; wallet creation and reads of wallets the engine has not
+ * touched yet are delegated to the database-backed {@link WalletServiceImpl}.
+ *
+ * <p>A repeated idempotency key is answered with the current wallet state and nothing
+ * is applied: keys already projected are found in the transactions table, keys still
+ * waiting for projection are recognised by their partition.</p>
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(name = "ledger.engine.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class LedgerWalletService implements WalletService {
+
+    private static final String WALLET_EVENTS_TOPIC = "wallet-events";
+
+    private final LedgerEngine ledgerEngine;
+    private final WalletServiceImpl walletServiceImpl;
+    private final WalletRepository walletRepository;
+    private final NotificationService notificationService;
+    private final OutboxService outboxService;
+    private final TransactionRepository transactionRepository;
+    private final IdempotencyService idempotencyService;
+
+    /** Wallets never move between accounts, so the mapping is cached for good. */
+    private final Map<Long, Long> walletIdsByAccountId = new ConcurrentHashMap<>();
+
+    @Override
+    public WalletResponse createWallet(Long accountId) {
+        return walletServiceImpl.createWallet(accountId);
+    }
+
+    @Override
+    public WalletResponse getWalletByAccountId(Long accountId) {
+        return ledgerEngine.getSnapshot(walletIdOf(accountId))
+                .map(this::mapToResponse)
+                .orElseGet(() -> walletServiceImpl.getWalletByAccountId(accountId));
+    }
+
+    @Override
+    public BalanceResponse getBalance(Long accountId) {
+        return ledgerEngine.getSnapshot(walletIdOf(accountId))
+                .map(wallet -> BalanceResponse.builder()
+                        .walletId(wallet.getWalletId())
+                        .totalBalance(wallet.getBalance())
+                        .availableBalance(wallet.getAvailableBalance())
+                        .frozenAmount(wallet.getFrozenAmount())
+                        .currency(wallet.getCurrency())
+                        .shardCount(0)
+                        .build())
+                .orElseGet(() -> walletServiceImpl.getBalance(accountId));
+    }
+
+    @Override
+    public WalletResponse deposit(Long accountId, BigDecimal amount, String description, String idempotencyKey) {
+        log.info("Processing ledger deposit: accountId={}, amount={}, idempotencyKey={}",
+                accountId, amount, idempotencyKey);
+
+        if (isProjectedKey(idempotencyKey)) {
+            return getWalletByAccountId(accountId);
+        }
+        LedgerResult result = ledgerEngine.credit(walletIdOf(accountId), amount, TransactionType.DEPOSIT,
+                description != null ? description : "Deposit to wallet", idempotencyKey, null);
+        return complete(result, accountId, "DEPOSIT", amount);
+    }
+
+    @Override
+    public WalletResponse withdraw(Long accountId, BigDecimal amount, String description, String idempotencyKey) {
+        log.info("Processing ledger withdrawal: accountId={}, amount={}, idempotencyKey={}",
+                accountId, amount, idempotencyKey);
+
+        if (isProjectedKey(idempotencyKey)) {
+            return getWalletByAccountId(accountId);
+        }
+        LedgerResult result = ledgerEngine.debit(walletIdOf(accountId), amount, TransactionType.WITHDRAWAL,
+                description != null ? description : "Withdrawal from wallet", idempotencyKey, null);
+        return complete(result, accountId, "WITHDRAWAL", amount);
+    }
+
+    @Override
+    public WalletResponse enableSharding(Long accountId, int shardCount) {
+        throw new InvalidOperationException("Wallet sharding is not available while the ledger engine is enabled");
+    }
+
+    @Override
+    public WalletResponse disableSharding(Long accountId) {
+        return walletServiceImpl.disableSharding(accountId);
+    }
+
+    @Override
+    public Wallet freezeAmount(Long walletId, BigDecimal amount) {
+        log.info("Freezing amount via ledger: walletId={}, amount={}", walletId, amount);
+        return toWallet(ledgerEngine.freeze(walletId, amount).getWallet(walletId));
+    }
+
+    @Override
+    public Wallet unfreezeAmount(Long walletId, BigDecimal amount) {
+        log.info("Unfreezing amount via ledger: walletId={}, amount={}", walletId, amount);
+        return toWallet(ledgerEngine.unfreeze(walletId, amount).getWallet(walletId));
+    }
+
+    private Long walletIdOf(Long accountId) {
+        return walletIdsByAccountId.computeIfAbsent(accountId, id -> walletRepository.findByAccountId(id)
+                .map(Wallet::getId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "accountId", id)));
+    }
+
+    /**
+     * Whether a transaction with the key is already in the database. Records the key
+     * otherwise, so that later lookups for it are not skipped.
+     */
+    private boolean isProjectedKey(String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return false;
+        }
+        if (idempotencyService.mightHaveSeen(idempotencyKey)
+                && transactionRepository.findByIdempotencyKey(idempotencyKey).isPresent()) {
+            log.info("Duplicate ledger command detected for idempotency key: {}", idempotencyKey);
+            return true;
+        }
+        idempotencyService.recordKey(idempotencyKey);
+        return false;
+    }
+
+    private WalletResponse complete(LedgerResult result, Long accountId, String eventType, BigDecimal amount) {
+        if (result.isDuplicate()) {
+            // Published and notified when the original was applied
+            return getWalletByAccountId(accountId);
+        }
+        Transaction transaction = result.getTransactions().get(0);
+        WalletSnapshot wallet = result.getWallet(transaction.getWallet().getId());
+
+        try {
+            publishWalletEvent(wallet, accountId, eventType, amount);
+            notificationService.sendTransactionNotification(transaction);
+        } catch (Exception e) {
+            // The ledger write has already committed; failing the request would invite a retry of an applied entry
+            log.error("Failed to publish ledger {} events: walletId={}, error={}",
+                    eventType, wallet.getWalletId(), e.getMessage(), e);
+        }
+
+        log.info("Ledger {} completed: walletId={}, amount={}, newBalance={}",
+                eventType, wallet.getWalletId(), amount, wallet.getBalance());
+        return mapToResponse(wallet);
+    }
+
+    private void publishWalletEvent(WalletSnapshot wallet, Long accountId, String eventType, BigDecimal amount) {
+        TransactionCreatedEvent event = TransactionCreatedEvent.builder()
+                .type(eventType)
+                .walletId(wallet.getWalletId())
+                .accountId(accountId)
+                .amount(amount)
+                .balance(wallet.getBalance())
+                .currency(wallet.getCurrency())
+                .build();
+        outboxService.publish(WALLET_EVENTS_TOPIC, wallet.getWalletId().toString(), event);
+    }
+
+    private WalletResponse mapToResponse(WalletSnapshot wallet) {
+        return WalletResponse.builder()
+                .id(wallet.getWalletId())
+                .accountId(wallet.getAccountId())
+                .balance(wallet.getBalance())
+                .frozenAmount(wallet.getFrozenAmount())
+                .availableBalance(wallet.getAvailableBalance())
+                .currency(wallet.getCurrency())
+                .status(wallet.getStatus())
+                .createdAt(wallet.getCreatedAt())
+                .updatedAt(wallet.getUpdatedAt())
+                .build();
+    }
+
+    private Wallet toWallet(WalletSnapshot snapshot) {
+        Account account = new Account();
+        account.setId(snapshot.getAccountId());
+        Wallet wallet = Wallet.builder()
+                .account(account)
+                .balance(snapshot.getBalance())
+                .frozenAmount(snapshot.getFrozenAmount())
+                .currency(snapshot.getCurrency())
+                .status(snapshot.getStatus())
+                .build();
+        wallet.setId(snapshot.getWalletId());
+        wallet.setCreatedAt(snapshot.getCreatedAt());
+        wallet.setUpdatedAt(snapshot.getUpdatedAt());
+        return wallet;
+    }
+}
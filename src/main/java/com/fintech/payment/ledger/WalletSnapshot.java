@@ -0,0 +1,26 @@
+package com.fintech.payment.ledger;
+
+import com.fintech.payment.enums.WalletStatus;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Immutable view of a wallet as held by the ledger engine after a command.
+ */
+@Value
+public class WalletSnapshot {
+    Long walletId;
+    Long accountId;
+    BigDecimal balance;
+    BigDecimal frozenAmount;
+    String currency;
+    WalletStatus status;
+    LocalDateTime createdAt;
+    LocalDateTime updatedAt;
+
+    public BigDecimal getAvailableBalance() {
+        return balance.subtract(frozenAmount);
+    }
+}
@@ -0,0 +1,67 @@
+package com.fintech.payment.outbox;
+
+import lombok.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Broker stand-in that keeps published messages in memory, for tests and local runs
+ * without Kafka ({@code outbox.publisher=in-memory}). Sends to a topic marked as failing
+ * complete exceptionally and are not kept.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.publisher", havingValue = "in-memory")
+public class InMemoryOutboxPublisher implements OutboxPublisher {
+
+    private final List<Message> messages = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failingTopics = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public CompletableFuture<Void> send(String topic, String key, byte[] value) {
+        if (failingTopics.contains(topic)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Topic unavailable: " + topic));
+        }
+        messages.add(new Message(topic, key, value));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    public List<Message> messages(String topic) {
+        synchronized (messages) {
+            return messages.stream().filter(message -> message.getTopic().equals(topic)).collect(Collectors.toList());
+        }
+    }
+
+    public void failTopic(String topic, boolean failing) {
+        if (failing) {
+            failingTopics.add(topic);
+        } else {
+            failingTopics.remove(topic);
+        }
+    }
+
+    public void clear() {
+        messages.clear();
+    }
+
+    @Value
+    public static class Message {
+
+        String topic;
+        String key;
+        byte[] value;
+
+        /** The value as text, for messages sent as JSON. */
+        public String getPayload() {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.fintech.payment.outbox;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes outbox messages with the asynchronous Kafka producer. The producer is
+ * idempotent with one request in flight per connection, so messages sent in order reach
+ * their partition in order.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.publisher", havingValue = "kafka", matchIfMissing = true)
+@RequiredArgsConstructor
+public class KafkaOutboxPublisher implements OutboxPublisher {
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Override
+    public CompletableFuture<Void> send(String topic, String key, byte[] value) {
+        return kafkaTemplate.send(topic, key, value).completable().thenApply(result -> null);
+    }
+}
@@ -0,0 +1,13 @@
+package com.fintech.payment.outbox;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Broker the outbox relay publishes to. Sends must not block; the future completes once
+ * the broker has accepted the message, and messages sent with the same key in a row must
+ * reach the broker in that order.
+ */
+public interface OutboxPublisher {
+
+    CompletableFuture<Void> send(String topic, String key, byte[] value);
+}
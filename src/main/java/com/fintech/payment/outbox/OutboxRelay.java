@@ -0,0 +1,301 @@
+package com.fintech.payment.outbox;
+
+import com.fintech.payment.entity.OutboxEvent;
+import com.fintech.payment.enums.OutboxStatus;
+import com.fintech.payment.repository.OutboxEventRepository;
+import com.fintech.payment.repository.OutboxRelayLeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes outbox messages. Each pass renews this node's shard leases, takes over
+ * expired ones, then sends the oldest pending messages of its shards through the
+ * {@link OutboxPublisher} without waiting between sends, and marks everything the broker
+ * accepted as published in one update. A shard is published by one node at a time, in id
+ * order, so messages with the same key keep their order across relay nodes. Delivery is
+ * at least once: a message whose send failed, or whose node lost its lease before marking
+ * it, is sent again on a later pass, after any messages sent behind it. A failed send holds
+ * back the rest of its shard for a backoff that doubles with each attempt; after
+ * {@code outbox.relay.max-attempts} the message is parked and the shard moves past it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboxRelay implements Runnable {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxRelayLeaseRepository leaseRepository;
+    private final OutboxPublisher outboxPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${outbox.relay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${outbox.relay.shards:16}")
+    private int shards;
+
+    /** Lower it on multi-node deployments so the shards spread over the nodes. */
+    @Value("${outbox.relay.max-shards-per-node:16}")
+    private int maxShardsPerNode;
+
+    @Value("${outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${outbox.relay.lease-seconds:10}")
+    private long leaseSeconds;
+
+    @Value("${outbox.relay.idle-ms:100}")
+    private long idleMs;
+
+    /** Kept well under the lease, so a pass normally ends while this node still holds its shards. */
+    @Value("${outbox.relay.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    @Value("${outbox.relay.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${outbox.relay.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${outbox.relay.max-retry-backoff-ms:300000}")
+    private long maxRetryBackoffMs;
+
+    @Value("${outbox.cleanup.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${outbox.cleanup.batch-size:1000}")
+    private int cleanupBatchSize;
+
+    private final String owner = nodeName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    private Counter publishedCounter;
+    private Counter failedCounter;
+    private Counter parkedCounter;
+    private volatile boolean running;
+    private Thread thread;
+
+    @PostConstruct
+    public void start() {
+        publishedCounter = meterRegistry.counter("outbox.relay.published");
+        failedCounter = meterRegistry.counter("outbox.relay.failed");
+        parkedCounter = meterRegistry.counter("outbox.relay.parked");
+        if (!enabled) {
+            return;
+        }
+        if (sendTimeoutMs >= TimeUnit.SECONDS.toMillis(leaseSeconds)) {
+            log.warn("outbox.relay.send-timeout-ms ({}) is not below the lease ({} s); slow passes will "
+                    + "lose their shards and leave their sends to be repeated", sendTimeoutMs, leaseSeconds);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (int shard = 0; shard < shards; shard++) {
+            leaseRepository.createIfMissing(shard, now);
+        }
+        running = true;
+        thread = new Thread(this, "outbox-relay");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Outbox relay started: owner={}, shards={}, maxShardsPerNode={}, batchSize={}",
+                owner, shards, maxShardsPerNode, batchSize);
+    }
+
+    /**
+     * Stops after the current pass and hands this node's shards back straight away.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(leaseSeconds));
+        leaseRepository.release(owner, LocalDateTime.now());
+        log.info("Outbox relay stopped: owner={}", owner);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                if (relayOnce() < batchSize) {
+                    Thread.sleep(idleMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Outbox relay pass failed: {}", e.getMessage(), e);
+                try {
+                    Thread.sleep(idleMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * One relay pass: claims shards, publishes up to one batch and marks it.
+     *
+     * @return the number of messages published
+     */
+    int relayOnce() throws InterruptedException {
+        List<Integer> ownedShards = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            return leaseRepository.claimShards(owner, now, now.plusSeconds(leaseSeconds), maxShardsPerNode);
+        });
+        if (ownedShards == null || ownedShards.isEmpty()) {
+            return 0;
+        }
+
+        List<OutboxEvent> batch = outboxEventRepository.findByStatusAndShards(
+                OutboxStatus.PENDING, ownedShards, LocalDateTime.now(), PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // All sends go out before any is waited for, so the producer batches them
+        List<CompletableFuture<Void>> sends = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            byte[] value = event.getBody() != null
+                    ? event.getBody() : event.getPayload().getBytes(StandardCharsets.UTF_8);
+            sends.add(outboxPublisher.send(event.getTopic(), event.getMessageKey(), value));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        List<OutboxEvent> published = new ArrayList<>(batch.size());
+        Map<OutboxEvent, String> failed = new LinkedHashMap<>();
+        Set<Integer> failedShards = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            if (failedShards.contains(event.getShard())) {
+                // Behind a failed message of its shard; left pending and sent again after it
+                continue;
+            }
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                published.add(event);
+            } catch (ExecutionException e) {
+                failedShards.add(event.getShard());
+                failed.put(event, String.valueOf(e.getCause()));
+            } catch (TimeoutException e) {
+                failedShards.add(event.getShard());
+                failed.put(event, "Send timed out after " + sendTimeoutMs + " ms");
+            }
+        }
+
+        return markSent(published, failed);
+    }
+
+    /**
+     * Marks the pass's sends after renewing the leases, in one transaction that holds the
+     * lease rows, so only shards still held by this node are marked. A shard taken over
+     * while the sends were waited for belongs to its new owner, which sends it again.
+     */
+    private int markSent(List<OutboxEvent> published, Map<OutboxEvent, String> failed) {
+        Integer marked = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            Set<Integer> held = new HashSet<>(
+                    leaseRepository.claimShards(owner, now, now.plusSeconds(leaseSeconds), maxShardsPerNode));
+            List<Long> ids = published.stream()
+                    .filter(event -> held.contains(event.getShard()))
+                    .map(OutboxEvent::getId)
+                    .collect(Collectors.toList());
+            if (ids.size() < published.size()) {
+                log.warn("Outbox relay lost shard leases during a pass; {} sent messages left to their new owner",
+                        published.size() - ids.size());
+            }
+            if (!ids.isEmpty()) {
+                outboxEventRepository.markPublished(ids, OutboxStatus.PUBLISHED, now);
+            }
+            failed.forEach((event, error) -> {
+                if (held.contains(event.getShard())) {
+                    recordFailure(event, error);
+                }
+            });
+            return ids.size();
+        });
+        int count = marked != null ? marked : 0;
+        publishedCounter.increment(count);
+        return count;
+    }
+
+    /**
+     * Counts a failed send and schedules the next attempt, or parks the message once it
+     * has used up its attempts.
+     */
+    private void recordFailure(OutboxEvent event, String error) {
+        failedCounter.increment();
+        int attempts = event.getAttempts() + 1;
+        String lastError = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        if (attempts >= maxAttempts) {
+            outboxEventRepository.recordFailure(event.getId(), OutboxStatus.PARKED, attempts, null, lastError);
+            parkedCounter.increment();
+            log.error("Outbox message parked after {} attempts: id={}, topic={}, error={}",
+                    attempts, event.getId(), event.getTopic(), error);
+            return;
+        }
+        long backoffMs = Math.min(maxRetryBackoffMs, retryBackoffMs << Math.min(attempts - 1, 20));
+        outboxEventRepository.recordFailure(event.getId(), OutboxStatus.PENDING, attempts,
+                LocalDateTime.now().plus(backoffMs, ChronoUnit.MILLIS), lastError);
+        log.warn("Outbox publish failed: id={}, topic={}, attempt={}, retryInMs={}, error={}",
+                event.getId(), event.getTopic(), attempts, backoffMs, error);
+    }
+
+    /**
+     * Deletes published messages older than the retention period, in bounded batches.
+     */
+    @Scheduled(fixedDelayString = "${outbox.cleanup.interval-ms:60000}")
+    public void purgePublished() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        int total = 0;
+        int deleted;
+        do {
+            deleted = outboxEventRepository.deletePublishedBatch(cutoff, cleanupBatchSize);
+            total += deleted;
+        } while (deleted == cleanupBatchSize);
+        if (total > 0) {
+            log.info("Purged {} published outbox messages", total);
+        }
+    }
+
+    private static String nodeName() {
+        try {
+            String hostName = InetAddress.getLocalHost().getHostName();
+            // Leaves room for the suffix within outbox_relay_leases.owner
+            return hostName.length() > 80 ? hostName.substring(0, 80) : hostName;
+        } catch (UnknownHostException e) {
+            return "node";
+        }
+    }
+}
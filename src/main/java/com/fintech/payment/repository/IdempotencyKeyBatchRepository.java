@@ -0,0 +1,46 @@
+package com.fintech.payment.repository;
+
+import com.fintech.payment.entity.IdempotencyKey;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.rowset.serial.SerialClob;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Inserts idempotency records through a single JDBC batch, for the same reason as
+ * {@link TransactionBatchRepository}. A key that is already stored is left as it is.
+ * Must run inside a transaction: the response body is bound as a CLOB, the way
+ * Hibernate binds the {@code @Lob} column.
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyBatchRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO idempotency_keys (key_value, request_hash, " +
+            "response_body, status_code, expires_at, created_at) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (key_value) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<IdempotencyKey> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, records, records.size(), (ps, record) -> {
+            ps.setString(1, record.getKeyValue());
+            ps.setString(2, record.getRequestHash());
+            if (record.getResponseBody() != null) {
+                ps.setClob(3, new SerialClob(record.getResponseBody().toCharArray()));
+            } else {
+                ps.setNull(3, Types.CLOB);
+            }
+            ps.setInt(4, record.getStatusCode());
+            ps.setTimestamp(5, Timestamp.valueOf(record.getExpiresAt()));
+            ps.setTimestamp(6, Timestamp.valueOf(record.getCreatedAt()));
+        });
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -15,9 +16,17 @@ public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey,
 
     Optional<IdempotencyKey> findByKeyValue(String keyValue);
 
+    /**
+     * Deletes at most {@code limit} records that expired before the cutoff, oldest first,
+     * in a transaction of its own so locks are held for one bounded batch only.
+     * Plain SQL, so it runs on H2 as well as Postgres.
+     */
+    @Transactional
     @Modifying
-    @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt < :cutoffTime")
-    int deleteByExpiresAtBefore(@Param("cutoffTime") LocalDateTime cutoffTime);
+    @Query(value = "DELETE FROM idempotency_keys WHERE id IN (" +
+            "SELECT id FROM idempotency_keys WHERE expires_at < :cutoffTime ORDER BY expires_at LIMIT :limit)",
+            nativeQuery = true)
+    int deleteExpiredBatch(@Param("cutoffTime") LocalDateTime cutoffTime, @Param("limit") int limit);
 
     boolean existsByKeyValue(String keyValue);
 }
@@ -0,0 +1,18 @@
+package com.fintech.payment.repository;
+
+import com.fintech.payment.entity.LedgerCommitMarker;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface LedgerCommitMarkerRepository extends JpaRepository<LedgerCommitMarker, String> {
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM LedgerCommitMarker m WHERE m.intentId = :intentId")
+    int deleteByIntentId(@Param("intentId") String intentId);
+}
@@ -0,0 +1,65 @@
+package com.fintech.payment.repository;
+
+import com.fintech.payment.entity.LedgerEngineLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface LedgerEngineLeaseRepository extends JpaRepository<LedgerEngineLease, Integer> {
+
+    /**
+     * Takes the lease if nobody holds it or the holder let it run out.
+     *
+     * @return the new epoch, or empty if another node holds the lease
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "UPDATE ledger_engine_lease SET owner = :owner, epoch = epoch + 1, lease_until = :leaseUntil " +
+            "WHERE id = 1 AND (owner IS NULL OR lease_until < :now) " +
+            "RETURNING epoch",
+            nativeQuery = true)
+    Optional<Long> acquire(@Param("owner") String owner,
+                           @Param("now") LocalDateTime now,
+                           @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Extends the lease, provided the owner still holds it in the given epoch.
+     *
+     * @return 1 if renewed, 0 if the lease has passed to another holder
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Modifying
+    @Query(value = "UPDATE ledger_engine_lease SET lease_until = :leaseUntil " +
+            "WHERE id = 1 AND owner = :owner AND epoch = :epoch",
+            nativeQuery = true)
+    int renew(@Param("owner") String owner,
+              @Param("epoch") long epoch,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Gives up the lease, so another node can take it at once.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE ledger_engine_lease SET owner = NULL, lease_until = :now " +
+            "WHERE id = 1 AND owner = :owner AND epoch = :epoch",
+            nativeQuery = true)
+    int release(@Param("owner") String owner, @Param("epoch") long epoch, @Param("now") LocalDateTime now);
+
+    /**
+     * Creates the lease row if it does not exist yet.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO ledger_engine_lease (id, owner, epoch, lease_until) " +
+            "VALUES (1, NULL, 0, :now) ON CONFLICT (id) DO NOTHING",
+            nativeQuery = true)
+    int createIfMissing(@Param("now") LocalDateTime now);
+}
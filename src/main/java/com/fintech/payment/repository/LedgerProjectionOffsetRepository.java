@@ -0,0 +1,9 @@
+package com.fintech.payment.repository;
+
+import com.fintech.payment.entity.LedgerProjectionOffset;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LedgerProjectionOffsetRepository extends JpaRepository<LedgerProjectionOffset, Integer> {
+}
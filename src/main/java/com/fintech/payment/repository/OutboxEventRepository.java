@@ -0,0 +1,65 @@
+package com.fintech.payment.repository;
+
+import com.fintech.payment.entity.OutboxEvent;
+import com.fintech.payment.enums.OutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Oldest messages of the given shards in the given status, in the order they were written.
+     * Shards holding a message that is waiting out its retry backoff are left out whole, so
+     * nothing behind that message is published before it.
+     */
+    @Query("SELECT o FROM OutboxEvent o WHERE o.status = :status AND o.shard IN (:shards) " +
+            "AND NOT EXISTS (SELECT b.id FROM OutboxEvent b WHERE b.status = :status " +
+            "AND b.shard = o.shard AND b.nextAttemptAt > :now) ORDER BY o.id")
+    List<OutboxEvent> findByStatusAndShards(@Param("status") OutboxStatus status,
+                                            @Param("shards") Collection<Integer> shards,
+                                            @Param("now") LocalDateTime now,
+                                            Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxEvent o SET o.status = :status, o.publishedAt = :publishedAt WHERE o.id IN (:ids)")
+    int markPublished(@Param("ids") Collection<Long> ids,
+                      @Param("status") OutboxStatus status,
+                      @Param("publishedAt") LocalDateTime publishedAt);
+
+    /**
+     * Records a failed send: the attempt count, when the message may be sent again and the
+     * error, moving it to {@code status}, which is PARKED once the relay gives up on it.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxEvent o SET o.status = :status, o.attempts = :attempts, " +
+            "o.nextAttemptAt = :nextAttemptAt, o.lastError = :lastError WHERE o.id = :id")
+    int recordFailure(@Param("id") Long id,
+                      @Param("status") OutboxStatus status,
+                      @Param("attempts") int attempts,
+                      @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                      @Param("lastError") String lastError);
+
+    /**
+     * Deletes up to {@code limit} messages published before the cutoff, in a transaction
+     * of its own.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM outbox_events WHERE id IN (" +
+            "SELECT id FROM outbox_events WHERE status = 'PUBLISHED' AND published_at < :cutoff " +
+            "ORDER BY id LIMIT :limit)",
+            nativeQuery = true)
+    int deletePublishedBatch(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+}
@@ -0,0 +1,54 @@
+package com.fintech.payment.repository;
+
+import com.fintech.payment.entity.OutboxRelayLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxRelayLeaseRepository extends JpaRepository<OutboxRelayLease, Integer> {
+
+    /**
+     * Renews the owner's leases and takes expired ones, up to {@code maxShards} in all.
+     * Leases being renewed or taken by another node at the same moment are skipped.
+     *
+     * @return the shards the owner now holds until {@code leaseUntil}
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "UPDATE outbox_relay_leases SET owner = :owner, lease_until = :leaseUntil " +
+            "WHERE shard IN (SELECT shard FROM outbox_relay_leases " +
+            "WHERE owner = :owner OR lease_until < :now " +
+            "ORDER BY CASE WHEN owner = :owner THEN 0 ELSE 1 END, shard " +
+            "LIMIT :maxShards FOR UPDATE SKIP LOCKED) " +
+            "RETURNING shard",
+            nativeQuery = true)
+    List<Integer> claimShards(@Param("owner") String owner,
+                              @Param("now") LocalDateTime now,
+                              @Param("leaseUntil") LocalDateTime leaseUntil,
+                              @Param("maxShards") int maxShards);
+
+    /**
+     * Gives up the owner's leases, so other nodes can take the shards at once.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxRelayLease l SET l.owner = NULL, l.leaseUntil = :now WHERE l.owner = :owner")
+    int release(@Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    /**
+     * Creates the lease row of a shard if it does not exist yet.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO outbox_relay_leases (shard, owner, lease_until) " +
+            "VALUES (:shard, NULL, :now) ON CONFLICT (shard) DO NOTHING",
+            nativeQuery = true)
+    int createIfMissing(@Param("shard") int shard, @Param("now") LocalDateTime now);
+}
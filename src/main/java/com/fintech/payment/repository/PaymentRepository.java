@@ -26,6 +26,16 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
     Page<Payment> findByWalletIdOrderByCreatedAtDesc(Long walletId, Pageable pageable);
 
+    @Query("SELECT p FROM Payment p WHERE p.wallet.id = :walletId ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findKeysetByWalletId(@Param("walletId") Long walletId, Pageable pageable);
+
+    @Query("SELECT p FROM Payment p WHERE p.wallet.id = :walletId AND p.createdAt <= :createdAt " +
+            "AND (p.createdAt < :createdAt OR p.id < :id) ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findKeysetByWalletIdAfter(@Param("walletId") Long walletId,
+                                            @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
+
     Optional<Payment> findByIdempotencyKey(String idempotencyKey);
 
     @Query("SELECT p FROM Payment p WHERE p.status = :status AND p.createdAt < :cutoffDate")
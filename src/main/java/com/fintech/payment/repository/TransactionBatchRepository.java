@@ -0,0 +1,51 @@
+package com.fintech.payment.repository;
+
+import com.fintech.payment.entity.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Inserts transaction rows through a single JDBC batch. Hibernate cannot batch
+ * inserts for IDENTITY ids, so bulk writers go through here instead of saveAll.
+ * Generated ids are not read back; callers identify rows by transaction ref.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionBatchRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO transactions (transaction_ref, wallet_id, type, status, " +
+            "amount, currency, balance_before, balance_after, description, idempotency_key, " +
+            "counterparty_wallet_id, metadata, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, transactions, transactions.size(), (ps, transaction) -> {
+            ps.setString(1, transaction.getTransactionRef());
+            ps.setLong(2, transaction.getWallet().getId());
+            ps.setString(3, transaction.getType().name());
+            ps.setString(4, transaction.getStatus().name());
+            ps.setBigDecimal(5, transaction.getAmount());
+            ps.setString(6, transaction.getCurrency());
+            ps.setBigDecimal(7, transaction.getBalanceBefore());
+            ps.setBigDecimal(8, transaction.getBalanceAfter());
+            ps.setString(9, transaction.getDescription());
+            ps.setString(10, transaction.getIdempotencyKey());
+            if (transaction.getCounterpartyWalletId() != null) {
+                ps.setLong(11, transaction.getCounterpartyWalletId());
+            } else {
+                ps.setNull(11, Types.BIGINT);
+            }
+            ps.setString(12, transaction.getMetadata());
+            ps.setTimestamp(13, Timestamp.valueOf(transaction.getCreatedAt()));
+        });
+    }
+}
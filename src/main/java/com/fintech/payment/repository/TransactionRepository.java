@@ -7,12 +7,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
@@ -22,8 +29,27 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
 
     Optional<Transaction> findByIdempotencyKey(String idempotencyKey);
 
+    List<Transaction> findByIdempotencyKeyIn(Collection<String> idempotencyKeys);
+
     Page<Transaction> findByWalletIdOrderByCreatedAtDesc(Long walletId, Pageable pageable);
 
+    /**
+     * First slice of a wallet's transactions for keyset pagination. Returns a list, so no count query runs.
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.wallet.id = :walletId ORDER BY t.createdAt DESC, t.id DESC")
+    List<Transaction> findKeysetByWalletId(@Param("walletId") Long walletId, Pageable pageable);
+
+    /**
+     * Slice of a wallet's transactions strictly after the cursor position {@code (createdAt, id)}.
+     * The redundant {@code createdAt <= :createdAt} bound keeps the scan on idx_txn_wallet_created.
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.wallet.id = :walletId AND t.createdAt <= :createdAt " +
+            "AND (t.createdAt < :createdAt OR t.id < :id) ORDER BY t.createdAt DESC, t.id DESC")
+    List<Transaction> findKeysetByWalletIdAfter(@Param("walletId") Long walletId,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") Long id,
+                                                Pageable pageable);
+
     @Query("SELECT t FROM Transaction t WHERE t.wallet.id = :walletId " +
             "AND t.createdAt BETWEEN :startDate AND :endDate ORDER BY t.createdAt DESC")
     List<Transaction> findByWalletIdAndDateRange(
@@ -31,6 +57,21 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate);
 
+    /**
+     * Streams a wallet's transactions within a date range, oldest first, through a server-side
+     * cursor. Must be consumed inside a transaction and closed by the caller.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT t FROM Transaction t WHERE t.wallet.id = :walletId " +
+            "AND t.createdAt BETWEEN :startDate AND :endDate ORDER BY t.createdAt, t.id")
+    Stream<Transaction> streamByWalletIdAndDateRange(
+            @Param("walletId") Long walletId,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate);
+
     @Query("SELECT t FROM Transaction t WHERE t.wallet.id = :walletId " +
             "AND t.type = :type ORDER BY t.createdAt DESC")
     Page<Transaction> findByWalletIdAndType(
@@ -0,0 +1,91 @@
+package com.fintech.payment.repository;
+
+import com.fintech.payment.entity.Transfer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Inserts transfer rows through a single JDBC batch, for the same reason as
+ * {@link TransactionBatchRepository}. Unlike transactions, transfers are returned to
+ * API callers, so the generated ids are read back and set on the given entities.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransferBatchRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO transfers (transfer_ref, from_wallet_id, to_wallet_id, " +
+            "source_account_id, destination_account_id, amount, currency, fee, description, status, " +
+            "source_transaction_ref, destination_transaction_ref, idempotency_key, created_at, completed_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts the transfers and sets the id generated for each of them.
+     */
+    public void insertAll(List<Transfer> transfers) {
+        if (transfers.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, new String[]{"id"})) {
+                for (Transfer transfer : transfers) {
+                    setValues(ps, transfer);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                // Keys come back in batch order
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (Transfer transfer : transfers) {
+                        if (!keys.next()) {
+                            throw new DataRetrievalFailureException("Missing generated id for transfer "
+                                    + transfer.getTransferRef());
+                        }
+                        transfer.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void setValues(PreparedStatement ps, Transfer transfer) throws SQLException {
+        ps.setString(1, transfer.getTransferRef());
+        ps.setLong(2, transfer.getFromWallet().getId());
+        ps.setLong(3, transfer.getToWallet().getId());
+        if (transfer.getSourceAccount() != null) {
+            ps.setLong(4, transfer.getSourceAccount().getId());
+        } else {
+            ps.setNull(4, Types.BIGINT);
+        }
+        if (transfer.getDestinationAccount() != null) {
+            ps.setLong(5, transfer.getDestinationAccount().getId());
+        } else {
+            ps.setNull(5, Types.BIGINT);
+        }
+        ps.setBigDecimal(6, transfer.getAmount());
+        ps.setString(7, transfer.getCurrency());
+        ps.setBigDecimal(8, transfer.getFee());
+        ps.setString(9, transfer.getDescription());
+        ps.setString(10, transfer.getStatus().name());
+        ps.setString(11, transfer.getSourceTransactionRef());
+        ps.setString(12, transfer.getDestinationTransactionRef());
+        ps.setString(13, transfer.getIdempotencyKey());
+        ps.setTimestamp(14, Timestamp.valueOf(transfer.getCreatedAt()));
+        if (transfer.getCompletedAt() != null) {
+            ps.setTimestamp(15, Timestamp.valueOf(transfer.getCompletedAt()));
+        } else {
+            ps.setNull(15, Types.TIMESTAMP);
+        }
+    }
+}
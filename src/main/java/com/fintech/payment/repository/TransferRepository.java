@@ -9,7 +9,11 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Repository
 public interface TransferRepository extends JpaRepository<Transfer, Long> {
@@ -30,8 +34,70 @@ public interface TransferRepository extends JpaRepository<Transfer, Long> {
             @Param("walletId") Long walletId,
             Pageable pageable);
 
+    /**
+     * First keyset slice of an account's transfers, newest first. See
+     * {@link #findKeysetByAccountIdAfter(Long, LocalDateTime, Long, Pageable)}.
+     */
+    default List<Transfer> findKeysetByAccountId(Long accountId, Pageable pageable) {
+        return findAllWithAccountsByIdIn(toIds(findKeysetIdsByAccountId(accountId, pageable.getPageSize())));
+    }
+
+    /**
+     * Keyset slice of an account's transfers older than the given {@code (createdAt, id)} position.
+     * The ids are read with one range scan per side of the transfer, so each side walks its own
+     * {@code (account, createdAt)} index, and the rows are then loaded with their accounts.
+     */
+    default List<Transfer> findKeysetByAccountIdAfter(Long accountId, LocalDateTime createdAt, Long id,
+                                                      Pageable pageable) {
+        return findAllWithAccountsByIdIn(toIds(
+                findKeysetIdsByAccountIdAfter(accountId, createdAt, id, pageable.getPageSize())));
+    }
+
+    @Query(value = "SELECT id FROM (" +
+            "(SELECT id, created_at FROM transfers WHERE source_account_id = :accountId " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT id, created_at FROM transfers WHERE destination_account_id = :accountId " +
+            "AND (source_account_id IS NULL OR source_account_id <> :accountId) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit)" +
+            ") keyset ORDER BY created_at DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<Number> findKeysetIdsByAccountId(@Param("accountId") Long accountId, @Param("limit") int limit);
+
+    @Query(value = "SELECT id FROM (" +
+            "(SELECT id, created_at FROM transfers WHERE source_account_id = :accountId " +
+            "AND created_at <= :createdAt AND (created_at < :createdAt OR id < :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT id, created_at FROM transfers WHERE destination_account_id = :accountId " +
+            "AND (source_account_id IS NULL OR source_account_id <> :accountId) " +
+            "AND created_at <= :createdAt AND (created_at < :createdAt OR id < :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit)" +
+            ") keyset ORDER BY created_at DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<Number> findKeysetIdsByAccountIdAfter(@Param("accountId") Long accountId,
+                                               @Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") Long id,
+                                               @Param("limit") int limit);
+
+    @Query("SELECT t FROM Transfer t JOIN FETCH t.sourceAccount JOIN FETCH t.destinationAccount " +
+            "WHERE t.id IN :ids ORDER BY t.createdAt DESC, t.id DESC")
+    List<Transfer> findWithAccountsByIdIn(@Param("ids") Collection<Long> ids);
+
+    private List<Transfer> findAllWithAccountsByIdIn(List<Long> ids) {
+        return ids.isEmpty() ? List.of() : findWithAccountsByIdIn(ids);
+    }
+
+    private static List<Long> toIds(List<Number> ids) {
+        return ids.stream().map(Number::longValue).collect(Collectors.toList());
+    }
+
     Optional<Transfer> findByIdempotencyKey(String idempotencyKey);
 
+    @Query("SELECT t FROM Transfer t JOIN FETCH t.sourceAccount JOIN FETCH t.destinationAccount " +
+            "WHERE t.idempotencyKey IN :idempotencyKeys")
+    List<Transfer> findByIdempotencyKeyIn(@Param("idempotencyKeys") Collection<String> idempotencyKeys);
+
     @Query("SELECT t FROM Transfer t WHERE t.status = :status")
     Page<Transfer> findByStatus(@Param("status") TransferStatus status, Pageable pageable);
 
@@ -0,0 +1,36 @@
+package com.fintech.payment.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Projection of a wallet row as returned by the conditional balance updates in
+ * {@link WalletRepository}. Column aliases in the RETURNING clause must match the getters.
+ */
+public interface WalletBalanceView {
+
+    Long getWalletId();
+
+    BigDecimal getBalance();
+
+    BigDecimal getFrozenAmount();
+
+    String getCurrency();
+
+    int getShardCount();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+
+    default BigDecimal getAvailableBalance() {
+        return getBalance().subtract(getFrozenAmount());
+    }
+
+    /**
+     * True if the balance above is only the home balance and the shards hold the rest.
+     */
+    default boolean isSharded() {
+        return getShardCount() > 0;
+    }
+}
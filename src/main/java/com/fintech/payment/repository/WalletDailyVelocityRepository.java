@@ -0,0 +1,73 @@
+package com.fintech.payment.repository;
+
+import com.fintech.payment.entity.WalletDailyVelocity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface WalletDailyVelocityRepository extends JpaRepository<WalletDailyVelocity, Long> {
+
+    @Query("SELECT v.outboundAmount FROM WalletDailyVelocity v " +
+            "WHERE v.wallet.id = :walletId AND v.businessDate = :businessDate")
+    Optional<BigDecimal> findOutboundAmount(@Param("walletId") Long walletId,
+                                            @Param("businessDate") LocalDate businessDate);
+
+    /**
+     * Adds outbound transfers to a wallet's daily counter in one statement, only if the
+     * new total stays within the limit. Concurrent callers serialize on the counter row,
+     * so two transfers can never both pass against the same remaining allowance.
+     *
+     * @return the new daily total, or empty if the limit would be exceeded
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "INSERT INTO wallet_daily_velocity " +
+            "(wallet_id, business_date, outbound_amount, outbound_count, updated_at) " +
+            "SELECT :walletId, :businessDate, :amount, :count, :now WHERE :amount <= :limit " +
+            "ON CONFLICT (wallet_id, business_date) DO UPDATE SET " +
+            "outbound_amount = wallet_daily_velocity.outbound_amount + EXCLUDED.outbound_amount, " +
+            "outbound_count = wallet_daily_velocity.outbound_count + EXCLUDED.outbound_count, " +
+            "updated_at = EXCLUDED.updated_at " +
+            "WHERE wallet_daily_velocity.outbound_amount + EXCLUDED.outbound_amount <= :limit " +
+            "RETURNING outbound_amount", nativeQuery = true)
+    Optional<BigDecimal> addOutbound(@Param("walletId") Long walletId,
+                                     @Param("businessDate") LocalDate businessDate,
+                                     @Param("amount") BigDecimal amount,
+                                     @Param("count") long count,
+                                     @Param("limit") BigDecimal limit,
+                                     @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM WalletDailyVelocity v WHERE v.businessDate = :businessDate")
+    int deleteByBusinessDate(@Param("businessDate") LocalDate businessDate);
+
+    /**
+     * Recomputes every wallet's counter for one business day from the completed
+     * TRANSFER_OUT rows in the transactions table.
+     *
+     * @return the number of counter rows written
+     */
+    @Modifying
+    @Query(value = "INSERT INTO wallet_daily_velocity " +
+            "(wallet_id, business_date, outbound_amount, outbound_count, updated_at) " +
+            "SELECT t.wallet_id, :businessDate, SUM(t.amount), COUNT(*), :now FROM transactions t " +
+            "WHERE t.type = 'TRANSFER_OUT' AND t.status = 'COMPLETED' " +
+            "AND t.created_at >= :startOfDay AND t.created_at < :endOfDay " +
+            "GROUP BY t.wallet_id " +
+            "ON CONFLICT (wallet_id, business_date) DO UPDATE SET " +
+            "outbound_amount = EXCLUDED.outbound_amount, outbound_count = EXCLUDED.outbound_count, " +
+            "updated_at = EXCLUDED.updated_at", nativeQuery = true)
+    int rebuildFromTransactions(@Param("businessDate") LocalDate businessDate,
+                                @Param("startOfDay") LocalDateTime startOfDay,
+                                @Param("endOfDay") LocalDateTime endOfDay,
+                                @Param("now") LocalDateTime now);
+}
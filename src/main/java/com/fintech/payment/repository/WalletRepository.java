@@ -6,8 +6,14 @@ import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -26,5 +32,85 @@ public interface WalletRepository extends JpaRepository<Wallet, Long> {
     @Query("SELECT w FROM Wallet w WHERE w.account.id = :accountId")
     Optional<Wallet> findByAccountIdWithPessimisticLock(@Param("accountId") Long accountId);
 
+    /**
+     * Resolves the source and destination account numbers of a transfer and locks
+     * their wallets in a single statement. Rows are locked in wallet id order, so two
+     * opposite transfers between the same wallets cannot deadlock. A sharded destination
+     * is credited through its shards and is deliberately left out of the lock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Wallet w JOIN FETCH w.account a " +
+            "WHERE a.accountNumber = :fromAccountNumber " +
+            "OR (a.accountNumber = :toAccountNumber AND w.shardCount = 0) " +
+            "ORDER BY w.id")
+    List<Wallet> findTransferWalletsForUpdate(@Param("fromAccountNumber") String fromAccountNumber,
+                                              @Param("toAccountNumber") String toAccountNumber);
+
+    /**
+     * Unlocked variant of {@link #findTransferWalletsForUpdate(String, String)}, for the
+     * optimistic concurrency mode and for wallets owned by the ledger engine.
+     */
+    @Query("SELECT w FROM Wallet w JOIN FETCH w.account a " +
+            "WHERE a.accountNumber IN (:fromAccountNumber, :toAccountNumber)")
+    List<Wallet> findTransferWallets(@Param("fromAccountNumber") String fromAccountNumber,
+                                     @Param("toAccountNumber") String toAccountNumber);
+
+    @Query("SELECT w FROM Wallet w JOIN FETCH w.account a WHERE a.accountNumber = :accountNumber")
+    Optional<Wallet> findByAccountNumber(@Param("accountNumber") String accountNumber);
+
+    /**
+     * Bulk counterpart of {@link #findTransferWalletsForUpdate(String, String)}: locks the
+     * source and every unsharded destination wallet in one statement, in wallet id order.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Wallet w JOIN FETCH w.account a " +
+            "WHERE a.accountNumber = :fromAccountNumber " +
+            "OR (a.accountNumber IN :toAccountNumbers AND w.shardCount = 0) " +
+            "ORDER BY w.id")
+    List<Wallet> findBulkTransferWalletsForUpdate(@Param("fromAccountNumber") String fromAccountNumber,
+                                                  @Param("toAccountNumbers") Collection<String> toAccountNumbers);
+
+    @Query("SELECT w FROM Wallet w JOIN FETCH w.account a WHERE a.accountNumber IN :accountNumbers")
+    List<Wallet> findByAccountNumberIn(@Param("accountNumbers") Collection<String> accountNumbers);
+
     boolean existsByAccountId(Long accountId);
+
+    /**
+     * Credits an active wallet in a single statement, without a prior SELECT ... FOR UPDATE.
+     * The row lock is only taken by the UPDATE itself and the new balance comes back through
+     * RETURNING, so callers can still derive balanceBefore/balanceAfter. Sharded wallets are
+     * skipped because their credits go to a shard instead of the wallet row.
+     *
+     * @return the wallet after the credit, or empty if no active, unsharded wallet exists for the account
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "UPDATE wallets SET balance = balance + :amount, " +
+            "version = COALESCE(version, 0) + 1, updated_at = :now " +
+            "WHERE account_id = :accountId AND status = 'ACTIVE' AND shard_count = 0 " +
+            "RETURNING id AS walletId, balance AS balance, frozen_amount AS frozenAmount, " +
+            "currency AS currency, shard_count AS shardCount, " +
+            "created_at AS createdAt, updated_at AS updatedAt",
+            nativeQuery = true)
+    Optional<WalletBalanceView> creditByAccountId(@Param("accountId") Long accountId,
+                                                  @Param("amount") BigDecimal amount,
+                                                  @Param("now") LocalDateTime now);
+
+    /**
+     * Debits an active wallet in a single statement, only if the available balance
+     * (balance minus frozen amount) covers the amount.
+     *
+     * @return the wallet after the debit, or empty if the wallet is missing, inactive or short of funds
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "UPDATE wallets SET balance = balance - :amount, " +
+            "version = COALESCE(version, 0) + 1, updated_at = :now " +
+            "WHERE account_id = :accountId AND status = 'ACTIVE' " +
+            "AND balance - frozen_amount >= :amount " +
+            "RETURNING id AS walletId, balance AS balance, frozen_amount AS frozenAmount, " +
+            "currency AS currency, shard_count AS shardCount, " +
+            "created_at AS createdAt, updated_at AS updatedAt",
+            nativeQuery = true)
+    Optional<WalletBalanceView> debitByAccountId(@Param("accountId") Long accountId,
+                                                 @Param("amount") BigDecimal amount,
+                                                 @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,66 @@
+package com.fintech.payment.repository;
+
+import com.fintech.payment.entity.WalletShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WalletShardRepository extends JpaRepository<WalletShard, Long> {
+
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM WalletShard s WHERE s.wallet.id = :walletId")
+    BigDecimal sumBalanceByWalletId(@Param("walletId") Long walletId);
+
+    /**
+     * Locks every shard of a wallet in shard order. Used when funds have to be
+     * moved between shards, so all writers agree on the same lock order.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM WalletShard s WHERE s.wallet.id = :walletId ORDER BY s.shardIndex")
+    List<WalletShard> findByWalletIdForUpdate(@Param("walletId") Long walletId);
+
+    /**
+     * Credits a single shard in one statement.
+     *
+     * @return the shard balance after the credit, or empty if the shard does not exist
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "UPDATE wallet_shards SET balance = balance + :amount, " +
+            "version = COALESCE(version, 0) + 1, updated_at = :now " +
+            "WHERE wallet_id = :walletId AND shard_index = :shardIndex " +
+            "RETURNING balance", nativeQuery = true)
+    Optional<BigDecimal> creditShard(@Param("walletId") Long walletId,
+                                     @Param("shardIndex") int shardIndex,
+                                     @Param("amount") BigDecimal amount,
+                                     @Param("now") LocalDateTime now);
+
+    /**
+     * Debits a single shard in one statement, only if that shard alone covers the amount.
+     *
+     * @return the shard balance after the debit, or empty if the shard is missing or short of funds
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "UPDATE wallet_shards SET balance = balance - :amount, " +
+            "version = COALESCE(version, 0) + 1, updated_at = :now " +
+            "WHERE wallet_id = :walletId AND shard_index = :shardIndex AND balance >= :amount " +
+            "RETURNING balance", nativeQuery = true)
+    Optional<BigDecimal> debitShard(@Param("walletId") Long walletId,
+                                    @Param("shardIndex") int shardIndex,
+                                    @Param("amount") BigDecimal amount,
+                                    @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM WalletShard s WHERE s.wallet.id = :walletId")
+    int deleteByWalletId(@Param("walletId") Long walletId);
+}
@@ -8,8 +8,11 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -26,11 +29,56 @@ public interface WebhookEventRepository extends JpaRepository<WebhookEvent, Long
             @Param("targetUrl") String targetUrl,
             @Param("status") WebhookStatus status);
 
-    @Query("SELECT w FROM WebhookEvent w WHERE w.status IN (:statuses) " +
-            "AND w.nextRetryAt <= :now AND w.retryCount < w.maxRetries")
-    List<WebhookEvent> findRetryableWebhooks(
-            @Param("statuses") List<WebhookStatus> statuses,
-            @Param("now") LocalDateTime now);
+    /**
+     * Claims up to {@code limit} due webhooks for delivery by this node. Rows another node
+     * is claiming are skipped rather than waited for. Claimed rows are marked RETRYING with
+     * {@code next_retry_at} pushed to {@code leaseUntil}, so no other node picks them up
+     * until the lease runs out; a PENDING row's first delivery does not count as a retry.
+     * The version is bumped so that an outcome from an earlier, expired claim cannot be saved.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "UPDATE webhook_events SET status = 'RETRYING', " +
+            "retry_count = retry_count + CASE WHEN status = 'PENDING' THEN 0 ELSE 1 END, " +
+            "next_retry_at = :leaseUntil, version = version + 1 " +
+            "WHERE id IN (SELECT id FROM webhook_events " +
+            "WHERE status IN ('PENDING', 'FAILED', 'RETRYING') AND next_retry_at <= :now " +
+            "AND retry_count < max_retries " +
+            "ORDER BY next_retry_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+            "RETURNING *",
+            nativeQuery = true)
+    List<WebhookEvent> claimDueWebhooks(@Param("now") LocalDateTime now,
+                                        @Param("leaseUntil") LocalDateTime leaseUntil,
+                                        @Param("limit") int limit);
+
+    /**
+     * Claims the given webhooks if they are still due, the same way as
+     * {@link #claimDueWebhooks}. Ids that are not due any more, or are being claimed by
+     * another node, are left out of the result.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "UPDATE webhook_events SET status = 'RETRYING', " +
+            "retry_count = retry_count + CASE WHEN status = 'PENDING' THEN 0 ELSE 1 END, " +
+            "next_retry_at = :leaseUntil, version = version + 1 " +
+            "WHERE id IN (SELECT id FROM webhook_events " +
+            "WHERE id IN (:ids) AND status IN ('PENDING', 'FAILED', 'RETRYING') " +
+            "AND next_retry_at <= :now AND retry_count < max_retries " +
+            "FOR UPDATE SKIP LOCKED) " +
+            "RETURNING *",
+            nativeQuery = true)
+    List<WebhookEvent> claimWebhooksById(@Param("ids") Collection<Long> ids,
+                                         @Param("now") LocalDateTime now,
+                                         @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Webhooks in the given status with a retry due before the given time, soonest first.
+     */
+    @Query("SELECT w.id AS id, w.nextRetryAt AS nextRetryAt FROM WebhookEvent w " +
+            "WHERE w.status = :status " +
+            "AND w.nextRetryAt < :before AND w.retryCount < w.maxRetries " +
+            "ORDER BY w.nextRetryAt")
+    List<WebhookRetryView> findUpcomingRetries(@Param("status") WebhookStatus status,
+                                               @Param("before") LocalDateTime before,
+                                               Pageable pageable);
 
     Page<WebhookEvent> findByEventType(String eventType, Pageable pageable);
 
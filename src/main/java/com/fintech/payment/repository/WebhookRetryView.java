@@ -0,0 +1,14 @@
+package com.fintech.payment.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Id and retry time of a webhook event, as loaded by
+ * {@link WebhookEventRepository#findUpcomingRetries} to fill the retry wheel.
+ */
+public interface WebhookRetryView {
+
+    Long getId();
+
+    LocalDateTime getNextRetryAt();
+}
@@ -0,0 +1,57 @@
+package com.fintech.payment.service;
+
+import com.fintech.payment.entity.Transaction;
+import com.fintech.payment.repository.WalletBalanceView;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Group-commit stage in front of the wallet deposit path. Deposits to the same
+ * wallet that arrive within a short window are applied with one balance update,
+ * one batched insert of their transaction rows and one commit.
+ */
+public interface DepositCoalescer {
+
+    /**
+     * @return true if deposits should be routed through the coalescer
+     */
+    boolean isEnabled();
+
+    /**
+     * Queues a deposit for the next flush of its wallet.
+     * The future completes after the flush has committed. It completes with null when the
+     * deposit cannot be coalesced (missing, inactive or sharded wallet, or the coalescer is
+     * shutting down), in which case the caller should apply it through the regular path.
+     *
+     * @param accountId      the account ID
+     * @param amount         the deposit amount, already validated
+     * @param description    optional description for the transaction
+     * @param idempotencyKey unique key to prevent duplicate deposits
+     * @return future with this caller's own transaction and balances
+     */
+    CompletableFuture<CoalescedDeposit> submit(Long accountId, BigDecimal amount,
+                                               String description, String idempotencyKey);
+
+    /**
+     * Sets the handler called with the account ID for each deposit a flush writes. It runs
+     * inside the flush transaction, before the commit, so the events it stores commit or
+     * roll back with the batch. Not called for duplicates.
+     */
+    void onApplied(BiConsumer<Long, CoalescedDeposit> handler);
+
+    /**
+     * Result of one deposit within a coalesced batch.
+     */
+    @Value
+    class CoalescedDeposit {
+        /** This caller's transaction; balance before/after reflect its position in the batch. */
+        Transaction transaction;
+        /** Wallet state after the batch, or null if the deposit was a duplicate and nothing was written. */
+        WalletBalanceView wallet;
+        /** True if a transaction already existed for the idempotency key. */
+        boolean duplicate;
+    }
+}
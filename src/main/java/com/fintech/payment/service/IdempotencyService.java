@@ -4,14 +4,15 @@ import java.util.Optional;
 
 /**
  * Service interface for idempotency key management.
- * Uses Redis as primary store with database fallback.
+ * Uses Redis as primary store with database fallback, behind a bounded
+ * in-process cache so retries on the same node never leave the JVM.
  * Ensures that duplicate requests return the same response.
  */
 public interface IdempotencyService {
 
     /**
      * Checks if a response already exists for the given idempotency key.
-     * First checks Redis, then falls back to the database.
+     * First checks the in-process cache, then Redis, then falls back to the database.
      *
      * @param key the idempotency key
      * @return the cached JSON response if key was previously processed, empty otherwise
@@ -20,7 +21,8 @@ public interface IdempotencyService {
 
     /**
      * Saves the result of a processed request for the given idempotency key.
-     * Stores in both Redis (with TTL) and the database for durability.
+     * Stores in both Redis (with TTL) and the database for durability. With write-behind
+     * enabled, the database write joins a later batch once the Redis write has succeeded.
      *
      * @param key        the idempotency key
      * @param response   the JSON response body to cache
@@ -29,10 +31,28 @@ public interface IdempotencyService {
      */
     void saveIdempotencyResult(String key, String response, int statusCode, long ttlMinutes);
 
+    /**
+     * Cheap in-process pre-check for idempotency keys. A false result means the key has
+     * not been seen within the idempotency TTL on any node, so the Redis and database
+     * lookups for it can be skipped. A true result may be a false positive.
+     *
+     * @param key the idempotency key
+     * @return false if the key is definitely new, true if it may have been seen
+     */
+    boolean mightHaveSeen(String key);
+
+    /**
+     * Records that a request with the given idempotency key has been applied, so that
+     * later {@link #mightHaveSeen(String)} calls on any node report it. Called after the
+     * request's rows are written; inside a transaction the key is recorded on commit.
+     *
+     * @param key the idempotency key
+     */
+    void recordKey(String key);
 
     /**
-     * Removes expired idempotency records from the database.
-     * Runs on a daily schedule. Redis keys expire automatically via TTL.
+     * Removes expired idempotency records from the database in bounded batches.
+     * Runs continuously on a short fixed delay. Redis keys expire automatically via TTL.
      */
     void cleanExpiredKeys();
 }
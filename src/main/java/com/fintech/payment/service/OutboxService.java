@@ -0,0 +1,23 @@
+package com.fintech.payment.service;
+
+import com.fintech.payment.event.JsonEvent;
+
+/**
+ * Service interface for publishing Kafka messages through the transactional outbox.
+ */
+public interface OutboxService {
+
+    /**
+     * Stores a message for publishing. Inside a transaction the message is written as part
+     * of it and is published only if it commits; messages with the same key are published
+     * in the order they were written. Never waits for Kafka.
+     *
+     * <p>The event is stored in the binary event format if the topic is listed in
+     * {@code outbox.binary-topics}, otherwise as JSON.
+     *
+     * @param topic the Kafka topic
+     * @param key   the message key, which also decides the partition
+     * @param event the message
+     */
+    void publish(String topic, String key, JsonEvent event);
+}
@@ -2,6 +2,7 @@ package com.fintech.payment.service;
 
 import com.fintech.payment.dto.request.CreatePaymentRequest;
 import com.fintech.payment.dto.request.RefundRequest;
+import com.fintech.payment.dto.response.CursorPage;
 import com.fintech.payment.dto.response.PaymentResponse;
 import org.springframework.data.domain.Page;
 
@@ -65,4 +66,14 @@ public interface PaymentService {
      * @return a page of payment details
      */
     Page<PaymentResponse> getPaymentsByWallet(Long walletId, Pageable pageable);
+
+    /**
+     * Retrieves a wallet's payments, newest first, using keyset pagination.
+     *
+     * @param walletId the wallet ID
+     * @param cursor   the cursor returned with the previous slice, or null for the first slice
+     * @param size     the maximum number of payments to return
+     * @return a slice of payment details with the cursor of the next slice
+     */
+    CursorPage<PaymentResponse> getPaymentsByWallet(Long walletId, String cursor, int size);
 }
@@ -1,12 +1,16 @@
 package com.fintech.payment.service;
 
+import com.fintech.payment.dto.response.CursorPage;
 import com.fintech.payment.dto.response.TransactionResponse;
 import com.fintech.payment.entity.Transaction;
+import com.fintech.payment.enums.ExportFormat;
 import com.fintech.payment.enums.TransactionType;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -36,6 +40,26 @@ public interface TransactionService {
                                   String description, String idempotencyKey,
                                   Long counterpartyWalletId);
 
+    /**
+     * Creates a new transaction record carrying free-form JSON metadata, for example
+     * the shard a sharded wallet's balances refer to.
+     *
+     * @param walletId              the wallet involved
+     * @param type                  the transaction type
+     * @param amount                the transaction amount
+     * @param balanceBefore         balance before the operation
+     * @param balanceAfter          balance after the operation
+     * @param description           optional description
+     * @param idempotencyKey        idempotency key for deduplication
+     * @param counterpartyWalletId  counterparty wallet ID (for transfers)
+     * @param metadata              optional JSON metadata stored with the transaction
+     * @return the created transaction entity
+     */
+    Transaction createTransaction(Long walletId, TransactionType type, BigDecimal amount,
+                                  BigDecimal balanceBefore, BigDecimal balanceAfter,
+                                  String description, String idempotencyKey,
+                                  Long counterpartyWalletId, String metadata);
+
     /**
      * Retrieves a transaction by its reference number.
      *
@@ -54,6 +78,17 @@ public interface TransactionService {
      */
     Page<TransactionResponse> getTransactionsByWallet(Long walletId, Pageable pageable);
 
+    /**
+     * Retrieves a wallet's transactions, newest first, using keyset pagination.
+     * No total count is computed and deep slices cost the same as the first one.
+     *
+     * @param walletId the wallet ID
+     * @param cursor   the cursor returned with the previous slice, or null for the first slice
+     * @param size     the maximum number of transactions to return
+     * @return a slice of transaction details with the cursor of the next slice
+     */
+    CursorPage<TransactionResponse> getTransactionsByWallet(Long walletId, String cursor, int size);
+
     /**
      * Retrieves transaction history for a wallet within a date range.
      *
@@ -63,4 +98,30 @@ public interface TransactionService {
      * @return list of transactions within the date range
      */
     List<TransactionResponse> getTransactionHistory(Long walletId, LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Checks that the wallet exists and the date range is valid. Lets callers reject an
+     * export before the response is committed.
+     *
+     * @param walletId  the wallet ID
+     * @param startDate start of the range (inclusive)
+     * @param endDate   end of the range (inclusive)
+     */
+    void validateHistoryRange(Long walletId, LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Writes a wallet's transactions within a date range to the given stream, oldest first.
+     * Rows are read through a server-side cursor with a fixed fetch size and written as they
+     * arrive, so memory use does not grow with the size of the range.
+     *
+     * @param walletId     the wallet ID
+     * @param startDate    start of the range (inclusive)
+     * @param endDate      end of the range (inclusive)
+     * @param format       NDJSON (one JSON object per line) or CSV with a header row
+     * @param outputStream the stream to write to; flushed but not closed
+     * @return the number of transactions written
+     * @throws IOException if writing to the stream fails
+     */
+    long exportTransactionHistory(Long walletId, LocalDateTime startDate, LocalDateTime endDate,
+                                  ExportFormat format, OutputStream outputStream) throws IOException;
 }
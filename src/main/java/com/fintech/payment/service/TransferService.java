@@ -1,5 +1,8 @@
 package com.fintech.payment.service;
 
+import com.fintech.payment.dto.request.BulkTransferRequest;
+import com.fintech.payment.dto.response.BulkTransferResponse;
+import com.fintech.payment.dto.response.CursorPage;
 import com.fintech.payment.dto.response.TransferResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -34,6 +37,21 @@ public interface TransferService {
                                       BigDecimal amount, String idempotencyKey,
                                       String description);
 
+    /**
+     * Pays out from one source account to many destinations in a single database transaction:
+     * 1. Resolve items whose idempotency key was already processed; they are reported as duplicates
+     * 2. Lock the source and all destination wallets once (ordered by ID to prevent deadlocks)
+     * 3. Reject items with a missing or inactive destination; the others proceed
+     * 4. Check the total of the remaining items against the source's available balance
+     * 5. Debit the source and credit destinations in wallet ID order
+     * 6. Batch-insert all transaction and transfer records
+     *
+     * @param request the source account and the per-item destinations, amounts and idempotency keys
+     * @return the outcome of every item, in request order
+     * @throws com.fintech.payment.exception.InsufficientBalanceException if the source cannot cover the total
+     */
+    BulkTransferResponse initiateBulkTransfer(BulkTransferRequest request);
+
     /**
      * Retrieves a transfer by its reference number.
      *
@@ -52,4 +70,14 @@ public interface TransferService {
      * @return a page of transfer details
      */
     Page<TransferResponse> getTransferHistory(Long accountId, Pageable pageable);
+
+    /**
+     * Retrieves an account's sent and received transfers, newest first, using keyset pagination.
+     *
+     * @param accountId the account ID
+     * @param cursor    the cursor returned with the previous slice, or null for the first slice
+     * @param size      the maximum number of transfers to return
+     * @return a slice of transfer details with the cursor of the next slice
+     */
+    CursorPage<TransferResponse> getTransferHistory(Long accountId, String cursor, int size);
 }
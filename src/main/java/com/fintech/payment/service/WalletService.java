@@ -39,8 +39,11 @@ public interface WalletService {
     BalanceResponse getBalance(Long accountId);
 
     /**
-     * Deposits funds into the wallet. Uses pessimistic locking to ensure
-     * consistency. Creates a DEPOSIT transaction and publishes a Kafka event.
+     * Deposits funds into the wallet with a single conditional UPDATE, so no
+     * SELECT ... FOR UPDATE is issued beforehand. Creates a DEPOSIT transaction
+     * and publishes a Kafka event. When deposit coalescing is enabled and no
+     * transaction is already open, concurrent deposits to the same wallet are
+     * grouped and committed together.
      *
      * @param accountId      the account ID
      * @param amount         the deposit amount (must be positive)
@@ -51,8 +54,9 @@ public interface WalletService {
     WalletResponse deposit(Long accountId, BigDecimal amount, String description, String idempotencyKey);
 
     /**
-     * Withdraws funds from the wallet. Validates sufficient available balance.
-     * Uses pessimistic locking and creates a WITHDRAWAL transaction.
+     * Withdraws funds from the wallet. The available balance check is part of
+     * the conditional UPDATE, so it cannot race with concurrent debits.
+     * Creates a WITHDRAWAL transaction.
      *
      * @param accountId      the account ID
      * @param amount         the withdrawal amount (must be positive)
@@ -63,6 +67,24 @@ public interface WalletService {
      */
     WalletResponse withdraw(Long accountId, BigDecimal amount, String description, String idempotencyKey);
 
+    /**
+     * Turns on sharded sub-balances for a hot wallet. Credits are then spread
+     * across the shards instead of all locking the wallet row.
+     *
+     * @param accountId  the account ID
+     * @param shardCount the number of shards
+     * @return the wallet details with the summed balance
+     */
+    WalletResponse enableSharding(Long accountId, int shardCount);
+
+    /**
+     * Consolidates all shard balances back onto the wallet row and removes the shards.
+     *
+     * @param accountId the account ID
+     * @return the wallet details
+     */
+    WalletResponse disableSharding(Long accountId);
+
     /**
      * Freezes (holds) an amount in the wallet for a pending payment.
      * The frozen amount reduces available balance but not total balance.
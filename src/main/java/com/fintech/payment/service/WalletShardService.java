@@ -0,0 +1,99 @@
+package com.fintech.payment.service;
+
+import com.fintech.payment.entity.Wallet;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * Service interface for sharded wallets. A sharded wallet keeps its balance on the
+ * wallet row (the home balance) plus N sub-balance shards. Credits are spread across
+ * shards so that hot wallets, such as large merchants, do not serialize every
+ * incoming payment on one row lock. Frozen amounts always stay on the home balance.
+ */
+public interface WalletShardService {
+
+    /**
+     * Turns on sharding for a wallet by creating shard rows with zero balance.
+     * Existing funds stay on the home balance. Calling it again with a larger
+     * count adds the missing shards; shrinking requires {@link #disableSharding(Long)}.
+     *
+     * @param walletId   the wallet ID
+     * @param shardCount the number of shards to spread credits over
+     * @return the updated wallet
+     */
+    Wallet enableSharding(Long walletId, int shardCount);
+
+    /**
+     * Moves all shard balances back to the home balance and removes the shard rows.
+     *
+     * @param walletId the wallet ID
+     * @return the updated wallet
+     */
+    Wallet disableSharding(Long walletId);
+
+    /**
+     * Credits one shard of a sharded wallet. The shard is picked by hashing the
+     * routing key, or at random when no key is given, and only that shard row is locked.
+     *
+     * @param wallet     the sharded wallet
+     * @param amount     the amount to credit
+     * @param routingKey key used to pick the shard, typically the idempotency key
+     * @return the shard that was credited with its balance before and after
+     */
+    ShardMovement credit(Wallet wallet, BigDecimal amount, String routingKey);
+
+    /**
+     * Debits a sharded wallet from a single shard, trying each shard in turn
+     * starting at a random one.
+     *
+     * @param wallet the sharded wallet
+     * @param amount the amount to debit
+     * @return the shard that was debited, or null if no single shard covers the amount
+     */
+    ShardMovement debit(Wallet wallet, BigDecimal amount);
+
+    /**
+     * Moves every shard balance onto the home balance of a wallet the caller has
+     * already locked, so a debit larger than any single shard can borrow across them.
+     * The caller is responsible for saving the wallet.
+     *
+     * @param lockedWallet the wallet, locked with PESSIMISTIC_WRITE in the current transaction
+     * @return the amount moved onto the home balance
+     */
+    BigDecimal consolidate(Wallet lockedWallet);
+
+    /**
+     * Returns the sum of all shard balances of a wallet, zero if it is not sharded.
+     *
+     * @param wallet the wallet
+     * @return the total held in shards
+     */
+    BigDecimal getShardBalance(Wallet wallet);
+
+    /**
+     * Returns the sum of all shard balances of a wallet known only by its ID, such as
+     * one returned as a {@code WalletBalanceView} by a conditional balance update.
+     *
+     * @param walletId the wallet ID
+     * @return the total held in shards, zero if there are none
+     */
+    BigDecimal getShardBalance(Long walletId);
+
+    /**
+     * Balance change applied to a single shard.
+     */
+    @Value
+    class ShardMovement {
+        int shardIndex;
+        BigDecimal balanceBefore;
+        BigDecimal balanceAfter;
+
+        /**
+         * Transaction metadata recording which shard the balances refer to.
+         */
+        public String toMetadata() {
+            return "{\"shardIndex\":" + shardIndex + "}";
+        }
+    }
+}
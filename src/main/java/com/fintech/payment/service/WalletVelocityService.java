@@ -0,0 +1,40 @@
+package com.fintech.payment.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Service interface for per-wallet daily transfer velocity. Each wallet has one
+ * counter row per business day holding the total of its outbound transfers, which
+ * is what the daily transfer limit is enforced against.
+ */
+public interface WalletVelocityService {
+
+    /**
+     * Adds an outbound transfer to today's counter of the wallet, rejecting it if the
+     * daily limit would be exceeded. Must run inside the transaction that moves the
+     * money, so a rolled-back transfer also rolls back its counter update.
+     *
+     * @param walletId the source wallet ID
+     * @param amount   the total amount leaving the wallet
+     * @param count    the number of transfers the amount is made of
+     * @throws com.fintech.payment.exception.InvalidTransferException if the daily limit would be exceeded
+     */
+    void recordOutbound(Long walletId, BigDecimal amount, int count);
+
+    /**
+     * Returns the total of today's outbound transfers of a wallet.
+     *
+     * @param walletId the wallet ID
+     * @return today's total, zero if the wallet has not transferred anything today
+     */
+    BigDecimal getOutboundToday(Long walletId);
+
+    /**
+     * Recomputes all counters of a business day from the transaction log.
+     *
+     * @param businessDate the day to rebuild
+     * @return the number of wallets with outbound transfers on that day
+     */
+    int rebuild(LocalDate businessDate);
+}
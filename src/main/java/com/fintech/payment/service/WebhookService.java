@@ -9,7 +9,8 @@ public interface WebhookService {
     /**
      * Sends a webhook event to the specified target URL.
      * Creates an HMAC-SHA256 signature of the payload and includes it in the
-     * X-Webhook-Signature header. Stores the event for retry on failure.
+     * X-Webhook-Signature header. The event is stored in the caller's transaction and
+     * delivered asynchronously once that transaction commits; failures are retried.
      *
      * @param eventType the type of event (e.g., "payment.completed", "transfer.completed")
      * @param payload   the JSON payload to deliver
@@ -18,8 +19,11 @@ public interface WebhookService {
     void sendWebhook(String eventType, String payload, String targetUrl);
 
     /**
-     * Processes pending webhook retries. Runs on a schedule (every 60 seconds).
-     * Finds FAILED or RETRYING webhooks where nextRetryAt is in the past.
+     * Processes pending webhook retries. Runs on a schedule (every 5 minutes) on every node,
+     * as the backstop for the in-memory retry wheel that fires most retries on time.
+     * Claims PENDING, FAILED or RETRYING webhooks where nextRetryAt is in the past in
+     * bounded batches, skipping those another node is claiming, and hands them to the
+     * dispatcher.
      * Applies exponential backoff: 1min, 5min, 15min, 60min, 240min.
      * Marks as EXHAUSTED after max retries are exceeded.
      */
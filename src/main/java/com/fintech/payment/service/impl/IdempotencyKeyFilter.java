@@ -0,0 +1,305 @@
+package com.fintech.payment.service.impl;
+
+import com.fintech.payment.util.RotatingBloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-local record of the idempotency keys seen within the idempotency TTL, used to
+ * answer "definitely new" without a Redis or database round trip. Keys recorded on
+ * this node are published to the other nodes over Redis pub/sub in small batches.
+ *
+ * <p>Until the startup rebuild from the database has finished, every key is reported
+ * as possibly seen, so callers fall back to the full lookup.</p>
+ *
+ * <p>Pub/sub delivers at most once, so a message lost to a failed publish or a
+ * reconnecting subscriber would leave keys missing here for the rest of the window.
+ * Each message carries its sender's id and sequence number, and every node sends at
+ * least one per heartbeat interval, which it also receives itself. A sequence gap from
+ * a peer, or hearing nothing at all for the silence limit, puts the filter back into
+ * the not-ready state until a rebuild started after it has finished.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyKeyFilter implements MessageListener {
+
+    static final String CHANNEL = "idempotency:seen-keys";
+
+    private static final int FETCH_SIZE = 5000;
+    private static final int MAX_KEYS_PER_MESSAGE = 1000;
+    private static final String KEY_SEPARATOR = "\n";
+    private static final String HEADER_SEPARATOR = " ";
+
+    private static final String[] REBUILD_QUERIES = {
+            "SELECT key_value, created_at FROM idempotency_keys WHERE expires_at > ?",
+            "SELECT idempotency_key, created_at FROM transfers WHERE idempotency_key IS NOT NULL AND created_at > ?",
+            "SELECT idempotency_key, created_at FROM payments WHERE idempotency_key IS NOT NULL AND created_at > ?",
+            "SELECT idempotency_key, created_at FROM transactions WHERE idempotency_key IS NOT NULL AND created_at > ?"
+    };
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${idempotency.bloom.enabled:true}")
+    private boolean enabled;
+
+    @Value("${idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${idempotency.bloom.bucket-minutes:60}")
+    private long bucketMinutes;
+
+    @Value("${idempotency.bloom.expected-keys-per-bucket:200000}")
+    private int expectedKeysPerBucket;
+
+    @Value("${idempotency.bloom.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    @Value("${idempotency.bloom.heartbeat-interval-ms:1000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${idempotency.bloom.peer-silence-ms:5000}")
+    private long peerSilenceMs;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong publishedSequence = new AtomicLong();
+    private final Map<String, Long> peerSequences = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> unpublished = new ConcurrentLinkedQueue<>();
+    private final LongAdder rebuiltKeys = new LongAdder();
+    private final Object rebuildLock = new Object();
+
+    private RotatingBloomFilter filter;
+    private volatile boolean ready;
+    /** Guarded by rebuildLock. */
+    private boolean rebuildPending;
+    private boolean rebuilding;
+    private volatile long lastHeardNanos = System.nanoTime();
+    private volatile long lastPublishedNanos;
+    private Counter absentCounter;
+    private Counter possiblySeenCounter;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Idempotency key filter disabled");
+            return;
+        }
+        filter = new RotatingBloomFilter(Duration.ofMinutes(ttlMinutes).toMillis(),
+                Duration.ofMinutes(bucketMinutes).toMillis(), expectedKeysPerBucket, falsePositiveRate);
+        absentCounter = meterRegistry.counter("idempotency.bloom.checks", "result", "absent");
+        possiblySeenCounter = meterRegistry.counter("idempotency.bloom.checks", "result", "possibly-seen");
+
+        // Subscribe before the rebuild so keys recorded elsewhere meanwhile are not missed
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        invalidate();
+        startRebuild();
+    }
+
+    /**
+     * Returns false only if the key has definitely not been seen within the TTL window.
+     */
+    public boolean mightContain(String key) {
+        if (!enabled || !ready) {
+            return true;
+        }
+        if (filter.mightContain(key)) {
+            possiblySeenCounter.increment();
+            return true;
+        }
+        absentCounter.increment();
+        return false;
+    }
+
+    /**
+     * Records a key on this node and queues it for the other nodes.
+     */
+    public void record(String key) {
+        if (!enabled) {
+            return;
+        }
+        filter.put(key);
+        unpublished.add(key);
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.bloom.publish-interval-ms:20}")
+    public void publishRecordedKeys() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (ready && now - lastHeardNanos > TimeUnit.MILLISECONDS.toNanos(peerSilenceMs)) {
+            // Not even this node's own heartbeats arrive, so peers' keys are being missed too
+            log.warn("No idempotency keys heard for over {}ms, bypassing the filter until it is rebuilt",
+                    peerSilenceMs);
+            invalidate();
+        }
+        if (unpublished.isEmpty()
+                && now - lastPublishedNanos >= TimeUnit.MILLISECONDS.toNanos(heartbeatIntervalMs)) {
+            publish("", 0);
+            return;
+        }
+
+        StringBuilder batch = new StringBuilder();
+        int count = 0;
+        String key;
+        while ((key = unpublished.poll()) != null) {
+            if (count > 0) {
+                batch.append(KEY_SEPARATOR);
+            }
+            batch.append(key);
+            if (++count == MAX_KEYS_PER_MESSAGE) {
+                publish(batch.toString(), count);
+                batch.setLength(0);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            publish(batch.toString(), count);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] lines = new String(message.getBody(), StandardCharsets.UTF_8).split(KEY_SEPARATOR);
+        for (int i = 1; i < lines.length; i++) {
+            if (!lines[i].isEmpty()) {
+                filter.put(lines[i]);
+            }
+        }
+        lastHeardNanos = System.nanoTime();
+
+        String[] header = lines[0].split(HEADER_SEPARATOR);
+        if (header.length != 2) {
+            // Its first line may have been a key, so treat it like a lost message
+            log.warn("Idempotency key message without a sender header; rebuilding the filter");
+            invalidate();
+        } else if (!nodeId.equals(header[0])) {
+            checkSequence(header[0], Long.parseLong(header[1]));
+        }
+        if (!ready) {
+            startRebuild();
+        }
+    }
+
+    private void checkSequence(String sender, long sequence) {
+        Long previous = peerSequences.put(sender, sequence);
+        if (previous != null && sequence != previous + 1) {
+            log.warn("Missed idempotency key messages from node {}: expected {}, got {}; rebuilding the filter",
+                    sender, previous + 1, sequence);
+            invalidate();
+        }
+    }
+
+    private void publish(String keys, int count) {
+        // Taken even if the send fails, so receivers see the gap on the next message
+        String header = nodeId + HEADER_SEPARATOR + publishedSequence.incrementAndGet();
+        lastPublishedNanos = System.nanoTime();
+        try {
+            redisTemplate.convertAndSend(CHANNEL, header + KEY_SEPARATOR + keys);
+        } catch (Exception e) {
+            log.warn("Failed to publish {} idempotency keys to other nodes: {}", count, e.getMessage());
+        }
+    }
+
+    /**
+     * Bypasses the filter until a rebuild that starts after this call has finished.
+     */
+    private void invalidate() {
+        synchronized (rebuildLock) {
+            ready = false;
+            rebuildPending = true;
+        }
+    }
+
+    private void startRebuild() {
+        synchronized (rebuildLock) {
+            if (!rebuildPending || rebuilding) {
+                return;
+            }
+            rebuilding = true;
+        }
+        Thread rebuild = new Thread(this::rebuildWhilePending, "idempotency-filter-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+
+    /**
+     * Rebuilds until no further invalidation arrived meanwhile, then marks the filter
+     * ready. A failed rebuild leaves it bypassed until the next invalidation.
+     */
+    private void rebuildWhilePending() {
+        while (true) {
+            synchronized (rebuildLock) {
+                rebuildPending = false;
+            }
+            boolean rebuilt = rebuild();
+            synchronized (rebuildLock) {
+                if (!rebuilt || !rebuildPending) {
+                    ready = rebuilt;
+                    rebuilding = false;
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean rebuild() {
+        long start = System.currentTimeMillis();
+        rebuiltKeys.reset();
+        Timestamp windowStart = Timestamp.valueOf(LocalDateTime.now().minusMinutes(ttlMinutes));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (String sql : REBUILD_QUERIES) {
+                    jdbcTemplate.query(connection -> {
+                        PreparedStatement statement = connection.prepareStatement(sql);
+                        statement.setFetchSize(FETCH_SIZE);
+                        statement.setTimestamp(1, windowStart);
+                        return statement;
+                    }, rs -> {
+                        Timestamp createdAt = rs.getTimestamp(2);
+                        filter.put(rs.getString(1), createdAt != null ? createdAt.getTime() : start);
+                        rebuiltKeys.increment();
+                    });
+                }
+            });
+            log.info("Idempotency key filter rebuilt: keys={}, bits={}, hashes={}, tookMs={}",
+                    rebuiltKeys.sum(), filter.getBitCount(), filter.getHashCount(),
+                    System.currentTimeMillis() - start);
+            return true;
+        } catch (Exception e) {
+            // Stay not-ready: every lookup keeps going to Redis and the database
+            log.error("Idempotency key filter rebuild failed, filter stays bypassed: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.fintech.payment.service.impl;
+
+import com.fintech.payment.entity.IdempotencyKey;
+import com.fintech.payment.repository.IdempotencyKeyBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind persistence of idempotency records. Records already stored in Redis are
+ * queued here and written to {@code idempotency_keys} in multi-row batches, once the
+ * batch is full or the flush interval has passed since its first record. The queue is
+ * drained on shutdown, and records offered once shutdown has begun are refused. Until
+ * a record is flushed, Redis is its only copy; the backlog gauge
+ * {@code idempotency.write-behind.backlog} shows how many records are in that state.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyRecordWriter implements Runnable {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final IdempotencyKeyBatchRepository batchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${idempotency.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${idempotency.write-behind.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${idempotency.write-behind.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${idempotency.write-behind.queue-capacity:100000}")
+    private int queueCapacity;
+
+    @Value("${idempotency.write-behind.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    private BlockingQueue<IdempotencyKey> queue;
+    private Counter flushedCounter;
+    private Counter droppedCounter;
+    private volatile boolean running;
+    private Thread thread;
+
+    /** Held shared by enqueue and exclusively by stop, so no record is queued after the drain. */
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        Gauge.builder("idempotency.write-behind.backlog", queue, BlockingQueue::size)
+                .register(meterRegistry);
+        flushedCounter = meterRegistry.counter("idempotency.write-behind.flushed");
+        droppedCounter = meterRegistry.counter("idempotency.write-behind.dropped");
+
+        running = true;
+        thread = new Thread(this, "idempotency-write-behind");
+        thread.start();
+        log.info("Idempotency write-behind enabled: maxBatchSize={}, flushIntervalMs={}, queueCapacity={}",
+                maxBatchSize, flushIntervalMs, queueCapacity);
+    }
+
+    /**
+     * Stops accepting records and returns once everything queued so far has been written.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stateLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        if (thread != null) {
+            thread.join();
+            log.info("Idempotency write-behind stopped");
+        }
+    }
+
+    /**
+     * Queues a record for the next batch.
+     *
+     * @return false if write-behind is off, stopping or full, in which case the caller
+     *         must write the record itself
+     */
+    public boolean enqueue(IdempotencyKey record) {
+        stateLock.readLock().lock();
+        try {
+            return running && queue.offer(record);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<IdempotencyKey> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                IdempotencyKey first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < maxBatchSize && running) {
+                    long remaining = deadline - System.nanoTime();
+                    IdempotencyKey next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                // On shutdown nothing is waited for, just whatever is already queued
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Idempotency write-behind interrupted with {} records unwritten", queue.size() + batch.size());
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<IdempotencyKey> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> batchRepository.insertAll(batch));
+                flushedCounter.increment(batch.size());
+                log.debug("Flushed {} idempotency records", batch.size());
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    // The records stay in Redis until their TTL, so replays keep working meanwhile
+                    droppedCounter.increment(batch.size());
+                    log.error("Dropping {} idempotency records after {} failed flushes: {}",
+                            batch.size(), attempt, e.getMessage(), e);
+                    return;
+                }
+                log.warn("Idempotency record flush failed, retrying in {}ms: {}", retryBackoffMs, e.getMessage());
+                Thread.sleep(retryBackoffMs);
+            }
+        }
+    }
+}
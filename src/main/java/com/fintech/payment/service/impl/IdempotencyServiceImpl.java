@@ -3,16 +3,26 @@ package com.fintech.payment.service.impl;
 import com.fintech.payment.entity.IdempotencyKey;
 import com.fintech.payment.repository.IdempotencyKeyRepository;
 import com.fintech.payment.service.IdempotencyService;
+import com.fintech.payment.util.ExpiringLruCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
@@ -24,6 +34,50 @@ public class IdempotencyServiceImpl implements IdempotencyService {
 
     private final StringRedisTemplate redisTemplate;
     private final IdempotencyKeyRepository idempotencyRecordRepository;
+    private final MeterRegistry meterRegistry;
+    private final IdempotencyKeyFilter keyFilter;
+    private final IdempotencyRecordWriter recordWriter;
+
+    @Value("${idempotency.local-cache.enabled:true}")
+    private boolean localCacheEnabled;
+
+    @Value("${idempotency.local-cache.max-size:10000}")
+    private int localCacheMaxSize;
+
+    @Value("${idempotency.local-cache.max-ttl:5m}")
+    private Duration localMaxTtl;
+
+    @Value("${idempotency.cleanup.batch-size:5000}")
+    private int cleanupBatchSize;
+
+    @Value("${idempotency.cleanup.max-batches-per-run:200}")
+    private int cleanupMaxBatchesPerRun;
+
+    @Value("${idempotency.cleanup.pause-ms:50}")
+    private long cleanupPauseMs;
+
+    /** Near-cache in front of Redis; null when disabled. */
+    private ExpiringLruCache<String, String> localCache;
+
+    @PostConstruct
+    public void initLocalCache() {
+        if (!localCacheEnabled) {
+            return;
+        }
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(localCacheMaxSize);
+        FunctionCounter.builder("idempotency.local-cache.requests", cache, ExpiringLruCache::hitCount)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("idempotency.local-cache.requests", cache, ExpiringLruCache::missCount)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("idempotency.local-cache.evictions", cache, ExpiringLruCache::evictionCount)
+                .register(meterRegistry);
+        Gauge.builder("idempotency.local-cache.size", cache, ExpiringLruCache::size)
+                .register(meterRegistry);
+        localCache = cache;
+        log.info("Idempotency local cache enabled: maxSize={}, maxTtl={}", localCacheMaxSize, localMaxTtl);
+    }
 
     @Override
     public Optional<String> checkIdempotency(String key) {
@@ -31,12 +85,27 @@ public class IdempotencyServiceImpl implements IdempotencyService {
             return Optional.empty();
         }
 
-        // Step 1: Check Redis first for fast lookup
+        // Step 1: Check the in-process cache; client retries usually land on the same node
+        if (localCache != null) {
+            Optional<String> localResponse = localCache.get(key);
+            if (localResponse.isPresent()) {
+                log.debug("Idempotency hit in local cache: key={}", key);
+                return localResponse;
+            }
+        }
+
+        // A key the filter has never seen cannot be in Redis or the database either
+        if (!keyFilter.mightContain(key)) {
+            return Optional.empty();
+        }
+
+        // Step 2: Check Redis for fast lookup
         try {
             String redisKey = REDIS_KEY_PREFIX + key;
             String cachedResponse = redisTemplate.opsForValue().get(redisKey);
             if (cachedResponse != null) {
                 log.debug("Idempotency hit in Redis: key={}", key);
+                cacheLocallyFromRedis(key, redisKey, cachedResponse);
                 return Optional.of(cachedResponse);
             }
         } catch (Exception e) {
@@ -44,7 +113,7 @@ public class IdempotencyServiceImpl implements IdempotencyService {
             // Fall through to DB lookup
         }
 
-        // Step 2: Fallback to database
+        // Step 3: Fallback to database
         Optional<IdempotencyKey> dbRecord = idempotencyRecordRepository.findByKeyValue(key);
         if (dbRecord.isPresent()) {
             IdempotencyKey record = dbRecord.get();
@@ -55,6 +124,7 @@ public class IdempotencyServiceImpl implements IdempotencyService {
 
                 // Re-populate Redis cache for future lookups
                 repopulateRedisCache(key, record.getResponseBody(), record.getExpiresAt());
+                cacheLocally(key, record.getResponseBody(), toEpochMillis(record.getExpiresAt()));
 
                 return Optional.of(record.getResponseBody());
             } else {
@@ -77,27 +147,45 @@ public class IdempotencyServiceImpl implements IdempotencyService {
         long effectiveTtl = ttlMinutes > 0 ? ttlMinutes : DEFAULT_TTL_MINUTES;
         LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(effectiveTtl);
 
+        keyFilter.record(key);
+
         // Save to Redis with TTL
+        boolean savedToRedis = false;
         try {
             String redisKey = REDIS_KEY_PREFIX + key;
             redisTemplate.opsForValue().set(redisKey, response, Duration.ofMinutes(effectiveTtl));
+            savedToRedis = true;
             log.debug("Idempotency result saved to Redis: key={}, ttl={}min", key, effectiveTtl);
         } catch (Exception e) {
             log.warn("Failed to save idempotency result to Redis: key={}, error={}", key, e.getMessage());
             // Continue to save to DB even if Redis fails
         }
 
+        // Write through only once a shared copy exists, replacing anything this node cached for the key before
+        if (savedToRedis) {
+            cacheLocally(key, response, toEpochMillis(expiresAt));
+        }
+
         // Save to database for durability
         IdempotencyKey record = IdempotencyKey.builder()
                 .keyValue(key)
                 .responseBody(response)
                 .statusCode(statusCode)
                 .expiresAt(expiresAt)
+                .createdAt(LocalDateTime.now())
                 .build();
 
+        // With write-behind on, a record Redis already holds is written to the DB in a later batch
+        if (savedToRedis && recordWriter.enqueue(record)) {
+            return;
+        }
+
         try {
             idempotencyRecordRepository.save(record);
             log.debug("Idempotency result saved to DB: key={}, expiresAt={}", key, expiresAt);
+            if (!savedToRedis) {
+                cacheLocallyAfterCommit(key, response, toEpochMillis(expiresAt));
+            }
         } catch (Exception e) {
             // Handle unique constraint violation (concurrent save)
             log.warn("Failed to save idempotency record to DB (possible duplicate): key={}, error={}",
@@ -106,17 +194,114 @@ public class IdempotencyServiceImpl implements IdempotencyService {
     }
 
     @Override
-    @Scheduled(cron = "${idempotency.cleanup.cron:0 0 3 * * ?}")  // Daily at 3 AM
-    @Transactional
+    public boolean mightHaveSeen(String key) {
+        return key == null || key.isBlank() || keyFilter.mightContain(key);
+    }
+
+    @Override
+    public void recordKey(String key) {
+        if (key == null || key.isBlank()) {
+            return;
+        }
+        // A key whose rows roll back must not be reported as seen on any node
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    keyFilter.record(key);
+                }
+            });
+        } else {
+            keyFilter.record(key);
+        }
+    }
+
+    /**
+     * Deletes expired records a bounded batch at a time, each batch in its own transaction,
+     * pausing between batches so vacuum and replicas keep up. A run stops when a batch
+     * comes back short or after max-batches-per-run; the next run picks up from there.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${idempotency.cleanup.interval-ms:60000}")
     public void cleanExpiredKeys() {
-        log.info("Starting idempotency records cleanup");
+        if (localCache != null) {
+            int purged = localCache.purgeExpired();
+            log.debug("Purged {} expired idempotency entries from local cache", purged);
+        }
 
+        LocalDateTime cutoff = LocalDateTime.now();
+        int totalDeleted = 0;
         try {
-            int deletedCount = idempotencyRecordRepository.deleteByExpiresAtBefore(LocalDateTime.now());
-            log.info("Cleaned up {} expired idempotency records", deletedCount);
+            for (int batch = 0; batch < cleanupMaxBatchesPerRun; batch++) {
+                long start = System.nanoTime();
+                int deleted = idempotencyRecordRepository.deleteExpiredBatch(cutoff, cleanupBatchSize);
+                meterRegistry.timer("idempotency.cleanup.batch").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                meterRegistry.counter("idempotency.cleanup.deleted").increment(deleted);
+                totalDeleted += deleted;
+                if (deleted < cleanupBatchSize) {
+                    break;
+                }
+                Thread.sleep(cleanupPauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             log.error("Error during idempotency cleanup: {}", e.getMessage(), e);
         }
+
+        if (totalDeleted > 0) {
+            log.info("Cleaned up {} expired idempotency records", totalDeleted);
+        }
+    }
+
+    /**
+     * Caches a Redis hit locally for as long as the Redis key lives, capped at the local
+     * max TTL. Only runs on a local miss, so the extra TTL lookup is paid once per node.
+     */
+    private void cacheLocallyFromRedis(String key, String redisKey, String response) {
+        if (localCache == null) {
+            return;
+        }
+        try {
+            Long remainingMillis = redisTemplate.getExpire(redisKey, TimeUnit.MILLISECONDS);
+            if (remainingMillis != null && remainingMillis > 0) {
+                cacheLocally(key, response, System.currentTimeMillis() + remainingMillis);
+            }
+        } catch (Exception e) {
+            log.debug("Failed to read Redis TTL for idempotency key {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Caches a result that only the database holds once the record is committed, so a
+     * rolled-back save is never replayed from this node.
+     */
+    private void cacheLocallyAfterCommit(String key, String response, long expiresAtMillis) {
+        if (localCache == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cacheLocally(key, response, expiresAtMillis);
+                }
+            });
+        } else {
+            cacheLocally(key, response, expiresAtMillis);
+        }
+    }
+
+    private void cacheLocally(String key, String response, long expiresAtMillis) {
+        if (localCache == null) {
+            return;
+        }
+        long cappedExpiry = Math.min(expiresAtMillis, System.currentTimeMillis() + localMaxTtl.toMillis());
+        localCache.put(key, response, cappedExpiry);
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
     /**
@@ -3,16 +3,16 @@ package com.fintech.payment.service.impl;
 import com.fintech.payment.entity.Payment;
 import com.fintech.payment.entity.Transaction;
 import com.fintech.payment.entity.Transfer;
+import com.fintech.payment.event.NotificationEvent;
 import com.fintech.payment.service.NotificationService;
+import com.fintech.payment.service.OutboxService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.text.NumberFormat;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Currency;
 import java.util.Locale;
 
@@ -22,162 +22,89 @@ import java.util.Locale;
 public class NotificationServiceImpl implements NotificationService {
 
     private static final String NOTIFICATION_TOPIC = "notification-events";
-    private static final DateTimeFormatter TIMESTAMP_FORMATTER =
-            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    /** NumberFormat is not thread-safe and costly to create, so each thread keeps one. */
+    private static final ThreadLocal<NumberFormat> CURRENCY_FORMAT =
+            ThreadLocal.withInitial(() -> NumberFormat.getCurrencyInstance(Locale.US));
+
+    private final OutboxService outboxService;
 
     @Override
     public void sendTransactionNotification(Transaction transaction) {
-        try {
-            String formattedAmount = formatAmount(
-                    transaction.getAmount(), transaction.getCurrency());
-
-            String event = String.format(
-                    "{\"notificationType\":\"TRANSACTION\"," +
-                            "\"referenceNumber\":\"%s\"," +
-                            "\"transactionType\":\"%s\"," +
-                            "\"status\":\"%s\"," +
-                            "\"walletId\":%d," +
-                            "\"amount\":\"%s\"," +
-                            "\"formattedAmount\":\"%s\"," +
-                            "\"currency\":\"%s\"," +
-                            "\"balanceBefore\":\"%s\"," +
-                            "\"balanceAfter\":\"%s\"," +
-                            "\"description\":\"%s\"," +
-                            "\"timestamp\":\"%s\"}",
-                    transaction.getReferenceNumber(),
-                    transaction.getType(),
-                    transaction.getStatus(),
-                    transaction.getWallet().getId(),
-                    transaction.getAmount().toPlainString(),
-                    formattedAmount,
-                    transaction.getCurrency(),
-                    transaction.getBalanceBefore().toPlainString(),
-                    transaction.getBalanceAfter().toPlainString(),
-                    escapeJson(transaction.getDescription()),
-                    LocalDateTime.now().format(TIMESTAMP_FORMATTER)
-            );
-
-            kafkaTemplate.send(NOTIFICATION_TOPIC, transaction.getReferenceNumber(), event);
-            log.debug("Transaction notification sent: ref={}, type={}",
-                    transaction.getReferenceNumber(), transaction.getType());
-
-        } catch (Exception e) {
-            log.error("Failed to send transaction notification: ref={}, error={}",
-                    transaction.getReferenceNumber(), e.getMessage(), e);
-        }
+        NotificationEvent event = NotificationEvent.builder()
+                .notificationType("TRANSACTION")
+                .referenceNumber(transaction.getReferenceNumber())
+                .transactionType(transaction.getType().name())
+                .status(transaction.getStatus().name())
+                .walletId(transaction.getWallet().getId())
+                .amount(transaction.getAmount())
+                .formattedAmount(formatAmount(transaction.getAmount(), transaction.getCurrency()))
+                .currency(transaction.getCurrency())
+                .balanceBefore(transaction.getBalanceBefore())
+                .balanceAfter(transaction.getBalanceAfter())
+                .description(transaction.getDescription())
+                .build();
+
+        outboxService.publish(NOTIFICATION_TOPIC, transaction.getReferenceNumber(), event);
+        log.debug("Transaction notification sent: ref={}, type={}",
+                transaction.getReferenceNumber(), transaction.getType());
     }
 
     @Override
     public void sendTransferNotification(Transfer transfer) {
-        try {
-            String formattedAmount = formatAmount(
-                    transfer.getAmount(), transfer.getCurrency());
-
-            // Notification for the sender
-            String senderEvent = String.format(
-                    "{\"notificationType\":\"TRANSFER_SENT\"," +
-                            "\"referenceNumber\":\"%s\"," +
-                            "\"accountId\":%d," +
-                            "\"accountNumber\":\"%s\"," +
-                            "\"counterpartyAccountNumber\":\"%s\"," +
-                            "\"amount\":\"%s\"," +
-                            "\"formattedAmount\":\"%s\"," +
-                            "\"currency\":\"%s\"," +
-                            "\"status\":\"%s\"," +
-                            "\"description\":\"%s\"," +
-                            "\"timestamp\":\"%s\"}",
-                    transfer.getReferenceNumber(),
-                    transfer.getSourceAccount().getId(),
-                    transfer.getSourceAccount().getAccountNumber(),
-                    transfer.getDestinationAccount().getAccountNumber(),
-                    transfer.getAmount().toPlainString(),
-                    formattedAmount,
-                    transfer.getCurrency(),
-                    transfer.getStatus(),
-                    escapeJson(transfer.getDescription()),
-                    LocalDateTime.now().format(TIMESTAMP_FORMATTER)
-            );
-
-            kafkaTemplate.send(NOTIFICATION_TOPIC, transfer.getReferenceNumber() + "_SENDER", senderEvent);
-
-            // Notification for the receiver
-            String receiverEvent = String.format(
-                    "{\"notificationType\":\"TRANSFER_RECEIVED\"," +
-                            "\"referenceNumber\":\"%s\"," +
-                            "\"accountId\":%d," +
-                            "\"accountNumber\":\"%s\"," +
-                            "\"counterpartyAccountNumber\":\"%s\"," +
-                            "\"amount\":\"%s\"," +
-                            "\"formattedAmount\":\"%s\"," +
-                            "\"currency\":\"%s\"," +
-                            "\"status\":\"%s\"," +
-                            "\"description\":\"%s\"," +
-                            "\"timestamp\":\"%s\"}",
-                    transfer.getReferenceNumber(),
-                    transfer.getDestinationAccount().getId(),
-                    transfer.getDestinationAccount().getAccountNumber(),
-                    transfer.getSourceAccount().getAccountNumber(),
-                    transfer.getAmount().toPlainString(),
-                    formattedAmount,
-                    transfer.getCurrency(),
-                    transfer.getStatus(),
-                    escapeJson(transfer.getDescription()),
-                    LocalDateTime.now().format(TIMESTAMP_FORMATTER)
-            );
-
-            kafkaTemplate.send(NOTIFICATION_TOPIC, transfer.getReferenceNumber() + "_RECEIVER", receiverEvent);
-
-            log.debug("Transfer notifications sent: ref={}, sender={}, receiver={}",
-                    transfer.getReferenceNumber(),
-                    transfer.getSourceAccount().getAccountNumber(),
-                    transfer.getDestinationAccount().getAccountNumber());
-
-        } catch (Exception e) {
-            log.error("Failed to send transfer notification: ref={}, error={}",
-                    transfer.getReferenceNumber(), e.getMessage(), e);
-        }
+        NotificationEvent.NotificationEventBuilder template = NotificationEvent.builder()
+                .referenceNumber(transfer.getReferenceNumber())
+                .amount(transfer.getAmount())
+                .formattedAmount(formatAmount(transfer.getAmount(), transfer.getCurrency()))
+                .currency(transfer.getCurrency())
+                .status(transfer.getStatus().name())
+                .description(transfer.getDescription())
+                .timestamp(LocalDateTime.now());
+
+        // Notification for the sender
+        NotificationEvent senderEvent = template
+                .notificationType("TRANSFER_SENT")
+                .accountId(transfer.getSourceAccount().getId())
+                .accountNumber(transfer.getSourceAccount().getAccountNumber())
+                .counterpartyAccountNumber(transfer.getDestinationAccount().getAccountNumber())
+                .build();
+
+        outboxService.publish(NOTIFICATION_TOPIC, transfer.getReferenceNumber() + "_SENDER", senderEvent);
+
+        // Notification for the receiver
+        NotificationEvent receiverEvent = template
+                .notificationType("TRANSFER_RECEIVED")
+                .accountId(transfer.getDestinationAccount().getId())
+                .accountNumber(transfer.getDestinationAccount().getAccountNumber())
+                .counterpartyAccountNumber(transfer.getSourceAccount().getAccountNumber())
+                .build();
+
+        outboxService.publish(NOTIFICATION_TOPIC, transfer.getReferenceNumber() + "_RECEIVER", receiverEvent);
+
+        log.debug("Transfer notifications sent: ref={}, sender={}, receiver={}",
+                transfer.getReferenceNumber(),
+                transfer.getSourceAccount().getAccountNumber(),
+                transfer.getDestinationAccount().getAccountNumber());
     }
 
     @Override
     public void sendPaymentNotification(Payment payment) {
-        try {
-            String formattedAmount = formatAmount(
-                    payment.getAmount(), payment.getCurrency());
-
-            String event = String.format(
-                    "{\"notificationType\":\"PAYMENT\"," +
-                            "\"referenceNumber\":\"%s\"," +
-                            "\"walletId\":%d," +
-                            "\"amount\":\"%s\"," +
-                            "\"formattedAmount\":\"%s\"," +
-                            "\"refundedAmount\":\"%s\"," +
-                            "\"currency\":\"%s\"," +
-                            "\"status\":\"%s\"," +
-                            "\"merchantName\":\"%s\"," +
-                            "\"description\":\"%s\"," +
-                            "\"timestamp\":\"%s\"}",
-                    payment.getReferenceNumber(),
-                    payment.getWallet().getId(),
-                    payment.getAmount().toPlainString(),
-                    formattedAmount,
-                    payment.getRefundedAmount().toPlainString(),
-                    payment.getCurrency(),
-                    payment.getStatus(),
-                    escapeJson(payment.getMerchantName()),
-                    escapeJson(payment.getDescription()),
-                    LocalDateTime.now().format(TIMESTAMP_FORMATTER)
-            );
-
-            kafkaTemplate.send(NOTIFICATION_TOPIC, payment.getReferenceNumber(), event);
-            log.debug("Payment notification sent: ref={}, status={}",
-                    payment.getReferenceNumber(), payment.getStatus());
-
-        } catch (Exception e) {
-            log.error("Failed to send payment notification: ref={}, error={}",
-                    payment.getReferenceNumber(), e.getMessage(), e);
-        }
+        NotificationEvent event = NotificationEvent.builder()
+                .notificationType("PAYMENT")
+                .referenceNumber(payment.getReferenceNumber())
+                .walletId(payment.getWallet().getId())
+                .amount(payment.getAmount())
+                .formattedAmount(formatAmount(payment.getAmount(), payment.getCurrency()))
+                .refundedAmount(payment.getRefundedAmount())
+                .currency(payment.getCurrency())
+                .status(payment.getStatus().name())
+                .merchantName(payment.getMerchantName() != null ? payment.getMerchantName() : "")
+                .description(payment.getDescription())
+                .build();
+
+        outboxService.publish(NOTIFICATION_TOPIC, payment.getReferenceNumber(), event);
+        log.debug("Payment notification sent: ref={}, status={}",
+                payment.getReferenceNumber(), payment.getStatus());
     }
 
     /**
@@ -186,7 +113,7 @@ public class NotificationServiceImpl implements NotificationService {
      */
     private String formatAmount(BigDecimal amount, String currencyCode) {
         try {
-            NumberFormat formatter = NumberFormat.getCurrencyInstance(Locale.US);
+            NumberFormat formatter = CURRENCY_FORMAT.get();
             formatter.setCurrency(Currency.getInstance(currencyCode));
             return formatter.format(amount);
         } catch (Exception e) {
@@ -194,21 +121,6 @@ public class NotificationServiceImpl implements NotificationService {
         }
     }
 
-    /**
-     * Escapes special characters for JSON string values.
-     */
-    private String escapeJson(String value) {
-        if (value == null) {
-            return "";
-        }
-        return value
-                .replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
-    }
-
     /**
      * Validates that the given value is within the expected range.
      * @param value the value to check
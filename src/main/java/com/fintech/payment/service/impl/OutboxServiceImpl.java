@@ -0,0 +1,57 @@
+package com.fintech.payment.service.impl;
+
+import com.fintech.payment.entity.OutboxEvent;
+import com.fintech.payment.event.EventCodec;
+import com.fintech.payment.event.JsonEvent;
+import com.fintech.payment.repository.OutboxEventRepository;
+import com.fintech.payment.service.OutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.Set;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OutboxServiceImpl implements OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final EventCodec eventCodec;
+
+    /** Must stay the same while unpublished rows exist; it decides which relay lease covers a key. */
+    @Value("${outbox.relay.shards:16}")
+    private int shards;
+
+    /** Switch a topic only once all of its consumers can read the binary format. */
+    @Value("${outbox.binary-topics:}")
+    private String binaryTopicList;
+
+    private Set<String> binaryTopics = Set.of();
+
+    @PostConstruct
+    public void init() {
+        binaryTopics = StringUtils.commaDelimitedListToSet(StringUtils.trimAllWhitespace(binaryTopicList));
+        binaryTopics.remove("");
+    }
+
+    @Override
+    @Transactional
+    public void publish(String topic, String key, JsonEvent event) {
+        OutboxEvent.OutboxEventBuilder outboxEvent = OutboxEvent.builder()
+                .topic(topic)
+                .messageKey(key)
+                .shard(key != null ? Math.floorMod(key.hashCode(), shards) : 0);
+        if (binaryTopics.contains(topic)) {
+            outboxEvent.body(eventCodec.encode(event));
+        } else {
+            outboxEvent.payload(event.toJson());
+        }
+        outboxEventRepository.save(outboxEvent.build());
+        log.debug("Outbox message stored: topic={}, key={}", topic, key);
+    }
+}
@@ -1,26 +1,35 @@
 package com.fintech.payment.service.impl;
 
+import com.fintech.payment.concurrency.RetryOnOptimisticLock;
+import com.fintech.payment.concurrency.SingleFlight;
+import com.fintech.payment.concurrency.WalletLockManager;
 import com.fintech.payment.exception.InvalidOperationException;
 import com.fintech.payment.exception.ResourceNotFoundException;
 import com.fintech.payment.dto.request.CreatePaymentRequest;
 import com.fintech.payment.dto.request.RefundRequest;
+import com.fintech.payment.dto.response.CursorPage;
 import com.fintech.payment.dto.response.PaymentResponse;
 import com.fintech.payment.entity.Payment;
 import com.fintech.payment.entity.Transaction;
 import com.fintech.payment.entity.Wallet;
 import com.fintech.payment.enums.PaymentStatus;
 import com.fintech.payment.enums.TransactionType;
+import com.fintech.payment.event.PaymentProcessedEvent;
+import com.fintech.payment.ledger.LedgerEngine;
 import com.fintech.payment.repository.PaymentRepository;
 import com.fintech.payment.repository.WalletRepository;
 import com.fintech.payment.service.*;
+import com.fintech.payment.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -31,22 +40,28 @@ public class PaymentServiceImpl implements PaymentService {
 
     private final PaymentRepository paymentRepository;
     private final WalletRepository walletRepository;
+    private final WalletLockManager walletLockManager;
     private final WalletService walletService;
     private final TransactionService transactionService;
+    private final IdempotencyService idempotencyService;
     private final WebhookService webhookService;
     private final NotificationService notificationService;
+    private final ObjectProvider<LedgerEngine> ledgerEngineProvider;
 
     @Override
     @Transactional
+    @SingleFlight(key = "#idempotencyKey", namespace = "payment")
     public PaymentResponse createPayment(CreatePaymentRequest request, String idempotencyKey) {
         log.info("Creating payment: walletId={}, amount={}, merchant={}, idempotencyKey={}",
                 request.getWalletId(), request.getAmount(), request.getMerchantName(), idempotencyKey);
 
         // Idempotency check
-        Optional<Payment> existing = paymentRepository.findByIdempotencyKey(idempotencyKey);
-        if (existing.isPresent()) {
-            log.info("Duplicate payment detected for idempotency key: {}", idempotencyKey);
-            return mapToResponse(existing.get());
+        if (idempotencyService.mightHaveSeen(idempotencyKey)) {
+            Optional<Payment> existing = paymentRepository.findByIdempotencyKey(idempotencyKey);
+            if (existing.isPresent()) {
+                log.info("Duplicate payment detected for idempotency key: {}", idempotencyKey);
+                return mapToResponse(existing.get());
+            }
         }
 
         Wallet wallet = walletRepository.findById(request.getWalletId())
@@ -71,6 +86,7 @@ public class PaymentServiceImpl implements PaymentService {
                 .build();
 
         payment = paymentRepository.save(payment);
+        idempotencyService.recordKey(idempotencyKey);
 
         log.info("Payment created: ref={}, walletId={}, amount={}",
                 referenceNumber, request.getWalletId(), request.getAmount());
@@ -80,6 +96,7 @@ public class PaymentServiceImpl implements PaymentService {
 
     @Override
     @Transactional
+    @RetryOnOptimisticLock
     public PaymentResponse processPayment(String referenceNumber) {
         log.info("Processing payment: ref={}", referenceNumber);
 
@@ -107,29 +124,39 @@ public class PaymentServiceImpl implements PaymentService {
                 // Step 3a: Success - unfreeze and deduct the amount
                 walletService.unfreezeAmount(wallet.getId(), payment.getAmount());
 
-                // Re-fetch wallet with lock for balance update
-                Wallet lockedWallet = walletRepository.findByIdWithPessimisticLock(wallet.getId())
-                        .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", wallet.getId()));
-
-                BigDecimal balanceBefore = lockedWallet.getBalance();
-                BigDecimal balanceAfter = balanceBefore.subtract(payment.getAmount());
-                lockedWallet.setBalance(balanceAfter);
-                walletRepository.save(lockedWallet);
-
-                // Create payment transaction
-                Transaction transaction = transactionService.createTransaction(
-                        wallet.getId(),
-                        TransactionType.PAYMENT,
-                        payment.getAmount(),
-                        balanceBefore,
-                        balanceAfter,
-                        "Payment to " + payment.getMerchantName() + " - " + referenceNumber,
-                        payment.getIdempotencyKey() + "_TXN",
-                        null
-                );
+                String paymentDescription = "Payment to " + payment.getMerchantName() + " - " + referenceNumber;
+                String transactionRef;
+                LedgerEngine ledgerEngine = ledgerEngineProvider.getIfAvailable();
+                if (ledgerEngine != null) {
+                    // Debited by the engine once this transaction commits
+                    transactionRef = ledgerEngine.debitOnCommit(wallet.getId(), payment.getAmount(),
+                            TransactionType.PAYMENT, paymentDescription, payment.getIdempotencyKey() + "_TXN", null)
+                            .getTransactionRef();
+                } else {
+                    // Re-fetch wallet for update according to the concurrency mode
+                    Wallet lockedWallet = walletLockManager.loadForUpdate(wallet.getId());
+
+                    BigDecimal balanceBefore = lockedWallet.getBalance();
+                    BigDecimal balanceAfter = balanceBefore.subtract(payment.getAmount());
+                    lockedWallet.setBalance(balanceAfter);
+                    walletRepository.save(lockedWallet);
+
+                    // Create payment transaction
+                    Transaction transaction = transactionService.createTransaction(
+                            wallet.getId(),
+                            TransactionType.PAYMENT,
+                            payment.getAmount(),
+                            balanceBefore,
+                            balanceAfter,
+                            paymentDescription,
+                            payment.getIdempotencyKey() + "_TXN",
+                            null
+                    );
+                    transactionRef = transaction.getReferenceNumber();
+                }
 
                 payment.setStatus(PaymentStatus.COMPLETED);
-                payment.setTransactionRef(transaction.getReferenceNumber());
+                payment.setTransactionRef(transactionRef);
             } else {
                 // Step 3b: Failure - unfreeze the amount
                 walletService.unfreezeAmount(wallet.getId(), payment.getAmount());
@@ -172,6 +199,7 @@ public class PaymentServiceImpl implements PaymentService {
 
     @Override
     @Transactional
+    @RetryOnOptimisticLock
     public PaymentResponse refundPayment(String referenceNumber, RefundRequest request) {
         log.info("Processing refund: paymentRef={}, amount={}", referenceNumber, request.getAmount());
 
@@ -195,28 +223,36 @@ public class PaymentServiceImpl implements PaymentService {
 
         Wallet wallet = payment.getWallet();
 
-        // Credit the refund amount back to the wallet
-        Wallet lockedWallet = walletRepository.findByIdWithPessimisticLock(wallet.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", wallet.getId()));
-
-        BigDecimal balanceBefore = lockedWallet.getBalance();
-        BigDecimal balanceAfter = balanceBefore.add(request.getAmount());
-        lockedWallet.setBalance(balanceAfter);
-        walletRepository.save(lockedWallet);
-
-        // Create refund transaction
         String refundIdempotencyKey = payment.getIdempotencyKey() + "_REFUND_" + System.currentTimeMillis();
-        transactionService.createTransaction(
-                wallet.getId(),
-                TransactionType.REFUND,
-                request.getAmount(),
-                balanceBefore,
-                balanceAfter,
-                "Refund for payment " + referenceNumber +
-                        (request.getReason() != null ? " - " + request.getReason() : ""),
-                refundIdempotencyKey,
-                null
-        );
+        String refundDescription = "Refund for payment " + referenceNumber +
+                (request.getReason() != null ? " - " + request.getReason() : "");
+
+        LedgerEngine ledgerEngine = ledgerEngineProvider.getIfAvailable();
+        if (ledgerEngine != null) {
+            // Credited by the engine once this transaction commits
+            ledgerEngine.creditOnCommit(wallet.getId(), request.getAmount(), TransactionType.REFUND,
+                    refundDescription, refundIdempotencyKey, null);
+        } else {
+            // Credit the refund amount back to the wallet
+            Wallet lockedWallet = walletLockManager.loadForUpdate(wallet.getId());
+
+            BigDecimal balanceBefore = lockedWallet.getBalance();
+            BigDecimal balanceAfter = balanceBefore.add(request.getAmount());
+            lockedWallet.setBalance(balanceAfter);
+            walletRepository.save(lockedWallet);
+
+            // Create refund transaction
+            transactionService.createTransaction(
+                    wallet.getId(),
+                    TransactionType.REFUND,
+                    request.getAmount(),
+                    balanceBefore,
+                    balanceAfter,
+                    refundDescription,
+                    refundIdempotencyKey,
+                    null
+            );
+        }
 
         // Update payment refunded amount and status
         PaymentStatus previousStatus = payment.getStatus();
@@ -259,6 +295,24 @@ public class PaymentServiceImpl implements PaymentService {
                 .map(this::mapToResponse);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<PaymentResponse> getPaymentsByWallet(Long walletId, String cursor, int size) {
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        List<Payment> rows;
+        if (position == null) {
+            if (!walletRepository.existsById(walletId)) {
+                throw new ResourceNotFoundException("Wallet", "id", walletId);
+            }
+            rows = paymentRepository.findKeysetByWalletId(walletId, KeysetCursor.probe(size));
+        } else {
+            rows = paymentRepository.findKeysetByWalletIdAfter(walletId, position.getCreatedAt(),
+                    position.getId(), KeysetCursor.probe(size));
+        }
+
+        return KeysetCursor.page(rows, size, this::mapToResponse, Payment::getCreatedAt, Payment::getId);
+    }
+
     /**
      * Simulates external payment gateway processing.
      * In a real implementation, this would call an external API.
@@ -278,20 +332,15 @@ public class PaymentServiceImpl implements PaymentService {
         if (payment.getWebhookUrl() != null && !payment.getWebhookUrl().isEmpty()
                 && payment.getStatus() != previousStatus) {
             try {
-                String payload = String.format(
-                        "{\"event\":\"payment.status_changed\",\"referenceNumber\":\"%s\"," +
-                                "\"previousStatus\":\"%s\",\"currentStatus\":\"%s\"," +
-                                "\"amount\":\"%s\",\"currency\":\"%s\",\"merchantName\":\"%s\"," +
-                                "\"timestamp\":\"%s\"}",
-                        payment.getReferenceNumber(),
-                        previousStatus,
-                        payment.getStatus(),
-                        payment.getAmount().toPlainString(),
-                        payment.getCurrency(),
-                        payment.getMerchantName(),
-                        java.time.LocalDateTime.now()
-                );
-                webhookService.sendWebhook("payment.status_changed", payload, payment.getWebhookUrl());
+                PaymentProcessedEvent event = PaymentProcessedEvent.builder()
+                        .paymentRef(payment.getReferenceNumber())
+                        .previousStatus(String.valueOf(previousStatus))
+                        .status(payment.getStatus().name())
+                        .amount(payment.getAmount())
+                        .currency(payment.getCurrency())
+                        .merchantName(payment.getMerchantName())
+                        .build();
+                webhookService.sendWebhook(PaymentProcessedEvent.EVENT_TYPE, event.toJson(), payment.getWebhookUrl());
             } catch (Exception e) {
                 log.error("Failed to send payment webhook for ref={}: {}",
                         payment.getReferenceNumber(), e.getMessage());
@@ -1,35 +1,63 @@
 package com.fintech.payment.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fintech.payment.exception.DuplicateTransactionException;
+import com.fintech.payment.exception.IdempotencyKeyConstraint;
 import com.fintech.payment.exception.ResourceNotFoundException;
+import com.fintech.payment.dto.response.CursorPage;
 import com.fintech.payment.dto.response.TransactionResponse;
 import com.fintech.payment.entity.Transaction;
 import com.fintech.payment.entity.Wallet;
+import com.fintech.payment.enums.ExportFormat;
 import com.fintech.payment.enums.TransactionStatus;
 import com.fintech.payment.enums.TransactionType;
 import com.fintech.payment.repository.TransactionRepository;
 import com.fintech.payment.repository.WalletRepository;
+import com.fintech.payment.service.IdempotencyService;
 import com.fintech.payment.service.TransactionService;
+import com.fintech.payment.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TransactionServiceImpl implements TransactionService {
 
+    private static final String CSV_HEADER = "id,referenceNumber,walletId,type,status,amount,currency," +
+            "balanceBefore,balanceAfter,description,counterpartyWalletId,createdAt\n";
+    private static final int EXPORT_FLUSH_ROWS = 500;
+
     private final TransactionRepository transactionRepository;
     private final WalletRepository walletRepository;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     @Override
     @Transactional
@@ -37,13 +65,25 @@ public class TransactionServiceImpl implements TransactionService {
                                          BigDecimal balanceBefore, BigDecimal balanceAfter,
                                          String description, String idempotencyKey,
                                          Long counterpartyWalletId) {
+        return createTransaction(walletId, type, amount, balanceBefore, balanceAfter,
+                description, idempotencyKey, counterpartyWalletId, null);
+    }
+
+    @Override
+    @Transactional
+    public Transaction createTransaction(Long walletId, TransactionType type, BigDecimal amount,
+                                         BigDecimal balanceBefore, BigDecimal balanceAfter,
+                                         String description, String idempotencyKey,
+                                         Long counterpartyWalletId, String metadata) {
 
         // Idempotency check: if a transaction already exists for this key, return it
         if (idempotencyKey != null) {
-            Optional<Transaction> existing = transactionRepository.findByIdempotencyKey(idempotencyKey);
-            if (existing.isPresent()) {
-                log.info("Duplicate transaction detected for idempotency key: {}", idempotencyKey);
-                return existing.get();
+            if (idempotencyService.mightHaveSeen(idempotencyKey)) {
+                Optional<Transaction> existing = transactionRepository.findByIdempotencyKey(idempotencyKey);
+                if (existing.isPresent()) {
+                    log.info("Duplicate transaction detected for idempotency key: {}", idempotencyKey);
+                    return existing.get();
+                }
             }
         }
 
@@ -64,9 +104,20 @@ public class TransactionServiceImpl implements TransactionService {
                 .description(description)
                 .idempotencyKey(idempotencyKey)
                 .counterpartyWalletId(counterpartyWalletId)
+                .metadata(metadata)
                 .build();
 
-        transaction = transactionRepository.save(transaction);
+        try {
+            transaction = transactionRepository.save(transaction);
+        } catch (DataIntegrityViolationException e) {
+            // The filter is per node, so a key first seen elsewhere can pass it; the unique index decides
+            if (!IdempotencyKeyConstraint.isViolatedBy(e)) {
+                throw e;
+            }
+            throw new DuplicateTransactionException(
+                    "A transaction with idempotency key " + idempotencyKey + " has already been processed", e);
+        }
+        idempotencyService.recordKey(idempotencyKey);
 
         log.info("Transaction created: ref={}, type={}, amount={}, walletId={}",
                 referenceNumber, type, amount, walletId);
@@ -94,11 +145,41 @@ public class TransactionServiceImpl implements TransactionService {
                 .map(this::mapToResponse);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<TransactionResponse> getTransactionsByWallet(Long walletId, String cursor, int size) {
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        List<Transaction> rows;
+        if (position == null) {
+            // Validate wallet exists; later slices were reached through it
+            if (!walletRepository.existsById(walletId)) {
+                throw new ResourceNotFoundException("Wallet", "id", walletId);
+            }
+            rows = transactionRepository.findKeysetByWalletId(walletId, KeysetCursor.probe(size));
+        } else {
+            rows = transactionRepository.findKeysetByWalletIdAfter(walletId, position.getCreatedAt(),
+                    position.getId(), KeysetCursor.probe(size));
+        }
+
+        return KeysetCursor.page(rows, size, this::mapToResponse, Transaction::getCreatedAt, Transaction::getId);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<TransactionResponse> getTransactionHistory(Long walletId,
                                                             LocalDateTime startDate,
                                                             LocalDateTime endDate) {
+        validateHistoryRange(walletId, startDate, endDate);
+
+        return transactionRepository.findByWalletIdAndDateRange(walletId, startDate, endDate)
+                .stream()
+                .map(this::mapToResponse)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void validateHistoryRange(Long walletId, LocalDateTime startDate, LocalDateTime endDate) {
         // Validate wallet exists
         if (!walletRepository.existsById(walletId)) {
             throw new ResourceNotFoundException("Wallet", "id", walletId);
@@ -107,11 +188,74 @@ public class TransactionServiceImpl implements TransactionService {
         if (startDate.isAfter(endDate)) {
             throw new IllegalArgumentException("Start date must be before end date");
         }
+    }
 
-        return transactionRepository.findByWalletIdAndDateRange(walletId, startDate, endDate)
-                .stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    @Override
+    @Transactional(readOnly = true)
+    public long exportTransactionHistory(Long walletId, LocalDateTime startDate, LocalDateTime endDate,
+                                         ExportFormat format, OutputStream outputStream) throws IOException {
+        validateHistoryRange(walletId, startDate, endDate);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        ObjectWriter jsonWriter = objectMapper.writerFor(TransactionResponse.class);
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+        }
+
+        long count = 0;
+        try (Stream<Transaction> transactions =
+                     transactionRepository.streamByWalletIdAndDateRange(walletId, startDate, endDate)) {
+            Iterator<Transaction> iterator = transactions.iterator();
+            while (iterator.hasNext()) {
+                Transaction transaction = iterator.next();
+                TransactionResponse row = mapToResponse(transaction);
+                // Keep the persistence context from growing with the export
+                entityManager.detach(transaction);
+
+                if (format == ExportFormat.CSV) {
+                    writeCsvRow(writer, row);
+                } else {
+                    writer.write(jsonWriter.writeValueAsString(row));
+                    writer.write('\n');
+                }
+                if (++count % EXPORT_FLUSH_ROWS == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+
+        log.info("Transactions exported: walletId={}, format={}, rows={}", walletId, format, count);
+        return count;
+    }
+
+    private void writeCsvRow(Writer writer, TransactionResponse row) throws IOException {
+        writer.write(String.join(",",
+                csvValue(row.getId()),
+                csvValue(row.getReferenceNumber()),
+                csvValue(row.getWalletId()),
+                csvValue(row.getType()),
+                csvValue(row.getStatus()),
+                csvValue(row.getAmount()),
+                csvValue(row.getCurrency()),
+                csvValue(row.getBalanceBefore()),
+                csvValue(row.getBalanceAfter()),
+                csvValue(row.getDescription()),
+                csvValue(row.getCounterpartyWalletId()),
+                csvValue(row.getCreatedAt())));
+        writer.write('\n');
+    }
+
+    private String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
     }
 
     private TransactionResponse mapToResponse(Transaction transaction) {
@@ -1,34 +1,67 @@
 package com.fintech.payment.service.impl;
 
+import com.fintech.payment.concurrency.RetryOnOptimisticLock;
+import com.fintech.payment.concurrency.SingleFlight;
+import com.fintech.payment.concurrency.WalletLockManager;
 import com.fintech.payment.exception.InsufficientBalanceException;
 import com.fintech.payment.exception.InvalidOperationException;
 import com.fintech.payment.exception.ResourceNotFoundException;
+import com.fintech.payment.dto.request.BulkTransferItemRequest;
+import com.fintech.payment.dto.request.BulkTransferRequest;
+import com.fintech.payment.dto.response.BulkTransferItemResponse;
+import com.fintech.payment.dto.response.BulkTransferResponse;
+import com.fintech.payment.dto.response.CursorPage;
 import com.fintech.payment.dto.response.TransferResponse;
 import com.fintech.payment.entity.Account;
 import com.fintech.payment.entity.Transaction;
 import com.fintech.payment.entity.Transfer;
 import com.fintech.payment.entity.Wallet;
 import com.fintech.payment.enums.AccountStatus;
+import com.fintech.payment.enums.BulkTransferItemStatus;
+import com.fintech.payment.enums.TransactionStatus;
 import com.fintech.payment.enums.TransactionType;
 import com.fintech.payment.enums.TransferStatus;
+import com.fintech.payment.event.TransferCompletedEvent;
+import com.fintech.payment.ledger.LedgerCommand;
+import com.fintech.payment.ledger.LedgerEngine;
 import com.fintech.payment.repository.AccountRepository;
+import com.fintech.payment.repository.TransactionBatchRepository;
+import com.fintech.payment.repository.TransferBatchRepository;
 import com.fintech.payment.repository.TransferRepository;
 import com.fintech.payment.repository.WalletRepository;
 import com.fintech.payment.service.IdempotencyService;
 import com.fintech.payment.service.NotificationService;
+import com.fintech.payment.service.OutboxService;
 import com.fintech.payment.service.TransactionService;
 import com.fintech.payment.service.TransferService;
+import com.fintech.payment.service.WalletShardService;
+import com.fintech.payment.service.WalletVelocityService;
+import com.fintech.payment.util.KeysetCursor;
+import com.fintech.payment.service.WalletShardService.ShardMovement;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -40,13 +73,24 @@ public class TransferServiceImpl implements TransferService {
     private final TransferRepository transferRepository;
     private final AccountRepository accountRepository;
     private final WalletRepository walletRepository;
+    private final WalletLockManager walletLockManager;
     private final TransactionService transactionService;
+    private final WalletShardService walletShardService;
+    private final WalletVelocityService walletVelocityService;
     private final IdempotencyService idempotencyService;
     private final NotificationService notificationService;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final OutboxService outboxService;
+    private final ObjectProvider<LedgerEngine> ledgerEngineProvider;
+    private final TransactionBatchRepository transactionBatchRepository;
+    private final TransferBatchRepository transferBatchRepository;
+
+    @Value("${transfer.bulk.max-items:5000}")
+    private int bulkMaxItems;
 
     @Override
     @Transactional
+    @RetryOnOptimisticLock
+    @SingleFlight(key = "#idempotencyKey", namespace = "transfer")
     public TransferResponse initiateTransfer(String fromAccountNumber, String toAccountNumber,
                                               BigDecimal amount, String idempotencyKey,
                                               String description) {
@@ -54,57 +98,61 @@ public class TransferServiceImpl implements TransferService {
                 fromAccountNumber, toAccountNumber, amount, idempotencyKey);
 
         // Step 1: Check idempotency - return existing result if duplicate
-        Optional<Transfer> existingTransfer = transferRepository.findByIdempotencyKey(idempotencyKey);
-        if (existingTransfer.isPresent()) {
-            log.info("Duplicate transfer detected for idempotency key: {}", idempotencyKey);
-            return mapToResponse(existingTransfer.get());
+        if (idempotencyService.mightHaveSeen(idempotencyKey)) {
+            Optional<Transfer> existingTransfer = transferRepository.findByIdempotencyKey(idempotencyKey);
+            if (existingTransfer.isPresent()) {
+                log.info("Duplicate transfer detected for idempotency key: {}", idempotencyKey);
+                return mapToResponse(existingTransfer.get());
+            }
         }
 
-        // Step 2: Validate accounts
+        // Step 2: Validate request
         if (fromAccountNumber.equals(toAccountNumber)) {
             throw new InvalidOperationException("Cannot transfer to the same account");
         }
 
-        Account sourceAccount = accountRepository.findByAccountNumber(fromAccountNumber)
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new InvalidOperationException("Transfer amount must be greater than zero");
+        }
+
+        // Step 3: Resolve both accounts and lock both wallets in one statement, ordered by wallet id
+        // to prevent deadlocks. Optimistic mode and the ledger engine read them without locking.
+        LedgerEngine ledgerEngine = ledgerEngineProvider.getIfAvailable();
+        boolean lockRows = ledgerEngine == null && !walletLockManager.isOptimistic();
+        List<Wallet> wallets = lockRows
+                ? walletRepository.findTransferWalletsForUpdate(fromAccountNumber, toAccountNumber)
+                : walletRepository.findTransferWallets(fromAccountNumber, toAccountNumber);
+
+        Wallet sourceWallet = findWalletOf(wallets, fromAccountNumber)
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "accountNumber", fromAccountNumber));
-        Account destAccount = accountRepository.findByAccountNumber(toAccountNumber)
+        Optional<Wallet> resolvedDest = findWalletOf(wallets, toAccountNumber);
+        if (resolvedDest.isEmpty() && lockRows) {
+            // Sharded destinations are not part of the locked set
+            resolvedDest = walletRepository.findByAccountNumber(toAccountNumber);
+        }
+        Wallet destWallet = resolvedDest
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "accountNumber", toAccountNumber));
 
+        Account sourceAccount = sourceWallet.getAccount();
+        Account destAccount = destWallet.getAccount();
+
         validateAccountActive(sourceAccount, "Source");
         validateAccountActive(destAccount, "Destination");
 
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new InvalidOperationException("Transfer amount must be greater than zero");
-        }
-
-        // Step 3: Lock both wallets - ORDER BY ID to prevent deadlocks
-        Wallet sourceWallet = walletRepository.findByAccountId(sourceAccount.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "accountId", sourceAccount.getId()));
-        Wallet destWallet = walletRepository.findByAccountId(destAccount.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "accountId", destAccount.getId()));
-
-        final Long sourceWalletId = sourceWallet.getId();
-        final Long destWalletId = destWallet.getId();
+        // Counted against the daily limit in this transaction; a failed transfer rolls it back
+        walletVelocityService.recordOutbound(sourceWallet.getId(), amount, 1);
 
-        Wallet firstLock, secondLock;
-        if (sourceWalletId < destWalletId) {
-            firstLock = walletRepository.findByIdWithPessimisticLock(sourceWalletId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", sourceWalletId));
-            secondLock = walletRepository.findByIdWithPessimisticLock(destWalletId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", destWalletId));
-            sourceWallet = firstLock;
-            destWallet = secondLock;
-        } else {
-            firstLock = walletRepository.findByIdWithPessimisticLock(destWalletId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", destWalletId));
-            secondLock = walletRepository.findByIdWithPessimisticLock(sourceWalletId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", sourceWalletId));
-            destWallet = firstLock;
-            sourceWallet = secondLock;
+        if (ledgerEngine != null) {
+            return transferViaLedger(ledgerEngine, sourceWallet, destWallet, amount, idempotencyKey, description);
         }
 
         // Step 4: Check source has sufficient available balance
         BigDecimal sourceAvailable = sourceWallet.getAvailableBalance();
+        if (sourceAvailable.compareTo(amount) < 0 && sourceWallet.isSharded()) {
+            // Pull shard balances onto the locked home balance before giving up
+            walletShardService.consolidate(sourceWallet);
+            sourceAvailable = sourceWallet.getAvailableBalance();
+        }
         if (sourceAvailable.compareTo(amount) < 0) {
             throw new InsufficientBalanceException(amount, sourceAvailable);
         }
@@ -115,9 +163,20 @@ public class TransferServiceImpl implements TransferService {
         walletRepository.save(sourceWallet);
 
         // Step 6: Credit destination wallet
-        BigDecimal destBalanceBefore = destWallet.getBalance();
-        destWallet.setBalance(destBalanceBefore.add(amount));
-        walletRepository.save(destWallet);
+        BigDecimal destBalanceBefore;
+        BigDecimal destBalanceAfter;
+        String destMetadata = null;
+        if (destWallet.isSharded()) {
+            ShardMovement movement = walletShardService.credit(destWallet, amount, idempotencyKey);
+            destBalanceBefore = movement.getBalanceBefore();
+            destBalanceAfter = movement.getBalanceAfter();
+            destMetadata = movement.toMetadata();
+        } else {
+            destBalanceBefore = destWallet.getBalance();
+            destWallet.setBalance(destBalanceBefore.add(amount));
+            walletRepository.save(destWallet);
+            destBalanceAfter = destWallet.getBalance();
+        }
 
         // Step 7: Create TRANSFER_OUT transaction for source
         String transferOutIdempotencyKey = idempotencyKey + "_OUT";
@@ -139,16 +198,19 @@ public class TransferServiceImpl implements TransferService {
                 TransactionType.TRANSFER_IN,
                 amount,
                 destBalanceBefore,
-                destWallet.getBalance(),
+                destBalanceAfter,
                 description != null ? description : "Transfer from " + fromAccountNumber,
                 transferInIdempotencyKey,
-                sourceWallet.getId()
+                sourceWallet.getId(),
+                destMetadata
         );
 
         // Create transfer record
         String referenceNumber = UUID.randomUUID().toString();
         Transfer transfer = Transfer.builder()
                 .transferRef(referenceNumber)
+                .fromWallet(sourceWallet)
+                .toWallet(destWallet)
                 .sourceAccount(sourceAccount)
                 .destinationAccount(destAccount)
                 .amount(amount)
@@ -161,6 +223,7 @@ public class TransferServiceImpl implements TransferService {
                 .build();
 
         transfer = transferRepository.save(transfer);
+        idempotencyService.recordKey(idempotencyKey);
 
         // Step 8: Publish Kafka event
         publishTransferEvent(transfer);
@@ -174,6 +237,234 @@ public class TransferServiceImpl implements TransferService {
         return mapToResponse(transfer);
     }
 
+    @Override
+    @Transactional
+    @RetryOnOptimisticLock
+    public BulkTransferResponse initiateBulkTransfer(BulkTransferRequest request) {
+        String fromAccountNumber = request.getFromAccountNumber();
+        List<BulkTransferItemRequest> items = request.getItems();
+        log.info("Initiating bulk transfer: from={}, items={}", fromAccountNumber, items.size());
+
+        if (items.size() > bulkMaxItems) {
+            throw new InvalidOperationException(
+                    "Bulk transfer exceeds the maximum of " + bulkMaxItems + " items");
+        }
+        if (ledgerEngineProvider.getIfAvailable() != null) {
+            throw new InvalidOperationException("Bulk transfers are not available while the ledger engine is enabled");
+        }
+
+        // Step 1: Check idempotency - items already processed are reported with their existing transfer
+        Set<String> idempotencyKeys = items.stream()
+                .map(BulkTransferItemRequest::getIdempotencyKey)
+                .filter(idempotencyService::mightHaveSeen)
+                .collect(Collectors.toSet());
+        Map<String, Transfer> existingTransfers = idempotencyKeys.isEmpty() ? Map.of()
+                : transferRepository.findByIdempotencyKeyIn(idempotencyKeys).stream()
+                .collect(Collectors.toMap(Transfer::getIdempotencyKey, Function.identity(), (first, second) -> first));
+
+        BulkTransferItemResponse[] results = new BulkTransferItemResponse[items.size()];
+        List<Integer> pending = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            BulkTransferItemRequest item = items.get(i);
+            Transfer existing = existingTransfers.get(item.getIdempotencyKey());
+            if (existing != null) {
+                results[i] = itemResult(item, BulkTransferItemStatus.DUPLICATE, null, mapToResponse(existing));
+            } else if (!seenKeys.add(item.getIdempotencyKey())) {
+                results[i] = itemResult(item, BulkTransferItemStatus.REJECTED,
+                        "Idempotency key is repeated within the request", null);
+            } else if (fromAccountNumber.equals(item.getToAccountNumber())) {
+                results[i] = itemResult(item, BulkTransferItemStatus.REJECTED,
+                        "Cannot transfer to the same account", null);
+            } else {
+                pending.add(i);
+            }
+        }
+        if (pending.isEmpty()) {
+            return buildBulkResponse(fromAccountNumber, null, BigDecimal.ZERO, results);
+        }
+
+        // Step 2: Lock the source and all destination wallets in one statement, ordered by wallet id
+        Set<String> destAccountNumbers = pending.stream()
+                .map(i -> items.get(i).getToAccountNumber())
+                .collect(Collectors.toSet());
+        Map<String, Wallet> walletsByAccountNumber = new HashMap<>();
+        if (walletLockManager.isOptimistic()) {
+            Set<String> accountNumbers = new HashSet<>(destAccountNumbers);
+            accountNumbers.add(fromAccountNumber);
+            walletRepository.findByAccountNumberIn(accountNumbers)
+                    .forEach(wallet -> walletsByAccountNumber.put(wallet.getAccount().getAccountNumber(), wallet));
+        } else {
+            walletRepository.findBulkTransferWalletsForUpdate(fromAccountNumber, destAccountNumbers)
+                    .forEach(wallet -> walletsByAccountNumber.put(wallet.getAccount().getAccountNumber(), wallet));
+            Set<String> unlocked = new HashSet<>(destAccountNumbers);
+            unlocked.removeAll(walletsByAccountNumber.keySet());
+            if (!unlocked.isEmpty()) {
+                // Sharded destinations are not part of the locked set
+                walletRepository.findByAccountNumberIn(unlocked)
+                        .forEach(wallet -> walletsByAccountNumber.put(wallet.getAccount().getAccountNumber(), wallet));
+            }
+        }
+
+        Wallet sourceWallet = walletsByAccountNumber.get(fromAccountNumber);
+        if (sourceWallet == null) {
+            throw new ResourceNotFoundException("Account", "accountNumber", fromAccountNumber);
+        }
+        Account sourceAccount = sourceWallet.getAccount();
+        validateAccountActive(sourceAccount, "Source");
+        String currency = sourceWallet.getCurrency();
+        if (request.getCurrency() != null && !request.getCurrency().equalsIgnoreCase(currency)) {
+            throw new InvalidOperationException("Bulk transfer currency " + request.getCurrency()
+                    + " does not match the source wallet currency " + currency);
+        }
+
+        // Step 3: Reject items whose destination cannot receive funds
+        List<Integer> accepted = new ArrayList<>(pending.size());
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (Integer i : pending) {
+            BulkTransferItemRequest item = items.get(i);
+            Wallet destWallet = walletsByAccountNumber.get(item.getToAccountNumber());
+            if (destWallet == null) {
+                results[i] = itemResult(item, BulkTransferItemStatus.REJECTED,
+                        "Destination account not found: " + item.getToAccountNumber(), null);
+            } else if (destWallet.getAccount().getStatus() != AccountStatus.ACTIVE) {
+                results[i] = itemResult(item, BulkTransferItemStatus.REJECTED,
+                        "Destination account is not active. Current status: " + destWallet.getAccount().getStatus(),
+                        null);
+            } else if (!currency.equals(destWallet.getCurrency())) {
+                results[i] = itemResult(item, BulkTransferItemStatus.REJECTED,
+                        "Destination wallet currency " + destWallet.getCurrency() + " does not match " + currency,
+                        null);
+            } else {
+                accepted.add(i);
+                totalAmount = totalAmount.add(item.getAmount());
+            }
+        }
+        if (accepted.isEmpty()) {
+            return buildBulkResponse(fromAccountNumber, sourceWallet.getCurrency(), BigDecimal.ZERO, results);
+        }
+
+        walletVelocityService.recordOutbound(sourceWallet.getId(), totalAmount, accepted.size());
+
+        // Step 4: Check the source covers the whole payout
+        BigDecimal sourceAvailable = sourceWallet.getAvailableBalance();
+        if (sourceAvailable.compareTo(totalAmount) < 0 && sourceWallet.isSharded()) {
+            walletShardService.consolidate(sourceWallet);
+            sourceAvailable = sourceWallet.getAvailableBalance();
+        }
+        if (sourceAvailable.compareTo(totalAmount) < 0) {
+            throw new InsufficientBalanceException(totalAmount, sourceAvailable);
+        }
+
+        // Step 5: Debit the source and credit destinations in wallet id order
+        accepted.sort(Comparator.comparing(i -> walletsByAccountNumber.get(items.get(i).getToAccountNumber()).getId()));
+        LocalDateTime now = LocalDateTime.now();
+        List<Transaction> transactions = new ArrayList<>(accepted.size() * 2);
+        List<Transfer> transfers = new ArrayList<>(accepted.size());
+        Map<Long, Wallet> touchedWallets = new LinkedHashMap<>();
+        touchedWallets.put(sourceWallet.getId(), sourceWallet);
+
+        for (Integer i : accepted) {
+            BulkTransferItemRequest item = items.get(i);
+            Wallet destWallet = walletsByAccountNumber.get(item.getToAccountNumber());
+            BigDecimal amount = item.getAmount();
+
+            BigDecimal sourceBalanceBefore = sourceWallet.getBalance();
+            sourceWallet.setBalance(sourceBalanceBefore.subtract(amount));
+
+            BigDecimal destBalanceBefore;
+            BigDecimal destBalanceAfter;
+            String destMetadata = null;
+            if (destWallet.isSharded()) {
+                ShardMovement movement = walletShardService.credit(destWallet, amount, item.getIdempotencyKey());
+                destBalanceBefore = movement.getBalanceBefore();
+                destBalanceAfter = movement.getBalanceAfter();
+                destMetadata = movement.toMetadata();
+            } else {
+                destBalanceBefore = destWallet.getBalance();
+                destWallet.setBalance(destBalanceBefore.add(amount));
+                destBalanceAfter = destWallet.getBalance();
+                touchedWallets.put(destWallet.getId(), destWallet);
+            }
+
+            Transaction outTransaction = Transaction.builder()
+                    .transactionRef(UUID.randomUUID().toString())
+                    .wallet(sourceWallet)
+                    .type(TransactionType.TRANSFER_OUT)
+                    .status(TransactionStatus.COMPLETED)
+                    .amount(amount)
+                    .currency(sourceWallet.getCurrency())
+                    .balanceBefore(sourceBalanceBefore)
+                    .balanceAfter(sourceWallet.getBalance())
+                    .description(item.getDescription() != null
+                            ? item.getDescription() : "Transfer to " + item.getToAccountNumber())
+                    .idempotencyKey(item.getIdempotencyKey() + "_OUT")
+                    .counterpartyWalletId(destWallet.getId())
+                    .createdAt(now)
+                    .build();
+            Transaction inTransaction = Transaction.builder()
+                    .transactionRef(UUID.randomUUID().toString())
+                    .wallet(destWallet)
+                    .type(TransactionType.TRANSFER_IN)
+                    .status(TransactionStatus.COMPLETED)
+                    .amount(amount)
+                    .currency(destWallet.getCurrency())
+                    .balanceBefore(destBalanceBefore)
+                    .balanceAfter(destBalanceAfter)
+                    .description(item.getDescription() != null
+                            ? item.getDescription() : "Transfer from " + fromAccountNumber)
+                    .idempotencyKey(item.getIdempotencyKey() + "_IN")
+                    .counterpartyWalletId(sourceWallet.getId())
+                    .metadata(destMetadata)
+                    .createdAt(now)
+                    .build();
+            transactions.add(outTransaction);
+            transactions.add(inTransaction);
+
+            Transfer transfer = Transfer.builder()
+                    .transferRef(UUID.randomUUID().toString())
+                    .fromWallet(sourceWallet)
+                    .toWallet(destWallet)
+                    .sourceAccount(sourceAccount)
+                    .destinationAccount(destWallet.getAccount())
+                    .amount(amount)
+                    .currency(sourceWallet.getCurrency())
+                    .status(TransferStatus.COMPLETED)
+                    .description(item.getDescription())
+                    .idempotencyKey(item.getIdempotencyKey())
+                    .sourceTransactionRef(outTransaction.getReferenceNumber())
+                    .destinationTransactionRef(inTransaction.getReferenceNumber())
+                    .createdAt(now)
+                    .build();
+            transfers.add(transfer);
+        }
+
+        // Step 6: Write balances, then all transaction and transfer rows in JDBC batches
+        walletRepository.saveAll(touchedWallets.values());
+        walletRepository.flush();
+        transactionBatchRepository.insertAll(transactions);
+        transferBatchRepository.insertAll(transfers);
+        // Mapped only now, once the batch insert has set the generated ids
+        for (int t = 0; t < transfers.size(); t++) {
+            int i = accepted.get(t);
+            results[i] = itemResult(items.get(i), BulkTransferItemStatus.COMPLETED, null,
+                    mapToResponse(transfers.get(t)));
+        }
+        // A retried request must find these keys, or its items reach the unique constraint instead
+        transfers.forEach(transfer -> idempotencyService.recordKey(transfer.getIdempotencyKey()));
+
+        // Step 7: Publish Kafka events and notifications per transfer
+        for (Transfer transfer : transfers) {
+            publishTransferEvent(transfer);
+            notificationService.sendTransferNotification(transfer);
+        }
+
+        log.info("Bulk transfer completed: from={}, completed={}, total={}",
+                fromAccountNumber, transfers.size(), totalAmount);
+
+        return buildBulkResponse(fromAccountNumber, sourceWallet.getCurrency(), totalAmount, results);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public TransferResponse getTransferByRef(String referenceNumber) {
@@ -193,6 +484,102 @@ public class TransferServiceImpl implements TransferService {
                 .map(this::mapToResponse);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<TransferResponse> getTransferHistory(Long accountId, String cursor, int size) {
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        List<Transfer> rows;
+        if (position == null) {
+            if (!accountRepository.existsById(accountId)) {
+                throw new ResourceNotFoundException("Account", "id", accountId);
+            }
+            rows = transferRepository.findKeysetByAccountId(accountId, KeysetCursor.probe(size));
+        } else {
+            rows = transferRepository.findKeysetByAccountIdAfter(accountId, position.getCreatedAt(),
+                    position.getId(), KeysetCursor.probe(size));
+        }
+
+        return KeysetCursor.page(rows, size, this::mapToResponse, Transfer::getCreatedAt, Transfer::getId);
+    }
+
+    /**
+     * Applies the transfer through the ledger engine instead of locking wallet rows.
+     * Only the transfer record is written here; the engine holds the funds now, moves
+     * them once this transaction commits, and the balances and transaction rows reach
+     * the database through the ledger projector.
+     */
+    private TransferResponse transferViaLedger(LedgerEngine ledgerEngine, Wallet sourceWallet, Wallet destWallet,
+                                               BigDecimal amount, String idempotencyKey, String description) {
+        Account sourceAccount = sourceWallet.getAccount();
+        Account destAccount = destWallet.getAccount();
+
+        LedgerCommand reservation = ledgerEngine.transferOnCommit(sourceWallet.getId(), destWallet.getId(), amount,
+                description != null ? description : "Transfer to " + destAccount.getAccountNumber(),
+                description != null ? description : "Transfer from " + sourceAccount.getAccountNumber(),
+                idempotencyKey);
+
+        Transfer transfer = Transfer.builder()
+                .transferRef(UUID.randomUUID().toString())
+                .fromWallet(sourceWallet)
+                .toWallet(destWallet)
+                .sourceAccount(sourceAccount)
+                .destinationAccount(destAccount)
+                .amount(amount)
+                .currency(sourceWallet.getCurrency())
+                .status(TransferStatus.COMPLETED)
+                .description(description)
+                .idempotencyKey(idempotencyKey)
+                .sourceTransactionRef(reservation.getTransactionRef())
+                .destinationTransactionRef(reservation.getCounterpartyTransactionRef())
+                .build();
+        transfer = transferRepository.save(transfer);
+        idempotencyService.recordKey(idempotencyKey);
+
+        publishTransferEvent(transfer);
+        notificationService.sendTransferNotification(transfer);
+
+        log.info("Transfer completed via ledger: ref={}, from={}, to={}, amount={}",
+                transfer.getReferenceNumber(), sourceAccount.getAccountNumber(),
+                destAccount.getAccountNumber(), amount);
+        return mapToResponse(transfer);
+    }
+
+    private BulkTransferItemResponse itemResult(BulkTransferItemRequest item, BulkTransferItemStatus status,
+                                                String failureReason, TransferResponse transfer) {
+        return BulkTransferItemResponse.builder()
+                .idempotencyKey(item.getIdempotencyKey())
+                .toAccountNumber(item.getToAccountNumber())
+                .amount(item.getAmount())
+                .status(status)
+                .failureReason(failureReason)
+                .transfer(transfer)
+                .build();
+    }
+
+    private BulkTransferResponse buildBulkResponse(String fromAccountNumber, String currency, BigDecimal totalAmount,
+                                                   BulkTransferItemResponse[] results) {
+        List<BulkTransferItemResponse> items = Arrays.asList(results);
+        return BulkTransferResponse.builder()
+                .fromAccountNumber(fromAccountNumber)
+                .totalAmount(totalAmount)
+                .currency(currency)
+                .completedCount(countByStatus(items, BulkTransferItemStatus.COMPLETED))
+                .duplicateCount(countByStatus(items, BulkTransferItemStatus.DUPLICATE))
+                .rejectedCount(countByStatus(items, BulkTransferItemStatus.REJECTED))
+                .items(items)
+                .build();
+    }
+
+    private int countByStatus(List<BulkTransferItemResponse> items, BulkTransferItemStatus status) {
+        return (int) items.stream().filter(item -> item.getStatus() == status).count();
+    }
+
+    private Optional<Wallet> findWalletOf(List<Wallet> wallets, String accountNumber) {
+        return wallets.stream()
+                .filter(wallet -> accountNumber.equals(wallet.getAccount().getAccountNumber()))
+                .findFirst();
+    }
+
     private void validateAccountActive(Account account, String label) {
         if (account.getStatus() != AccountStatus.ACTIVE) {
             throw new InvalidOperationException(
@@ -201,23 +588,15 @@ public class TransferServiceImpl implements TransferService {
     }
 
     private void publishTransferEvent(Transfer transfer) {
-        try {
-            String event = String.format(
-                    "{\"eventType\":\"TRANSFER_COMPLETED\",\"referenceNumber\":\"%s\"," +
-                            "\"sourceAccountNumber\":\"%s\",\"destinationAccountNumber\":\"%s\"," +
-                            "\"amount\":\"%s\",\"currency\":\"%s\",\"timestamp\":\"%s\"}",
-                    transfer.getReferenceNumber(),
-                    transfer.getSourceAccount().getAccountNumber(),
-                    transfer.getDestinationAccount().getAccountNumber(),
-                    transfer.getAmount().toPlainString(),
-                    transfer.getCurrency(),
-                    java.time.LocalDateTime.now()
-            );
-            kafkaTemplate.send(TRANSFER_EVENTS_TOPIC, transfer.getReferenceNumber(), event);
-            log.debug("Transfer event published: ref={}", transfer.getReferenceNumber());
-        } catch (Exception e) {
-            log.error("Failed to publish transfer event: {}", e.getMessage(), e);
-        }
+        TransferCompletedEvent event = TransferCompletedEvent.builder()
+                .transferRef(transfer.getReferenceNumber())
+                .fromAccountNumber(transfer.getSourceAccount().getAccountNumber())
+                .toAccountNumber(transfer.getDestinationAccount().getAccountNumber())
+                .amount(transfer.getAmount())
+                .currency(transfer.getCurrency())
+                .build();
+        outboxService.publish(TRANSFER_EVENTS_TOPIC, transfer.getReferenceNumber(), event);
+        log.debug("Transfer event published: ref={}", transfer.getReferenceNumber());
     }
 
     private TransferResponse mapToResponse(Transfer transfer) {
@@ -1,5 +1,7 @@
 package com.fintech.payment.service.impl;
 
+import com.fintech.payment.concurrency.RetryOnOptimisticLock;
+import com.fintech.payment.concurrency.WalletLockManager;
 import com.fintech.payment.exception.InsufficientBalanceException;
 import com.fintech.payment.exception.InvalidOperationException;
 import com.fintech.payment.exception.ResourceNotFoundException;
@@ -10,18 +12,31 @@ import com.fintech.payment.entity.Transaction;
 import com.fintech.payment.entity.Wallet;
 import com.fintech.payment.enums.TransactionType;
 import com.fintech.payment.enums.WalletStatus;
+import com.fintech.payment.event.TransactionCreatedEvent;
 import com.fintech.payment.repository.AccountRepository;
+import com.fintech.payment.repository.WalletBalanceView;
 import com.fintech.payment.repository.WalletRepository;
+import com.fintech.payment.service.DepositCoalescer;
+import com.fintech.payment.service.DepositCoalescer.CoalescedDeposit;
 import com.fintech.payment.service.NotificationService;
+import com.fintech.payment.service.OutboxService;
 import com.fintech.payment.service.TransactionService;
 import com.fintech.payment.service.WalletService;
+import com.fintech.payment.service.WalletShardService;
+import com.fintech.payment.service.WalletShardService.ShardMovement;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
@@ -31,10 +46,19 @@ public class WalletServiceImpl implements WalletService {
     private static final String WALLET_EVENTS_TOPIC = "wallet-events";
 
     private final WalletRepository walletRepository;
+    private final WalletLockManager walletLockManager;
     private final AccountRepository accountRepository;
     private final TransactionService transactionService;
     private final NotificationService notificationService;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final WalletShardService walletShardService;
+    private final DepositCoalescer depositCoalescer;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxService outboxService;
+
+    @PostConstruct
+    public void registerCoalescedDepositHandler() {
+        depositCoalescer.onApplied(this::publishCoalescedDeposit);
+    }
 
     @Override
     @Transactional
@@ -80,37 +104,59 @@ public class WalletServiceImpl implements WalletService {
         Wallet wallet = walletRepository.findByAccountId(accountId)
                 .orElseThrow(() -> new ResourceNotFoundException("Wallet", "accountId", accountId));
 
+        // Sharded wallets report the home balance plus the sum of all shards
+        BigDecimal shardBalance = walletShardService.getShardBalance(wallet);
+
         return BalanceResponse.builder()
                 .walletId(wallet.getId())
-                .totalBalance(wallet.getBalance())
-                .availableBalance(wallet.getAvailableBalance())
+                .totalBalance(wallet.getBalance().add(shardBalance))
+                .availableBalance(wallet.getAvailableBalance().add(shardBalance))
                 .frozenAmount(wallet.getFrozenAmount())
                 .currency(wallet.getCurrency())
+                .shardCount(wallet.getShardCount())
                 .build();
     }
 
     @Override
-    @Transactional
     public WalletResponse deposit(Long accountId, BigDecimal amount, String description, String idempotencyKey) {
         log.info("Processing deposit: accountId={}, amount={}, idempotencyKey={}", accountId, amount, idempotencyKey);
 
         validateAmount(amount);
 
-        // Acquire pessimistic lock on wallet to prevent concurrent modifications
-        Wallet wallet = walletRepository.findByAccountIdWithPessimisticLock(accountId)
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "accountId", accountId));
+        // Coalesce only when no caller transaction is open; inside one the deposit must join it
+        if (depositCoalescer.isEnabled() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            CoalescedDeposit coalesced = awaitCoalescedDeposit(
+                    depositCoalescer.submit(accountId, amount, description, idempotencyKey));
+            if (coalesced != null) {
+                return completeCoalescedDeposit(accountId, amount, coalesced);
+            }
+        }
 
-        validateWalletActive(wallet);
+        return transactionTemplate.execute(status -> applyDeposit(accountId, amount, description, idempotencyKey));
+    }
 
-        BigDecimal balanceBefore = wallet.getBalance();
-        BigDecimal balanceAfter = balanceBefore.add(amount);
+    private WalletResponse applyDeposit(Long accountId, BigDecimal amount, String description, String idempotencyKey) {
+        // Single conditional UPDATE ... RETURNING: no SELECT ... FOR UPDATE round trip beforehand
+        Optional<WalletBalanceView> credited =
+                walletRepository.creditByAccountId(accountId, amount, LocalDateTime.now());
+        if (credited.isEmpty()) {
+            Wallet wallet = walletRepository.findByAccountId(accountId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Wallet", "accountId", accountId));
+            validateWalletActive(wallet);
+            if (!wallet.isSharded()) {
+                throw new InvalidOperationException(
+                        "Deposit could not be applied to wallet " + wallet.getId() + ", please retry");
+            }
+            return depositToShard(wallet, amount, description, idempotencyKey);
+        }
+        WalletBalanceView wallet = credited.get();
 
-        wallet.setBalance(balanceAfter);
-        wallet = walletRepository.save(wallet);
+        BigDecimal balanceAfter = wallet.getBalance();
+        BigDecimal balanceBefore = balanceAfter.subtract(amount);
 
         // Create transaction record
         Transaction transaction = transactionService.createTransaction(
-                wallet.getId(),
+                wallet.getWalletId(),
                 TransactionType.DEPOSIT,
                 amount,
                 balanceBefore,
@@ -121,43 +167,43 @@ public class WalletServiceImpl implements WalletService {
         );
 
         // Publish Kafka event for downstream processing
-        publishWalletEvent(wallet, "DEPOSIT", amount);
+        publishWalletEvent(wallet.getWalletId(), accountId, "DEPOSIT", amount, balanceAfter, wallet.getCurrency());
 
         // Send notification
         notificationService.sendTransactionNotification(transaction);
 
-        log.info("Deposit completed: walletId={}, amount={}, newBalance={}", wallet.getId(), amount, balanceAfter);
-        return mapToResponse(wallet);
+        log.info("Deposit completed: walletId={}, amount={}, newBalance={}", wallet.getWalletId(), amount, balanceAfter);
+        return mapToResponse(wallet, accountId);
     }
 
     @Override
     @Transactional
+    @RetryOnOptimisticLock
     public WalletResponse withdraw(Long accountId, BigDecimal amount, String description, String idempotencyKey) {
         log.info("Processing withdrawal: accountId={}, amount={}, idempotencyKey={}", accountId, amount, idempotencyKey);
 
         validateAmount(amount);
 
-        // Acquire pessimistic lock
-        Wallet wallet = walletRepository.findByAccountIdWithPessimisticLock(accountId)
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "accountId", accountId));
-
-        validateWalletActive(wallet);
-
-        // Check sufficient available balance (total minus frozen)
-        BigDecimal availableBalance = wallet.getAvailableBalance();
-        if (availableBalance.compareTo(amount) < 0) {
-            throw new InsufficientBalanceException(amount, availableBalance);
+        // The available-balance check (total minus frozen) is part of the UPDATE's WHERE clause
+        Optional<WalletBalanceView> debited =
+                walletRepository.debitByAccountId(accountId, amount, LocalDateTime.now());
+        if (debited.isEmpty()) {
+            // Rejection path only: load the row for update to report why, or to borrow from shards
+            Wallet wallet = walletLockManager.loadForUpdateByAccountId(accountId);
+            validateWalletActive(wallet);
+            if (!wallet.isSharded()) {
+                throw new InsufficientBalanceException(amount, wallet.getAvailableBalance());
+            }
+            return withdrawFromShards(wallet, amount, description, idempotencyKey);
         }
+        WalletBalanceView wallet = debited.get();
 
-        BigDecimal balanceBefore = wallet.getBalance();
-        BigDecimal balanceAfter = balanceBefore.subtract(amount);
-
-        wallet.setBalance(balanceAfter);
-        wallet = walletRepository.save(wallet);
+        BigDecimal balanceAfter = wallet.getBalance();
+        BigDecimal balanceBefore = balanceAfter.add(amount);
 
         // Create transaction record
         Transaction transaction = transactionService.createTransaction(
-                wallet.getId(),
+                wallet.getWalletId(),
                 TransactionType.WITHDRAWAL,
                 amount,
                 balanceBefore,
@@ -167,25 +213,46 @@ public class WalletServiceImpl implements WalletService {
                 null
         );
 
+        // A sharded wallet may cover the debit from its home balance; report the summed balance either way
+        WalletResponse response = mapToResponse(wallet, accountId);
+
         // Publish Kafka event
-        publishWalletEvent(wallet, "WITHDRAWAL", amount);
+        publishWalletEvent(wallet.getWalletId(), accountId, "WITHDRAWAL", amount, response.getBalance(),
+                wallet.getCurrency());
 
         // Send notification
         notificationService.sendTransactionNotification(transaction);
 
-        log.info("Withdrawal completed: walletId={}, amount={}, newBalance={}", wallet.getId(), amount, balanceAfter);
-        return mapToResponse(wallet);
+        log.info("Withdrawal completed: walletId={}, amount={}, newBalance={}",
+                wallet.getWalletId(), amount, response.getBalance());
+        return response;
     }
 
     @Override
     @Transactional
+    public WalletResponse enableSharding(Long accountId, int shardCount) {
+        Wallet wallet = walletRepository.findByAccountId(accountId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "accountId", accountId));
+        return mapToResponse(walletShardService.enableSharding(wallet.getId(), shardCount));
+    }
+
+    @Override
+    @Transactional
+    public WalletResponse disableSharding(Long accountId) {
+        Wallet wallet = walletRepository.findByAccountId(accountId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "accountId", accountId));
+        return mapToResponse(walletShardService.disableSharding(wallet.getId()));
+    }
+
+    @Override
+    @Transactional
+    @RetryOnOptimisticLock
     public Wallet freezeAmount(Long walletId, BigDecimal amount) {
         log.info("Freezing amount: walletId={}, amount={}", walletId, amount);
 
         validateAmount(amount);
 
-        Wallet wallet = walletRepository.findByIdWithPessimisticLock(walletId)
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", walletId));
+        Wallet wallet = walletLockManager.loadForUpdate(walletId);
 
         validateWalletActive(wallet);
 
@@ -204,13 +271,13 @@ public class WalletServiceImpl implements WalletService {
 
     @Override
     @Transactional
+    @RetryOnOptimisticLock
     public Wallet unfreezeAmount(Long walletId, BigDecimal amount) {
         log.info("Unfreezing amount: walletId={}, amount={}", walletId, amount);
 
         validateAmount(amount);
 
-        Wallet wallet = walletRepository.findByIdWithPessimisticLock(walletId)
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", walletId));
+        Wallet wallet = walletLockManager.loadForUpdate(walletId);
 
         BigDecimal currentFrozen = wallet.getFrozenAmount();
         if (currentFrozen.compareTo(amount) < 0) {
@@ -239,37 +306,187 @@ public class WalletServiceImpl implements WalletService {
         }
     }
 
-    private void publishWalletEvent(Wallet wallet, String eventType, BigDecimal amount) {
+    private CoalescedDeposit awaitCoalescedDeposit(CompletableFuture<CoalescedDeposit> future) {
         try {
-            String event = String.format(
-                    "{\"eventType\":\"%s\",\"walletId\":%d,\"accountId\":%d,\"amount\":\"%s\",\"balance\":\"%s\",\"currency\":\"%s\",\"timestamp\":\"%s\"}",
-                    eventType,
-                    wallet.getId(),
-                    wallet.getAccount().getId(),
-                    amount.toPlainString(),
-                    wallet.getBalance().toPlainString(),
-                    wallet.getCurrency(),
-                    java.time.LocalDateTime.now()
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Builds the response for a deposit applied by the coalescer. The response carries
+     * this caller's own balance after its deposit, not the balance after the whole batch.
+     */
+    private WalletResponse completeCoalescedDeposit(Long accountId, BigDecimal amount, CoalescedDeposit coalesced) {
+        Transaction transaction = coalesced.getTransaction();
+        if (coalesced.isDuplicate()) {
+            log.info("Duplicate deposit detected for idempotency key: {}", transaction.getIdempotencyKey());
+            return getWalletByAccountId(accountId);
+        }
+
+        WalletBalanceView wallet = coalesced.getWallet();
+        log.info("Deposit completed: walletId={}, amount={}, newBalance={}",
+                wallet.getWalletId(), amount, transaction.getBalanceAfter());
+        return WalletResponse.builder()
+                .id(wallet.getWalletId())
+                .accountId(accountId)
+                .balance(transaction.getBalanceAfter())
+                .frozenAmount(wallet.getFrozenAmount())
+                .availableBalance(transaction.getBalanceAfter().subtract(wallet.getFrozenAmount()))
+                .currency(wallet.getCurrency())
+                .status(WalletStatus.ACTIVE)
+                .createdAt(wallet.getCreatedAt())
+                .updatedAt(wallet.getUpdatedAt())
+                .build();
+    }
+
+    /**
+     * Credits a sharded wallet through one of its shards. Only the shard row is locked;
+     * the balances recorded on the transaction refer to that shard.
+     */
+    private WalletResponse depositToShard(Wallet wallet, BigDecimal amount,
+                                          String description, String idempotencyKey) {
+        ShardMovement movement = walletShardService.credit(wallet, amount, idempotencyKey);
+
+        Transaction transaction = transactionService.createTransaction(
+                wallet.getId(),
+                TransactionType.DEPOSIT,
+                amount,
+                movement.getBalanceBefore(),
+                movement.getBalanceAfter(),
+                description != null ? description : "Deposit to wallet",
+                idempotencyKey,
+                null,
+                movement.toMetadata()
+        );
+
+        WalletResponse response = mapToResponse(wallet);
+        publishWalletEvent(wallet.getId(), wallet.getAccount().getId(), "DEPOSIT", amount,
+                response.getBalance(), wallet.getCurrency());
+        notificationService.sendTransactionNotification(transaction);
+
+        log.info("Deposit completed: walletId={}, shard={}, amount={}",
+                wallet.getId(), movement.getShardIndex(), amount);
+        return response;
+    }
+
+    /**
+     * Debits a sharded wallet whose home balance alone could not cover the amount.
+     * Tries each shard in turn; if no single shard is large enough, all shards are
+     * consolidated onto the home balance of the already locked wallet and debited there.
+     */
+    private WalletResponse withdrawFromShards(Wallet lockedWallet, BigDecimal amount,
+                                              String description, String idempotencyKey) {
+        String effectiveDescription = description != null ? description : "Withdrawal from wallet";
+        Transaction transaction;
+
+        ShardMovement movement = walletShardService.debit(lockedWallet, amount);
+        if (movement != null) {
+            transaction = transactionService.createTransaction(
+                    lockedWallet.getId(),
+                    TransactionType.WITHDRAWAL,
+                    amount,
+                    movement.getBalanceBefore(),
+                    movement.getBalanceAfter(),
+                    effectiveDescription,
+                    idempotencyKey,
+                    null,
+                    movement.toMetadata()
+            );
+        } else {
+            walletShardService.consolidate(lockedWallet);
+
+            BigDecimal availableBalance = lockedWallet.getAvailableBalance();
+            if (availableBalance.compareTo(amount) < 0) {
+                throw new InsufficientBalanceException(amount, availableBalance);
+            }
+
+            BigDecimal balanceBefore = lockedWallet.getBalance();
+            lockedWallet.setBalance(balanceBefore.subtract(amount));
+            lockedWallet = walletRepository.save(lockedWallet);
+
+            transaction = transactionService.createTransaction(
+                    lockedWallet.getId(),
+                    TransactionType.WITHDRAWAL,
+                    amount,
+                    balanceBefore,
+                    lockedWallet.getBalance(),
+                    effectiveDescription,
+                    idempotencyKey,
+                    null
             );
-            kafkaTemplate.send(WALLET_EVENTS_TOPIC, wallet.getId().toString(), event);
-            log.debug("Wallet event published: {}", eventType);
-        } catch (Exception e) {
-            // Log but don't fail the transaction for Kafka errors
-            log.error("Failed to publish wallet event: {}", e.getMessage(), e);
         }
+
+        WalletResponse response = mapToResponse(lockedWallet);
+        publishWalletEvent(lockedWallet.getId(), lockedWallet.getAccount().getId(), "WITHDRAWAL", amount,
+                response.getBalance(), lockedWallet.getCurrency());
+        notificationService.sendTransactionNotification(transaction);
+
+        log.info("Withdrawal completed: walletId={}, amount={}, newBalance={}",
+                lockedWallet.getId(), amount, response.getBalance());
+        return response;
+    }
+
+    /**
+     * Publishes and notifies for a deposit applied by the coalescer, inside its flush
+     * transaction so the outbox rows commit with the deposit.
+     */
+    private void publishCoalescedDeposit(Long accountId, CoalescedDeposit coalesced) {
+        Transaction transaction = coalesced.getTransaction();
+        WalletBalanceView wallet = coalesced.getWallet();
+        publishWalletEvent(wallet.getWalletId(), accountId, "DEPOSIT", transaction.getAmount(),
+                transaction.getBalanceAfter(), wallet.getCurrency());
+        notificationService.sendTransactionNotification(transaction);
+    }
+
+    private void publishWalletEvent(Long walletId, Long accountId, String eventType,
+                                    BigDecimal amount, BigDecimal balance, String currency) {
+        // No catch: the event commits with the balance change or not at all
+        TransactionCreatedEvent event = TransactionCreatedEvent.builder()
+                .type(eventType)
+                .walletId(walletId)
+                .accountId(accountId)
+                .amount(amount)
+                .balance(balance)
+                .currency(currency)
+                .build();
+        outboxService.publish(WALLET_EVENTS_TOPIC, walletId.toString(), event);
+        log.debug("Wallet event published: {}", eventType);
     }
 
     private WalletResponse mapToResponse(Wallet wallet) {
+        BigDecimal shardBalance = walletShardService.getShardBalance(wallet);
         return WalletResponse.builder()
                 .id(wallet.getId())
                 .accountId(wallet.getAccount().getId())
-                .balance(wallet.getBalance())
+                .balance(wallet.getBalance().add(shardBalance))
                 .frozenAmount(wallet.getFrozenAmount())
-                .availableBalance(wallet.getAvailableBalance())
+                .availableBalance(wallet.getAvailableBalance().add(shardBalance))
                 .currency(wallet.getCurrency())
                 .status(wallet.getStatus())
                 .createdAt(wallet.getCreatedAt())
                 .updatedAt(wallet.getUpdatedAt())
                 .build();
     }
+
+    private WalletResponse mapToResponse(WalletBalanceView wallet, Long accountId) {
+        BigDecimal shardBalance = wallet.isSharded()
+                ? walletShardService.getShardBalance(wallet.getWalletId())
+                : BigDecimal.ZERO;
+        return WalletResponse.builder()
+                .id(wallet.getWalletId())
+                .accountId(accountId)
+                .balance(wallet.getBalance().add(shardBalance))
+                .frozenAmount(wallet.getFrozenAmount())
+                .availableBalance(wallet.getAvailableBalance().add(shardBalance))
+                .currency(wallet.getCurrency())
+                .status(WalletStatus.ACTIVE)
+                .createdAt(wallet.getCreatedAt())
+                .updatedAt(wallet.getUpdatedAt())
+                .build();
+    }
 }
@@ -0,0 +1,164 @@
+package com.fintech.payment.service.impl;
+
+import com.fintech.payment.entity.Wallet;
+import com.fintech.payment.entity.WalletShard;
+import com.fintech.payment.exception.InvalidOperationException;
+import com.fintech.payment.exception.ResourceNotFoundException;
+import com.fintech.payment.repository.WalletRepository;
+import com.fintech.payment.repository.WalletShardRepository;
+import com.fintech.payment.service.WalletShardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WalletShardServiceImpl implements WalletShardService {
+
+    private final WalletRepository walletRepository;
+    private final WalletShardRepository walletShardRepository;
+
+    @Value("${wallet.sharding.max-shards:64}")
+    private int maxShards;
+
+    @Override
+    @Transactional
+    public Wallet enableSharding(Long walletId, int shardCount) {
+        if (shardCount < 1 || shardCount > maxShards) {
+            throw new InvalidOperationException(
+                    "Shard count must be between 1 and " + maxShards + ", got " + shardCount);
+        }
+
+        Wallet wallet = walletRepository.findByIdWithPessimisticLock(walletId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", walletId));
+
+        if (shardCount < wallet.getShardCount()) {
+            throw new InvalidOperationException("Wallet " + walletId + " already has "
+                    + wallet.getShardCount() + " shards. Disable sharding before reducing the shard count");
+        }
+
+        for (int index = wallet.getShardCount(); index < shardCount; index++) {
+            walletShardRepository.save(WalletShard.builder()
+                    .wallet(wallet)
+                    .shardIndex(index)
+                    .balance(BigDecimal.ZERO)
+                    .build());
+        }
+
+        wallet.setShardCount(shardCount);
+        wallet = walletRepository.save(wallet);
+
+        log.info("Sharding enabled: walletId={}, shardCount={}", walletId, shardCount);
+        return wallet;
+    }
+
+    @Override
+    @Transactional
+    public Wallet disableSharding(Long walletId) {
+        Wallet wallet = walletRepository.findByIdWithPessimisticLock(walletId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", walletId));
+
+        if (!wallet.isSharded()) {
+            return wallet;
+        }
+
+        BigDecimal moved = consolidate(wallet);
+        walletShardRepository.deleteByWalletId(walletId);
+
+        wallet.setShardCount(0);
+        wallet = walletRepository.save(wallet);
+
+        log.info("Sharding disabled: walletId={}, consolidatedAmount={}", walletId, moved);
+        return wallet;
+    }
+
+    @Override
+    @Transactional
+    public ShardMovement credit(Wallet wallet, BigDecimal amount, String routingKey) {
+        int shardCount = requireSharded(wallet);
+        int shardIndex = routingKey != null
+                ? Math.floorMod(routingKey.hashCode(), shardCount)
+                : ThreadLocalRandom.current().nextInt(shardCount);
+
+        BigDecimal balanceAfter = walletShardRepository
+                .creditShard(wallet.getId(), shardIndex, amount, LocalDateTime.now())
+                .orElseThrow(() -> new InvalidOperationException(
+                        "Shard " + shardIndex + " of wallet " + wallet.getId() + " no longer exists, please retry"));
+
+        log.debug("Shard credited: walletId={}, shard={}, amount={}", wallet.getId(), shardIndex, amount);
+        return new ShardMovement(shardIndex, balanceAfter.subtract(amount), balanceAfter);
+    }
+
+    @Override
+    @Transactional
+    public ShardMovement debit(Wallet wallet, BigDecimal amount) {
+        int shardCount = requireSharded(wallet);
+        int start = ThreadLocalRandom.current().nextInt(shardCount);
+
+        for (int i = 0; i < shardCount; i++) {
+            int shardIndex = (start + i) % shardCount;
+            Optional<BigDecimal> balanceAfter = walletShardRepository
+                    .debitShard(wallet.getId(), shardIndex, amount, LocalDateTime.now());
+            if (balanceAfter.isPresent()) {
+                log.debug("Shard debited: walletId={}, shard={}, amount={}", wallet.getId(), shardIndex, amount);
+                return new ShardMovement(shardIndex, balanceAfter.get().add(amount), balanceAfter.get());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @Transactional
+    public BigDecimal consolidate(Wallet lockedWallet) {
+        if (!lockedWallet.isSharded()) {
+            return BigDecimal.ZERO;
+        }
+
+        List<WalletShard> shards = walletShardRepository.findByWalletIdForUpdate(lockedWallet.getId());
+        BigDecimal moved = BigDecimal.ZERO;
+        for (WalletShard shard : shards) {
+            if (shard.getBalance().signum() > 0) {
+                moved = moved.add(shard.getBalance());
+                shard.setBalance(BigDecimal.ZERO);
+            }
+        }
+
+        if (moved.signum() > 0) {
+            walletShardRepository.saveAll(shards);
+            lockedWallet.setBalance(lockedWallet.getBalance().add(moved));
+            log.info("Shards consolidated: walletId={}, amount={}", lockedWallet.getId(), moved);
+        }
+        return moved;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal getShardBalance(Wallet wallet) {
+        if (!wallet.isSharded()) {
+            return BigDecimal.ZERO;
+        }
+        return walletShardRepository.sumBalanceByWalletId(wallet.getId());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal getShardBalance(Long walletId) {
+        return walletShardRepository.sumBalanceByWalletId(walletId);
+    }
+
+    private int requireSharded(Wallet wallet) {
+        if (!wallet.isSharded()) {
+            throw new InvalidOperationException("Wallet " + wallet.getId() + " is not sharded");
+        }
+        return wallet.getShardCount();
+    }
+}
@@ -0,0 +1,63 @@
+package com.fintech.payment.service.impl;
+
+import com.fintech.payment.exception.InvalidTransferException;
+import com.fintech.payment.repository.WalletDailyVelocityRepository;
+import com.fintech.payment.service.WalletVelocityService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WalletVelocityServiceImpl implements WalletVelocityService {
+
+    private final WalletDailyVelocityRepository velocityRepository;
+
+    /** Zero or less disables the limit. */
+    @Value("${transfer.daily-limit:0}")
+    private BigDecimal dailyLimit;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOutbound(Long walletId, BigDecimal amount, int count) {
+        if (dailyLimit.signum() <= 0) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        BigDecimal totalToday = velocityRepository.addOutbound(walletId, today, amount, count, dailyLimit,
+                        LocalDateTime.now())
+                .orElseThrow(() -> new InvalidTransferException(
+                        String.format("Daily transfer limit exceeded. Today's total: %s, Requested: %s, Limit: %s",
+                                velocityRepository.findOutboundAmount(walletId, today).orElse(BigDecimal.ZERO),
+                                amount, dailyLimit)));
+
+        log.debug("Daily velocity updated: walletId={}, amount={}, todayTotal={}, limit={}",
+                walletId, amount, totalToday, dailyLimit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal getOutboundToday(Long walletId) {
+        return velocityRepository.findOutboundAmount(walletId, LocalDate.now()).orElse(BigDecimal.ZERO);
+    }
+
+    @Override
+    @Transactional
+    public int rebuild(LocalDate businessDate) {
+        int cleared = velocityRepository.deleteByBusinessDate(businessDate);
+        int rebuilt = velocityRepository.rebuildFromTransactions(businessDate, businessDate.atStartOfDay(),
+                businessDate.plusDays(1).atStartOfDay(), LocalDateTime.now());
+
+        log.info("Daily velocity rebuilt: businessDate={}, cleared={}, rebuilt={}", businessDate, cleared, rebuilt);
+        return rebuilt;
+    }
+}
@@ -3,24 +3,29 @@ package com.fintech.payment.service.impl;
 import com.fintech.payment.entity.WebhookEvent;
 import com.fintech.payment.enums.WebhookStatus;
 import com.fintech.payment.repository.WebhookEventRepository;
+import com.fintech.payment.repository.WebhookRetryView;
 import com.fintech.payment.service.WebhookService;
+import com.fintech.payment.webhook.WebhookBatcher;
+import com.fintech.payment.webhook.WebhookDispatcher;
+import com.fintech.payment.webhook.WebhookRetryScheduler;
+import com.fintech.payment.webhook.WebhookSignatures;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import javax.annotation.PostConstruct;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 
 @Slf4j
@@ -28,31 +33,68 @@ import java.util.List;
 @RequiredArgsConstructor
 public class WebhookServiceImpl implements WebhookService {
 
-    private static final String HMAC_SHA256 = "HmacSHA256";
-    private static final String SIGNATURE_HEADER = "X-Webhook-Signature";
-    private static final String TIMESTAMP_HEADER = "X-Webhook-Timestamp";
-    private static final String EVENT_TYPE_HEADER = "X-Webhook-Event";
+    private final WebhookEventRepository webhookEventRepository;
+    private final WebhookDispatcher webhookDispatcher;
+    private final TransactionTemplate transactionTemplate;
+    private final WebhookRetryScheduler retryScheduler;
+    private final WebhookBatcher webhookBatcher;
+
+    @Value("${webhook.secret.default:default-webhook-secret-key-change-in-production}")
+    private String defaultWebhookSecret;
+
+    /** Added to the dispatcher's worst-case delivery time when the lease is derived from it. */
+    private static final Duration HANDOFF_MARGIN = Duration.ofMinutes(1);
 
     /**
-     * Exponential backoff intervals in minutes: 1, 5, 15, 60, 240
+     * How long an event handed to the dispatcher is left alone by the retry sweep.
+     * Covers the dispatcher queue and one delivery attempt; an event still PENDING or
+     * RETRYING after that was lost, e.g. on a restart, and is dispatched again. Raised
+     * at startup if it is not longer than the dispatcher's worst-case delivery time.
      */
-    private static final int[] RETRY_BACKOFF_MINUTES = {1, 5, 15, 60, 240};
+    @Value("${webhook.dispatcher.handoff-timeout-minutes:20}")
+    private long handoffTimeoutMinutes;
 
-    private final WebhookEventRepository webhookEventRepository;
-    private final RestTemplate restTemplate;
+    private Duration handoffTimeout;
 
-    @Value("${webhook.secret.default:default-webhook-secret-key-change-in-production}")
-    private String defaultWebhookSecret;
+    @Value("${webhook.retry.batch-size:200}")
+    private int batchSize;
+
+    @Value("${webhook.retry.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    @Value("${webhook.retry.max-unfinished-deliveries:1000}")
+    private int maxUnfinishedDeliveries;
+
+    /** Retries due within this window are loaded into the retry wheel on startup. */
+    @Value("${webhook.retry.wheel.rehydrate-horizon-minutes:300}")
+    private long rehydrateHorizonMinutes;
+
+    @Value("${webhook.retry.wheel.max-scheduled:100000}")
+    private int maxScheduled;
+
+    @PostConstruct
+    public void init() {
+        handoffTimeout = Duration.ofMinutes(handoffTimeoutMinutes);
+        Duration maxDeliveryTime = webhookDispatcher.maxDeliveryTime();
+        if (handoffTimeout.compareTo(maxDeliveryTime) <= 0) {
+            handoffTimeout = maxDeliveryTime.plus(HANDOFF_MARGIN);
+            log.warn("webhook.dispatcher.handoff-timeout-minutes ({}) is not longer than the worst-case "
+                    + "delivery time ({}s); using {}s", handoffTimeoutMinutes,
+                    maxDeliveryTime.getSeconds(), handoffTimeout.getSeconds());
+        }
+        retryScheduler.onDue(this::retryScheduledWebhooks);
+    }
 
     @Override
     @Transactional
     public void sendWebhook(String eventType, String payload, String targetUrl) {
         log.info("Sending webhook: eventType={}, targetUrl={}", eventType, targetUrl);
 
-        // Generate HMAC-SHA256 signature
-        String signature = computeHmacSha256(payload, defaultWebhookSecret);
+        // Batched targets get one signature per batch, computed when it is sent
+        String signature = webhookBatcher.isBatched(targetUrl)
+                ? null : WebhookSignatures.hmacSha256(payload, defaultWebhookSecret);
 
-        // Persist webhook event before sending
+        // Persist the event in the caller's transaction; delivery starts after it commits
         WebhookEvent webhookEvent = WebhookEvent.builder()
                 .eventType(eventType)
                 .payload(payload)
@@ -61,157 +103,142 @@ public class WebhookServiceImpl implements WebhookService {
                 .signature(signature)
                 .secretKey(defaultWebhookSecret)
                 .retryCount(0)
-                .maxRetries(RETRY_BACKOFF_MINUTES.length)
+                .maxRetries(WebhookDispatcher.MAX_RETRIES)
+                .nextRetryAt(LocalDateTime.now().plus(handoffTimeout))
                 .build();
 
-        webhookEvent = webhookEventRepository.save(webhookEvent);
-
-        // Attempt delivery
-        deliverWebhook(webhookEvent);
+        webhookDispatcher.dispatch(webhookEventRepository.save(webhookEvent));
     }
 
+    /**
+     * Claims due events in bounded batches, each in its own short transaction, and hands
+     * them to the dispatcher, which delivers them concurrently and saves every outcome on
+     * its own. The claim skips rows locked by other nodes and leases the rest for the
+     * handoff timeout, so each due event goes to exactly one node and every node adds
+     * throughput. A node stops claiming while its own unfinished deliveries are at the cap.
+     * Failed deliveries are normally retried on time by the retry wheel; this sweep is the
+     * backstop for events the wheel does not hold.
+     */
     @Override
-    @Scheduled(fixedDelayString = "${webhook.retry.interval-ms:60000}")
-    @Transactional
+    @Scheduled(fixedDelayString = "${webhook.retry.interval-ms:300000}")
     public void processWebhookRetries() {
-        List<WebhookStatus> retryableStatuses = Arrays.asList(
-                WebhookStatus.FAILED, WebhookStatus.RETRYING);
-
-        List<WebhookEvent> retryableWebhooks = webhookEventRepository.findRetryableWebhooks(
-                retryableStatuses, LocalDateTime.now());
-
-        if (!retryableWebhooks.isEmpty()) {
-            log.info("Processing {} webhook retries", retryableWebhooks.size());
-        }
+        int claimedTotal = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int capacity = maxUnfinishedDeliveries - webhookDispatcher.unfinishedDeliveries();
+            if (capacity <= 0) {
+                log.debug("Webhook retry sweep paused: {} deliveries unfinished",
+                        webhookDispatcher.unfinishedDeliveries());
+                break;
+            }
+            int limit = Math.min(batchSize, capacity);
 
-        for (WebhookEvent webhook : retryableWebhooks) {
+            List<WebhookEvent> claimed;
             try {
-                webhook.setStatus(WebhookStatus.RETRYING);
-                webhook.setRetryCount(webhook.getRetryCount() + 1);
-                webhookEventRepository.save(webhook);
-
-                deliverWebhook(webhook);
+                claimed = transactionTemplate.execute(status -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    return webhookEventRepository.claimDueWebhooks(
+                            now, now.plus(handoffTimeout), limit);
+                });
             } catch (Exception e) {
-                log.error("Error retrying webhook id={}: {}", webhook.getId(), e.getMessage());
+                log.error("Failed to claim webhook retries: {}", e.getMessage());
+                break;
+            }
+            if (claimed == null || claimed.isEmpty()) {
+                break;
             }
-        }
-    }
 
-    @Override
-    public boolean verifySignature(String payload, String signature, String secret) {
-        if (payload == null || signature == null || secret == null) {
-            return false;
+            dispatchClaimed(claimed);
+            claimedTotal += claimed.size();
+            if (claimed.size() < limit) {
+                break;
+            }
         }
 
-        String expectedSignature = computeHmacSha256(payload, secret);
-
-        // Constant-time comparison to prevent timing attacks
-        byte[] expectedBytes = expectedSignature.getBytes(StandardCharsets.UTF_8);
-        byte[] actualBytes = signature.getBytes(StandardCharsets.UTF_8);
-
-        return MessageDigest.isEqual(expectedBytes, actualBytes);
+        if (claimedTotal > 0) {
+            log.info("Processing {} webhook retries", claimedTotal);
+        }
     }
 
     /**
-     * Attempts to deliver a webhook via HTTP POST.
-     * Updates the webhook event status based on the response.
+     * Claims and dispatches webhooks whose retry time the wheel reports as reached.
+     * Ids already claimed by another node, or no longer due, are skipped by the claim.
      */
-    private void deliverWebhook(WebhookEvent webhookEvent) {
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set(SIGNATURE_HEADER, webhookEvent.getSignature());
-            headers.set(TIMESTAMP_HEADER, String.valueOf(System.currentTimeMillis()));
-            headers.set(EVENT_TYPE_HEADER, webhookEvent.getEventType());
-
-            HttpEntity<String> request = new HttpEntity<>(webhookEvent.getPayload(), headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    webhookEvent.getTargetUrl(),
-                    HttpMethod.POST,
-                    request,
-                    String.class
-            );
-
-            webhookEvent.setHttpStatusCode(response.getStatusCodeValue());
-            webhookEvent.setResponseBody(truncateResponse(response.getBody()));
-            webhookEvent.setLastAttemptedAt(LocalDateTime.now());
-
-            if (response.getStatusCode().is2xxSuccessful()) {
-                webhookEvent.setStatus(WebhookStatus.DELIVERED);
-                log.info("Webhook delivered successfully: id={}, eventType={}",
-                        webhookEvent.getId(), webhookEvent.getEventType());
-            } else {
-                handleDeliveryFailure(webhookEvent, "HTTP " + response.getStatusCodeValue());
+    private void retryScheduledWebhooks(List<Long> ids) {
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            if (webhookDispatcher.unfinishedDeliveries() >= maxUnfinishedDeliveries) {
+                // Left FAILED and due in the table, so the sweep retries them
+                log.warn("Webhook dispatcher saturated, leaving {} scheduled retries to the sweep",
+                        ids.size() - from);
+                return;
+            }
+            List<Long> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            try {
+                List<WebhookEvent> claimed = transactionTemplate.execute(status -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    return webhookEventRepository.claimWebhooksById(
+                            chunk, now, now.plus(handoffTimeout));
+                });
+                if (claimed != null) {
+                    dispatchClaimed(claimed);
+                }
+            } catch (Exception e) {
+                log.error("Failed to claim {} scheduled webhook retries: {}", chunk.size(), e.getMessage());
             }
-
-        } catch (Exception e) {
-            webhookEvent.setLastAttemptedAt(LocalDateTime.now());
-            handleDeliveryFailure(webhookEvent, e.getMessage());
         }
-
-        webhookEventRepository.save(webhookEvent);
     }
 
-    /**
-     * Handles webhook delivery failure. Schedules next retry with
-     * exponential backoff or marks as EXHAUSTED if max retries exceeded.
-     */
-    private void handleDeliveryFailure(WebhookEvent webhookEvent, String reason) {
-        int currentRetry = webhookEvent.getRetryCount();
-        int maxRetries = webhookEvent.getMaxRetries();
-
-        if (currentRetry >= maxRetries) {
-            webhookEvent.setStatus(WebhookStatus.EXHAUSTED);
-            webhookEvent.setResponseBody("Exhausted after " + maxRetries + " retries. Last error: " + reason);
-            log.warn("Webhook exhausted: id={}, eventType={}, retries={}",
-                    webhookEvent.getId(), webhookEvent.getEventType(), currentRetry);
-        } else {
-            webhookEvent.setStatus(WebhookStatus.FAILED);
-            int backoffIndex = Math.min(currentRetry, RETRY_BACKOFF_MINUTES.length - 1);
-            int backoffMinutes = RETRY_BACKOFF_MINUTES[backoffIndex];
-            webhookEvent.setNextRetryAt(LocalDateTime.now().plusMinutes(backoffMinutes));
-
-            log.info("Webhook delivery failed: id={}, retry={}/{}, nextRetryIn={}min, reason={}",
-                    webhookEvent.getId(), currentRetry, maxRetries, backoffMinutes, reason);
+    private void dispatchClaimed(List<WebhookEvent> claimed) {
+        for (WebhookEvent webhook : claimed) {
+            try {
+                webhookDispatcher.dispatch(webhook);
+            } catch (Exception e) {
+                // Still leased; the sweep after the handoff timeout picks it up again
+                log.error("Error retrying webhook id={}: {}", webhook.getId(), e.getMessage());
+            }
         }
     }
 
     /**
-     * Computes HMAC-SHA256 signature of the payload using the provided secret.
+     * Loads failed webhooks due within the rehydrate horizon into the retry wheel, so
+     * retries pending before a restart still fire on time. Runs once the application is
+     * ready rather than during bean init, so startup is not held up by the query.
      */
-    private String computeHmacSha256(String payload, String secret) {
+    @EventListener(ApplicationReadyEvent.class)
+    public void rehydrateRetryWheel() {
         try {
-            Mac mac = Mac.getInstance(HMAC_SHA256);
-            SecretKeySpec keySpec = new SecretKeySpec(
-                    secret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256);
-            mac.init(keySpec);
-            byte[] hmacBytes = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
-
-            // Convert to hex string
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hmacBytes) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
+            List<WebhookRetryView> upcoming = webhookEventRepository.findUpcomingRetries(
+                    WebhookStatus.FAILED, LocalDateTime.now().plusMinutes(rehydrateHorizonMinutes),
+                    PageRequest.of(0, maxScheduled));
+            int scheduled = 0;
+            List<Long> overdue = new ArrayList<>();
+            for (WebhookRetryView retry : upcoming) {
+                if (retryScheduler.schedule(retry.getId(), retry.getNextRetryAt())) {
+                    scheduled++;
+                } else if (!retry.getNextRetryAt().isAfter(LocalDateTime.now())) {
+                    overdue.add(retry.getId());
                 }
-                hexString.append(hex);
             }
-            return hexString.toString();
-
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            throw new RuntimeException("Failed to compute HMAC-SHA256 signature", e);
+            log.info("Webhook retry wheel rehydrated: scheduled={}, overdue={}", scheduled, overdue.size());
+            if (!overdue.isEmpty()) {
+                retryScheduledWebhooks(overdue);
+            }
+        } catch (Exception e) {
+            log.error("Webhook retry wheel rehydrate failed, retries wait for the sweep: {}", e.getMessage(), e);
         }
     }
 
-    /**
-     * Truncates response body to prevent storing excessively large responses.
-     */
-    private String truncateResponse(String response) {
-        if (response == null) {
-            return null;
+    @Override
+    public boolean verifySignature(String payload, String signature, String secret) {
+        if (payload == null || signature == null || secret == null) {
+            return false;
         }
-        int maxLength = 2000;
-        return response.length() > maxLength ? response.substring(0, maxLength) + "..." : response;
+
+        String expectedSignature = WebhookSignatures.hmacSha256(payload, secret);
+
+        // Constant-time comparison to prevent timing attacks
+        byte[] expectedBytes = expectedSignature.getBytes(StandardCharsets.UTF_8);
+        byte[] actualBytes = signature.getBytes(StandardCharsets.UTF_8);
+
+        return MessageDigest.isEqual(expectedBytes, actualBytes);
     }
 }
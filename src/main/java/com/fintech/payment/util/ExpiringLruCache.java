@@ -0,0 +1,174 @@
+package com.fintech.payment.util;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-process cache where every entry carries its own expiry time.
+ * Keys are spread over independently locked segments, each an access-ordered
+ * LRU map, so concurrent readers of different keys rarely contend. When a
+ * segment is full its least recently used entry is evicted. Expired entries
+ * are dropped when read and by {@link #purgeExpired()}.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class ExpiringLruCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final Clock clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpiringLruCache(int maxSize) {
+        this(maxSize, Clock.systemUTC());
+    }
+
+    @SuppressWarnings("unchecked")
+    public ExpiringLruCache(int maxSize, Clock clock) {
+        if (maxSize < SEGMENTS) {
+            throw new IllegalArgumentException("Cache size must be at least " + SEGMENTS);
+        }
+        this.clock = clock;
+        this.segments = new Segment[SEGMENTS];
+        int segmentSize = maxSize / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(segmentSize, evictions);
+        }
+    }
+
+    public Optional<V> get(K key) {
+        V value = segmentFor(key).get(key, clock.millis());
+        if (value == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(value);
+    }
+
+    /**
+     * Stores a value until the given time. A value that has already expired is not
+     * stored; any previous entry for the key is removed instead.
+     */
+    public void put(K key, V value, long expiresAtMillis) {
+        Segment<K, V> segment = segmentFor(key);
+        if (expiresAtMillis <= clock.millis()) {
+            segment.remove(key);
+        } else {
+            segment.put(key, value, expiresAtMillis);
+        }
+    }
+
+    public void invalidate(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * @return the number of expired entries removed
+     */
+    public int purgeExpired() {
+        long now = clock.millis();
+        int purged = 0;
+        for (Segment<K, V> segment : segments) {
+            purged += segment.purgeExpired(now);
+        }
+        return purged;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAtMillis;
+
+        private Entry(V value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private static final class Segment<K, V> {
+        private final LinkedHashMap<K, Entry<V>> entries;
+
+        private Segment(int maxSize, LongAdder evictions) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    if (size() > maxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private synchronized V get(K key, long now) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtMillis <= now) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+
+        private synchronized void put(K key, V value, long expiresAtMillis) {
+            entries.put(key, new Entry<>(value, expiresAtMillis));
+        }
+
+        private synchronized void remove(K key) {
+            entries.remove(key);
+        }
+
+        private synchronized int purgeExpired(long now) {
+            int purged = 0;
+            Iterator<Entry<V>> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().expiresAtMillis <= now) {
+                    iterator.remove();
+                    purged++;
+                }
+            }
+            return purged;
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+    }
+}
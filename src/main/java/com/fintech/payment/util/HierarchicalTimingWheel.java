@@ -0,0 +1,148 @@
+package com.fintech.payment.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel holding items until their deadline. Level 0 has one bucket
+ * per tick; every further level has buckets {@code wheelSize} times wider, so deadlines
+ * hours away need only a few levels. Adding an item and advancing one tick are both
+ * constant time. When time reaches a coarse bucket its items move down to finer levels,
+ * and they are returned by {@link #advance(long)} in the tick their deadline falls in.
+ * Deadlines are rounded up to the next tick, so an item is never returned early and at
+ * most one tick late. Methods are synchronized; the wheel is meant to be driven by a
+ * single ticking thread with items added from anywhere.
+ *
+ * @param <T> item type
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private static final int MAX_LEVELS = 8;
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<List<Entry<T>>[]> levels = new ArrayList<>();
+
+    private long currentTick;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("Tick must be positive and wheel size at least 2");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+        addLevel();
+    }
+
+    /**
+     * Adds an item due at the given time.
+     *
+     * @return false if the deadline has already passed, in which case the item is not
+     *         held and the caller should handle it now
+     */
+    public synchronized boolean add(T item, long deadlineMillis) {
+        long deadlineTick = -Math.floorDiv(-deadlineMillis, tickMillis);
+        if (deadlineTick <= currentTick) {
+            return false;
+        }
+        place(new Entry<>(item, deadlineTick));
+        size++;
+        return true;
+    }
+
+    /**
+     * Moves time forward to the given instant and returns every item that has become due,
+     * in deadline order at tick granularity. Moving backwards does nothing.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        List<T> due = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Coarse levels first, so entries moving down land before level 0 is read
+            for (int level = levels.size() - 1; level > 0; level--) {
+                long span = span(level);
+                if (currentTick % span == 0) {
+                    List<Entry<T>> bucket = takeBucket(level, currentTick / span);
+                    for (Entry<T> entry : bucket) {
+                        if (entry.deadlineTick <= currentTick) {
+                            due.add(entry.item);
+                            size--;
+                        } else {
+                            place(entry);
+                        }
+                    }
+                }
+            }
+            for (Entry<T> entry : takeBucket(0, currentTick)) {
+                due.add(entry.item);
+                size--;
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Number of items waiting for their deadline.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void place(Entry<T> entry) {
+        for (int level = 0; ; level++) {
+            if (level == levels.size()) {
+                addLevel();
+            }
+            long span = span(level);
+            boolean top = level == MAX_LEVELS - 1 || span > Long.MAX_VALUE / wheelSize;
+            // The top level takes anything further out; such entries go round again until due
+            if (entry.deadlineTick / span - currentTick / span < wheelSize || top) {
+                int index = (int) ((entry.deadlineTick / span) % wheelSize);
+                List<Entry<T>>[] buckets = levels.get(level);
+                if (buckets[index] == null) {
+                    buckets[index] = new ArrayList<>();
+                }
+                buckets[index].add(entry);
+                return;
+            }
+        }
+    }
+
+    private List<Entry<T>> takeBucket(int level, long slot) {
+        List<Entry<T>>[] buckets = levels.get(level);
+        int index = (int) (slot % wheelSize);
+        List<Entry<T>> bucket = buckets[index];
+        if (bucket == null) {
+            return List.of();
+        }
+        buckets[index] = null;
+        return bucket;
+    }
+
+    private long span(int level) {
+        long span = 1;
+        for (int i = 0; i < level; i++) {
+            span *= wheelSize;
+        }
+        return span;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addLevel() {
+        levels.add(new List[wheelSize]);
+    }
+
+    private static final class Entry<T> {
+
+        private final T item;
+        private final long deadlineTick;
+
+        private Entry(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.fintech.payment.util;
+
+import com.fintech.payment.dto.response.CursorPage;
+import com.fintech.payment.exception.InvalidOperationException;
+import lombok.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Position in a listing ordered by {@code createdAt DESC, id DESC}. Clients receive it as an
+ * opaque Base64 token and the next slice is read with a range predicate on the
+ * {@code (createdAt, id)} pair, so deep pages cost the same as the first one.
+ */
+@Value
+public class KeysetCursor {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private static final String SEPARATOR = "|";
+
+    LocalDateTime createdAt;
+    Long id;
+
+    /**
+     * Decodes a cursor received from a client.
+     *
+     * @return the cursor, or null for a missing or blank token (first page)
+     * @throws InvalidOperationException if the token is malformed
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidOperationException("Invalid pagination cursor");
+        }
+    }
+
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Limit for the repository query: one row more than requested, to tell whether a next slice exists.
+     */
+    public static Pageable probe(int size) {
+        return PageRequest.of(0, clamp(size) + 1);
+    }
+
+    /**
+     * Builds the response slice from rows fetched with {@link #probe(int)}.
+     */
+    public static <E, R> CursorPage<R> page(List<E> rows, int size, Function<E, R> mapper,
+                                            Function<E, LocalDateTime> createdAt, Function<E, Long> id) {
+        int limit = clamp(size);
+        boolean hasNext = rows.size() > limit;
+        List<E> slice = hasNext ? rows.subList(0, limit) : rows;
+
+        String nextCursor = null;
+        if (hasNext) {
+            E last = slice.get(slice.size() - 1);
+            nextCursor = new KeysetCursor(createdAt.apply(last), id.apply(last)).encode();
+        }
+
+        return CursorPage.<R>builder()
+                .content(slice.stream().map(mapper).collect(Collectors.toList()))
+                .size(slice.size())
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private static int clamp(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+}
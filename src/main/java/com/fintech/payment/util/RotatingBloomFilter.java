@@ -0,0 +1,188 @@
+package com.fintech.payment.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over a sliding time window. The window is split into fixed-width
+ * buckets held in a ring; each key is added to the bucket of the time it was seen
+ * and looked up in every bucket still inside the window. A ring slot is cleared
+ * lazily the first time it is written for a new bucket, so memberships age out a
+ * bucket at a time without a background sweep.
+ *
+ * <p>{@link #mightContain} never returns false for a key added within the window;
+ * it may return true for a key never added, with roughly the configured false
+ * positive probability per bucket.</p>
+ */
+public class RotatingBloomFilter {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Slot[] slots;
+    private final long bucketMillis;
+    private final int bitCount;
+    private final int hashCount;
+    private final Clock clock;
+
+    public RotatingBloomFilter(long windowMillis, long bucketMillis, int expectedKeysPerBucket,
+                               double falsePositiveRate) {
+        this(windowMillis, bucketMillis, expectedKeysPerBucket, falsePositiveRate, Clock.systemUTC());
+    }
+
+    public RotatingBloomFilter(long windowMillis, long bucketMillis, int expectedKeysPerBucket,
+                               double falsePositiveRate, Clock clock) {
+        if (bucketMillis <= 0 || windowMillis < bucketMillis) {
+            throw new IllegalArgumentException("Window must span at least one positive bucket width");
+        }
+        if (expectedKeysPerBucket <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected keys must be positive and the false positive rate in (0, 1)");
+        }
+        this.bucketMillis = bucketMillis;
+        this.clock = clock;
+
+        double bits = -expectedKeysPerBucket * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.ceil(bits));
+        this.hashCount = Math.max(1, (int) Math.round(bits / expectedKeysPerBucket * Math.log(2)));
+
+        // One extra slot so the bucket being filled never overwrites one still in the window
+        int slotCount = (int) ((windowMillis + bucketMillis - 1) / bucketMillis) + 1;
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot((bitCount + 63) >>> 6);
+        }
+    }
+
+    /**
+     * Records a key as seen now.
+     */
+    public void put(String key) {
+        put(key, clock.millis());
+    }
+
+    /**
+     * Records a key as seen at the given time. Keys older than the window are ignored.
+     */
+    public void put(String key, long seenAtMillis) {
+        long bucket = seenAtMillis / bucketMillis;
+        if (bucket < oldestBucket()) {
+            return;
+        }
+        Slot slot = slots[(int) Math.floorMod(bucket, (long) slots.length)];
+        if (slot.bucket != bucket) {
+            synchronized (slot) {
+                if (slot.bucket < bucket) {
+                    slot.clear();
+                    slot.bucket = bucket;
+                }
+            }
+            if (slot.bucket != bucket) {
+                // A newer bucket already owns the slot, so this one has left the window
+                return;
+            }
+        }
+
+        long h1 = hash(key);
+        long h2 = mix(h1 + 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            slot.set(index(h1 + i * h2));
+        }
+    }
+
+    /**
+     * Returns false only if the key was definitely not added within the window.
+     */
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 + 0x9E3779B97F4A7C15L) | 1;
+        long oldest = oldestBucket();
+        for (Slot slot : slots) {
+            if (slot.bucket >= oldest && slot.containsAll(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private long currentBucket() {
+        return clock.millis() / bucketMillis;
+    }
+
+    /**
+     * A key seen at the start of a bucket stays within the window until the window has
+     * passed, which is as many buckets later as there are slots besides the current one.
+     */
+    private long oldestBucket() {
+        return currentBucket() - (slots.length - 1);
+    }
+
+    private int index(long combined) {
+        return (int) Math.floorMod(combined, (long) bitCount);
+    }
+
+    private static long hash(String key) {
+        long h = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /** Murmur3 finalizer; spreads FNV output over all 64 bits. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private final class Slot {
+
+        private final AtomicLongArray words;
+        private volatile long bucket = Long.MIN_VALUE;
+
+        private Slot(int wordCount) {
+            this.words = new AtomicLongArray(wordCount);
+        }
+
+        private void set(int bit) {
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0) {
+                    return;
+                }
+            } while (!words.compareAndSet(word, current, current | mask));
+        }
+
+        private boolean containsAll(long h1, long h2) {
+            for (int i = 0; i < hashCount; i++) {
+                int bit = index(h1 + i * h2);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void clear() {
+            for (int i = 0; i < words.length(); i++) {
+                words.set(i, 0L);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.fintech.payment.webhook;
+
+import com.fintech.payment.entity.WebhookEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects webhook events for targets that have opted into batched delivery. Events for
+ * the same target and secret are grouped for up to {@code window-ms} after the first one
+ * arrives, or until the batch is full, and then handed to the flush handler as one batch.
+ * Targets not listed in {@code webhook.batch.target-urls} are not batched.
+ */
+@Slf4j
+@Component
+public class WebhookBatcher {
+
+    @Value("${webhook.batch.target-urls:}")
+    private String targetUrls;
+
+    @Value("${webhook.batch.window-ms:200}")
+    private long windowMs;
+
+    @Value("${webhook.batch.max-events:100}")
+    private int maxEvents;
+
+    private Set<String> batchedTargets = Set.of();
+    private final Map<String, List<WebhookEvent>> openBatches = new HashMap<>();
+    private ScheduledExecutorService timer;
+    private volatile Consumer<List<WebhookEvent>> flushHandler = batch -> { };
+
+    @PostConstruct
+    public void start() {
+        batchedTargets = StringUtils.commaDelimitedListToSet(StringUtils.trimAllWhitespace(targetUrls));
+        batchedTargets.remove("");
+        if (batchedTargets.isEmpty()) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "webhook-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Webhook batching enabled: targets={}, windowMs={}, maxEvents={}",
+                batchedTargets.size(), windowMs, maxEvents);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends every batch still collecting without waiting for its window to end.
+     */
+    public void flushAll() {
+        List<List<WebhookEvent>> remaining;
+        synchronized (openBatches) {
+            remaining = new ArrayList<>(openBatches.values());
+            openBatches.clear();
+        }
+        remaining.forEach(flushHandler);
+    }
+
+    /**
+     * Sets the handler that sends a full or timed-out batch. It runs on the batcher's
+     * timer thread or on the thread whose event filled the batch.
+     */
+    public void onFlush(Consumer<List<WebhookEvent>> handler) {
+        this.flushHandler = handler;
+    }
+
+    /**
+     * Longest an event waits in an open batch before it is flushed.
+     */
+    public Duration window() {
+        return Duration.ofMillis(windowMs);
+    }
+
+    public boolean isBatched(String targetUrl) {
+        return batchedTargets.contains(targetUrl);
+    }
+
+    /**
+     * Adds the event to its target's open batch.
+     *
+     * @return false if the target is not batched, in which case the caller sends the event alone
+     */
+    public boolean offer(WebhookEvent webhookEvent) {
+        if (timer == null || !isBatched(webhookEvent.getTargetUrl())) {
+            return false;
+        }
+        String batchKey = webhookEvent.getTargetUrl() + '\n' + webhookEvent.getSecretKey();
+        List<WebhookEvent> full = null;
+        synchronized (openBatches) {
+            List<WebhookEvent> batch = openBatches.get(batchKey);
+            if (batch == null) {
+                batch = new ArrayList<>(maxEvents);
+                openBatches.put(batchKey, batch);
+                List<WebhookEvent> scheduled = batch;
+                timer.schedule(() -> flushIfOpen(batchKey, scheduled), windowMs, TimeUnit.MILLISECONDS);
+            }
+            batch.add(webhookEvent);
+            if (batch.size() >= maxEvents) {
+                openBatches.remove(batchKey);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            flushHandler.accept(full);
+        }
+        return true;
+    }
+
+    private void flushIfOpen(String batchKey, List<WebhookEvent> batch) {
+        synchronized (openBatches) {
+            // Already sent if it filled up before the window ended
+            if (openBatches.get(batchKey) != batch) {
+                return;
+            }
+            openBatches.remove(batchKey);
+        }
+        try {
+            flushHandler.accept(batch);
+        } catch (Exception e) {
+            // The events stay leased in the table and are retried after the handoff timeout
+            log.error("Failed to send webhook batch of {} events: {}", batch.size(), e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.fintech.payment.webhook;
+
+import com.fintech.payment.enums.CircuitState;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Circuit breaker per webhook target URL. Each target keeps a rolling window of recent
+ * delivery outcomes and latencies. When too many calls in the window fail or are slow,
+ * the circuit opens and deliveries to that target are refused without a network call
+ * until the open period ends. Then a single probe delivery is let through: success
+ * closes the circuit, failure opens it again for twice as long, up to a cap.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookCircuitBreaker {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${webhook.circuit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${webhook.circuit.window-seconds:60}")
+    private int windowSeconds;
+
+    @Value("${webhook.circuit.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${webhook.circuit.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${webhook.circuit.slow-call-threshold-ms:4000}")
+    private long slowCallThresholdMs;
+
+    @Value("${webhook.circuit.slow-call-rate-threshold:0.8}")
+    private double slowCallRateThreshold;
+
+    @Value("${webhook.circuit.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    @Value("${webhook.circuit.max-open-duration-ms:600000}")
+    private long maxOpenDurationMs;
+
+    /** A probe without an outcome after this long is given up and another one let through. */
+    @Value("${webhook.circuit.probe-timeout-ms:30000}")
+    private long probeTimeoutMs;
+
+    /** Refused deliveries are retried up to this long after the circuit's probe time. */
+    @Value("${webhook.circuit.retry-jitter-ms:30000}")
+    private long retryJitterMs;
+
+    private Clock clock = Clock.systemUTC();
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("webhook.circuit.open", endpoints,
+                        map -> map.values().stream().filter(endpoint -> endpoint.state != CircuitState.CLOSED).count())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Asks whether a delivery to the target may go out now. While the circuit is half-open
+     * only one caller at a time is allowed through, as the probe.
+     */
+    public boolean allowRequest(String targetUrl) {
+        if (!enabled) {
+            return true;
+        }
+        boolean allowed = endpoint(targetUrl).allowRequest(clock.millis());
+        if (!allowed) {
+            meterRegistry.counter("webhook.circuit.rejected").increment();
+        }
+        return allowed;
+    }
+
+    /**
+     * When a delivery refused by {@link #allowRequest} should be tried again: after the
+     * circuit lets its next probe through, spread out so refused events do not all come
+     * back at once.
+     */
+    public Instant retryAt(String targetUrl) {
+        long probeAt = Math.max(endpoint(targetUrl).probeAt(), clock.millis());
+        return Instant.ofEpochMilli(probeAt + ThreadLocalRandom.current().nextLong(retryJitterMs + 1));
+    }
+
+    /**
+     * Records a finished delivery attempt. Failures are transport errors and answers that
+     * say the endpoint is unavailable (5xx, 408, 429); other statuses show it is up.
+     */
+    public void recordOutcome(String targetUrl, boolean failure, long latencyMillis) {
+        if (!enabled) {
+            return;
+        }
+        endpoint(targetUrl).record(failure, latencyMillis, clock.millis(), targetUrl);
+    }
+
+    public WebhookEndpointHealth health(String targetUrl) {
+        return endpoint(targetUrl).health(clock.millis());
+    }
+
+    private Endpoint endpoint(String targetUrl) {
+        return endpoints.computeIfAbsent(targetUrl, url -> new Endpoint());
+    }
+
+    /**
+     * Window is kept as one bucket per second in a ring; a bucket left over from an earlier
+     * pass of the ring is cleared when its second comes round again.
+     */
+    private final class Endpoint {
+
+        private final long[] bucketSecond = new long[windowSeconds];
+        private final int[] calls = new int[windowSeconds];
+        private final int[] failures = new int[windowSeconds];
+        private final int[] slowCalls = new int[windowSeconds];
+        private final long[] latencyMillis = new long[windowSeconds];
+
+        private volatile CircuitState state = CircuitState.CLOSED;
+        private long openedFor;
+        private long probeAt;
+        private long probeStartedAt;
+
+        private synchronized boolean allowRequest(long now) {
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (now < probeAt) {
+                        return false;
+                    }
+                    state = CircuitState.HALF_OPEN;
+                    probeStartedAt = now;
+                    return true;
+                default:
+                    if (now - probeStartedAt < probeTimeoutMs) {
+                        return false;
+                    }
+                    probeStartedAt = now;
+                    return true;
+            }
+        }
+
+        private synchronized long probeAt() {
+            return state == CircuitState.HALF_OPEN ? probeStartedAt + probeTimeoutMs : probeAt;
+        }
+
+        private synchronized void record(boolean failure, long latency, long now, String targetUrl) {
+            if (state == CircuitState.HALF_OPEN) {
+                if (failure) {
+                    open(now, Math.min(openedFor * 2, maxOpenDurationMs));
+                    log.warn("Webhook circuit probe failed: targetUrl={}, nextProbeInMs={}", targetUrl, openedFor);
+                } else {
+                    state = CircuitState.CLOSED;
+                    openedFor = 0;
+                    clearWindow();
+                    log.info("Webhook circuit closed: targetUrl={}", targetUrl);
+                }
+                return;
+            }
+            if (state == CircuitState.OPEN) {
+                // A delivery started before the circuit opened; the window is already decided
+                return;
+            }
+
+            long second = now / 1000;
+            int index = (int) (second % windowSeconds);
+            if (bucketSecond[index] != second) {
+                bucketSecond[index] = second;
+                calls[index] = 0;
+                failures[index] = 0;
+                slowCalls[index] = 0;
+                latencyMillis[index] = 0;
+            }
+            calls[index]++;
+            latencyMillis[index] += latency;
+            if (failure) {
+                failures[index]++;
+            }
+            if (latency >= slowCallThresholdMs) {
+                slowCalls[index]++;
+            }
+
+            WebhookEndpointHealth health = health(now);
+            if (health.getCalls() >= minimumCalls
+                    && (health.getErrorRate() >= failureRateThreshold
+                    || health.getSlowCallRate() >= slowCallRateThreshold)) {
+                log.warn("Webhook circuit open: targetUrl={}, calls={}, errorRate={}, slowCallRate={}, "
+                                + "avgLatencyMs={}, nextProbeInMs={}", targetUrl, health.getCalls(), health.getErrorRate(),
+                        health.getSlowCallRate(), health.getAverageLatencyMillis(), openDurationMs);
+                open(now, openDurationMs);
+            }
+        }
+
+        private synchronized WebhookEndpointHealth health(long now) {
+            long oldest = now / 1000 - windowSeconds;
+            long totalCalls = 0;
+            long totalFailures = 0;
+            long totalSlow = 0;
+            long totalLatency = 0;
+            for (int i = 0; i < windowSeconds; i++) {
+                if (bucketSecond[i] > oldest) {
+                    totalCalls += calls[i];
+                    totalFailures += failures[i];
+                    totalSlow += slowCalls[i];
+                    totalLatency += latencyMillis[i];
+                }
+            }
+            if (totalCalls == 0) {
+                return new WebhookEndpointHealth(state, 0, 0.0, 0.0, 0.0);
+            }
+            return new WebhookEndpointHealth(state, totalCalls, (double) totalFailures / totalCalls,
+                    (double) totalSlow / totalCalls, (double) totalLatency / totalCalls);
+        }
+
+        private void open(long now, long duration) {
+            state = CircuitState.OPEN;
+            openedFor = duration;
+            probeAt = now + duration;
+            clearWindow();
+        }
+
+        private void clearWindow() {
+            for (int i = 0; i < windowSeconds; i++) {
+                bucketSecond[i] = 0;
+            }
+        }
+    }
+}
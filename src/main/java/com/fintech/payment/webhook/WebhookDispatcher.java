@@ -0,0 +1,375 @@
+package com.fintech.payment.webhook;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fintech.payment.entity.WebhookEvent;
+import com.fintech.payment.enums.WebhookStatus;
+import com.fintech.payment.repository.WebhookEventRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers persisted webhook events through the non-blocking {@link WebhookHttpClient},
+ * never on the caller's thread. Events created inside a transaction are handed over only
+ * after it commits, so no database transaction or row lock is held during the merchant's
+ * HTTP round trip. Outcomes are written back on a small dedicated pool, off the HTTP
+ * client's threads. Targets opted into batching get their events collected by the
+ * {@link WebhookBatcher} and sent several to a request.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookDispatcher {
+
+    private static final String SIGNATURE_HEADER = "X-Webhook-Signature";
+    private static final String TIMESTAMP_HEADER = "X-Webhook-Timestamp";
+    private static final String EVENT_TYPE_HEADER = "X-Webhook-Event";
+    private static final String BATCH_SIZE_HEADER = "X-Webhook-Batch-Size";
+    private static final String BATCH_EVENT_TYPE = "batch";
+    private static final int MAX_RESPONSE_LENGTH = 2000;
+
+    /**
+     * Exponential backoff intervals in minutes: 1, 5, 15, 60, 240
+     */
+    private static final int[] RETRY_BACKOFF_MINUTES = {1, 5, 15, 60, 240};
+
+    public static final int MAX_RETRIES = RETRY_BACKOFF_MINUTES.length;
+
+    private final WebhookEventRepository webhookEventRepository;
+    private final WebhookHttpClient webhookHttpClient;
+    private final MeterRegistry meterRegistry;
+    private final WebhookRetryScheduler retryScheduler;
+    private final WebhookCircuitBreaker circuitBreaker;
+    private final WebhookBatcher webhookBatcher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${webhook.dispatcher.pool-size:2}")
+    private int poolSize;
+
+    @Value("${webhook.dispatcher.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /** Records delivery outcomes; when full, the HTTP client thread records its own. */
+    private ThreadPoolExecutor outcomeExecutor;
+
+    /** Deliveries started on this node whose outcome has not been recorded yet. */
+    private final AtomicInteger unfinished = new AtomicInteger();
+
+    /**
+     * Writes outcomes in their own transaction. Deferrals are written from the dispatching
+     * transaction's afterCommit callback, where a joined transaction would never flush.
+     */
+    private TransactionTemplate outcomeTemplate;
+
+    @PostConstruct
+    public void start() {
+        outcomeTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        outcomeTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger threadIndex = new AtomicInteger();
+        outcomeExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "webhook-dispatcher-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        Gauge.builder("webhook.dispatcher.queued", outcomeExecutor, pool -> pool.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("webhook.dispatcher.unfinished", unfinished, AtomicInteger::get)
+                .register(meterRegistry);
+        webhookBatcher.onFlush(this::send);
+        log.info("Webhook dispatcher started: poolSize={}, queueCapacity={}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        webhookBatcher.flushAll();
+        outcomeExecutor.shutdown();
+        if (!outcomeExecutor.awaitTermination(15, TimeUnit.SECONDS)) {
+            // Whatever is left is still PENDING or RETRYING in the table and is retried after restart
+            log.warn("Webhook dispatcher stopped with {} outcomes unrecorded", outcomeExecutor.shutdownNow().size());
+        }
+    }
+
+    /**
+     * Queues a persisted event for delivery. Inside a transaction the event is queued after
+     * the commit, and dropped with the transaction if it rolls back.
+     */
+    public void dispatch(WebhookEvent webhookEvent) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deliver(webhookEvent);
+                }
+            });
+        } else {
+            deliver(webhookEvent);
+        }
+    }
+
+    /**
+     * Longest a dispatched event can take to reach its outcome: the batching window plus
+     * the HTTP client's worst-case wait and request time. Claims must be leased for longer.
+     */
+    public Duration maxDeliveryTime() {
+        return webhookBatcher.window().plus(webhookHttpClient.maxCompletionTime());
+    }
+
+    /**
+     * Number of deliveries started on this node that have not recorded an outcome yet.
+     */
+    public int unfinishedDeliveries() {
+        return unfinished.get();
+    }
+
+    /**
+     * Sends the event, alone or in its target's next batch. If the target's circuit is open
+     * the event is failed at once, without a network call.
+     */
+    private void deliver(WebhookEvent webhookEvent) {
+        if (!circuitBreaker.allowRequest(webhookEvent.getTargetUrl())) {
+            deferWhileCircuitOpen(webhookEvent);
+            return;
+        }
+        unfinished.incrementAndGet();
+        if (!webhookBatcher.offer(webhookEvent)) {
+            send(List.of(webhookEvent));
+        }
+    }
+
+    /**
+     * Starts the HTTP POST for events to one target and returns at once; the outcomes are
+     * recorded when it completes. More than one event goes out as a JSON array of
+     * {@code {"id", "eventType", "payload"}} objects under a single signature.
+     */
+    private void send(List<WebhookEvent> events) {
+        WebhookEvent first = events.get(0);
+        String body;
+        String signature;
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (events.size() == 1) {
+            body = first.getPayload();
+            signature = first.getSignature() != null
+                    ? first.getSignature() : WebhookSignatures.hmacSha256(body, first.getSecretKey());
+            headers.put(EVENT_TYPE_HEADER, first.getEventType());
+        } else {
+            body = batchBody(events);
+            signature = WebhookSignatures.hmacSha256(body, first.getSecretKey());
+            headers.put(EVENT_TYPE_HEADER, BATCH_EVENT_TYPE);
+            headers.put(BATCH_SIZE_HEADER, String.valueOf(events.size()));
+        }
+        headers.put(SIGNATURE_HEADER, signature);
+        headers.put(TIMESTAMP_HEADER, String.valueOf(System.currentTimeMillis()));
+
+        long startedAt = System.nanoTime();
+        webhookHttpClient.post(first.getTargetUrl(), body, headers)
+                .whenCompleteAsync((response, error) -> {
+                    recordHealth(first.getTargetUrl(), response, error, startedAt);
+                    recordOutcome(events, response, error);
+                }, outcomeExecutor);
+    }
+
+    private String batchBody(List<WebhookEvent> events) {
+        ArrayNode batch = objectMapper.createArrayNode();
+        for (WebhookEvent event : events) {
+            ObjectNode item = batch.addObject();
+            item.put("id", event.getId());
+            item.put("eventType", event.getEventType());
+            try {
+                item.set("payload", objectMapper.readTree(event.getPayload()));
+            } catch (JsonProcessingException e) {
+                item.put("payload", event.getPayload());
+            }
+        }
+        return batch.toString();
+    }
+
+    /**
+     * Ids the merchant acknowledged in a successful batch response of the form
+     * {@code {"acknowledged": [ids]}}. A 2xx answer without that list acknowledges the
+     * whole batch.
+     */
+    private Set<Long> acknowledgedIds(List<WebhookEvent> events, WebhookHttpResponse response) {
+        Set<Long> all = events.stream().map(WebhookEvent::getId).collect(Collectors.toSet());
+        if (events.size() == 1 || response.getBody() == null || response.getBody().isBlank()) {
+            return all;
+        }
+        try {
+            JsonNode acknowledged = objectMapper.readTree(response.getBody()).get("acknowledged");
+            if (acknowledged == null || !acknowledged.isArray()) {
+                return all;
+            }
+            Set<Long> ids = new HashSet<>();
+            acknowledged.forEach(id -> ids.add(id.asLong()));
+            return ids;
+        } catch (JsonProcessingException e) {
+            return all;
+        }
+    }
+
+    /**
+     * Reports the attempt to the target's circuit. A delivery refused by our own per-host
+     * queue never reached the target and says nothing about its health.
+     */
+    private void recordHealth(String targetUrl, WebhookHttpResponse response, Throwable error, long startedAt) {
+        if (error instanceof RejectedExecutionException) {
+            return;
+        }
+        boolean failure = error != null || response.getStatusCode() >= 500
+                || response.getStatusCode() == 408 || response.getStatusCode() == 429;
+        circuitBreaker.recordOutcome(targetUrl, failure,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    /**
+     * Fails an event whose target's circuit is open and schedules it for after the next
+     * probe. No delivery was attempted, so a retry counted by the claim is handed back.
+     */
+    private void deferWhileCircuitOpen(WebhookEvent webhookEvent) {
+        if (webhookEvent.getStatus() == WebhookStatus.RETRYING && webhookEvent.getRetryCount() > 0) {
+            webhookEvent.setRetryCount(webhookEvent.getRetryCount() - 1);
+        }
+        webhookEvent.setStatus(WebhookStatus.FAILED);
+        webhookEvent.setNextRetryAt(LocalDateTime.ofInstant(
+                circuitBreaker.retryAt(webhookEvent.getTargetUrl()), ZoneId.systemDefault()));
+        webhookEvent.setResponseBody("Not attempted: circuit open for target");
+        log.debug("Webhook deferred, circuit open: id={}, targetUrl={}, nextRetryAt={}",
+                webhookEvent.getId(), webhookEvent.getTargetUrl(), webhookEvent.getNextRetryAt());
+        save(webhookEvent);
+    }
+
+    /**
+     * Records the outcome of a delivery attempt for every event it carried. Runs outside
+     * any transaction; only the final save touches the database, once for the whole batch.
+     */
+    private void recordOutcome(List<WebhookEvent> events, WebhookHttpResponse response, Throwable error) {
+        try {
+            Set<Long> acknowledged = error == null && response.isSuccessful()
+                    ? acknowledgedIds(events, response) : Set.of();
+            for (WebhookEvent webhookEvent : events) {
+                applyOutcome(webhookEvent, response, error, acknowledged.contains(webhookEvent.getId()));
+            }
+            save(events);
+        } finally {
+            unfinished.addAndGet(-events.size());
+        }
+    }
+
+    private void applyOutcome(WebhookEvent webhookEvent, WebhookHttpResponse response, Throwable error,
+                              boolean acknowledged) {
+        webhookEvent.setLastAttemptedAt(LocalDateTime.now());
+        if (error != null) {
+            handleDeliveryFailure(webhookEvent, error.getClass().getSimpleName() + ": " + error.getMessage());
+        } else {
+            webhookEvent.setHttpStatusCode(response.getStatusCode());
+            webhookEvent.setResponseBody(truncateResponse(response.getBody()));
+
+            if (acknowledged) {
+                webhookEvent.setStatus(WebhookStatus.DELIVERED);
+                log.info("Webhook delivered successfully: id={}, eventType={}",
+                        webhookEvent.getId(), webhookEvent.getEventType());
+            } else if (response.isSuccessful()) {
+                handleDeliveryFailure(webhookEvent, "Not acknowledged in batch response");
+            } else {
+                handleDeliveryFailure(webhookEvent, "HTTP " + response.getStatusCode());
+            }
+        }
+    }
+
+    private void save(WebhookEvent webhookEvent) {
+        save(List.of(webhookEvent));
+    }
+
+    /**
+     * Saves outcomes unless the event was claimed again since this delivery started, which
+     * happens only when the claim's lease ran out first; the newer claim's outcome wins.
+     */
+    private void save(List<WebhookEvent> events) {
+        try {
+            outcomeTemplate.executeWithoutResult(status -> webhookEventRepository.saveAll(events));
+            for (WebhookEvent webhookEvent : events) {
+                if (webhookEvent.getStatus() == WebhookStatus.FAILED) {
+                    retryScheduler.schedule(webhookEvent.getId(), webhookEvent.getNextRetryAt());
+                }
+            }
+        } catch (OptimisticLockingFailureException e) {
+            if (events.size() > 1) {
+                // Save the batch one by one so only the superseded events are dropped
+                events.forEach(this::save);
+                return;
+            }
+            log.warn("Webhook outcome dropped, event was claimed again after its lease ran out: id={}",
+                    events.get(0).getId());
+        } catch (Exception e) {
+            log.error("Failed to record webhook delivery outcome: ids={}, error={}",
+                    events.stream().map(WebhookEvent::getId).collect(Collectors.toList()), e.getMessage());
+        }
+    }
+
+    /**
+     * Handles webhook delivery failure. Schedules next retry with
+     * exponential backoff or marks as EXHAUSTED if max retries exceeded.
+     */
+    private void handleDeliveryFailure(WebhookEvent webhookEvent, String reason) {
+        int currentRetry = webhookEvent.getRetryCount();
+        int maxRetries = webhookEvent.getMaxRetries();
+
+        if (currentRetry >= maxRetries) {
+            webhookEvent.setStatus(WebhookStatus.EXHAUSTED);
+            webhookEvent.setResponseBody("Exhausted after " + maxRetries + " retries. Last error: " + reason);
+            log.warn("Webhook exhausted: id={}, eventType={}, retries={}",
+                    webhookEvent.getId(), webhookEvent.getEventType(), currentRetry);
+        } else {
+            webhookEvent.setStatus(WebhookStatus.FAILED);
+            int backoffIndex = Math.min(currentRetry, RETRY_BACKOFF_MINUTES.length - 1);
+            int backoffMinutes = RETRY_BACKOFF_MINUTES[backoffIndex];
+            webhookEvent.setNextRetryAt(LocalDateTime.now().plusMinutes(backoffMinutes));
+
+            log.info("Webhook delivery failed: id={}, retry={}/{}, nextRetryIn={}min, reason={}",
+                    webhookEvent.getId(), currentRetry, maxRetries, backoffMinutes, reason);
+        }
+    }
+
+    /**
+     * Truncates response body to prevent storing excessively large responses.
+     */
+    private String truncateResponse(String response) {
+        if (response == null) {
+            return null;
+        }
+        return response.length() > MAX_RESPONSE_LENGTH
+                ? response.substring(0, MAX_RESPONSE_LENGTH) + "..." : response;
+    }
+}
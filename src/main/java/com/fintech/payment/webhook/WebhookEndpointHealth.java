@@ -0,0 +1,17 @@
+package com.fintech.payment.webhook;
+
+import com.fintech.payment.enums.CircuitState;
+import lombok.Value;
+
+/**
+ * Circuit state and rolling-window statistics of one webhook target URL.
+ */
+@Value
+public class WebhookEndpointHealth {
+
+    CircuitState state;
+    long calls;
+    double errorRate;
+    double slowCallRate;
+    double averageLatencyMillis;
+}
@@ -0,0 +1,205 @@
+package com.fintech.payment.webhook;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking HTTP client for webhook delivery, built on the JDK {@link HttpClient}.
+ * Connections are pooled and kept alive per target host by the JDK client; HTTP/2
+ * targets multiplex concurrent deliveries over one connection. Each host gets its own
+ * lane with a cap on in-flight requests and a bounded wait queue, so a slow merchant
+ * only delays its own deliveries. No thread waits on a response: the client runs on a
+ * small fixed pool whatever the number of hosts or slow responses.
+ */
+@Slf4j
+@Component
+public class WebhookHttpClient {
+
+    @Value("${webhook.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${webhook.http.request-timeout:10s}")
+    private Duration requestTimeout;
+
+    @Value("${webhook.http.max-in-flight-per-host:16}")
+    private int maxInFlightPerHost;
+
+    @Value("${webhook.http.max-queued-per-host:1000}")
+    private int maxQueuedPerHost;
+
+    @Value("${webhook.http.io-threads:4}")
+    private int ioThreads;
+
+    private final Map<String, HostLane> lanes = new ConcurrentHashMap<>();
+    private ExecutorService ioExecutor;
+    private HttpClient httpClient;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ioExecutor = Executors.newFixedThreadPool(ioThreads, runnable -> {
+            Thread thread = new Thread(runnable, "webhook-http-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(ioExecutor)
+                .build();
+        log.info("Webhook HTTP client started: maxInFlightPerHost={}, maxQueuedPerHost={}, ioThreads={}",
+                maxInFlightPerHost, maxQueuedPerHost, ioThreads);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ioExecutor != null) {
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * POSTs a JSON body to the target URL once its host has a free in-flight slot.
+     * The future fails with {@link RejectedExecutionException} if the host's wait queue
+     * is full, and with the transport error if the request itself fails.
+     */
+    public CompletableFuture<WebhookHttpResponse> post(String targetUrl, String body, Map<String, String> headers) {
+        URI uri;
+        HttpRequest request;
+        try {
+            uri = URI.create(targetUrl);
+            HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+            headers.forEach(builder::header);
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return lanes.computeIfAbsent(hostKey(uri), HostLane::new).submit(request);
+    }
+
+    /**
+     * Longest a delivery accepted by {@link #post} can take to complete: behind a full host
+     * queue and a full set of requests in flight, drained {@code maxInFlightPerHost} at a
+     * time, each request taking up to the connect and request timeouts.
+     */
+    public Duration maxCompletionTime() {
+        long rounds = (maxQueuedPerHost + 2L * maxInFlightPerHost - 1) / maxInFlightPerHost;
+        return connectTimeout.plus(requestTimeout).multipliedBy(rounds);
+    }
+
+    /**
+     * Number of requests currently in flight to the given URL's host.
+     */
+    public int inFlight(String targetUrl) {
+        HostLane lane = lanes.get(hostKey(URI.create(targetUrl)));
+        return lane != null ? lane.inFlight.get() : 0;
+    }
+
+    private static String hostKey(URI uri) {
+        String host = uri.getHost() != null ? uri.getHost().toLowerCase(Locale.ROOT) : "";
+        return uri.getScheme() + "://" + host + ":" + uri.getPort();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Admits at most {@code maxInFlightPerHost} concurrent requests to one host and
+     * queues the rest; a finished request starts the next queued one.
+     */
+    private final class HostLane {
+
+        private final String host;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final ConcurrentLinkedQueue<PendingRequest> waiting = new ConcurrentLinkedQueue<>();
+
+        private HostLane(String host) {
+            this.host = host;
+        }
+
+        private CompletableFuture<WebhookHttpResponse> submit(HttpRequest request) {
+            if (queued.incrementAndGet() > maxQueuedPerHost) {
+                queued.decrementAndGet();
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "Too many webhook deliveries waiting for " + host));
+            }
+            PendingRequest pending = new PendingRequest(request);
+            waiting.add(pending);
+            drain();
+            return pending.future;
+        }
+
+        private void drain() {
+            while (!waiting.isEmpty()) {
+                int current = inFlight.get();
+                if (current >= maxInFlightPerHost) {
+                    // A request in flight will call drain again when it completes
+                    return;
+                }
+                if (!inFlight.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+                PendingRequest next = waiting.poll();
+                if (next == null) {
+                    inFlight.decrementAndGet();
+                    continue;
+                }
+                queued.decrementAndGet();
+                send(next);
+            }
+        }
+
+        private void send(PendingRequest pending) {
+            CompletableFuture<HttpResponse<String>> response;
+            try {
+                response = httpClient.sendAsync(pending.request, HttpResponse.BodyHandlers.ofString());
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            response.whenComplete((result, error) -> {
+                inFlight.decrementAndGet();
+                drain();
+                if (error != null) {
+                    pending.future.completeExceptionally(unwrap(error));
+                } else {
+                    pending.future.complete(new WebhookHttpResponse(result.statusCode(), result.body()));
+                }
+            });
+        }
+    }
+
+    private static final class PendingRequest {
+
+        private final HttpRequest request;
+        private final CompletableFuture<WebhookHttpResponse> future = new CompletableFuture<>();
+
+        private PendingRequest(HttpRequest request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.fintech.payment.webhook;
+
+import lombok.Value;
+
+/**
+ * Status code and body of a merchant's answer to a webhook delivery.
+ */
+@Value
+public class WebhookHttpResponse {
+
+    int statusCode;
+    String body;
+
+    public boolean isSuccessful() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+}
@@ -0,0 +1,110 @@
+package com.fintech.payment.webhook;
+
+import com.fintech.payment.util.HierarchicalTimingWheel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-memory schedule of upcoming webhook retries, kept in a {@link HierarchicalTimingWheel}
+ * of event ids. Ids are handed to the registered handler in batches as their
+ * {@code nextRetryAt} arrives, within one tick, so retries no longer wait for the next
+ * database sweep. The wheel is only an accelerator: {@code webhook_events} stays the
+ * record of what is due, the handler still claims each event in the database, and
+ * anything the wheel misses, e.g. after a restart or when it is full, is found by the sweep.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookRetryScheduler {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${webhook.retry.wheel.enabled:true}")
+    private boolean enabled;
+
+    @Value("${webhook.retry.wheel.tick-ms:100}")
+    private long tickMs;
+
+    @Value("${webhook.retry.wheel.size:512}")
+    private int wheelSize;
+
+    @Value("${webhook.retry.wheel.max-scheduled:100000}")
+    private int maxScheduled;
+
+    private HierarchicalTimingWheel<Long> wheel;
+    private ScheduledExecutorService ticker;
+    private volatile Consumer<List<Long>> dueHandler = ids -> { };
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        wheel = new HierarchicalTimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+        Gauge.builder("webhook.retry.wheel.scheduled", wheel, HierarchicalTimingWheel::size)
+                .register(meterRegistry);
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "webhook-retry-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        log.info("Webhook retry wheel started: tickMs={}, wheelSize={}, maxScheduled={}",
+                tickMs, wheelSize, maxScheduled);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * Sets the handler that receives the ids of events whose retry time has come.
+     * It runs on the wheel's thread; ticks missed while it runs are caught up afterwards.
+     */
+    public void onDue(Consumer<List<Long>> handler) {
+        this.dueHandler = handler;
+    }
+
+    /**
+     * Schedules a retry of the event at the given time.
+     *
+     * @return false if the event was not scheduled, because the wheel is disabled or full
+     *         or the time has already passed; the database sweep then picks it up
+     */
+    public boolean schedule(Long webhookEventId, LocalDateTime retryAt) {
+        if (wheel == null || retryAt == null || wheel.size() >= maxScheduled) {
+            return false;
+        }
+        long deadline = retryAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return wheel.add(webhookEventId, deadline);
+    }
+
+    private void tick() {
+        try {
+            List<Long> due = wheel.advance(System.currentTimeMillis());
+            if (!due.isEmpty()) {
+                dueHandler.accept(due);
+            }
+        } catch (Exception e) {
+            // Ids lost here are still due in the table and found by the sweep
+            log.error("Webhook retry wheel tick failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.fintech.payment.webhook;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * HMAC-SHA256 signatures sent in the {@code X-Webhook-Signature} header.
+ */
+public final class WebhookSignatures {
+
+    private static final String HMAC_SHA256 = "HmacSHA256";
+
+    private WebhookSignatures() {
+    }
+
+    /**
+     * Computes HMAC-SHA256 signature of the payload using the provided secret.
+     */
+    public static String hmacSha256(String payload, String secret) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA256);
+            SecretKeySpec keySpec = new SecretKeySpec(
+                    secret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256);
+            mac.init(keySpec);
+            byte[] hmacBytes = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+
+            // Convert to hex string
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hmacBytes) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1) {
+                    hexString.append('0');
+                }
+                hexString.append(hex);
+            }
+            return hexString.toString();
+
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new RuntimeException("Failed to compute HMAC-SHA256 signature", e);
+        }
+    }
+}
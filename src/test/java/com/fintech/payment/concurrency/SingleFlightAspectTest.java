@@ -0,0 +1,150 @@
+package com.fintech.payment.concurrency;
+
+import com.fintech.payment.exception.DuplicateTransactionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SingleFlightAspectTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private SingleFlightAspect aspect;
+    private PaymentTarget target;
+    private PaymentTarget proxy;
+
+    @BeforeEach
+    void setUp() {
+        aspect = new SingleFlightAspect(redisTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(aspect, "enabled", true);
+        ReflectionTestUtils.setField(aspect, "waitTimeout", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(aspect, "redisLeaseEnabled", false);
+        ReflectionTestUtils.setField(aspect, "leaseTtl", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(aspect, "leasePollIntervalMs", 10L);
+
+        target = new PaymentTarget();
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        proxy = factory.getProxy();
+    }
+
+    @Test
+    @DisplayName("deduplicate - a concurrent caller with the same key shares the leader's result")
+    void deduplicate_concurrentCallerJoinsLeader() throws Exception {
+        target.hold = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> proxy.pay("key-1"));
+        target.entered.await(1, TimeUnit.SECONDS);
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> proxy.pay("key-1"));
+        Thread.sleep(50);
+
+        target.hold.countDown();
+
+        assertThat(leader.get(1, TimeUnit.SECONDS)).isEqualTo("paid-1");
+        assertThat(follower.get(1, TimeUnit.SECONDS)).isEqualTo("paid-1");
+        assertThat(target.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("deduplicate - a caller still waiting after the wait timeout is rejected as a duplicate")
+    void deduplicate_waitTimeout_rejectsFollower() throws Exception {
+        target.hold = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> proxy.pay("key-2"));
+        target.entered.await(1, TimeUnit.SECONDS);
+
+        assertThatThrownBy(() -> proxy.pay("key-2"))
+                .isInstanceOf(DuplicateTransactionException.class);
+
+        target.hold.countDown();
+        assertThat(leader.get(1, TimeUnit.SECONDS)).isEqualTo("paid-1");
+        assertThat(target.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("deduplicate - runs under a Redis lease and releases it afterwards")
+    void deduplicate_redisLease_acquiredAndReleased() {
+        ReflectionTestUtils.setField(aspect, "redisLeaseEnabled", true);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("single-flight:payments:key-3"), anyString(), eq(Duration.ofSeconds(60))))
+                .thenReturn(true);
+
+        assertThat(proxy.pay("key-3")).isEqualTo("paid-1");
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("single-flight:payments:key-3")), anyString());
+    }
+
+    @Test
+    @DisplayName("deduplicate - a lease held by another node until the wait timeout rejects the call unrun")
+    void deduplicate_redisLeaseHeldElsewhere_timesOut() {
+        ReflectionTestUtils.setField(aspect, "redisLeaseEnabled", true);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+
+        long startedAt = System.nanoTime();
+        assertThatThrownBy(() -> proxy.pay("key-4"))
+                .isInstanceOf(DuplicateTransactionException.class);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isGreaterThanOrEqualTo(200);
+        assertThat(target.calls.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("deduplicate - runs with local deduplication only when Redis is unavailable")
+    void deduplicate_redisDown_proceeds() {
+        ReflectionTestUtils.setField(aspect, "redisLeaseEnabled", true);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertThat(proxy.pay("key-5")).isEqualTo("paid-1");
+    }
+
+    static class PaymentTarget {
+
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile CountDownLatch hold = new CountDownLatch(0);
+
+        @SingleFlight(key = "#key", namespace = "payments")
+        public String pay(String key) {
+            int call = calls.incrementAndGet();
+            entered.countDown();
+            try {
+                hold.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "paid-" + call;
+        }
+    }
+}
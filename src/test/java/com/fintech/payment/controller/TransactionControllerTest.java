@@ -1,18 +1,20 @@
 package com.fintech.payment.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fintech.payment.model.dto.response.TransactionResponse;
-import com.fintech.payment.model.enums.Currency;
-import com.fintech.payment.model.enums.TransactionStatus;
-import com.fintech.payment.model.enums.TransactionType;
+import com.fintech.payment.dto.response.TransactionResponse;
+import com.fintech.payment.enums.TransactionStatus;
+import com.fintech.payment.enums.TransactionType;
 import com.fintech.payment.security.CustomUserDetailsService;
 import com.fintech.payment.security.JwtTokenProvider;
+import com.fintech.payment.service.IdempotencyService;
 import com.fintech.payment.service.TransactionService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
-import org.springframework.boot.test.mock.bean.MockBean;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -32,6 +34,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(TransactionController.class)
+@Import(SimpleMeterRegistry.class)
 class TransactionControllerTest {
 
     @Autowired
@@ -43,6 +46,9 @@ class TransactionControllerTest {
     @MockBean
     private TransactionService transactionService;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @MockBean
     private JwtTokenProvider jwtTokenProvider;
 
@@ -62,7 +68,7 @@ class TransactionControllerTest {
                 .type(TransactionType.DEPOSIT)
                 .status(TransactionStatus.COMPLETED)
                 .amount(new BigDecimal("500.00"))
-                .currency(Currency.USD)
+                .currency("USD")
                 .balanceBefore(new BigDecimal("500.00"))
                 .balanceAfter(new BigDecimal("1000.00"))
                 .description("Test deposit")
@@ -95,7 +101,7 @@ class TransactionControllerTest {
                 .type(TransactionType.DEPOSIT)
                 .status(TransactionStatus.COMPLETED)
                 .amount(new BigDecimal("500.00"))
-                .currency(Currency.USD)
+                .currency("USD")
                 .balanceBefore(new BigDecimal("500.00"))
                 .balanceAfter(new BigDecimal("1000.00"))
                 .description("Test deposit")
@@ -1,18 +1,21 @@
 package com.fintech.payment.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fintech.payment.model.dto.response.BalanceResponse;
-import com.fintech.payment.model.dto.response.WalletResponse;
-import com.fintech.payment.model.enums.Currency;
-import com.fintech.payment.model.enums.WalletStatus;
+import com.fintech.payment.dto.response.BalanceResponse;
+import com.fintech.payment.dto.response.WalletResponse;
+import com.fintech.payment.enums.WalletStatus;
 import com.fintech.payment.security.CustomUserDetailsService;
 import com.fintech.payment.security.JwtTokenProvider;
+import com.fintech.payment.service.IdempotencyService;
 import com.fintech.payment.service.WalletService;
+import com.fintech.payment.service.WalletVelocityService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
-import org.springframework.boot.test.mock.bean.MockBean;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -22,11 +25,13 @@ import java.time.LocalDateTime;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(WalletController.class)
+@Import(SimpleMeterRegistry.class)
 class WalletControllerTest {
 
     @Autowired
@@ -38,6 +43,12 @@ class WalletControllerTest {
     @MockBean
     private WalletService walletService;
 
+    @MockBean
+    private WalletVelocityService walletVelocityService;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @MockBean
     private JwtTokenProvider jwtTokenProvider;
 
@@ -54,7 +65,7 @@ class WalletControllerTest {
                 .balance(new BigDecimal("1500.0000"))
                 .frozenAmount(BigDecimal.ZERO)
                 .availableBalance(new BigDecimal("1500.0000"))
-                .currency(Currency.USD)
+                .currency("USD")
                 .status(WalletStatus.ACTIVE)
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
@@ -66,6 +77,7 @@ class WalletControllerTest {
         String requestBody = "{\"amount\": 500.00, \"description\": \"Test deposit\"}";
 
         mockMvc.perform(post("/api/wallets/1/deposit")
+                        .with(csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .header("Idempotency-Key", "test-key-123")
                         .content(requestBody))
@@ -81,6 +93,7 @@ class WalletControllerTest {
         String requestBody = "{\"amount\": 500.00, \"description\": \"Test deposit\"}";
 
         mockMvc.perform(post("/api/wallets/1/deposit")
+                        .with(csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
                 .andExpect(status().isBadRequest());
@@ -95,7 +108,7 @@ class WalletControllerTest {
                 .totalBalance(new BigDecimal("1000.0000"))
                 .availableBalance(new BigDecimal("900.0000"))
                 .frozenAmount(new BigDecimal("100.0000"))
-                .currency(Currency.USD)
+                .currency("USD")
                 .build();
 
         when(walletService.getBalance(1L)).thenReturn(balanceResponse);
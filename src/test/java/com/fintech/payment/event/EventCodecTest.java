@@ -0,0 +1,131 @@
+package com.fintech.payment.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventCodecTest {
+
+    private EventSchemaRegistry schemaRegistry;
+    private EventCodec eventCodec;
+
+    @BeforeEach
+    void setUp() {
+        schemaRegistry = new EventSchemaRegistry();
+        eventCodec = new EventCodec(schemaRegistry, new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("encode - round-trips every field and is much smaller than the JSON")
+    void encode_roundTripsNotification() {
+        NotificationEvent event = NotificationEvent.builder()
+                .notificationType("TRANSFER_SENT")
+                .referenceNumber("TRF-20260307-0001")
+                .accountId(977L)
+                .accountNumber("ACC0001234567")
+                .counterpartyAccountNumber("ACC0007654321")
+                .amount(new BigDecimal("1250.00"))
+                .formattedAmount("$1,250.00")
+                .currency("USD")
+                .status("COMPLETED")
+                .description("Rent caf\u00e9 \ud83d\udcb8")
+                .timestamp(LocalDateTime.of(2026, 3, 7, 9, 5, 2, 123_456_000))
+                .build();
+
+        byte[] binary = eventCodec.encode(event);
+
+        assertThat(eventCodec.decode("notification-events", binary)).isEqualTo(event);
+        assertThat(binary.length).isLessThan(event.toJson().getBytes(StandardCharsets.UTF_8).length / 2);
+    }
+
+    @Test
+    @DisplayName("encode - keeps the scale of money amounts, including ones beyond a long")
+    void encode_preservesMoneyScale() {
+        BigDecimal[] amounts = {
+                new BigDecimal("0.00"),
+                new BigDecimal("-12.3400"),
+                new BigDecimal("1E+3"),
+                new BigDecimal("123456789012345678901234567890.12")
+        };
+        for (BigDecimal amount : amounts) {
+            TransferCompletedEvent event = TransferCompletedEvent.builder()
+                    .transferRef("TRF-1")
+                    .amount(amount)
+                    .build();
+
+            TransferCompletedEvent decoded = (TransferCompletedEvent)
+                    eventCodec.decode("transfer-events", eventCodec.encode(event));
+
+            assertThat(decoded.getAmount()).isEqualTo(amount);
+            assertThat(decoded.getAmount().scale()).isEqualTo(amount.scale());
+        }
+    }
+
+    @Test
+    @DisplayName("decode - reads the JSON messages written before the binary format")
+    void decode_readsLegacyJson() {
+        String walletJson = "{\"eventType\":\"DEPOSIT\",\"walletId\":42,\"accountId\":7,\"amount\":\"100.50\","
+                + "\"balance\":\"1250.50\",\"currency\":\"USD\",\"timestamp\":\"2026-03-07T09:05:02.123\"}";
+        String notificationJson = "{\"notificationType\":\"PAYMENT\",\"referenceNumber\":\"PAY-9\",\"walletId\":42,"
+                + "\"amount\":\"20.00\",\"refundedAmount\":\"0\",\"unknown\":true,"
+                + "\"timestamp\":\"2026-03-07 09:05:02\"}";
+
+        TransactionCreatedEvent wallet = (TransactionCreatedEvent)
+                eventCodec.decode("wallet-events", walletJson.getBytes(StandardCharsets.UTF_8));
+        NotificationEvent notification = (NotificationEvent)
+                eventCodec.decode("notification-events", notificationJson.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(wallet.getType()).isEqualTo("DEPOSIT");
+        assertThat(wallet.getWalletId()).isEqualTo(42L);
+        assertThat(wallet.getBalance()).isEqualTo(new BigDecimal("1250.50"));
+        assertThat(wallet.getTimestamp()).isEqualTo(LocalDateTime.of(2026, 3, 7, 9, 5, 2, 123_000_000));
+        assertThat(notification.getRefundedAmount()).isEqualTo(BigDecimal.ZERO);
+        assertThat(notification.getTimestamp()).isEqualTo(LocalDateTime.of(2026, 3, 7, 9, 5, 2));
+    }
+
+    @Test
+    @DisplayName("decode - messages written with an older schema version still decode after a new one is added")
+    void decode_olderSchemaVersion() {
+        byte[] v1 = eventCodec.encode(TransferCompletedEvent.builder()
+                .transferRef("TRF-2")
+                .amount(BigDecimal.TEN)
+                .build());
+        schemaRegistry.register(EventSchema.builder(100, "transfer-completed", 2,
+                        TransferCompletedEvent.class, TransferCompletedEvent::new)
+                .string("referenceNumber", TransferCompletedEvent::getTransferRef, TransferCompletedEvent::setTransferRef)
+                .money("amount", TransferCompletedEvent::getAmount, TransferCompletedEvent::setAmount)
+                .money("fee", TransferCompletedEvent::getFee, TransferCompletedEvent::setFee)
+                .build());
+
+        TransferCompletedEvent decoded = (TransferCompletedEvent) eventCodec.decode("transfer-events", v1);
+        byte[] v2 = eventCodec.encode(decoded);
+
+        assertThat(decoded.getTransferRef()).isEqualTo("TRF-2");
+        assertThat(v2[1]).isEqualTo((byte) 100);
+        assertThat(((TransferCompletedEvent) eventCodec.decode("transfer-events", v2)).getAmount())
+                .isEqualTo(BigDecimal.TEN);
+    }
+
+    @Test
+    @DisplayName("decode - rejects truncated binary messages and unknown schema ids")
+    void decode_rejectsMalformedMessages() {
+        byte[] binary = eventCodec.encode(TransactionCreatedEvent.builder().type("DEPOSIT").walletId(1L).build());
+        byte[] truncated = Arrays.copyOf(binary, binary.length - 1);
+        byte[] unknownSchema = {EventCodec.MAGIC, 99, 0};
+
+        assertThatThrownBy(() -> eventCodec.decode("wallet-events", truncated))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> eventCodec.decode("wallet-events", unknownSchema))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("99");
+    }
+}
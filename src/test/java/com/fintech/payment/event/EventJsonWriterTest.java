@@ -0,0 +1,93 @@
+package com.fintech.payment.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventJsonWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("toJson - writes the same message the String.format template produced")
+    void toJson_matchesLegacyWalletEvent() {
+        LocalDateTime timestamp = LocalDateTime.of(2026, 3, 7, 9, 5, 2, 123_000_000);
+        TransactionCreatedEvent event = TransactionCreatedEvent.builder()
+                .type("DEPOSIT")
+                .walletId(42L)
+                .accountId(7L)
+                .amount(new BigDecimal("1E+3"))
+                .balance(new BigDecimal("1250.50"))
+                .currency("USD")
+                .timestamp(timestamp)
+                .build();
+
+        String legacy = String.format(
+                "{\"eventType\":\"%s\",\"walletId\":%d,\"accountId\":%d,\"amount\":\"%s\",\"balance\":\"%s\",\"currency\":\"%s\",\"timestamp\":\"%s\"}",
+                "DEPOSIT", 42L, 7L, "1000", "1250.50", "USD", timestamp);
+
+        assertThat(event.toJson()).isEqualTo(legacy);
+    }
+
+    @Test
+    @DisplayName("field - date-times are written exactly as LocalDateTime.toString does")
+    void field_dateTimesMatchToString() throws Exception {
+        LocalDateTime[] values = {
+                LocalDateTime.of(2026, 1, 1, 0, 0),
+                LocalDateTime.of(2026, 12, 31, 23, 59, 1),
+                LocalDateTime.of(2026, 6, 15, 12, 30, 0, 120_000_000),
+                LocalDateTime.of(2026, 6, 15, 12, 30, 45, 123_456_000),
+                LocalDateTime.of(2026, 6, 15, 12, 30, 45, 7)
+        };
+        for (LocalDateTime value : values) {
+            JsonNode json = parse(TransferCompletedEvent.builder().timestamp(value).build());
+            assertThat(json.get("timestamp").asText()).isEqualTo(value.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("toJson - escapes control characters and encodes non-ASCII text as UTF-8")
+    void toJson_escapesAndEncodes() throws Exception {
+        String description = "Rent \"May\"\\\n\tcaf\u00e9 \u6771\u4eac \ud83d\udcb8 \u0001";
+        NotificationEvent event = NotificationEvent.builder()
+                .notificationType("TRANSACTION")
+                .referenceNumber("TXN-1")
+                .walletId(Long.MIN_VALUE)
+                .amount(new BigDecimal("-0.01"))
+                .description(description)
+                .timestamp(LocalDateTime.of(2026, 2, 3, 4, 5, 6, 789))
+                .build();
+
+        byte[] bytes = EventJsonWriter.toJsonBytes(event);
+        JsonNode json = objectMapper.readTree(bytes);
+
+        assertThat(new String(bytes, StandardCharsets.UTF_8)).isEqualTo(event.toJson());
+        assertThat(json.get("description").asText()).isEqualTo(description);
+        assertThat(json.get("walletId").asLong()).isEqualTo(Long.MIN_VALUE);
+        assertThat(json.get("amount").asText()).isEqualTo("-0.01");
+        assertThat(json.get("timestamp").asText()).isEqualTo("2026-02-03 04:05:06");
+        assertThat(json.has("accountId")).isFalse();
+    }
+
+    @Test
+    @DisplayName("toJson - the pooled buffer grows for a large event and serves the next one")
+    void toJson_reusesBufferAfterLargeEvent() throws Exception {
+        String large = "x".repeat(100_000);
+        NotificationEvent big = NotificationEvent.builder().description(large).build();
+        NotificationEvent small = NotificationEvent.builder().description("ok").build();
+
+        assertThat(parse(big).get("description").asText()).hasSize(100_000);
+        assertThat(parse(small).get("description").asText()).isEqualTo("ok");
+    }
+
+    private JsonNode parse(JsonEvent event) throws Exception {
+        return objectMapper.readTree(event.toJson());
+    }
+}
@@ -0,0 +1,136 @@
+package com.fintech.payment.filter;
+
+import com.fintech.payment.service.IdempotencyService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotentReplayFilterTest {
+
+    private static final String PATH = "/api/v1/transfers";
+    private static final String BODY = "{\"amount\":10.00}";
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    private final Map<String, String> store = new ConcurrentHashMap<>();
+    private final List<String> handledBodies = new ArrayList<>();
+    private IdempotentReplayFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new IdempotentReplayFilter(idempotencyService, new SimpleMeterRegistry(),
+                Jackson2ObjectMapperBuilder.json().build());
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "replayedHeaders", List.of("Location", "ETag"));
+        ReflectionTestUtils.setField(filter, "ttlMinutes", 1440L);
+
+        lenient().when(idempotencyService.checkIdempotency(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(store.get(invocation.<String>getArgument(0))));
+        lenient().doAnswer(invocation -> store.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(idempotencyService).saveIdempotencyResult(anyString(), anyString(), anyInt(), anyLong());
+    }
+
+    @Test
+    @DisplayName("a repeated key with the same body replays status, body and stored headers without the controller")
+    void repeatedRequest_replaysResponse() throws Exception {
+        MockHttpServletResponse first = perform("key-1", BODY, 201);
+        MockHttpServletResponse replayed = perform("key-1", BODY, 201);
+
+        assertThat(handledBodies).containsExactly(BODY);
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(first.getHeader(IdempotentReplayFilter.REPLAYED_HEADER)).isNull();
+        assertThat(replayed.getStatus()).isEqualTo(201);
+        assertThat(replayed.getContentAsString()).isEqualTo(first.getContentAsString());
+        assertThat(replayed.getHeader("Location")).isEqualTo(PATH + "/42");
+        assertThat(replayed.getHeader("Cache-Control")).isNull();
+        assertThat(replayed.getHeader(IdempotentReplayFilter.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    @DisplayName("a repeated key with a different body is rejected with 422 without the controller")
+    void repeatedKey_differentBody_rejected() throws Exception {
+        perform("key-2", BODY, 201);
+        MockHttpServletResponse rejected = perform("key-2", "{\"amount\":99.00}", 201);
+
+        assertThat(handledBodies).containsExactly(BODY);
+        assertThat(rejected.getStatus()).isEqualTo(422);
+        assertThat(rejected.getContentAsString()).contains("\"status\":422");
+        assertThat(rejected.getHeader(IdempotentReplayFilter.REPLAYED_HEADER)).isNull();
+    }
+
+    @Test
+    @DisplayName("an error response is not stored, so the request can be retried with the same key")
+    void errorResponse_notStored() throws Exception {
+        perform("key-3", BODY, 409);
+        MockHttpServletResponse retried = perform("key-3", BODY, 201);
+
+        assertThat(handledBodies).containsExactly(BODY, BODY);
+        assertThat(retried.getStatus()).isEqualTo(201);
+        verify(idempotencyService).saveIdempotencyResult(anyString(), anyString(), anyInt(), anyLong());
+    }
+
+    @Test
+    @DisplayName("requests without a key pass straight through")
+    void noKey_notFiltered() throws Exception {
+        perform(null, BODY, 201);
+        perform(null, BODY, 201);
+
+        assertThat(handledBodies).containsExactly(BODY, BODY);
+        verify(idempotencyService, never()).checkIdempotency(anyString());
+    }
+
+    private MockHttpServletResponse perform(String key, String body, int status) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", PATH);
+        if (key != null) {
+            request.addHeader(IdempotentReplayFilter.IDEMPOTENCY_KEY_HEADER, key);
+        }
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                handledBodies.add(StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8));
+                resp.setStatus(status);
+                resp.setContentType("application/json");
+                resp.setHeader("Location", PATH + "/42");
+                resp.setHeader("Cache-Control", "no-store");
+                resp.getWriter().write("{\"id\":42}");
+            }
+        }));
+        return response;
+    }
+}
@@ -0,0 +1,291 @@
+package com.fintech.payment.ledger;
+
+import com.fintech.payment.entity.Account;
+import com.fintech.payment.entity.Wallet;
+import com.fintech.payment.enums.TransactionType;
+import com.fintech.payment.enums.WalletStatus;
+import com.fintech.payment.repository.LedgerCommitMarkerRepository;
+import com.fintech.payment.repository.LedgerEngineLeaseRepository;
+import com.fintech.payment.repository.LedgerProjectionOffsetRepository;
+import com.fintech.payment.repository.TransactionBatchRepository;
+import com.fintech.payment.repository.WalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+/**
+ * Wallet 1 lives in partition 1 and wallet 2 in partition 0, so every transfer between
+ * them crosses partitions.
+ */
+@ExtendWith(MockitoExtension.class)
+class LedgerEngineRecoveryTest {
+
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("100.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("30.00");
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private LedgerProjectionOffsetRepository offsetRepository;
+
+    @Mock
+    private TransactionBatchRepository transactionBatchRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private LedgerCommitMarkerRepository commitMarkerRepository;
+
+    @Mock
+    private LedgerEngineLeaseRepository leaseRepository;
+
+    @TempDir
+    Path journalDir;
+
+    private LedgerEngine ledgerEngine;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(offsetRepository.findById(any())).thenReturn(Optional.empty());
+        lenient().when(walletRepository.findById(1L)).thenReturn(Optional.of(wallet(1L, WalletStatus.ACTIVE)));
+        lenient().when(walletRepository.findById(2L)).thenReturn(Optional.of(wallet(2L, WalletStatus.ACTIVE)));
+        lenient().when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any())).thenReturn(0);
+        lenient().when(leaseRepository.acquire(anyString(), any(), any())).thenReturn(Optional.of(1L));
+        lenient().when(leaseRepository.renew(anyString(), anyLong(), any())).thenReturn(1);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (ledgerEngine != null) {
+            ledgerEngine.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("start - credits the destination of a transfer journaled as debited but not yet credited")
+    void start_completesTransferInFlight() throws IOException {
+        LedgerCommand reserve = reserveTransfer();
+        journal(1, reserve, followUp(reserve, 2, LedgerCommand.Type.SETTLE));
+
+        startEngine();
+
+        assertThat(balanceOf(1L)).isEqualByComparingTo("70.00");
+        assertThat(frozenOf(1L)).isEqualByComparingTo("0");
+        assertThat(balanceOf(2L)).isEqualByComparingTo("130.00");
+    }
+
+    @Test
+    @DisplayName("start - only closes a transfer whose credit was journaled before the crash")
+    void start_doesNotCreditTwice() throws IOException {
+        LedgerCommand reserve = reserveTransfer();
+        journal(1, reserve, followUp(reserve, 2, LedgerCommand.Type.SETTLE));
+        journal(0, LedgerCommand.builder()
+                .sequence(1)
+                .type(LedgerCommand.Type.CREDIT)
+                .walletId(2L)
+                .counterpartyWalletId(1L)
+                .amount(AMOUNT)
+                .transactionType(TransactionType.TRANSFER_IN)
+                .idempotencyKey("transfer-1_IN")
+                .transactionRef(reserve.getCounterpartyTransactionRef())
+                .intentId(reserve.getIntentId())
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        startEngine();
+
+        assertThat(balanceOf(1L)).isEqualByComparingTo("70.00");
+        assertThat(balanceOf(2L)).isEqualByComparingTo("130.00");
+    }
+
+    @Test
+    @DisplayName("start - reverses a transfer in flight when the destination rejects the credit")
+    void start_reversesRejectedTransfer() throws IOException {
+        when(walletRepository.findById(2L)).thenReturn(Optional.of(wallet(2L, WalletStatus.FROZEN)));
+        LedgerCommand reserve = reserveTransfer();
+        journal(1, reserve, followUp(reserve, 2, LedgerCommand.Type.SETTLE));
+
+        startEngine();
+
+        assertThat(balanceOf(1L)).isEqualByComparingTo("100.00");
+        assertThat(ledgerEngine.getSnapshot(2L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("start - settles a reservation whose transaction committed and releases one that did not")
+    void start_resolvesReservationsByCommitMarker() throws IOException {
+        LedgerCommand committed = reserveTransfer();
+        LedgerCommand rolledBack = reserveTransfer().toBuilder()
+                .sequence(2)
+                .intentId("intent-rolled-back")
+                .build();
+        journal(1, committed, rolledBack);
+        when(commitMarkerRepository.existsById(committed.getIntentId())).thenReturn(true);
+        when(commitMarkerRepository.existsById(rolledBack.getIntentId())).thenReturn(false);
+
+        startEngine();
+
+        assertThat(balanceOf(1L)).isEqualByComparingTo("70.00");
+        assertThat(frozenOf(1L)).isEqualByComparingTo("0");
+        assertThat(balanceOf(2L)).isEqualByComparingTo("130.00");
+    }
+
+    @Test
+    @DisplayName("transferOnCommit - holds the funds until commit and moves nothing on rollback")
+    void transferOnCommit_followsTheDatabaseTransaction() {
+        startEngine();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ledgerEngine.transferOnCommit(1L, 2L, AMOUNT, "out", "in", "transfer-1");
+            assertThat(frozenOf(1L)).isEqualByComparingTo("30.00");
+            assertThat(balanceOf(1L)).isEqualByComparingTo("100.00");
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+            ledgerEngine.transferOnCommit(1L, 2L, AMOUNT, "out", "in", "transfer-2");
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(frozenOf(1L)).isEqualByComparingTo("0");
+        assertThat(balanceOf(1L)).isEqualByComparingTo("70.00");
+        assertThat(balanceOf(2L)).isEqualByComparingTo("130.00");
+    }
+
+    @Test
+    @DisplayName("credit - a repeated idempotency key is answered with the original result and applied once")
+    void credit_repeatedKey_appliedOnce() {
+        startEngine();
+
+        LedgerResult first = ledgerEngine.credit(1L, AMOUNT, TransactionType.DEPOSIT, "deposit", "deposit-1", null);
+        LedgerResult retry = ledgerEngine.credit(1L, AMOUNT, TransactionType.DEPOSIT, "deposit", "deposit-1", null);
+
+        assertThat(first.isDuplicate()).isFalse();
+        assertThat(retry.isDuplicate()).isTrue();
+        assertThat(retry.getSequence()).isEqualTo(first.getSequence());
+        assertThat(balanceOf(1L)).isEqualByComparingTo("130.00");
+    }
+
+    @Test
+    @DisplayName("start - refuses to run while another node holds the engine lease")
+    void start_refusedWhileLeaseHeldElsewhere() {
+        when(leaseRepository.acquire(anyString(), any(), any())).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> startEngine(100L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("only one node");
+    }
+
+    private void startEngine() {
+        startEngine(30_000L);
+    }
+
+    private void startEngine(long leaseMs) {
+        ledgerEngine = new LedgerEngine(walletRepository, offsetRepository, transactionBatchRepository,
+                jdbcTemplate, new TransactionTemplate(transactionManager), commitMarkerRepository,
+                new SimpleMeterRegistry(), leaseRepository);
+        ReflectionTestUtils.setField(ledgerEngine, "partitionCount", 2);
+        ReflectionTestUtils.setField(ledgerEngine, "queueCapacity", 64);
+        ReflectionTestUtils.setField(ledgerEngine, "maxBatchSize", 16);
+        ReflectionTestUtils.setField(ledgerEngine, "submitTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(ledgerEngine, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(ledgerEngine, "segmentBytes", 64 * 1024);
+        ReflectionTestUtils.setField(ledgerEngine, "projectorRetryBackoffMs", 10L);
+        ReflectionTestUtils.setField(ledgerEngine, "keyRetentionMs", 60_000L);
+        ReflectionTestUtils.setField(ledgerEngine, "leaseMs", leaseMs);
+        ledgerEngine.start();
+    }
+
+    private void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    private void journal(int partitionId, LedgerCommand... commands) throws IOException {
+        LedgerJournal journal = new LedgerJournal(journalDir, partitionId, 64 * 1024);
+        journal.open(0);
+        for (LedgerCommand command : commands) {
+            journal.append(command);
+        }
+        journal.force();
+        journal.close();
+    }
+
+    private static LedgerCommand reserveTransfer() {
+        return LedgerCommand.builder()
+                .sequence(1)
+                .type(LedgerCommand.Type.RESERVE)
+                .operation(LedgerCommand.Type.TRANSFER)
+                .walletId(1L)
+                .counterpartyWalletId(2L)
+                .amount(AMOUNT)
+                .description("out")
+                .counterpartyDescription("in")
+                .idempotencyKey("transfer-1")
+                .transactionRef("ref-out")
+                .counterpartyTransactionRef("ref-in")
+                .intentId("intent-1")
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static LedgerCommand followUp(LedgerCommand reserve, long sequence, LedgerCommand.Type type) {
+        return reserve.toBuilder().sequence(sequence).type(type).build();
+    }
+
+    private BigDecimal balanceOf(Long walletId) {
+        return ledgerEngine.getSnapshot(walletId).orElseThrow().getBalance();
+    }
+
+    private BigDecimal frozenOf(Long walletId) {
+        return ledgerEngine.getSnapshot(walletId).orElseThrow().getFrozenAmount();
+    }
+
+    private static Wallet wallet(Long id, WalletStatus status) {
+        Account account = new Account();
+        account.setId(id + 100);
+        return Wallet.builder()
+                .id(id)
+                .account(account)
+                .balance(OPENING_BALANCE)
+                .currency("USD")
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,129 @@
+package com.fintech.payment.ledger;
+
+import com.fintech.payment.enums.TransactionType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LedgerJournalTest {
+
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path journalDir;
+
+    @Test
+    @DisplayName("open - replays every intact command with all of its fields")
+    void open_replaysAppendedCommands() throws IOException {
+        LedgerJournal journal = new LedgerJournal(journalDir, 0, SEGMENT_BYTES);
+        journal.open(0);
+        LedgerCommand reserve = command(1, LedgerCommand.Type.RESERVE).toBuilder()
+                .intentId("intent-1")
+                .operation(LedgerCommand.Type.TRANSFER)
+                .counterpartyWalletId(8L)
+                .counterpartyTransactionRef("ref-in")
+                .build();
+        journal.append(reserve);
+        journal.append(command(2, LedgerCommand.Type.CREDIT));
+        journal.append(command(3, LedgerCommand.Type.DEBIT));
+        journal.force();
+        journal.close();
+
+        List<LedgerCommand> replayed = new LedgerJournal(journalDir, 0, SEGMENT_BYTES).open(2);
+
+        assertThat(replayed).extracting(LedgerCommand::getSequence).containsExactly(1L, 2L, 3L);
+        assertThat(replayed.get(0)).isEqualTo(reserve);
+        assertThat(replayed.get(2).getAmount()).isEqualTo(new BigDecimal("12.50"));
+    }
+
+    @Test
+    @DisplayName("open - stops at a record whose checksum does not match and appends over it")
+    void open_dropsTornRecord() throws IOException {
+        LedgerJournal journal = new LedgerJournal(journalDir, 0, SEGMENT_BYTES);
+        journal.open(0);
+        journal.append(command(1, LedgerCommand.Type.CREDIT));
+        journal.append(command(2, LedgerCommand.Type.CREDIT));
+        journal.append(command(3, LedgerCommand.Type.CREDIT));
+        journal.force();
+        journal.close();
+
+        // Flip a payload byte of the third record, as a write torn by a crash would leave it
+        int thirdRecord = 2 * (8 + command(1, LedgerCommand.Type.CREDIT).encode().length);
+        try (FileChannel channel = FileChannel.open(segmentFiles().get(0), StandardOpenOption.WRITE,
+                StandardOpenOption.READ)) {
+            ByteBuffer payloadByte = ByteBuffer.allocate(1);
+            channel.read(payloadByte, thirdRecord + 20);
+            payloadByte.put(0, (byte) ~payloadByte.get(0)).rewind();
+            channel.write(payloadByte, thirdRecord + 20);
+        }
+
+        LedgerJournal reopened = new LedgerJournal(journalDir, 0, SEGMENT_BYTES);
+        assertThat(reopened.open(0)).extracting(LedgerCommand::getSequence).containsExactly(1L, 2L);
+
+        reopened.append(command(3, LedgerCommand.Type.DEBIT));
+        reopened.force();
+        reopened.close();
+
+        List<LedgerCommand> replayed = new LedgerJournal(journalDir, 0, SEGMENT_BYTES).open(0);
+        assertThat(replayed).extracting(LedgerCommand::getSequence).containsExactly(1L, 2L, 3L);
+        assertThat(replayed.get(2).getType()).isEqualTo(LedgerCommand.Type.DEBIT);
+    }
+
+    @Test
+    @DisplayName("releaseUpTo - deletes only segments whose commands are all at or below the sequence")
+    void releaseUpTo_keepsSegmentsWithLaterCommands() throws IOException {
+        LedgerJournal journal = new LedgerJournal(journalDir, 0, 512);
+        journal.open(0);
+        for (long sequence = 1; sequence <= 12; sequence++) {
+            journal.append(command(sequence, LedgerCommand.Type.CREDIT));
+        }
+        journal.force();
+        int segments = segmentFiles().size();
+        assertThat(segments).isGreaterThan(2);
+
+        journal.releaseUpTo(1);
+        assertThat(segmentFiles()).hasSize(segments);
+
+        journal.releaseUpTo(12);
+        journal.close();
+        assertThat(segmentFiles()).hasSize(1);
+
+        List<LedgerCommand> retained = new LedgerJournal(journalDir, 0, 512).open(12);
+        assertThat(retained).isNotEmpty();
+        assertThat(retained.get(retained.size() - 1).getSequence()).isEqualTo(12L);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static LedgerCommand command(long sequence, LedgerCommand.Type type) {
+        return LedgerCommand.builder()
+                .sequence(sequence)
+                .type(type)
+                .walletId(7L)
+                .amount(new BigDecimal("12.50"))
+                .transactionType(TransactionType.DEPOSIT)
+                .description("Deposit " + sequence)
+                .idempotencyKey("key-" + sequence)
+                .transactionRef("ref-" + sequence)
+                .createdAt(LocalDateTime.of(2026, 3, 7, 9, 5, 2, 123_456_000))
+                .build();
+    }
+}
@@ -0,0 +1,125 @@
+package com.fintech.payment.ledger;
+
+import com.fintech.payment.entity.LedgerProjectionOffset;
+import com.fintech.payment.entity.Transaction;
+import com.fintech.payment.repository.LedgerProjectionOffsetRepository;
+import com.fintech.payment.repository.TransactionBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerProjectorTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionBatchRepository transactionBatchRepository;
+
+    @Mock
+    private LedgerProjectionOffsetRepository offsetRepository;
+
+    @Mock
+    private LedgerLease lease;
+
+    private final Map<Integer, Long> projected = new ConcurrentHashMap<>();
+    private final List<String> inserted = Collections.synchronizedList(new ArrayList<>());
+    private final List<RuntimeException> leaseLost = Collections.synchronizedList(new ArrayList<>());
+    private Counter parkedCounter;
+    private LedgerProjector projector;
+
+    @BeforeEach
+    void setUp() {
+        parkedCounter = new SimpleMeterRegistry().counter("ledger.projection.parked");
+        projector = new LedgerProjector(jdbcTemplate, new TransactionTemplate(transactionManager),
+                transactionBatchRepository, offsetRepository, lease, projected::put, leaseLost::add,
+                parkedCounter, 16, 10L);
+
+        lenient().doAnswer(invocation -> {
+            List<Transaction> transactions = invocation.getArgument(0);
+            List<String> keys = transactions.stream()
+                    .map(Transaction::getIdempotencyKey)
+                    .collect(Collectors.toList());
+            if (keys.contains("already-projected")) {
+                throw new DataIntegrityViolationException("uk_txn_idempotency_key");
+            }
+            inserted.addAll(keys);
+            return null;
+        }).when(transactionBatchRepository).insertAll(any());
+    }
+
+    @Test
+    @DisplayName("run - parks a result the database rejects and projects the rest of the batch")
+    void run_parksRejectedResultAndMovesOn() throws Exception {
+        projector.enqueue(result(1, "deposit-1"));
+        projector.enqueue(result(2, "already-projected"));
+        projector.enqueue(result(3, "deposit-3"));
+
+        projector.start();
+        projector.stop();
+
+        assertThat(inserted).containsExactly("deposit-1", "deposit-3");
+        assertThat(parkedCounter.count()).isEqualTo(1.0);
+        assertThat(projected).containsEntry(0, 3L);
+
+        ArgumentCaptor<LedgerProjectionOffset> offsets = ArgumentCaptor.forClass(LedgerProjectionOffset.class);
+        verify(offsetRepository, atLeastOnce()).save(offsets.capture());
+        assertThat(offsets.getAllValues())
+                .extracting(LedgerProjectionOffset::getLastSequence)
+                .contains(2L, 3L);
+    }
+
+    @Test
+    @DisplayName("run - stops without writing once another node holds the lease")
+    void run_leaseLost_stopsWithoutWriting() throws Exception {
+        doThrow(new LedgerLease.LostException("lease passed to another node")).when(lease).renew();
+        projector.enqueue(result(1, "deposit-1"));
+
+        projector.start();
+        projector.stop();
+
+        assertThat(inserted).isEmpty();
+        assertThat(projected).isEmpty();
+        assertThat(leaseLost).hasSize(1);
+        verify(offsetRepository, never()).save(any());
+    }
+
+    private static LedgerResult result(long sequence, String idempotencyKey) {
+        Transaction transaction = Transaction.builder()
+                .transactionRef("ref-" + sequence)
+                .idempotencyKey(idempotencyKey)
+                .build();
+        return new LedgerResult(0, sequence, Collections.singletonList(transaction),
+                Collections.emptyList(), null, false);
+    }
+}
@@ -0,0 +1,187 @@
+package com.fintech.payment.outbox;
+
+import com.fintech.payment.entity.OutboxEvent;
+import com.fintech.payment.enums.OutboxStatus;
+import com.fintech.payment.repository.OutboxEventRepository;
+import com.fintech.payment.repository.OutboxRelayLeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private OutboxRelayLeaseRepository leaseRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private InMemoryOutboxPublisher publisher;
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new InMemoryOutboxPublisher();
+        relay = new OutboxRelay(outboxEventRepository, leaseRepository, publisher,
+                transactionTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(relay, "enabled", false);
+        ReflectionTestUtils.setField(relay, "maxShardsPerNode", 16);
+        ReflectionTestUtils.setField(relay, "batchSize", 100);
+        ReflectionTestUtils.setField(relay, "leaseSeconds", 10L);
+        ReflectionTestUtils.setField(relay, "sendTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(relay, "maxAttempts", 3);
+        ReflectionTestUtils.setField(relay, "retryBackoffMs", 1000L);
+        ReflectionTestUtils.setField(relay, "maxRetryBackoffMs", 60000L);
+        relay.start();
+
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    @DisplayName("relayOnce - publishes the claimed shards' messages in order and marks them in one update")
+    void relayOnce_publishesInOrderAndMarks() throws Exception {
+        when(leaseRepository.claimShards(anyString(), any(), any(), anyInt())).thenReturn(List.of(3));
+        when(outboxEventRepository.findByStatusAndShards(eq(OutboxStatus.PENDING), eq(List.of(3)), any(), any()))
+                .thenReturn(List.of(
+                        event(1L, "wallet-events", "42", "{\"seq\":1}"),
+                        event(2L, "wallet-events", "42", "{\"seq\":2}"),
+                        event(3L, "notification-events", "REF-1", "{\"seq\":3}")));
+
+        int published = relay.relayOnce();
+
+        assertThat(published).isEqualTo(3);
+        assertThat(publisher.messages("wallet-events"))
+                .extracting(InMemoryOutboxPublisher.Message::getPayload)
+                .containsExactly("{\"seq\":1}", "{\"seq\":2}");
+        assertThat(publisher.messages("notification-events")).hasSize(1);
+        verify(outboxEventRepository).markPublished(eq(List.of(1L, 2L, 3L)), eq(OutboxStatus.PUBLISHED), any());
+    }
+
+    @Test
+    @DisplayName("relayOnce - leaves messages the broker rejected pending and backs off their shard")
+    void relayOnce_failedSendsStayPending() throws Exception {
+        publisher.failTopic("notification-events", true);
+        when(leaseRepository.claimShards(anyString(), any(), any(), anyInt())).thenReturn(List.of(0, 1));
+        when(outboxEventRepository.findByStatusAndShards(eq(OutboxStatus.PENDING), eq(List.of(0, 1)), any(), any()))
+                .thenReturn(List.of(
+                        event(10L, 0, "notification-events", "REF-2", "{}"),
+                        event(11L, 1, "transfer-events", "REF-2", "{}")));
+
+        LocalDateTime before = LocalDateTime.now();
+        int published = relay.relayOnce();
+
+        assertThat(published).isEqualTo(1);
+        verify(outboxEventRepository).markPublished(eq(List.of(11L)), eq(OutboxStatus.PUBLISHED), any());
+        ArgumentCaptor<LocalDateTime> nextAttemptAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(outboxEventRepository).recordFailure(eq(10L), eq(OutboxStatus.PENDING), eq(1),
+                nextAttemptAt.capture(), anyString());
+        assertThat(nextAttemptAt.getValue()).isAfterOrEqualTo(before.plusSeconds(1));
+    }
+
+    @Test
+    @DisplayName("relayOnce - marks nothing of a shard behind its first failed message")
+    void relayOnce_failureHoldsBackRestOfShard() throws Exception {
+        publisher.failTopic("notification-events", true);
+        when(leaseRepository.claimShards(anyString(), any(), any(), anyInt())).thenReturn(List.of(0, 1));
+        when(outboxEventRepository.findByStatusAndShards(eq(OutboxStatus.PENDING), eq(List.of(0, 1)), any(), any()))
+                .thenReturn(List.of(
+                        event(20L, 0, "wallet-events", "42", "{}"),
+                        event(21L, 0, "notification-events", "42", "{}"),
+                        event(22L, 1, "wallet-events", "43", "{}"),
+                        event(23L, 0, "wallet-events", "42", "{}"),
+                        event(24L, 1, "wallet-events", "43", "{}")));
+
+        int published = relay.relayOnce();
+
+        assertThat(published).isEqualTo(3);
+        verify(outboxEventRepository).markPublished(eq(List.of(20L, 22L, 24L)), eq(OutboxStatus.PUBLISHED), any());
+        verify(outboxEventRepository).recordFailure(eq(21L), eq(OutboxStatus.PENDING), eq(1), any(), anyString());
+        verify(outboxEventRepository, never()).recordFailure(eq(23L), any(), anyInt(), any(), any());
+    }
+
+    @Test
+    @DisplayName("relayOnce - parks a message once it has used up its attempts")
+    void relayOnce_parksAfterMaxAttempts() throws Exception {
+        publisher.failTopic("notification-events", true);
+        OutboxEvent event = event(30L, 2, "notification-events", "REF-3", "{}");
+        event.setAttempts(2);
+        when(leaseRepository.claimShards(anyString(), any(), any(), anyInt())).thenReturn(List.of(2));
+        when(outboxEventRepository.findByStatusAndShards(eq(OutboxStatus.PENDING), eq(List.of(2)), any(), any()))
+                .thenReturn(List.of(event));
+
+        assertThat(relay.relayOnce()).isZero();
+
+        verify(outboxEventRepository).recordFailure(eq(30L), eq(OutboxStatus.PARKED), eq(3), isNull(), anyString());
+        verify(outboxEventRepository, never()).markPublished(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("relayOnce - marks only the shards whose lease is still held after the sends")
+    void relayOnce_lostLease_leavesShardToNewOwner() throws Exception {
+        publisher.failTopic("notification-events", true);
+        when(leaseRepository.claimShards(anyString(), any(), any(), anyInt()))
+                .thenReturn(List.of(0, 1))
+                .thenReturn(List.of(1));
+        when(outboxEventRepository.findByStatusAndShards(eq(OutboxStatus.PENDING), eq(List.of(0, 1)), any(), any()))
+                .thenReturn(List.of(
+                        event(40L, 0, "wallet-events", "42", "{}"),
+                        event(41L, 0, "notification-events", "42", "{}"),
+                        event(42L, 1, "wallet-events", "43", "{}")));
+
+        assertThat(relay.relayOnce()).isEqualTo(1);
+
+        verify(outboxEventRepository).markPublished(eq(List.of(42L)), eq(OutboxStatus.PUBLISHED), any());
+        verify(outboxEventRepository, never()).recordFailure(any(), any(), anyInt(), any(), any());
+    }
+
+    @Test
+    @DisplayName("relayOnce - does nothing while another node holds every shard")
+    void relayOnce_noShards_publishesNothing() throws Exception {
+        when(leaseRepository.claimShards(anyString(), any(), any(), anyInt())).thenReturn(List.of());
+
+        assertThat(relay.relayOnce()).isZero();
+
+        verify(outboxEventRepository, never()).findByStatusAndShards(any(), any(), any(), any());
+        verify(outboxEventRepository, never()).markPublished(any(), any(), any());
+    }
+
+    private static OutboxEvent event(Long id, String topic, String key, String payload) {
+        return event(id, 3, topic, key, payload);
+    }
+
+    private static OutboxEvent event(Long id, int shard, String topic, String key, String payload) {
+        return OutboxEvent.builder()
+                .id(id)
+                .shard(shard)
+                .topic(topic)
+                .messageKey(key)
+                .payload(payload)
+                .build();
+    }
+}
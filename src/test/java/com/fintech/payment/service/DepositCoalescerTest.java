@@ -0,0 +1,235 @@
+package com.fintech.payment.service;
+
+import com.fintech.payment.entity.Transaction;
+import com.fintech.payment.repository.TransactionBatchRepository;
+import com.fintech.payment.repository.TransactionRepository;
+import com.fintech.payment.repository.WalletBalanceView;
+import com.fintech.payment.repository.WalletRepository;
+import com.fintech.payment.service.DepositCoalescer.CoalescedDeposit;
+import com.fintech.payment.service.impl.DepositCoalescerImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DepositCoalescerTest {
+
+    private static final Long ACCOUNT_ID = 1L;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private TransactionBatchRepository transactionBatchRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    private DepositCoalescerImpl coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new DepositCoalescerImpl(walletRepository, transactionRepository,
+                transactionBatchRepository, transactionTemplate, idempotencyService);
+        ReflectionTestUtils.setField(coalescer, "enabled", true);
+        ReflectionTestUtils.setField(coalescer, "windowMs", 60_000L);
+        ReflectionTestUtils.setField(coalescer, "maxBatchSize", 3);
+        ReflectionTestUtils.setField(coalescer, "flushThreads", 1);
+
+        lenient().doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.stop();
+    }
+
+    @Test
+    @DisplayName("submit - a full batch is flushed at once with one credit and one batch insert")
+    void submit_fullBatch_flushedWithOneCreditAndOneInsert() throws Exception {
+        coalescer.start();
+        whenCredited(new BigDecimal("60.00"), new BigDecimal("160.00"));
+
+        CompletableFuture<CoalescedDeposit> first = coalescer.submit(ACCOUNT_ID, new BigDecimal("10.00"), null, "k1");
+        CompletableFuture<CoalescedDeposit> second = coalescer.submit(ACCOUNT_ID, new BigDecimal("20.00"), null, "k2");
+        CompletableFuture<CoalescedDeposit> third = coalescer.submit(ACCOUNT_ID, new BigDecimal("30.00"), null, "k3");
+
+        // The window is a minute, so completing now means the size limit triggered the flush
+        assertBalances(first.get(1, TimeUnit.SECONDS), "100.00", "110.00");
+        assertBalances(second.get(1, TimeUnit.SECONDS), "110.00", "130.00");
+        assertBalances(third.get(1, TimeUnit.SECONDS), "130.00", "160.00");
+
+        verify(walletRepository, times(1)).creditByAccountId(eq(ACCOUNT_ID), eq(new BigDecimal("60.00")),
+                any(LocalDateTime.class));
+        assertThat(insertedRows()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("submit - a batch below the size limit is flushed when the window closes")
+    void submit_partialBatch_flushedAfterWindow() throws Exception {
+        ReflectionTestUtils.setField(coalescer, "windowMs", 20L);
+        coalescer.start();
+        whenCredited(new BigDecimal("30.00"), new BigDecimal("130.00"));
+
+        CompletableFuture<CoalescedDeposit> first = coalescer.submit(ACCOUNT_ID, new BigDecimal("10.00"), null, "k1");
+        CompletableFuture<CoalescedDeposit> second = coalescer.submit(ACCOUNT_ID, new BigDecimal("20.00"), null, "k2");
+
+        assertBalances(first.get(1, TimeUnit.SECONDS), "100.00", "110.00");
+        assertBalances(second.get(1, TimeUnit.SECONDS), "110.00", "130.00");
+        assertThat(insertedRows()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("submit - a key repeated within one batch is applied once and reported as a duplicate")
+    void submit_repeatedKeyInBatch_appliedOnce() throws Exception {
+        coalescer.start();
+        whenCredited(new BigDecimal("30.00"), new BigDecimal("130.00"));
+
+        CompletableFuture<CoalescedDeposit> first = coalescer.submit(ACCOUNT_ID, new BigDecimal("10.00"), null, "same");
+        CompletableFuture<CoalescedDeposit> other = coalescer.submit(ACCOUNT_ID, new BigDecimal("20.00"), null, "other");
+        CompletableFuture<CoalescedDeposit> repeat = coalescer.submit(ACCOUNT_ID, new BigDecimal("10.00"), null, "same");
+
+        CoalescedDeposit applied = first.get(1, TimeUnit.SECONDS);
+        CoalescedDeposit duplicate = repeat.get(1, TimeUnit.SECONDS);
+        assertThat(applied.isDuplicate()).isFalse();
+        assertThat(other.get(1, TimeUnit.SECONDS).isDuplicate()).isFalse();
+        assertThat(duplicate.isDuplicate()).isTrue();
+        assertThat(duplicate.getTransaction()).isSameAs(applied.getTransaction());
+        assertThat(insertedRows()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("flush - a constraint violation is retried with every key looked up")
+    void flush_constraintViolation_retriedWithAllKeysLookedUp() throws Exception {
+        coalescer.start();
+        doThrow(new DataIntegrityViolationException("uk_txn_idempotency_key"))
+                .doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+        Transaction committed = Transaction.builder().idempotencyKey("k2").build();
+        when(transactionRepository.findByIdempotencyKeyIn(anyCollection())).thenReturn(List.of(committed));
+        whenCredited(new BigDecimal("40.00"), new BigDecimal("140.00"));
+
+        CompletableFuture<CoalescedDeposit> first = coalescer.submit(ACCOUNT_ID, new BigDecimal("10.00"), null, "k1");
+        CompletableFuture<CoalescedDeposit> known = coalescer.submit(ACCOUNT_ID, new BigDecimal("20.00"), null, "k2");
+        CompletableFuture<CoalescedDeposit> third = coalescer.submit(ACCOUNT_ID, new BigDecimal("30.00"), null, "k3");
+
+        assertThat(known.get(1, TimeUnit.SECONDS).isDuplicate()).isTrue();
+        assertThat(known.get().getTransaction()).isSameAs(committed);
+        assertBalances(first.get(1, TimeUnit.SECONDS), "100.00", "110.00");
+        assertBalances(third.get(1, TimeUnit.SECONDS), "110.00", "140.00");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository).findByIdempotencyKeyIn(keys.capture());
+        assertThat(keys.getValue()).containsExactly("k1", "k2", "k3");
+        verify(idempotencyService, never()).mightHaveSeen(any());
+    }
+
+    @Test
+    @DisplayName("stop - flushes queued deposits, later submits fall back to the regular path")
+    void stop_flushesQueuedAndRejectsLaterSubmits() throws Exception {
+        coalescer.start();
+        whenCredited(new BigDecimal("10.00"), new BigDecimal("110.00"));
+        CompletableFuture<CoalescedDeposit> queued = coalescer.submit(ACCOUNT_ID, new BigDecimal("10.00"), null, "k1");
+
+        coalescer.stop();
+
+        assertBalances(queued.get(1, TimeUnit.SECONDS), "100.00", "110.00");
+        CompletableFuture<CoalescedDeposit> late = coalescer.submit(ACCOUNT_ID, new BigDecimal("5.00"), null, "k2");
+        assertThat(late).isCompletedWithValue(null);
+        verify(walletRepository, times(1)).creditByAccountId(any(), any(), any());
+    }
+
+    private void whenCredited(BigDecimal total, BigDecimal balanceAfter) {
+        when(walletRepository.creditByAccountId(eq(ACCOUNT_ID), eq(total), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(balanceView(balanceAfter)));
+    }
+
+    private int insertedRows() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionBatchRepository).insertAll(captor.capture());
+        return captor.getValue().size();
+    }
+
+    private void assertBalances(CoalescedDeposit deposit, String before, String after) {
+        assertThat(deposit).isNotNull();
+        assertThat(deposit.isDuplicate()).isFalse();
+        assertThat(deposit.getTransaction().getBalanceBefore()).isEqualByComparingTo(before);
+        assertThat(deposit.getTransaction().getBalanceAfter()).isEqualByComparingTo(after);
+    }
+
+    private WalletBalanceView balanceView(BigDecimal balance) {
+        return new WalletBalanceView() {
+            @Override
+            public Long getWalletId() {
+                return 10L;
+            }
+
+            @Override
+            public BigDecimal getBalance() {
+                return balance;
+            }
+
+            @Override
+            public BigDecimal getFrozenAmount() {
+                return BigDecimal.ZERO;
+            }
+
+            @Override
+            public String getCurrency() {
+                return "USD";
+            }
+
+            @Override
+            public int getShardCount() {
+                return 0;
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return LocalDateTime.now();
+            }
+
+            @Override
+            public LocalDateTime getUpdatedAt() {
+                return LocalDateTime.now();
+            }
+        };
+    }
+}
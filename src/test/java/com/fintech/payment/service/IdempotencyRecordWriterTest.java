@@ -0,0 +1,119 @@
+package com.fintech.payment.service;
+
+import com.fintech.payment.entity.IdempotencyKey;
+import com.fintech.payment.repository.IdempotencyKeyBatchRepository;
+import com.fintech.payment.service.impl.IdempotencyRecordWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyRecordWriterTest {
+
+    @Mock
+    private IdempotencyKeyBatchRepository batchRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+    private IdempotencyRecordWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new IdempotencyRecordWriter(batchRepository, transactionTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writer, "enabled", true);
+        ReflectionTestUtils.setField(writer, "maxBatchSize", 500);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", 10_000L);
+        ReflectionTestUtils.setField(writer, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(writer, "retryBackoffMs", 10L);
+
+        // Lenient: a writer stopped with nothing queued never flushes
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().doAnswer(invocation -> {
+            invocation.<List<IdempotencyKey>>getArgument(0).forEach(record -> written.add(record.getKeyValue()));
+            return null;
+        }).when(batchRepository).insertAll(any());
+    }
+
+    @Test
+    @DisplayName("stop - writes every queued record without waiting out the flush interval")
+    void stop_drainsQueue() throws Exception {
+        writer.start();
+        for (int i = 0; i < 50; i++) {
+            assertThat(writer.enqueue(record("key-" + i))).isTrue();
+        }
+
+        writer.stop();
+
+        assertThat(written).hasSize(50).contains("key-0", "key-49");
+    }
+
+    @Test
+    @DisplayName("enqueue - refuses records once stopped, so the caller writes them itself")
+    void enqueue_afterStop_refused() throws Exception {
+        writer.start();
+        writer.stop();
+
+        assertThat(writer.enqueue(record("late"))).isFalse();
+        assertThat(written).doesNotContain("late");
+    }
+
+    @Test
+    @DisplayName("enqueue - records accepted while stopping concurrently are all written")
+    void enqueue_racingStop_acceptedRecordsWritten() throws Exception {
+        writer.start();
+        List<String> accepted = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstAccepted = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                String key = "race-" + i;
+                if (writer.enqueue(record(key))) {
+                    accepted.add(key);
+                    firstAccepted.countDown();
+                }
+            }
+        });
+        producer.start();
+        assertThat(firstAccepted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        writer.stop();
+        producer.join();
+
+        assertThat(accepted).isNotEmpty();
+        assertThat(written).containsExactlyInAnyOrderElementsOf(accepted);
+    }
+
+    private static IdempotencyKey record(String key) {
+        LocalDateTime now = LocalDateTime.now();
+        return IdempotencyKey.builder()
+                .keyValue(key)
+                .requestHash("hash")
+                .responseBody("{}")
+                .statusCode(200)
+                .expiresAt(now.plusHours(24))
+                .createdAt(now)
+                .build();
+    }
+}
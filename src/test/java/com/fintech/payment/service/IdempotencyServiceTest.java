@@ -1,8 +1,11 @@
 package com.fintech.payment.service;
 
-import com.fintech.payment.model.entity.IdempotencyRecord;
-import com.fintech.payment.repository.IdempotencyRecordRepository;
+import com.fintech.payment.entity.IdempotencyKey;
+import com.fintech.payment.repository.IdempotencyKeyRepository;
+import com.fintech.payment.service.impl.IdempotencyKeyFilter;
+import com.fintech.payment.service.impl.IdempotencyRecordWriter;
 import com.fintech.payment.service.impl.IdempotencyServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -12,7 +15,11 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Optional;
 
@@ -30,7 +37,13 @@ class IdempotencyServiceTest {
     private ValueOperations<String, String> valueOperations;
 
     @Mock
-    private IdempotencyRecordRepository idempotencyRecordRepository;
+    private IdempotencyKeyRepository idempotencyRecordRepository;
+
+    @Mock
+    private IdempotencyKeyFilter keyFilter;
+
+    @Mock
+    private IdempotencyRecordWriter recordWriter;
 
     @InjectMocks
     private IdempotencyServiceImpl idempotencyService;
@@ -40,7 +53,7 @@ class IdempotencyServiceTest {
 
     @BeforeEach
     void setUp() {
-        // Setup is done via @Mock annotations
+        lenient().when(keyFilter.mightContain(anyString())).thenReturn(true);
     }
 
     @Test
@@ -54,7 +67,18 @@ class IdempotencyServiceTest {
         assertThat(result).isPresent();
         assertThat(result.get()).isEqualTo(TEST_RESPONSE);
         verify(redisTemplate).opsForValue();
-        verify(idempotencyRecordRepository, never()).findByIdempotencyKey(anyString());
+        verify(idempotencyRecordRepository, never()).findByKeyValue(anyString());
+    }
+
+    @Test
+    @DisplayName("checkIdempotency - key never seen by the filter: should skip Redis and DB")
+    void checkIdempotency_keyNeverSeen_skipsRemoteLookups() {
+        when(keyFilter.mightContain(TEST_KEY)).thenReturn(false);
+
+        Optional<String> result = idempotencyService.checkIdempotency(TEST_KEY);
+
+        assertThat(result).isEmpty();
+        verifyNoInteractions(redisTemplate, idempotencyRecordRepository);
     }
 
     @Test
@@ -62,13 +86,13 @@ class IdempotencyServiceTest {
     void checkIdempotency_keyNotExists_returnsEmpty() {
         when(redisTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get("idempotency:" + TEST_KEY)).thenReturn(null);
-        when(idempotencyRecordRepository.findByIdempotencyKey(TEST_KEY)).thenReturn(Optional.empty());
+        when(idempotencyRecordRepository.findByKeyValue(TEST_KEY)).thenReturn(Optional.empty());
 
         Optional<String> result = idempotencyService.checkIdempotency(TEST_KEY);
 
         assertThat(result).isEmpty();
         verify(redisTemplate).opsForValue();
-        verify(idempotencyRecordRepository).findByIdempotencyKey(TEST_KEY);
+        verify(idempotencyRecordRepository).findByKeyValue(TEST_KEY);
     }
 
     @Test
@@ -77,29 +101,68 @@ class IdempotencyServiceTest {
         when(redisTemplate.opsForValue()).thenReturn(valueOperations);
         doNothing().when(valueOperations).set(anyString(), anyString(), any());
 
-        IdempotencyRecord savedRecord = IdempotencyRecord.builder()
-                .idempotencyKey(TEST_KEY)
+        IdempotencyKey savedRecord = IdempotencyKey.builder()
+                .keyValue(TEST_KEY)
                 .responseBody(TEST_RESPONSE)
                 .statusCode(200)
                 .expiresAt(LocalDateTime.now().plusMinutes(1440))
                 .build();
         savedRecord.setId(1L);
-        when(idempotencyRecordRepository.save(any(IdempotencyRecord.class))).thenReturn(savedRecord);
+        when(idempotencyRecordRepository.save(any(IdempotencyKey.class))).thenReturn(savedRecord);
 
         idempotencyService.saveIdempotencyResult(TEST_KEY, TEST_RESPONSE, 200, 1440);
 
         verify(redisTemplate).opsForValue();
         verify(valueOperations).set(eq("idempotency:" + TEST_KEY), eq(TEST_RESPONSE), any());
-        verify(idempotencyRecordRepository).save(any(IdempotencyRecord.class));
+        verify(idempotencyRecordRepository).save(any(IdempotencyKey.class));
+    }
+
+    @Test
+    @DisplayName("checkIdempotency - saved on this node: should answer from the local cache without Redis")
+    void checkIdempotency_savedLocally_skipsRedis() {
+        ReflectionTestUtils.setField(idempotencyService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(idempotencyService, "localCacheEnabled", true);
+        ReflectionTestUtils.setField(idempotencyService, "localCacheMaxSize", 1000);
+        ReflectionTestUtils.setField(idempotencyService, "localMaxTtl", Duration.ofMinutes(5));
+        idempotencyService.initLocalCache();
+
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        idempotencyService.saveIdempotencyResult(TEST_KEY, TEST_RESPONSE, 200, 1440);
+        clearInvocations(redisTemplate, valueOperations);
+
+        Optional<String> result = idempotencyService.checkIdempotency(TEST_KEY);
+
+        assertThat(result).contains(TEST_RESPONSE);
+        verifyNoInteractions(redisTemplate, valueOperations);
+        verify(idempotencyRecordRepository, never()).findByKeyValue(anyString());
+    }
+
+    @Test
+    @DisplayName("recordKey - inside a transaction: should record the key only once it commits")
+    void recordKey_inTransaction_recordedOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            idempotencyService.recordKey(TEST_KEY);
+            verify(keyFilter, never()).record(anyString());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(keyFilter).record(TEST_KEY);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
     }
 
     @Test
-    @DisplayName("cleanExpiredKeys - should delete expired records from DB")
-    void cleanExpiredKeys_deletesExpired() {
-        when(idempotencyRecordRepository.deleteExpiredRecords(any(LocalDateTime.class))).thenReturn(5);
+    @DisplayName("cleanExpiredKeys - should delete expired records in batches until a short batch")
+    void cleanExpiredKeys_deletesExpiredInBatches() {
+        ReflectionTestUtils.setField(idempotencyService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(idempotencyService, "cleanupBatchSize", 2);
+        ReflectionTestUtils.setField(idempotencyService, "cleanupMaxBatchesPerRun", 10);
+        when(idempotencyRecordRepository.deleteExpiredBatch(any(LocalDateTime.class), eq(2)))
+                .thenReturn(2, 2, 1);
 
         idempotencyService.cleanExpiredKeys();
 
-        verify(idempotencyRecordRepository).deleteExpiredRecords(any(LocalDateTime.class));
+        verify(idempotencyRecordRepository, times(3)).deleteExpiredBatch(any(LocalDateTime.class), eq(2));
     }
 }
@@ -0,0 +1,159 @@
+package com.fintech.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fintech.payment.entity.Transaction;
+import com.fintech.payment.entity.Wallet;
+import com.fintech.payment.enums.ExportFormat;
+import com.fintech.payment.enums.TransactionStatus;
+import com.fintech.payment.enums.TransactionType;
+import com.fintech.payment.exception.ResourceNotFoundException;
+import com.fintech.payment.repository.TransactionRepository;
+import com.fintech.payment.repository.WalletRepository;
+import com.fintech.payment.service.impl.TransactionServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionExportTest {
+
+    private static final Long WALLET_ID = 7L;
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2026, 2, 1, 0, 0);
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private TransactionServiceImpl transactionService;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        transactionService = new TransactionServiceImpl(transactionRepository, walletRepository,
+                idempotencyService, objectMapper);
+        ReflectionTestUtils.setField(transactionService, "entityManager", entityManager);
+    }
+
+    @Test
+    @DisplayName("exportTransactionHistory - streams rows past several flush boundaries, flushing as it goes")
+    void export_ndjson_flushesAcrossBoundaries() throws Exception {
+        when(walletRepository.existsById(WALLET_ID)).thenReturn(true);
+        AtomicInteger flushes = new AtomicInteger();
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+        };
+        List<Integer> flushesBeforeRow = new ArrayList<>();
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<Transaction> rows = LongStream.rangeClosed(1, 1201)
+                .mapToObj(id -> {
+                    flushesBeforeRow.add(flushes.get());
+                    return transaction(id, "Row " + id);
+                })
+                .onClose(() -> closed.set(true));
+        when(transactionRepository.streamByWalletIdAndDateRange(WALLET_ID, START, END)).thenReturn(rows);
+
+        long count = transactionService.exportTransactionHistory(WALLET_ID, START, END, ExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(count).isEqualTo(1201);
+        assertThat(lines).hasSize(1201);
+        assertThat(lines[0]).contains("\"id\":1,");
+        assertThat(lines[500]).contains("\"id\":501,");
+        assertThat(lines[1200]).contains("\"id\":1201,");
+        // Flushed after every 500 rows while the source is still being read, then once at the end
+        assertThat(flushesBeforeRow.get(499)).isZero();
+        assertThat(flushesBeforeRow.get(500)).isEqualTo(1);
+        assertThat(flushesBeforeRow.get(1000)).isEqualTo(2);
+        assertThat(flushes).hasValue(3);
+        assertThat(closed).isTrue();
+        verify(entityManager, times(1201)).detach(any());
+    }
+
+    @Test
+    @DisplayName("exportTransactionHistory - CSV starts with the header and quotes values that need it")
+    void export_csv_headerAndQuoting() throws Exception {
+        when(walletRepository.existsById(WALLET_ID)).thenReturn(true);
+        when(transactionRepository.streamByWalletIdAndDateRange(WALLET_ID, START, END))
+                .thenReturn(Stream.of(transaction(1L, "Rent, \"March\"")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        transactionService.exportTransactionHistory(WALLET_ID, START, END, ExportFormat.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("id,referenceNumber,walletId,type");
+        assertThat(lines[1]).startsWith("1,TXN-1,7,DEPOSIT,COMPLETED,10.00,USD,")
+                .contains(",\"Rent, \"\"March\"\"\",");
+    }
+
+    @Test
+    @DisplayName("exportTransactionHistory - an unknown wallet fails before anything is written")
+    void export_unknownWallet_writesNothing() {
+        when(walletRepository.existsById(WALLET_ID)).thenReturn(false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThatThrownBy(() ->
+                transactionService.exportTransactionHistory(WALLET_ID, START, END, ExportFormat.CSV, out))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        assertThat(out.size()).isZero();
+        verify(transactionRepository, never()).streamByWalletIdAndDateRange(any(), any(), any());
+    }
+
+    private static Transaction transaction(long id, String description) {
+        Transaction transaction = Transaction.builder()
+                .transactionRef("TXN-" + id)
+                .wallet(Wallet.builder().id(WALLET_ID).build())
+                .type(TransactionType.DEPOSIT)
+                .status(TransactionStatus.COMPLETED)
+                .amount(new BigDecimal("10.00"))
+                .currency("USD")
+                .balanceBefore(BigDecimal.ZERO)
+                .balanceAfter(new BigDecimal("10.00"))
+                .description(description)
+                .createdAt(START.plusMinutes(id))
+                .build();
+        transaction.setId(id);
+        return transaction;
+    }
+}
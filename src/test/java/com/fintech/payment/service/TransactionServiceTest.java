@@ -1,18 +1,20 @@
 package com.fintech.payment.service;
 
+import com.fintech.payment.exception.DuplicateTransactionException;
 import com.fintech.payment.exception.ResourceNotFoundException;
-import com.fintech.payment.model.dto.response.TransactionResponse;
-import com.fintech.payment.model.entity.Account;
-import com.fintech.payment.model.entity.Transaction;
-import com.fintech.payment.model.entity.Wallet;
-import com.fintech.payment.model.enums.Currency;
+import com.fintech.payment.dto.response.TransactionResponse;
+import com.fintech.payment.entity.Account;
+import com.fintech.payment.entity.Transaction;
+import com.fintech.payment.entity.Wallet;
     // Normalize input data before comparison
-import com.fintech.payment.model.enums.TransactionStatus;
-import com.fintech.payment.model.enums.TransactionType;
-import com.fintech.payment.model.enums.WalletStatus;
+import com.fintech.payment.enums.TransactionStatus;
+import com.fintech.payment.enums.TransactionType;
+import com.fintech.payment.enums.WalletStatus;
+import com.fintech.payment.dto.response.CursorPage;
 import com.fintech.payment.repository.TransactionRepository;
 import com.fintech.payment.repository.WalletRepository;
 import com.fintech.payment.service.impl.TransactionServiceImpl;
+import com.fintech.payment.util.KeysetCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -20,20 +22,25 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -45,6 +52,9 @@ class TransactionServiceTest {
     @Mock
     private WalletRepository walletRepository;
 
+    @Mock
+    private IdempotencyService idempotencyService;
+
     @InjectMocks
     private TransactionServiceImpl transactionService;
 
@@ -55,6 +65,7 @@ class TransactionServiceTest {
     @BeforeEach
     void setUp() {
         referenceNumber = UUID.randomUUID().toString();
+        lenient().when(idempotencyService.mightHaveSeen(anyString())).thenReturn(true);
 
         Account testAccount = Account.builder()
                 .firstName("John")
@@ -69,19 +80,19 @@ class TransactionServiceTest {
                 .account(testAccount)
                 .balance(new BigDecimal("1000.0000"))
                 .frozenAmount(BigDecimal.ZERO)
-                .currency(Currency.USD)
+                .currency("USD")
                 .status(WalletStatus.ACTIVE)
                 .build();
         testWallet.setId(1L);
         testWallet.setCreatedAt(LocalDateTime.now());
 
         testTransaction = Transaction.builder()
-                .referenceNumber(referenceNumber)
+                .transactionRef(referenceNumber)
                 .wallet(testWallet)
                 .type(TransactionType.DEPOSIT)
                 .status(TransactionStatus.COMPLETED)
                 .amount(new BigDecimal("500.00"))
-                .currency(Currency.USD)
+                .currency("USD")
                 .balanceBefore(new BigDecimal("500.00"))
                 .balanceAfter(new BigDecimal("1000.00"))
                 .description("Test deposit")
@@ -119,6 +130,26 @@ class TransactionServiceTest {
         verify(transactionRepository).save(any(Transaction.class));
     }
 
+    @Test
+    @DisplayName("createTransaction - key unseen by this node's filter but committed elsewhere: reports a duplicate")
+    void createTransaction_uniqueIndexRejectsDuplicate() {
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        when(idempotencyService.mightHaveSeen(idempotencyKey)).thenReturn(false);
+        when(walletRepository.findById(1L)).thenReturn(Optional.of(testWallet));
+        when(transactionRepository.save(any(Transaction.class))).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement", new org.hibernate.exception.ConstraintViolationException(
+                        "duplicate key", new SQLException("duplicate key", "23505"), "uk_txn_idempotency_key")));
+
+        assertThatThrownBy(() -> transactionService.createTransaction(
+                1L, TransactionType.DEPOSIT, new BigDecimal("500.00"),
+                new BigDecimal("500.00"), new BigDecimal("1000.00"),
+                "Test deposit", idempotencyKey, null))
+                .isInstanceOf(DuplicateTransactionException.class)
+                .hasMessageContaining(idempotencyKey);
+        verify(transactionRepository, never()).findByIdempotencyKey(idempotencyKey);
+    }
+
     @Test
     @DisplayName("getTransactionByRef - found: should return transaction response")
     void getTransactionByRef_found() {
@@ -168,6 +199,45 @@ class TransactionServiceTest {
         verify(transactionRepository).findByWalletIdOrderByCreatedAtDesc(1L, pageable);
     }
 
+    @Test
+    @DisplayName("getTransactionsByWallet with cursor - returns a slice and a cursor that resumes after its last row")
+    void getTransactionsByWallet_cursor() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 15, 10, 30, 0, 123456000);
+        Transaction newer = Transaction.builder().transactionRef("ref-3").wallet(testWallet)
+                .type(TransactionType.DEPOSIT).status(TransactionStatus.COMPLETED)
+                .amount(BigDecimal.TEN).build();
+        newer.setId(3L);
+        newer.setCreatedAt(createdAt.plusSeconds(1));
+        Transaction older = Transaction.builder().transactionRef("ref-2").wallet(testWallet)
+                .type(TransactionType.DEPOSIT).status(TransactionStatus.COMPLETED)
+                .amount(BigDecimal.TEN).build();
+        older.setId(2L);
+        older.setCreatedAt(createdAt);
+
+        when(walletRepository.existsById(1L)).thenReturn(true);
+        when(transactionRepository.findKeysetByWalletId(eq(1L), any(Pageable.class)))
+                .thenReturn(List.of(newer, older, testTransaction));
+
+        CursorPage<TransactionResponse> first = transactionService.getTransactionsByWallet(1L, null, 2);
+
+        assertThat(first.getContent()).hasSize(2);
+        assertThat(first.isHasNext()).isTrue();
+        KeysetCursor cursor = KeysetCursor.decode(first.getNextCursor());
+        assertThat(cursor.getCreatedAt()).isEqualTo(createdAt);
+        assertThat(cursor.getId()).isEqualTo(2L);
+
+        when(transactionRepository.findKeysetByWalletIdAfter(eq(1L), eq(createdAt), eq(2L), any(Pageable.class)))
+                .thenReturn(List.of(testTransaction));
+
+        CursorPage<TransactionResponse> second =
+                transactionService.getTransactionsByWallet(1L, first.getNextCursor(), 2);
+
+        assertThat(second.getContent()).hasSize(1);
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+        verify(walletRepository, times(1)).existsById(1L);
+    }
+
     /**
      * Formats a timestamp for logging purposes.
      * @return formatted timestamp string
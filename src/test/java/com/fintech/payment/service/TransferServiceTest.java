@@ -1,21 +1,30 @@
 package com.fintech.payment.service;
 
+import com.fintech.payment.concurrency.WalletLockManager;
 import com.fintech.payment.exception.InsufficientBalanceException;
 import com.fintech.payment.exception.InvalidOperationException;
-import com.fintech.payment.model.dto.response.TransferResponse;
-import com.fintech.payment.model.entity.Account;
-import com.fintech.payment.model.entity.Transaction;
-import com.fintech.payment.model.entity.Transfer;
-import com.fintech.payment.model.entity.Wallet;
-import com.fintech.payment.model.enums.AccountStatus;
-import com.fintech.payment.model.enums.Currency;
-import com.fintech.payment.model.enums.TransactionStatus;
-import com.fintech.payment.model.enums.TransactionType;
-import com.fintech.payment.model.enums.TransferStatus;
-import com.fintech.payment.model.enums.WalletStatus;
+import com.fintech.payment.dto.response.TransferResponse;
+import com.fintech.payment.entity.Account;
+import com.fintech.payment.entity.Transaction;
+import com.fintech.payment.entity.Transfer;
+import com.fintech.payment.entity.Wallet;
+import com.fintech.payment.enums.AccountStatus;
+import com.fintech.payment.enums.Currency;
+import com.fintech.payment.enums.TransactionStatus;
+import com.fintech.payment.enums.TransactionType;
+import com.fintech.payment.enums.TransferStatus;
+import com.fintech.payment.enums.WalletStatus;
+import com.fintech.payment.dto.request.BulkTransferItemRequest;
+import com.fintech.payment.dto.request.BulkTransferRequest;
+import com.fintech.payment.dto.response.BulkTransferResponse;
+import com.fintech.payment.enums.BulkTransferItemStatus;
+import com.fintech.payment.ledger.LedgerEngine;
 import com.fintech.payment.repository.AccountRepository;
+import com.fintech.payment.repository.TransactionBatchRepository;
+import com.fintech.payment.repository.TransferBatchRepository;
 import com.fintech.payment.repository.TransferRepository;
 import com.fintech.payment.repository.WalletRepository;
+import com.fintech.payment.service.OutboxService;
 import com.fintech.payment.service.impl.TransferServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -24,10 +33,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -58,7 +69,25 @@ class TransferServiceTest {
     private NotificationService notificationService;
 
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private OutboxService outboxService;
+
+    @Mock
+    private WalletShardService walletShardService;
+
+    @Mock
+    private WalletVelocityService walletVelocityService;
+
+    @Mock
+    private WalletLockManager walletLockManager;
+
+    @Mock
+    private ObjectProvider<LedgerEngine> ledgerEngineProvider;
+
+    @Mock
+    private TransactionBatchRepository transactionBatchRepository;
+
+    @Mock
+    private TransferBatchRepository transferBatchRepository;
 
     @InjectMocks
     private TransferServiceImpl transferService;
@@ -73,6 +102,7 @@ class TransferServiceTest {
     @BeforeEach
     void setUp() {
         idempotencyKey = UUID.randomUUID().toString();
+        lenient().when(idempotencyService.mightHaveSeen(anyString())).thenReturn(true);
 
         sourceAccount = Account.builder()
                 .firstName("John")
@@ -100,7 +130,7 @@ class TransferServiceTest {
                 .account(sourceAccount)
                 .balance(new BigDecimal("5000.0000"))
                 .frozenAmount(BigDecimal.ZERO)
-                .currency(Currency.USD)
+                .currency("USD")
                 .status(WalletStatus.ACTIVE)
                 .build();
         sourceWallet.setId(1L);
@@ -110,7 +140,7 @@ class TransferServiceTest {
                 .account(destAccount)
                 .balance(new BigDecimal("2000.0000"))
                 .frozenAmount(BigDecimal.ZERO)
-                .currency(Currency.USD)
+                .currency("USD")
                 .status(WalletStatus.ACTIVE)
                 .build();
         destWallet.setId(2L);
@@ -123,23 +153,19 @@ class TransferServiceTest {
         BigDecimal transferAmount = new BigDecimal("1000.00");
 
         when(transferRepository.findByIdempotencyKey(idempotencyKey)).thenReturn(Optional.empty());
-        when(accountRepository.findByAccountNumber("PAY0000000001")).thenReturn(Optional.of(sourceAccount));
-        when(accountRepository.findByAccountNumber("PAY0000000002")).thenReturn(Optional.of(destAccount));
-        when(walletRepository.findByAccountId(1L)).thenReturn(Optional.of(sourceWallet));
-        when(walletRepository.findByAccountId(2L)).thenReturn(Optional.of(destWallet));
-        when(walletRepository.findByIdWithPessimisticLock(1L)).thenReturn(Optional.of(sourceWallet));
-        when(walletRepository.findByIdWithPessimisticLock(2L)).thenReturn(Optional.of(destWallet));
+        when(walletRepository.findTransferWalletsForUpdate("PAY0000000001", "PAY0000000002"))
+                .thenReturn(List.of(sourceWallet, destWallet));
         when(walletRepository.save(any(Wallet.class))).thenAnswer(inv -> inv.getArgument(0));
 
         Transaction outTxn = Transaction.builder()
-                .referenceNumber(UUID.randomUUID().toString())
+                .transactionRef(UUID.randomUUID().toString())
                 .wallet(sourceWallet)
                 .type(TransactionType.TRANSFER_OUT)
                 .amount(transferAmount)
                 .status(TransactionStatus.COMPLETED)
                 .build();
         Transaction inTxn = Transaction.builder()
-                .referenceNumber(UUID.randomUUID().toString())
+                .transactionRef(UUID.randomUUID().toString())
                 .wallet(destWallet)
                 .type(TransactionType.TRANSFER_IN)
                 .amount(transferAmount)
@@ -150,15 +176,15 @@ class TransferServiceTest {
                 eq(transferAmount), any(), any(), anyString(), anyString(), eq(2L)))
                 .thenReturn(outTxn);
         when(transactionService.createTransaction(eq(2L), eq(TransactionType.TRANSFER_IN),
-                eq(transferAmount), any(), any(), anyString(), anyString(), eq(1L)))
+                eq(transferAmount), any(), any(), anyString(), anyString(), eq(1L), isNull()))
                 .thenReturn(inTxn);
 
         Transfer savedTransfer = Transfer.builder()
-                .referenceNumber(UUID.randomUUID().toString())
+                .transferRef(UUID.randomUUID().toString())
                 .sourceAccount(sourceAccount)
                 .destinationAccount(destAccount)
                 .amount(transferAmount)
-                .currency(Currency.USD)
+                .currency("USD")
                 .status(TransferStatus.COMPLETED)
                 .idempotencyKey(idempotencyKey)
                 .build();
@@ -199,12 +225,8 @@ class TransferServiceTest {
         BigDecimal largeAmount = new BigDecimal("99999.00"); // More than source balance (5000)
 
         when(transferRepository.findByIdempotencyKey(idempotencyKey)).thenReturn(Optional.empty());
-        when(accountRepository.findByAccountNumber("PAY0000000001")).thenReturn(Optional.of(sourceAccount));
-        when(accountRepository.findByAccountNumber("PAY0000000002")).thenReturn(Optional.of(destAccount));
-        when(walletRepository.findByAccountId(1L)).thenReturn(Optional.of(sourceWallet));
-        when(walletRepository.findByAccountId(2L)).thenReturn(Optional.of(destWallet));
-        when(walletRepository.findByIdWithPessimisticLock(1L)).thenReturn(Optional.of(sourceWallet));
-        when(walletRepository.findByIdWithPessimisticLock(2L)).thenReturn(Optional.of(destWallet));
+        when(walletRepository.findTransferWalletsForUpdate("PAY0000000001", "PAY0000000002"))
+                .thenReturn(List.of(sourceWallet, destWallet));
 
         assertThatThrownBy(() ->
                 transferService.initiateTransfer(
@@ -219,11 +241,11 @@ class TransferServiceTest {
     @DisplayName("initiateTransfer - idempotent: duplicate key returns existing transfer")
     void initiateTransfer_idempotent() {
         Transfer existingTransfer = Transfer.builder()
-                .referenceNumber(UUID.randomUUID().toString())
+                .transferRef(UUID.randomUUID().toString())
                 .sourceAccount(sourceAccount)
                 .destinationAccount(destAccount)
                 .amount(new BigDecimal("1000.00"))
-                .currency(Currency.USD)
+                .currency("USD")
                 .status(TransferStatus.COMPLETED)
                 .idempotencyKey(idempotencyKey)
                 .build();
@@ -243,6 +265,65 @@ class TransferServiceTest {
         verify(transferRepository, never()).save(any(Transfer.class));
     }
 
+    @Test
+    @DisplayName("initiateBulkTransfer - should debit source once and report duplicates and rejections per item")
+    void initiateBulkTransfer_mixedItems() {
+        ReflectionTestUtils.setField(transferService, "bulkMaxItems", 5000);
+
+        Transfer existingTransfer = Transfer.builder()
+                .transferRef(UUID.randomUUID().toString())
+                .sourceAccount(sourceAccount)
+                .destinationAccount(destAccount)
+                .amount(new BigDecimal("100.00"))
+                .currency("USD")
+                .status(TransferStatus.COMPLETED)
+                .idempotencyKey("payout-1")
+                .build();
+
+        BulkTransferRequest request = BulkTransferRequest.builder()
+                .fromAccountNumber("PAY0000000001")
+                .items(List.of(
+                        BulkTransferItemRequest.builder().idempotencyKey("payout-1")
+                                .toAccountNumber("PAY0000000002").amount(new BigDecimal("100.00")).build(),
+                        BulkTransferItemRequest.builder().idempotencyKey("payout-2")
+                                .toAccountNumber("PAY0000000002").amount(new BigDecimal("1500.00")).build(),
+                        BulkTransferItemRequest.builder().idempotencyKey("payout-3")
+                                .toAccountNumber("PAY0000000002").amount(new BigDecimal("500.00")).build(),
+                        BulkTransferItemRequest.builder().idempotencyKey("payout-4")
+                                .toAccountNumber("PAY0000000099").amount(new BigDecimal("10.00")).build()))
+                .build();
+
+        when(transferRepository.findByIdempotencyKeyIn(anyCollection())).thenReturn(List.of(existingTransfer));
+        when(walletRepository.findBulkTransferWalletsForUpdate(eq("PAY0000000001"), anyCollection()))
+                .thenReturn(List.of(sourceWallet, destWallet));
+        when(walletRepository.findByAccountNumberIn(anyCollection())).thenReturn(List.of());
+        doAnswer(invocation -> {
+            List<Transfer> inserted = invocation.getArgument(0);
+            long id = 100L;
+            for (Transfer transfer : inserted) {
+                transfer.setId(id++);
+            }
+            return null;
+        }).when(transferBatchRepository).insertAll(anyList());
+
+        BulkTransferResponse response = transferService.initiateBulkTransfer(request);
+
+        assertThat(response.getCompletedCount()).isEqualTo(2);
+        assertThat(response.getDuplicateCount()).isEqualTo(1);
+        assertThat(response.getRejectedCount()).isEqualTo(1);
+        assertThat(response.getItems().get(3).getStatus()).isEqualTo(BulkTransferItemStatus.REJECTED);
+        assertThat(response.getItems().get(1).getTransfer().getId()).isNotNull();
+        assertThat(response.getItems().get(2).getTransfer().getId()).isNotNull();
+        assertThat(sourceWallet.getBalance()).isEqualByComparingTo("3000.0000");
+        assertThat(destWallet.getBalance()).isEqualByComparingTo("4000.0000");
+        verify(transactionBatchRepository).insertAll(argThat(transactions -> transactions.size() == 4));
+        verify(transferBatchRepository).insertAll(argThat(transfers -> transfers.size() == 2));
+        verify(transferRepository, never()).save(any(Transfer.class));
+        verify(idempotencyService).recordKey("payout-2");
+        verify(idempotencyService).recordKey("payout-3");
+        verify(idempotencyService, never()).recordKey("payout-1");
+    }
+
     /**
      * Safely parses an integer from a string value.
      * @param value the string to parse
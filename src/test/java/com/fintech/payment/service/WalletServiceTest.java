@@ -1,19 +1,22 @@
 package com.fintech.payment.service;
 
+import com.fintech.payment.concurrency.WalletLockManager;
 import com.fintech.payment.exception.InsufficientBalanceException;
 import com.fintech.payment.exception.ResourceNotFoundException;
-import com.fintech.payment.model.dto.response.BalanceResponse;
-import com.fintech.payment.model.dto.response.WalletResponse;
-import com.fintech.payment.model.entity.Account;
-import com.fintech.payment.model.entity.Transaction;
-import com.fintech.payment.model.entity.Wallet;
-import com.fintech.payment.model.enums.AccountStatus;
-import com.fintech.payment.model.enums.Currency;
-import com.fintech.payment.model.enums.TransactionStatus;
-import com.fintech.payment.model.enums.TransactionType;
-import com.fintech.payment.model.enums.WalletStatus;
+import com.fintech.payment.dto.response.BalanceResponse;
+import com.fintech.payment.dto.response.WalletResponse;
+import com.fintech.payment.entity.Account;
+import com.fintech.payment.entity.Transaction;
+import com.fintech.payment.entity.Wallet;
+import com.fintech.payment.enums.AccountStatus;
+import com.fintech.payment.enums.Currency;
+import com.fintech.payment.enums.TransactionStatus;
+import com.fintech.payment.enums.TransactionType;
+import com.fintech.payment.enums.WalletStatus;
 import com.fintech.payment.repository.AccountRepository;
+import com.fintech.payment.repository.WalletBalanceView;
 import com.fintech.payment.repository.WalletRepository;
+import com.fintech.payment.service.OutboxService;
 import com.fintech.payment.service.impl.WalletServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -22,12 +25,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -50,7 +56,19 @@ class WalletServiceTest {
     private NotificationService notificationService;
 
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private OutboxService outboxService;
+
+    @Mock
+    private WalletShardService walletShardService;
+
+    @Mock
+    private WalletLockManager walletLockManager;
+
+    @Mock
+    private DepositCoalescer depositCoalescer;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
 
     @InjectMocks
     private WalletServiceImpl walletService;
@@ -76,12 +94,16 @@ class WalletServiceTest {
                 .account(testAccount)
                 .balance(new BigDecimal("1000.0000"))
                 .frozenAmount(BigDecimal.ZERO)
-                .currency(Currency.USD)
+                .currency("USD")
                 .status(WalletStatus.ACTIVE)
                 .build();
         testWallet.setId(1L);
         testWallet.setCreatedAt(LocalDateTime.now());
         testWallet.setUpdatedAt(LocalDateTime.now());
+
+        lenient().when(walletShardService.getShardBalance(any(Wallet.class))).thenReturn(BigDecimal.ZERO);
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
     }
 
     @Test
@@ -91,13 +113,11 @@ class WalletServiceTest {
         String idempotencyKey = UUID.randomUUID().toString();
         BigDecimal expectedBalance = testWallet.getBalance().add(depositAmount);
 
-        when(walletRepository.findByAccountIdWithPessimisticLock(1L))
-                .thenReturn(Optional.of(testWallet));
-        when(walletRepository.save(any(Wallet.class)))
-                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.creditByAccountId(eq(1L), eq(depositAmount), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(balanceView(expectedBalance)));
 
         Transaction mockTransaction = Transaction.builder()
-                .referenceNumber(UUID.randomUUID().toString())
+                .transactionRef(UUID.randomUUID().toString())
                 .wallet(testWallet)
                 .type(TransactionType.DEPOSIT)
                 .amount(depositAmount)
@@ -111,25 +131,67 @@ class WalletServiceTest {
 
         assertThat(response).isNotNull();
         assertThat(response.getBalance()).isEqualByComparingTo(expectedBalance);
-        verify(walletRepository).findByAccountIdWithPessimisticLock(1L);
-        verify(walletRepository).save(any(Wallet.class));
+        verify(walletRepository).creditByAccountId(eq(1L), eq(depositAmount), any(LocalDateTime.class));
+        verify(walletRepository, never()).findByAccountIdWithPessimisticLock(anyLong());
+        verify(walletRepository, never()).save(any(Wallet.class));
         verify(transactionService).createTransaction(anyLong(), eq(TransactionType.DEPOSIT),
                 eq(depositAmount), any(), any(), anyString(), eq(idempotencyKey), isNull());
     }
 
+    @Test
+    @DisplayName("deposit - inside a caller transaction: should bypass the coalescer and join the transaction")
+    void deposit_transactionActive_bypassesCoalescer() {
+        BigDecimal depositAmount = new BigDecimal("500.00");
+        String idempotencyKey = UUID.randomUUID().toString();
+        lenient().when(depositCoalescer.isEnabled()).thenReturn(true);
+        when(walletRepository.creditByAccountId(eq(1L), eq(depositAmount), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(balanceView(testWallet.getBalance().add(depositAmount))));
+        when(transactionService.createTransaction(anyLong(), eq(TransactionType.DEPOSIT),
+                eq(depositAmount), any(), any(), anyString(), eq(idempotencyKey), isNull()))
+                .thenReturn(Transaction.builder().wallet(testWallet).amount(depositAmount).build());
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            walletService.deposit(1L, depositAmount, "Test deposit", idempotencyKey);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        verify(depositCoalescer, never()).submit(any(), any(), any(), any());
+        verify(walletRepository).creditByAccountId(eq(1L), eq(depositAmount), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("deposit - coalescer declines: should apply the deposit through the regular path")
+    void deposit_coalescerDeclines_appliesDirectly() {
+        BigDecimal depositAmount = new BigDecimal("500.00");
+        String idempotencyKey = UUID.randomUUID().toString();
+        when(depositCoalescer.isEnabled()).thenReturn(true);
+        when(depositCoalescer.submit(1L, depositAmount, "Test deposit", idempotencyKey))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(walletRepository.creditByAccountId(eq(1L), eq(depositAmount), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(balanceView(testWallet.getBalance().add(depositAmount))));
+        when(transactionService.createTransaction(anyLong(), eq(TransactionType.DEPOSIT),
+                eq(depositAmount), any(), any(), anyString(), eq(idempotencyKey), isNull()))
+                .thenReturn(Transaction.builder().wallet(testWallet).amount(depositAmount).build());
+
+        WalletResponse response = walletService.deposit(1L, depositAmount, "Test deposit", idempotencyKey);
+
+        assertThat(response.getBalance()).isEqualByComparingTo(testWallet.getBalance().add(depositAmount));
+        verify(transactionTemplate).execute(any());
+    }
+
     @Test
     @DisplayName("deposit - idempotent: existing transaction returns same wallet state")
     void deposit_idempotent() {
         BigDecimal depositAmount = new BigDecimal("500.00");
         String idempotencyKey = "existing-key";
 
-        when(walletRepository.findByAccountIdWithPessimisticLock(1L))
-                .thenReturn(Optional.of(testWallet));
-        when(walletRepository.save(any(Wallet.class)))
-                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.creditByAccountId(eq(1L), eq(depositAmount), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(balanceView(testWallet.getBalance().add(depositAmount))));
 
         Transaction existingTransaction = Transaction.builder()
-                .referenceNumber(UUID.randomUUID().toString())
+                .transactionRef(UUID.randomUUID().toString())
                 .wallet(testWallet)
                 .type(TransactionType.DEPOSIT)
                 .amount(depositAmount)
@@ -143,7 +205,7 @@ class WalletServiceTest {
         WalletResponse response = walletService.deposit(1L, depositAmount, "Test deposit", idempotencyKey);
 
         assertThat(response).isNotNull();
-        verify(walletRepository).findByAccountIdWithPessimisticLock(1L);
+        verify(walletRepository).creditByAccountId(eq(1L), eq(depositAmount), any(LocalDateTime.class));
     }
 
     @Test
@@ -153,13 +215,11 @@ class WalletServiceTest {
         String idempotencyKey = UUID.randomUUID().toString();
         BigDecimal expectedBalance = testWallet.getBalance().subtract(withdrawAmount);
 
-        when(walletRepository.findByAccountIdWithPessimisticLock(1L))
-                .thenReturn(Optional.of(testWallet));
-        when(walletRepository.save(any(Wallet.class)))
-                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.debitByAccountId(eq(1L), eq(withdrawAmount), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(balanceView(expectedBalance)));
 
         Transaction mockTransaction = Transaction.builder()
-                .referenceNumber(UUID.randomUUID().toString())
+                .transactionRef(UUID.randomUUID().toString())
                 .wallet(testWallet)
                 .type(TransactionType.WITHDRAWAL)
                 .amount(withdrawAmount)
@@ -173,8 +233,30 @@ class WalletServiceTest {
 
         assertThat(response).isNotNull();
         assertThat(response.getBalance()).isEqualByComparingTo(expectedBalance);
-        verify(walletRepository).findByAccountIdWithPessimisticLock(1L);
-        verify(walletRepository).save(any(Wallet.class));
+        verify(walletRepository).debitByAccountId(eq(1L), eq(withdrawAmount), any(LocalDateTime.class));
+        verify(walletRepository, never()).save(any(Wallet.class));
+    }
+
+    @Test
+    @DisplayName("withdraw - sharded wallet: home-balance debit should report the balance summed with shards")
+    void withdraw_shardedWalletCoveredByHomeBalance_returnsSummedBalance() {
+        BigDecimal withdrawAmount = new BigDecimal("200.00");
+        String idempotencyKey = UUID.randomUUID().toString();
+        BigDecimal homeBalance = testWallet.getBalance().subtract(withdrawAmount);
+        testWallet.setShardCount(4);
+
+        when(walletRepository.debitByAccountId(eq(1L), eq(withdrawAmount), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(balanceView(homeBalance)));
+        when(walletShardService.getShardBalance(testWallet.getId())).thenReturn(new BigDecimal("500.00"));
+        when(transactionService.createTransaction(anyLong(), eq(TransactionType.WITHDRAWAL),
+                eq(withdrawAmount), any(), any(), anyString(), eq(idempotencyKey), isNull()))
+                .thenReturn(Transaction.builder().wallet(testWallet).amount(withdrawAmount).build());
+
+        WalletResponse response = walletService.withdraw(1L, withdrawAmount, "Test withdrawal", idempotencyKey);
+
+        assertThat(response.getBalance()).isEqualByComparingTo(homeBalance.add(new BigDecimal("500.00")));
+        verify(walletShardService).getShardBalance(testWallet.getId());
+        verify(walletShardService, never()).debit(any(), any());
     }
 
     @Test
@@ -183,15 +265,17 @@ class WalletServiceTest {
         BigDecimal withdrawAmount = new BigDecimal("5000.00"); // More than balance of 1000
         String idempotencyKey = UUID.randomUUID().toString();
 
-        when(walletRepository.findByAccountIdWithPessimisticLock(1L))
-                .thenReturn(Optional.of(testWallet));
+        when(walletRepository.debitByAccountId(eq(1L), eq(withdrawAmount), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
+        when(walletLockManager.loadForUpdateByAccountId(1L)).thenReturn(testWallet);
 
         assertThatThrownBy(() ->
                 walletService.withdraw(1L, withdrawAmount, "Large withdrawal", idempotencyKey))
                 .isInstanceOf(InsufficientBalanceException.class);
 
-        verify(walletRepository).findByAccountIdWithPessimisticLock(1L);
+        verify(walletRepository).debitByAccountId(eq(1L), eq(withdrawAmount), any(LocalDateTime.class));
         verify(walletRepository, never()).save(any(Wallet.class));
+        verifyNoInteractions(transactionService);
     }
 
     @Test
@@ -210,6 +294,45 @@ class WalletServiceTest {
         verify(walletRepository).findByAccountId(1L);
     }
 
+    private WalletBalanceView balanceView(BigDecimal balance) {
+        return new WalletBalanceView() {
+            @Override
+            public Long getWalletId() {
+                return testWallet.getId();
+            }
+
+            @Override
+            public BigDecimal getBalance() {
+                return balance;
+            }
+
+            @Override
+            public BigDecimal getFrozenAmount() {
+                return testWallet.getFrozenAmount();
+            }
+
+            @Override
+            public String getCurrency() {
+                return "USD";
+            }
+
+            @Override
+            public int getShardCount() {
+                return testWallet.getShardCount();
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return testWallet.getCreatedAt();
+            }
+
+            @Override
+            public LocalDateTime getUpdatedAt() {
+                return LocalDateTime.now();
+            }
+        };
+    }
+
     /**
      * Validates that the given value is within the expected range.
      * @param value the value to check
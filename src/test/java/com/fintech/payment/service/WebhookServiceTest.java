@@ -0,0 +1,184 @@
+package com.fintech.payment.service;
+
+import com.fintech.payment.entity.WebhookEvent;
+import com.fintech.payment.enums.WebhookStatus;
+import com.fintech.payment.repository.WebhookEventRepository;
+import com.fintech.payment.repository.WebhookRetryView;
+import com.fintech.payment.service.impl.WebhookServiceImpl;
+import com.fintech.payment.webhook.WebhookBatcher;
+import com.fintech.payment.webhook.WebhookDispatcher;
+import com.fintech.payment.webhook.WebhookRetryScheduler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookServiceTest {
+
+    @Mock
+    private WebhookEventRepository webhookEventRepository;
+
+    @Mock
+    private WebhookDispatcher webhookDispatcher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private WebhookRetryScheduler retryScheduler;
+
+    @Mock
+    private WebhookBatcher webhookBatcher;
+
+    private WebhookServiceImpl webhookService;
+
+    @BeforeEach
+    void setUp() {
+        webhookService = new WebhookServiceImpl(webhookEventRepository, webhookDispatcher,
+                transactionTemplate, retryScheduler, webhookBatcher);
+        ReflectionTestUtils.setField(webhookService, "handoffTimeoutMinutes", 20L);
+        ReflectionTestUtils.setField(webhookService, "batchSize", 200);
+        ReflectionTestUtils.setField(webhookService, "maxBatchesPerRun", 50);
+        ReflectionTestUtils.setField(webhookService, "maxUnfinishedDeliveries", 1000);
+        ReflectionTestUtils.setField(webhookService, "rehydrateHorizonMinutes", 300L);
+        ReflectionTestUtils.setField(webhookService, "maxScheduled", 1000);
+
+        lenient().when(webhookDispatcher.maxDeliveryTime()).thenReturn(Duration.ofMinutes(16));
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    @DisplayName("processWebhookRetries - claims full batches until a short one, dispatching each claimed event")
+    void processWebhookRetries_claimsUntilShortBatch() {
+        webhookService.init();
+        when(webhookEventRepository.claimDueWebhooks(any(), any(), anyInt()))
+                .thenReturn(events(1, 200))
+                .thenReturn(events(201, 30));
+
+        webhookService.processWebhookRetries();
+
+        verify(webhookEventRepository, times(2)).claimDueWebhooks(any(), any(), eq(200));
+        verify(webhookDispatcher, times(230)).dispatch(any());
+    }
+
+    @Test
+    @DisplayName("processWebhookRetries - claims no more than the dispatcher has room for, and stops when it is full")
+    void processWebhookRetries_boundedByUnfinishedDeliveries() {
+        webhookService.init();
+        when(webhookDispatcher.unfinishedDeliveries()).thenReturn(900, 1000);
+        when(webhookEventRepository.claimDueWebhooks(any(), any(), anyInt())).thenReturn(events(1, 100));
+
+        webhookService.processWebhookRetries();
+
+        verify(webhookEventRepository).claimDueWebhooks(any(), any(), eq(100));
+        verify(webhookDispatcher, times(100)).dispatch(any());
+    }
+
+    @Test
+    @DisplayName("processWebhookRetries - leases claims past the dispatcher's worst-case delivery time")
+    void processWebhookRetries_leaseCoversWorstCaseDelivery() {
+        ReflectionTestUtils.setField(webhookService, "handoffTimeoutMinutes", 5L);
+        webhookService.init();
+
+        webhookService.processWebhookRetries();
+
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> leaseUntil = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(webhookEventRepository).claimDueWebhooks(now.capture(), leaseUntil.capture(), anyInt());
+        assertThat(Duration.between(now.getValue(), leaseUntil.getValue())).isEqualTo(Duration.ofMinutes(17));
+    }
+
+    @Test
+    @DisplayName("processWebhookRetries - a claim that fails, e.g. on a lock timeout, ends the run without dispatching")
+    void processWebhookRetries_claimFails_stops() {
+        webhookService.init();
+        when(webhookEventRepository.claimDueWebhooks(any(), any(), anyInt()))
+                .thenThrow(new CannotAcquireLockException("lock timeout"));
+
+        webhookService.processWebhookRetries();
+
+        verify(webhookEventRepository, times(1)).claimDueWebhooks(any(), any(), anyInt());
+        verify(webhookDispatcher, never()).dispatch(any());
+    }
+
+    @Test
+    @DisplayName("retry wheel - due ids are claimed by id in batches and only the claimed ones dispatched")
+    void retryWheel_claimsDueIdsInBatches() {
+        ReflectionTestUtils.setField(webhookService, "batchSize", 2);
+        webhookService.init();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<List<Long>>> handler = ArgumentCaptor.forClass(Consumer.class);
+        verify(retryScheduler).onDue(handler.capture());
+        // Id 2 was claimed by another node in the meantime and is skipped by the claim
+        when(webhookEventRepository.claimWebhooksById(eq(List.of(1L, 2L)), any(), any())).thenReturn(events(1, 1));
+        when(webhookEventRepository.claimWebhooksById(eq(List.of(3L)), any(), any())).thenReturn(events(3, 1));
+
+        handler.getValue().accept(List.of(1L, 2L, 3L));
+
+        verify(webhookDispatcher, times(2)).dispatch(any());
+    }
+
+    @Test
+    @DisplayName("rehydrateRetryWheel - schedules upcoming retries and claims the ones already overdue")
+    void rehydrateRetryWheel_schedulesUpcomingAndClaimsOverdue() {
+        webhookService.init();
+        LocalDateTime later = LocalDateTime.now().plusMinutes(10);
+        LocalDateTime past = LocalDateTime.now().minusMinutes(1);
+        when(webhookEventRepository.findUpcomingRetries(eq(WebhookStatus.FAILED), any(), any()))
+                .thenReturn(List.of(retryView(1L, later), retryView(2L, past)));
+        when(retryScheduler.schedule(1L, later)).thenReturn(true);
+        when(retryScheduler.schedule(2L, past)).thenReturn(false);
+        when(webhookEventRepository.claimWebhooksById(eq(List.of(2L)), any(), any())).thenReturn(events(2, 1));
+
+        webhookService.rehydrateRetryWheel();
+
+        verify(webhookEventRepository, never()).claimWebhooksById(eq(List.of(1L)), any(), any());
+        verify(webhookDispatcher, times(1)).dispatch(any());
+    }
+
+    private static WebhookRetryView retryView(Long id, LocalDateTime nextRetryAt) {
+        return new WebhookRetryView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public LocalDateTime getNextRetryAt() {
+                return nextRetryAt;
+            }
+        };
+    }
+
+    private static List<WebhookEvent> events(long firstId, int count) {
+        return LongStream.range(firstId, firstId + count)
+                .mapToObj(id -> WebhookEvent.builder().id(id).targetUrl("https://merchant.example.com/hooks").build())
+                .collect(Collectors.toList());
+    }
+}
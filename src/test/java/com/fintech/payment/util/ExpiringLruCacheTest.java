@@ -0,0 +1,113 @@
+package com.fintech.payment.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpiringLruCacheTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+    // 16 segments of two entries; integer keys 16 apart share a segment
+    private final ExpiringLruCache<Integer, String> cache = new ExpiringLruCache<>(32, clock);
+
+    @Test
+    @DisplayName("get - each entry expires at its own time")
+    void get_perEntryExpiry() {
+        long now = clock.millis();
+        cache.put(1, "short", now + 100);
+        cache.put(2, "long", now + 1_000);
+
+        clock.advanceMillis(99);
+        assertThat(cache.get(1)).contains("short");
+
+        clock.advanceMillis(1);
+        assertThat(cache.get(1)).isEmpty();
+        assertThat(cache.get(2)).contains("long");
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.hitCount()).isEqualTo(2);
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("put - a full segment evicts its least recently used entry and counts it")
+    void put_fullSegment_evictsLeastRecentlyUsed() {
+        long expiresAt = clock.millis() + 60_000;
+        cache.put(0, "a", expiresAt);
+        cache.put(16, "b", expiresAt);
+        cache.put(1, "other-segment", expiresAt);
+        // Reading 0 makes 16 the least recently used in their segment
+        assertThat(cache.get(0)).contains("a");
+
+        cache.put(32, "c", expiresAt);
+
+        assertThat(cache.get(16)).isEmpty();
+        assertThat(cache.get(0)).contains("a");
+        assertThat(cache.get(32)).contains("c");
+        assertThat(cache.get(1)).contains("other-segment");
+        assertThat(cache.evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("put - an already expired time removes the existing entry")
+    void put_alreadyExpired_removesEntry() {
+        long now = clock.millis();
+        cache.put(1, "current", now + 1_000);
+
+        cache.put(1, "stale", now);
+
+        assertThat(cache.get(1)).isEmpty();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.evictionCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("purgeExpired - removes only entries past their expiry and reports how many")
+    void purgeExpired_removesExpiredOnly() {
+        long now = clock.millis();
+        cache.put(1, "a", now + 100);
+        cache.put(2, "b", now + 200);
+        cache.put(17, "c", now + 100);
+        cache.put(3, "d", now + 1_000);
+
+        clock.advanceMillis(200);
+
+        assertThat(cache.purgeExpired()).isEqualTo(3);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.get(3)).contains("d");
+        assertThat(cache.purgeExpired()).isZero();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        private void advanceMillis(long millis) {
+            now = now.plusMillis(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
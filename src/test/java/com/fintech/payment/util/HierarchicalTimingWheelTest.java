@@ -0,0 +1,76 @@
+package com.fintech.payment.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    @Test
+    @DisplayName("add - rejects deadlines that have already passed")
+    void add_pastDeadline_rejected() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(100, 8, START);
+
+        assertThat(wheel.add("late", START)).isFalse();
+        assertThat(wheel.add("later", START - 5000)).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("advance - returns an item in the tick its deadline falls in, never earlier")
+    void advance_neverEarly() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(100, 8, START);
+        wheel.add("a", START + 250);
+
+        assertThat(wheel.advance(START + 200)).isEmpty();
+        assertThat(wheel.advance(START + 299)).isEmpty();
+        assertThat(wheel.advance(START + 300)).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("advance - cascades deadlines beyond the first level down to the exact tick")
+    void advance_cascadesAcrossLevels() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(100, 8, START);
+        // 8 ticks per level: 3_700ms is 37 ticks away, two levels up
+        wheel.add("far", START + 3_700);
+        wheel.add("near", START + 300);
+
+        assertThat(wheel.advance(START + 300)).containsExactly("near");
+        assertThat(wheel.advance(START + 3_600)).isEmpty();
+        assertThat(wheel.advance(START + 3_700)).containsExactly("far");
+    }
+
+    @Test
+    @DisplayName("advance - fires every item once, at or within one tick after its deadline")
+    void advance_randomDeadlines() {
+        long tick = 10;
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(tick, 4, START);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            long deadline = START + 1 + random.nextInt(50_000);
+            deadlines.add(deadline);
+            assertThat(wheel.add(deadline, deadline)).isTrue();
+        }
+
+        List<Long> fired = new ArrayList<>();
+        for (long now = START; now <= START + 50_000 + tick; now += tick) {
+            for (Long deadline : wheel.advance(now)) {
+                assertThat(deadline).isLessThanOrEqualTo(now);
+                assertThat(now - deadline).isLessThan(tick);
+                fired.add(deadline);
+            }
+        }
+
+        assertThat(fired).containsExactlyInAnyOrderElementsOf(deadlines);
+        assertThat(wheel.size()).isZero();
+    }
+}
@@ -0,0 +1,110 @@
+package com.fintech.payment.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RotatingBloomFilterTest {
+
+    private static final long WINDOW_MS = 300;
+    private static final long BUCKET_MS = 100;
+
+    // Starts on a bucket boundary
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+    private final RotatingBloomFilter filter =
+            new RotatingBloomFilter(WINDOW_MS, BUCKET_MS, 1_000, 0.001, clock);
+
+    @Test
+    @DisplayName("mightContain - a key seen at the start of a bucket is found for the whole window")
+    void mightContain_keptForWholeWindow() {
+        filter.put("key-1");
+
+        clock.advanceMillis(WINDOW_MS);
+        assertThat(filter.mightContain("key-1")).isTrue();
+
+        // Still in the same bucket as the window end
+        clock.advanceMillis(BUCKET_MS - 1);
+        assertThat(filter.mightContain("key-1")).isTrue();
+
+        clock.advanceMillis(1);
+        assertThat(filter.mightContain("key-1")).isFalse();
+    }
+
+    @Test
+    @DisplayName("put - accepts a key seen exactly a window ago and ignores older ones")
+    void put_windowEdge() {
+        long now = clock.millis();
+
+        filter.put("edge", now - WINDOW_MS);
+        filter.put("stale", now - WINDOW_MS - BUCKET_MS);
+
+        assertThat(filter.mightContain("edge")).isTrue();
+        assertThat(filter.mightContain("stale")).isFalse();
+    }
+
+    @Test
+    @DisplayName("put - a new bucket reuses the oldest slot and drops only its keys")
+    void put_rotatesOldestSlot() {
+        filter.put("first");
+        clock.advanceMillis(BUCKET_MS);
+        filter.put("second");
+
+        // Four slots: the next write to the first one belongs to a bucket four widths later
+        clock.advanceMillis(3 * BUCKET_MS);
+        filter.put("fifth");
+
+        assertThat(filter.mightContain("first")).isFalse();
+        assertThat(filter.mightContain("second")).isTrue();
+        assertThat(filter.mightContain("fifth")).isTrue();
+
+        clock.advanceMillis(BUCKET_MS);
+        assertThat(filter.mightContain("second")).isFalse();
+        assertThat(filter.mightContain("fifth")).isTrue();
+    }
+
+    @Test
+    @DisplayName("mightContain - keys put across many rotations are never reported missing within the window")
+    void mightContain_noFalseNegativesAcrossRotations() {
+        for (int i = 0; i < 50; i++) {
+            filter.put("key-" + i);
+            clock.advanceMillis(BUCKET_MS / 2);
+            for (int j = Math.max(0, i - 5); j <= i; j++) {
+                assertThat(filter.mightContain("key-" + j)).as("key-%d at step %d", j, i).isTrue();
+            }
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        private void advanceMillis(long millis) {
+            now = now.plusMillis(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
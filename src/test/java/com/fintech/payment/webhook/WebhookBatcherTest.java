@@ -0,0 +1,119 @@
+package com.fintech.payment.webhook;
+
+import com.fintech.payment.entity.WebhookEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookBatcherTest {
+
+    private static final String BATCHED_URL = "https://merchant.example.com/hooks";
+    private static final String OTHER_URL = "https://other.example.com/hooks";
+
+    private final List<List<WebhookEvent>> flushed = new CopyOnWriteArrayList<>();
+    private WebhookBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        batcher = new WebhookBatcher();
+        ReflectionTestUtils.setField(batcher, "targetUrls", BATCHED_URL);
+        ReflectionTestUtils.setField(batcher, "windowMs", 200L);
+        ReflectionTestUtils.setField(batcher, "maxEvents", 3);
+        batcher.start();
+        batcher.onFlush(flushed::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+    }
+
+    @Test
+    @DisplayName("offer - events to a batched target are sent together once the window ends")
+    void offer_flushesAfterWindow() throws Exception {
+        boolean first = batcher.offer(event(1L, BATCHED_URL, "secret"));
+        boolean second = batcher.offer(event(2L, BATCHED_URL, "secret"));
+        int flushedWithinWindow = flushed.size();
+
+        awaitFlushes(1);
+
+        assertThat(first).isTrue();
+        assertThat(second).isTrue();
+        assertThat(flushedWithinWindow).isZero();
+        assertThat(flushed).hasSize(1);
+        assertThat(flushed.get(0)).extracting(WebhookEvent::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("offer - a full batch is sent at once on the offering thread, and its timer does nothing")
+    void offer_fullBatchFlushesImmediately() throws Exception {
+        batcher.offer(event(1L, BATCHED_URL, "secret"));
+        batcher.offer(event(2L, BATCHED_URL, "secret"));
+        batcher.offer(event(3L, BATCHED_URL, "secret"));
+
+        assertThat(flushed).hasSize(1);
+        assertThat(flushed.get(0)).extracting(WebhookEvent::getId).containsExactly(1L, 2L, 3L);
+
+        batcher.offer(event(4L, BATCHED_URL, "secret"));
+        awaitFlushes(2);
+        TimeUnit.MILLISECONDS.sleep(300);
+
+        assertThat(flushed).hasSize(2);
+        assertThat(flushed.get(1)).extracting(WebhookEvent::getId).containsExactly(4L);
+    }
+
+    @Test
+    @DisplayName("offer - events with different secrets go in separate batches")
+    void offer_separatesBySecret() throws Exception {
+        batcher.offer(event(1L, BATCHED_URL, "secret-a"));
+        batcher.offer(event(2L, BATCHED_URL, "secret-b"));
+        batcher.offer(event(3L, BATCHED_URL, "secret-a"));
+
+        awaitFlushes(2);
+
+        assertThat(flushed).extracting(List::size).containsExactlyInAnyOrder(2, 1);
+    }
+
+    @Test
+    @DisplayName("offer - targets not opted in are left to the caller")
+    void offer_unbatchedTarget_refused() {
+        assertThat(batcher.offer(event(1L, OTHER_URL, "secret"))).isFalse();
+        assertThat(batcher.isBatched(OTHER_URL)).isFalse();
+    }
+
+    @Test
+    @DisplayName("flushAll - sends open batches without waiting for their window")
+    void flushAll_sendsOpenBatches() {
+        batcher.offer(event(1L, BATCHED_URL, "secret"));
+
+        batcher.flushAll();
+
+        assertThat(flushed).hasSize(1);
+        assertThat(flushed.get(0)).extracting(WebhookEvent::getId).containsExactly(1L);
+    }
+
+    private void awaitFlushes(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (flushed.size() < count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static WebhookEvent event(Long id, String targetUrl, String secretKey) {
+        return WebhookEvent.builder()
+                .id(id)
+                .eventType("payment.completed")
+                .payload("{\"id\":" + id + "}")
+                .targetUrl(targetUrl)
+                .secretKey(secretKey)
+                .build();
+    }
+}
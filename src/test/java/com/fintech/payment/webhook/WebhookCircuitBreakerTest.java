@@ -0,0 +1,146 @@
+package com.fintech.payment.webhook;
+
+import com.fintech.payment.enums.CircuitState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookCircuitBreakerTest {
+
+    private static final String TARGET = "https://merchant.example.com/hooks";
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+    private WebhookCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreaker = new WebhookCircuitBreaker(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(circuitBreaker, "enabled", true);
+        ReflectionTestUtils.setField(circuitBreaker, "windowSeconds", 60);
+        ReflectionTestUtils.setField(circuitBreaker, "minimumCalls", 4);
+        ReflectionTestUtils.setField(circuitBreaker, "failureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(circuitBreaker, "slowCallThresholdMs", 4000L);
+        ReflectionTestUtils.setField(circuitBreaker, "slowCallRateThreshold", 0.8);
+        ReflectionTestUtils.setField(circuitBreaker, "openDurationMs", 30_000L);
+        ReflectionTestUtils.setField(circuitBreaker, "maxOpenDurationMs", 600_000L);
+        ReflectionTestUtils.setField(circuitBreaker, "probeTimeoutMs", 30_000L);
+        ReflectionTestUtils.setField(circuitBreaker, "retryJitterMs", 0L);
+        ReflectionTestUtils.setField(circuitBreaker, "clock", clock);
+        circuitBreaker.init();
+    }
+
+    @Test
+    @DisplayName("recordOutcome - opens the circuit once the failure rate crosses the threshold")
+    void recordOutcome_failuresOpenCircuit() {
+        circuitBreaker.recordOutcome(TARGET, false, 50);
+        circuitBreaker.recordOutcome(TARGET, true, 5000);
+        circuitBreaker.recordOutcome(TARGET, true, 5000);
+        assertThat(circuitBreaker.allowRequest(TARGET)).isTrue();
+
+        circuitBreaker.recordOutcome(TARGET, true, 5000);
+
+        assertThat(circuitBreaker.health(TARGET).getState()).isEqualTo(CircuitState.OPEN);
+        assertThat(circuitBreaker.allowRequest(TARGET)).isFalse();
+        assertThat(circuitBreaker.retryAt(TARGET)).isEqualTo(clock.instant().plusSeconds(30));
+    }
+
+    @Test
+    @DisplayName("recordOutcome - failures outside the rolling window are forgotten")
+    void recordOutcome_oldFailuresExpire() {
+        circuitBreaker.recordOutcome(TARGET, true, 100);
+        circuitBreaker.recordOutcome(TARGET, true, 100);
+        circuitBreaker.recordOutcome(TARGET, true, 100);
+        clock.advanceMillis(61_000);
+
+        circuitBreaker.recordOutcome(TARGET, true, 100);
+
+        assertThat(circuitBreaker.health(TARGET).getCalls()).isEqualTo(1);
+        assertThat(circuitBreaker.health(TARGET).getState()).isEqualTo(CircuitState.CLOSED);
+    }
+
+    @Test
+    @DisplayName("allowRequest - lets a single probe through after the open period")
+    void allowRequest_singleProbeWhenHalfOpen() {
+        openCircuit();
+        clock.advanceMillis(30_000);
+
+        assertThat(circuitBreaker.allowRequest(TARGET)).isTrue();
+        assertThat(circuitBreaker.health(TARGET).getState()).isEqualTo(CircuitState.HALF_OPEN);
+        assertThat(circuitBreaker.allowRequest(TARGET)).isFalse();
+
+        circuitBreaker.recordOutcome(TARGET, false, 80);
+
+        assertThat(circuitBreaker.health(TARGET).getState()).isEqualTo(CircuitState.CLOSED);
+        assertThat(circuitBreaker.allowRequest(TARGET)).isTrue();
+    }
+
+    @Test
+    @DisplayName("recordOutcome - a failed probe reopens the circuit for twice as long")
+    void recordOutcome_failedProbeDoublesOpenPeriod() {
+        openCircuit();
+        clock.advanceMillis(30_000);
+        assertThat(circuitBreaker.allowRequest(TARGET)).isTrue();
+
+        circuitBreaker.recordOutcome(TARGET, true, 5000);
+
+        assertThat(circuitBreaker.health(TARGET).getState()).isEqualTo(CircuitState.OPEN);
+        clock.advanceMillis(59_000);
+        assertThat(circuitBreaker.allowRequest(TARGET)).isFalse();
+        clock.advanceMillis(1_000);
+        assertThat(circuitBreaker.allowRequest(TARGET)).isTrue();
+    }
+
+    @Test
+    @DisplayName("recordOutcome - mostly slow calls open the circuit even without errors")
+    void recordOutcome_slowCallsOpenCircuit() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.recordOutcome(TARGET, false, 4500);
+        }
+
+        assertThat(circuitBreaker.health(TARGET).getState()).isEqualTo(CircuitState.OPEN);
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.recordOutcome(TARGET, true, 100);
+        }
+        assertThat(circuitBreaker.health(TARGET).getState()).isEqualTo(CircuitState.OPEN);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        private void advanceMillis(long millis) {
+            now = now.plusMillis(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
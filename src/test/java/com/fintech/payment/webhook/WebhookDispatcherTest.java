@@ -0,0 +1,188 @@
+package com.fintech.payment.webhook;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintech.payment.entity.WebhookEvent;
+import com.fintech.payment.enums.WebhookStatus;
+import com.fintech.payment.repository.WebhookEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookDispatcherTest {
+
+    private static final String TARGET_URL = "https://merchant.example.com/hooks";
+
+    @Mock
+    private WebhookEventRepository webhookEventRepository;
+
+    @Mock
+    private WebhookHttpClient webhookHttpClient;
+
+    @Mock
+    private WebhookRetryScheduler retryScheduler;
+
+    @Mock
+    private WebhookCircuitBreaker circuitBreaker;
+
+    @Mock
+    private WebhookBatcher webhookBatcher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private WebhookDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new WebhookDispatcher(webhookEventRepository, webhookHttpClient, new SimpleMeterRegistry(),
+                retryScheduler, circuitBreaker, webhookBatcher, new ObjectMapper(),
+                new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(dispatcher, "poolSize", 1);
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 100);
+        dispatcher.start();
+
+        lenient().when(circuitBreaker.allowRequest(TARGET_URL)).thenReturn(true);
+        lenient().when(webhookHttpClient.post(eq(TARGET_URL), anyString(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture(new WebhookHttpResponse(200, "ok")));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        dispatcher.stop();
+    }
+
+    @Test
+    @DisplayName("dispatch - inside a transaction nothing is sent until it commits")
+    void dispatch_inTransaction_sendsAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        dispatcher.dispatch(event(1L, WebhookStatus.PENDING));
+
+        verify(webhookHttpClient, never()).post(anyString(), anyString(), anyMap());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        verify(webhookHttpClient).post(eq(TARGET_URL), eq("{\"id\":1}"), anyMap());
+        verify(webhookEventRepository, timeout(1000)).saveAll(
+                argThat(events -> single(events).getStatus() == WebhookStatus.DELIVERED));
+    }
+
+    @Test
+    @DisplayName("dispatch - an event from a rolled-back transaction is never sent")
+    void dispatch_rolledBack_neverSent() {
+        TransactionSynchronizationManager.initSynchronization();
+        dispatcher.dispatch(event(2L, WebhookStatus.PENDING));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(webhookHttpClient, never()).post(anyString(), anyString(), anyMap());
+        assertThat(dispatcher.unfinishedDeliveries()).isZero();
+    }
+
+    @Test
+    @DisplayName("dispatch - outcomes are written in a transaction of their own and failures rescheduled")
+    void dispatch_failedDelivery_savedInNewTransactionAndRescheduled() {
+        when(webhookHttpClient.post(eq(TARGET_URL), anyString(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture(new WebhookHttpResponse(503, "busy")));
+
+        dispatcher.dispatch(event(3L, WebhookStatus.PENDING));
+
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager, timeout(1000)).getTransaction(definition.capture());
+        assertThat(definition.getValue().getPropagationBehavior())
+                .isEqualTo(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        verify(webhookEventRepository, timeout(1000)).saveAll(
+                argThat(events -> single(events).getStatus() == WebhookStatus.FAILED));
+        verify(retryScheduler, timeout(1000)).schedule(eq(3L), any());
+    }
+
+    @Test
+    @DisplayName("dispatch - an open circuit defers the event without a network call and hands back its retry")
+    void dispatch_circuitOpen_deferredAndPersisted() {
+        when(circuitBreaker.allowRequest(TARGET_URL)).thenReturn(false);
+        when(circuitBreaker.retryAt(TARGET_URL)).thenReturn(Instant.now().plusSeconds(30));
+        WebhookEvent event = event(4L, WebhookStatus.RETRYING);
+        event.setRetryCount(2);
+
+        TransactionSynchronizationManager.initSynchronization();
+        dispatcher.dispatch(event);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        verify(webhookHttpClient, never()).post(anyString(), anyString(), anyMap());
+        verify(transactionManager).getTransaction(argThat(definition ->
+                definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        verify(webhookEventRepository).saveAll(argThat(events -> single(events).getStatus() == WebhookStatus.FAILED
+                && single(events).getRetryCount() == 1));
+        verify(retryScheduler).schedule(eq(4L), any());
+    }
+
+    @Test
+    @DisplayName("dispatch - an outcome for an event claimed again since is dropped, not rescheduled")
+    void dispatch_supersededOutcome_dropped() {
+        when(webhookHttpClient.post(eq(TARGET_URL), anyString(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture(new WebhookHttpResponse(500, "error")));
+        when(webhookEventRepository.saveAll(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(WebhookEvent.class, 5L));
+
+        dispatcher.dispatch(event(5L, WebhookStatus.RETRYING));
+
+        verify(webhookEventRepository, timeout(1000)).saveAll(any());
+        verify(circuitBreaker, timeout(1000)).recordOutcome(eq(TARGET_URL), anyBoolean(), anyLong());
+        verify(retryScheduler, never()).schedule(any(), any());
+    }
+
+    private static WebhookEvent single(Iterable<WebhookEvent> events) {
+        return events.iterator().next();
+    }
+
+    private static WebhookEvent event(Long id, WebhookStatus status) {
+        return WebhookEvent.builder()
+                .id(id)
+                .eventType("payment.completed")
+                .payload("{\"id\":" + id + "}")
+                .targetUrl(TARGET_URL)
+                .signature("signature")
+                .secretKey("secret")
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,146 @@
+package com.fintech.payment.webhook;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WebhookHttpClientTest {
+
+    private HttpServer server;
+    private WebhookHttpClient client;
+    private String targetUrl;
+
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final AtomicInteger received = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.createContext("/hook", exchange -> {
+            int now = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(now, Math::max);
+            received.incrementAndGet();
+            try {
+                exchange.getRequestBody().readAllBytes();
+                release.await(5, TimeUnit.SECONDS);
+                byte[] body = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+        targetUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/hook";
+
+        client = new WebhookHttpClient();
+        ReflectionTestUtils.setField(client, "connectTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(client, "requestTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(client, "maxInFlightPerHost", 2);
+        ReflectionTestUtils.setField(client, "maxQueuedPerHost", 3);
+        ReflectionTestUtils.setField(client, "ioThreads", 2);
+        client.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.stop();
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("post - delivers body and headers and returns the response")
+    void post_returnsResponse() throws Exception {
+        WebhookHttpResponse response = client.post(targetUrl, "{\"event\":\"test\"}",
+                Map.of("X-Webhook-Event", "payment.status_changed")).get(5, TimeUnit.SECONDS);
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getBody()).isEqualTo("{\"ok\":true}");
+    }
+
+    @Test
+    @DisplayName("post - never exceeds the in-flight limit for one host")
+    void post_capsInFlightPerHost() throws Exception {
+        release = new CountDownLatch(1);
+        List<CompletableFuture<WebhookHttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(client.post(targetUrl, "{}", Map.of()));
+        }
+
+        waitUntil(() -> received.get() == 2);
+        assertThat(client.inFlight(targetUrl)).isEqualTo(2);
+        release.countDown();
+
+        for (CompletableFuture<WebhookHttpResponse> future : futures) {
+            assertThat(future.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(200);
+        }
+        assertThat(received.get()).isEqualTo(5);
+        assertThat(maxConcurrent.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("post - rejects deliveries beyond the host's wait queue")
+    void post_rejectsWhenHostQueueFull() throws Exception {
+        release = new CountDownLatch(1);
+        List<CompletableFuture<WebhookHttpResponse>> accepted = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            accepted.add(client.post(targetUrl, "{}", Map.of()));
+        }
+        waitUntil(() -> received.get() == 2);
+
+        CompletableFuture<WebhookHttpResponse> rejected = client.post(targetUrl, "{}", Map.of());
+
+        assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        release.countDown();
+        for (CompletableFuture<WebhookHttpResponse> future : accepted) {
+            assertThat(future.get(5, TimeUnit.SECONDS).isSuccessful()).isTrue();
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    @Test
+    @DisplayName("maxCompletionTime - covers the requests in flight and a full host queue ahead")
+    void maxCompletionTime_coversFullQueue() {
+        // Two in flight, two queued ahead, then the request itself: three rounds of 2s + 10s
+        assertThat(client.maxCompletionTime()).isEqualTo(Duration.ofSeconds(36));
+    }
+}